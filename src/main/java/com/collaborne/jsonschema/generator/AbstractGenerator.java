@@ -21,16 +21,35 @@ import java.net.URI;
 import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
 import com.collaborne.jsonschema.generator.model.Mapping;
-import com.collaborne.jsonschema.generator.model.Mappings;
+import com.collaborne.jsonschema.generator.model.MappingTrie;
+import com.collaborne.jsonschema.generator.output.Durability;
+import com.collaborne.jsonschema.generator.output.FileSystemOutputSink;
+import com.collaborne.jsonschema.generator.output.OutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
+import com.collaborne.jsonschema.generator.schema.SchemaCompiler;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
 
 public abstract class AbstractGenerator implements Generator {
 	private final Map<String, Object> features = new HashMap<>();
-	private Map<URI, Mapping> mappings = new HashMap<>();
+	private Map<URI, Mapping> mappings = new ConcurrentHashMap<>();
+	private MappingTrie patternMappings = new MappingTrie();
+	/** Generator whose mappings and compiled schemas this generator uses, or {@code null} */
+	private AbstractGenerator sharedStateSource;
 	private Path outputDirectory;
+	private OutputSink outputSink;
+	/** The sink into the output directory, used when no sink was set */
+	private OutputSink defaultOutputSink;
+	private OutputWriter outputWriter = OutputWriter.synchronous(Durability.NONE);
 	private SchemaLoader schemaLoader;
+	private ParsedSchemaCache parsedSchemaCache;
+	private SchemaCompiler schemaCompiler;
+	private Predicate<URI> outputFilter;
 
 	@Override
 	public <T>T getFeature(Feature<T> feature) {
@@ -42,9 +61,22 @@ public abstract class AbstractGenerator implements Generator {
 		return feature.set(features, value);
 	}
 
+	/**
+	 * Get a stable string representation of all features that were set.
+	 * 
+	 * @return
+	 */
+	protected String getFeatureFingerprint() {
+		return new TreeMap<>(features).toString();
+	}
+
 	@Override
 	public void addMapping(URI type, Mapping mapping) {
-		mappings.put(type, mapping);
+		if (MappingTrie.isPattern(type)) {
+			patternMappings.add(type, mapping);
+		} else {
+			mappings.put(type, mapping);
+		}
 	}
 	
 	protected Path getOutputDirectory() {
@@ -54,26 +86,122 @@ public abstract class AbstractGenerator implements Generator {
 	@Override
 	public void setOutputDirectory(Path outputDirectory) {
 		this.outputDirectory = outputDirectory;
+		this.defaultOutputSink = null;
+	}
+	
+	/**
+	 * Get the sink for the generated sources.
+	 * 
+	 * Without an explicitly set sink the sources are written into the output directory using the output writer. That
+	 * sink is created once, so that flushing the generator flushes the sink that received the sources.
+	 * 
+	 * @return
+	 */
+	protected OutputSink getOutputSink() {
+		if (outputSink != null) {
+			return outputSink;
+		}
+		if (defaultOutputSink == null) {
+			defaultOutputSink = new FileSystemOutputSink(outputDirectory, outputWriter);
+		}
+		return defaultOutputSink;
 	}
 	
 	@Override
-	public void setSchemaLoader(SchemaLoader schemaLoader) {
+	public void setOutputSink(OutputSink outputSink) {
+		this.outputSink = outputSink;
+	}
+	
+	/**
+	 * Get the writer for the generated source files in the output directory.
+	 * 
+	 * @return
+	 */
+	protected OutputWriter getOutputWriter() {
+		return outputWriter;
+	}
+	
+	@Override
+	public void setOutputWriter(OutputWriter outputWriter) {
+		this.outputWriter = outputWriter;
+		this.defaultOutputSink = null;
+	}
+	
+	@Override
+	public synchronized void setSchemaLoader(SchemaLoader schemaLoader) {
 		this.schemaLoader = schemaLoader;
+		this.schemaCompiler = null;
+	}
+	
+	@Override
+	public synchronized void setParsedSchemaCache(ParsedSchemaCache parsedSchemaCache) {
+		this.parsedSchemaCache = parsedSchemaCache;
+		this.schemaCompiler = null;
 	}
 	
 	protected SchemaLoader getSchemaLoader() {
 		return schemaLoader;
 	}
 	
+	/**
+	 * Get the compiler for the schemas of the schema loader.
+	 * 
+	 * The compiler keeps the compiled schemas, so that later generation can reuse them.
+	 * 
+	 * @return
+	 */
+	public synchronized SchemaCompiler getSchemaCompiler() {
+		if (sharedStateSource != null) {
+			return sharedStateSource.getSchemaCompiler();
+		}
+		if (schemaCompiler == null) {
+			schemaCompiler = new SchemaCompiler(schemaLoader, parsedSchemaCache);
+		}
+		return schemaCompiler;
+	}
+	
+	/**
+	 * Use the mappings and the compiled schemas of {@code source}.
+	 * 
+	 * Mappings added to either generator are visible to both, so that all generators sharing the state assign the
+	 * same class names.
+	 * 
+	 * @param source
+	 */
+	void shareState(AbstractGenerator source) {
+		this.mappings = source.mappings;
+		this.patternMappings = source.patternMappings;
+		this.sharedStateSource = source;
+	}
+	
+	@Override
+	public void setOutputFilter(Predicate<URI> outputFilter) {
+		this.outputFilter = outputFilter;
+	}
+	
+	/**
+	 * Check whether output for the given {@code type} should be written.
+	 * 
+	 * @param type
+	 * @return
+	 */
+	protected boolean isOutputType(URI type) {
+		return outputFilter == null || outputFilter.test(type);
+	}
+	
 	/**
 	 * Get an existing mapping for the given {@code type}.
 	 * 
-	 * If no mapping is known for this type, {@code null} is returned.
+	 * Exact mappings take precedence over pattern mappings. If no mapping is known for this type, {@code null} is returned.
 	 * 
 	 * @param type
 	 * @return
 	 */
 	protected Mapping getMapping(URI type) {
-		return mappings.get(type);
+		Mapping mapping = mappings.get(type);
+		if (mapping == null && !patternMappings.isEmpty()) {
+			mapping = patternMappings.find(type);
+		}
+		return mapping;
 	}
 }
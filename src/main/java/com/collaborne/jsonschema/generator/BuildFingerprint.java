@@ -0,0 +1,118 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.CodeSource;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Fingerprint of the generator build.
+ *
+ * The fingerprint is the hash of the classes and resources the generator was loaded from, so that any change to the
+ * generator produces a different fingerprint, even if the version number stays the same.
+ */
+public class BuildFingerprint {
+	private static final Logger logger = LoggerFactory.getLogger(BuildFingerprint.class);
+
+	/** Lazily calculated fingerprint of the generator itself */
+	private static class GeneratorHolder {
+		private static final String FINGERPRINT = calculate(BuildFingerprint.class);
+	}
+
+	private BuildFingerprint() {
+		// Prevent instantiation
+	}
+
+	/**
+	 * Get the fingerprint of the generator build.
+	 *
+	 * @return the fingerprint, or {@code null} if the location of the generator classes cannot be read
+	 */
+	@Nullable
+	public static String get() {
+		return GeneratorHolder.FINGERPRINT;
+	}
+
+	/**
+	 * Calculate the fingerprint of the code source {@code clazz} was loaded from.
+	 *
+	 * @param clazz
+	 * @return the fingerprint, or {@code null} if the code source is unknown or cannot be read
+	 */
+	@Nullable
+	public static String calculate(@Nonnull Class<?> clazz) {
+		CodeSource codeSource = clazz.getProtectionDomain().getCodeSource();
+		URL location = codeSource != null ? codeSource.getLocation() : null;
+		if (location == null) {
+			logger.warn("Cannot determine the location of {}", clazz.getName());
+			return null;
+		}
+
+		try {
+			return calculate(Paths.get(location.toURI()));
+		} catch (IOException | URISyntaxException | RuntimeException e) {
+			logger.warn("Cannot read {}", location, e);
+			return null;
+		}
+	}
+
+	@VisibleForTesting
+	static String calculate(Path path) throws IOException {
+		if (Files.isDirectory(path)) {
+			return hashDirectory(path);
+		}
+		return SchemaHasher.hash(Files.readAllBytes(path));
+	}
+
+	private static String hashDirectory(final Path directory) throws IOException {
+		// Collect the file hashes sorted by their relative path, so that the result does not depend on the walk order
+		final Map<String, String> fileHashes = new TreeMap<>();
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				fileHashes.put(directory.relativize(file).toString().replace('\\', '/'), SchemaHasher.hash(Files.readAllBytes(file)));
+				return FileVisitResult.CONTINUE;
+			}
+		});
+
+		StringBuilder content = new StringBuilder();
+		for (Map.Entry<String, String> entry : fileHashes.entrySet()) {
+			content.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+		}
+		return SchemaHasher.hash(content.toString().getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,263 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+
+import javax.annotation.Nonnull;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.output.OutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+
+/**
+ * Generator that fans out each type to several backends in a single pass.
+ *
+ * All backends share one schema loader, one compiled schema model, and one set of mappings. The primary backend
+ * assigns the class names: it generates each type first, in the calling thread. The type is then handed to each
+ * additional backend, which works through the types in order in its own thread, so that the backends run in parallel
+ * to each other and to the primary backend. The total time therefore approaches the time of the slowest backend.
+ *
+ * Settings made on this generator are applied to all backends; backends can be configured individually before creating
+ * the composite.
+ */
+public class CompositeGenerator extends AbstractGenerator implements Closeable {
+	private static class Backend {
+		private final AbstractGenerator generator;
+		private final ExecutorService executor;
+		private final List<Future<ClassName>> pending = new ArrayList<>();
+
+		public Backend(AbstractGenerator generator, ExecutorService executor) {
+			this.generator = generator;
+			this.executor = executor;
+		}
+	}
+
+	private final AbstractGenerator primary;
+	private final List<Backend> backends = new ArrayList<>();
+
+	public CompositeGenerator(@Nonnull AbstractGenerator primary, @Nonnull List<? extends AbstractGenerator> additionalBackends) {
+		this.primary = primary;
+		primary.shareState(this);
+		for (int i = 0; i < additionalBackends.size(); i++) {
+			AbstractGenerator generator = additionalBackends.get(i);
+			generator.shareState(this);
+			String threadName = "generator-backend-" + (i + 1);
+			backends.add(new Backend(generator, Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, threadName);
+					thread.setDaemon(true);
+					return thread;
+				}
+			})));
+		}
+	}
+
+	/**
+	 * Get the backend that assigns the class names.
+	 *
+	 * @return
+	 */
+	public AbstractGenerator getPrimary() {
+		return primary;
+	}
+
+	/**
+	 * Get all backends, starting with the primary backend.
+	 *
+	 * @return
+	 */
+	public List<AbstractGenerator> getBackends() {
+		List<AbstractGenerator> result = new ArrayList<>();
+		result.add(primary);
+		for (Backend backend : backends) {
+			result.add(backend.generator);
+		}
+		return Collections.unmodifiableList(result);
+	}
+
+	@Override
+	public void setOutputDirectory(Path outputDirectory) {
+		super.setOutputDirectory(outputDirectory);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setOutputDirectory(outputDirectory);
+		}
+	}
+
+	@Override
+	public void setOutputSink(OutputSink outputSink) {
+		super.setOutputSink(outputSink);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setOutputSink(outputSink);
+		}
+	}
+
+	@Override
+	public void setOutputWriter(OutputWriter outputWriter) {
+		super.setOutputWriter(outputWriter);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setOutputWriter(outputWriter);
+		}
+	}
+
+	@Override
+	public synchronized void setSchemaLoader(SchemaLoader schemaLoader) {
+		super.setSchemaLoader(schemaLoader);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setSchemaLoader(schemaLoader);
+		}
+	}
+
+	@Override
+	public synchronized void setParsedSchemaCache(ParsedSchemaCache parsedSchemaCache) {
+		super.setParsedSchemaCache(parsedSchemaCache);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setParsedSchemaCache(parsedSchemaCache);
+		}
+	}
+
+	@Override
+	public void setOutputFilter(Predicate<URI> outputFilter) {
+		super.setOutputFilter(outputFilter);
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setOutputFilter(outputFilter);
+		}
+	}
+
+	@Override
+	public <T> T setFeature(Feature<T> feature, T value) {
+		for (AbstractGenerator generator : getBackends()) {
+			generator.setFeature(feature, value);
+		}
+		return super.setFeature(feature, value);
+	}
+
+	@Override
+	public ClassName generate(URI type) throws CodeGenerationException {
+		ClassName className = primary.generate(type);
+		for (Backend backend : backends) {
+			synchronized (backend.pending) {
+				backend.pending.add(backend.executor.submit(new Callable<ClassName>() {
+					@Override
+					public ClassName call() throws CodeGenerationException {
+						try {
+							return backend.generator.generate(type);
+						} catch (RuntimeException e) {
+							throw new CodeGenerationException(type, e);
+						}
+					}
+				}));
+			}
+		}
+		return className;
+	}
+
+	/**
+	 * Wait until all backends processed the types generated so far, and flush all of them.
+	 *
+	 * @throws CodeGenerationException for the first failure of any backend
+	 */
+	@Override
+	public void flush() throws CodeGenerationException {
+		CodeGenerationException failure = null;
+		boolean interrupted = false;
+		for (Backend backend : backends) {
+			List<Future<ClassName>> pending;
+			synchronized (backend.pending) {
+				pending = new ArrayList<>(backend.pending);
+				backend.pending.clear();
+			}
+			for (Future<ClassName> future : pending) {
+				while (true) {
+					try {
+						future.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					} catch (ExecutionException e) {
+						failure = addFailure(failure, e.getCause());
+						break;
+					}
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (AbstractGenerator generator : getBackends()) {
+			try {
+				generator.flush();
+			} catch (CodeGenerationException e) {
+				failure = addFailure(failure, e);
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	private static CodeGenerationException addFailure(CodeGenerationException failure, Throwable e) {
+		if (!(e instanceof CodeGenerationException)) {
+			// Errors cannot be handled here
+			throw (Error) e;
+		}
+		CodeGenerationException backendFailure = (CodeGenerationException) e;
+		if (failure == null) {
+			return backendFailure;
+		}
+		failure.addSuppressed(backendFailure);
+		return failure;
+	}
+
+	/**
+	 * Get the manifest of the primary backend.
+	 */
+	@Override
+	public GenerationManifest getManifest() {
+		return primary.getManifest();
+	}
+
+	/**
+	 * Stop the threads of the additional backends.
+	 *
+	 * Types that were not flushed yet are still processed.
+	 */
+	@Override
+	public void close() {
+		for (Backend backend : backends) {
+			backend.executor.shutdown();
+		}
+	}
+}
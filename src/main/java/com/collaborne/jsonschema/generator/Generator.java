@@ -20,9 +20,15 @@ package com.collaborne.jsonschema.generator;
 import java.net.URI;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.function.Predicate;
 
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
 import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.output.Durability;
+import com.collaborne.jsonschema.generator.output.OutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
 
 public interface Generator {
@@ -70,12 +76,64 @@ public interface Generator {
 	// TODO: builder
 	void setOutputDirectory(Path outputDirectory);
 	
+	/**
+	 * Set the sink for the generated sources.
+	 * 
+	 * By default sources are written into files in the output directory.
+	 * 
+	 * @param outputSink the sink, or {@code null} to use the output directory
+	 */
+	// TODO: builder
+	void setOutputSink(OutputSink outputSink);
+	
+	/**
+	 * Set the writer for the generated source files in the output directory.
+	 * 
+	 * The writer is used when no output sink was set, and remains owned by the caller. By default sources are written
+	 * synchronously with {@link Durability#NONE}.
+	 * 
+	 * @param outputWriter
+	 */
+	// TODO: builder
+	void setOutputWriter(OutputWriter outputWriter);
+	
+	/**
+	 * Add a mapping for the given {@code type}.
+	 * 
+	 * If the last step of {@code type} is {@code *} or {@code **} the mapping applies to all matching types.
+	 * 
+	 * @param type
+	 * @param mapping
+	 * @see com.collaborne.jsonschema.generator.model.MappingTrie
+	 */
 	// TODO: builder
 	void addMapping(URI type, Mapping mapping);
 
 	// TODO: builder
 	void setSchemaLoader(SchemaLoader schemaLoader);
 	
+	/**
+	 * Load the schema documents through {@code parsedSchemaCache}.
+	 * 
+	 * The cache bounds the memory used for the documents and the types compiled from them. The schema loader should
+	 * then not cache the documents itself.
+	 * 
+	 * @param parsedSchemaCache the cache, or {@code null} to load the documents only with the schema loader
+	 */
+	// TODO: builder
+	void setParsedSchemaCache(ParsedSchemaCache parsedSchemaCache);
+	
+	/**
+	 * Restrict the types for which output is written.
+	 * 
+	 * Types rejected by the filter are still resolved, so that references to them can be generated, but their
+	 * output is expected to be produced elsewhere.
+	 * 
+	 * @param outputFilter the filter, or {@code null} to write output for all types
+	 */
+	// TODO: builder
+	void setOutputFilter(Predicate<URI> outputFilter);
+	
 	/**
 	 * Generate code for the given {@code type}, and return the class name of it.
 	 * 
@@ -91,6 +149,20 @@ public interface Generator {
 	 */
 	ClassName generate(URI type) throws CodeGenerationException;
 	
+	/**
+	 * Wait until the output of all previous {@link #generate(URI)} calls is written.
+	 * 
+	 * @throws CodeGenerationException if writing output failed
+	 */
+	void flush() throws CodeGenerationException;
+	
+	/**
+	 * Get the manifest of the classes generated so far.
+	 * 
+	 * @return
+	 */
+	GenerationManifest getManifest();
+	
 	<T>T getFeature(Feature<T> feature);
 	<T>T setFeature(Feature<T> feature, T value);
 }
@@ -0,0 +1,180 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Canonical structural hash of schema subtrees.
+ *
+ * Two subtrees have the same hash if they are equal after ignoring the order of object members, the representation of
+ * numbers, documentation-only keywords, and after resolving {@code $ref} values against the document they appear in.
+ *
+ * Hashes are cached per node, so hashing a subtree after hashing its parent (or the other way around) only
+ * processes each node once. The cache holds the nodes weakly, so it does not keep parsed schemas in memory.
+ */
+public class SchemaHasher {
+	/** Keywords that do not influence the generated code */
+	private static final Set<String> IGNORED_KEYWORDS = new HashSet<>(Arrays.asList("title", "description"));
+	/** Keywords whose values map names to schemas */
+	private static final Set<String> NAMED_SCHEMAS_KEYWORDS = new HashSet<>(Arrays.asList("properties", "patternProperties", "definitions", "dependencies"));
+	/** Keywords whose values are instance data instead of schemas */
+	private static final Set<String> DATA_KEYWORDS = new HashSet<>(Arrays.asList("enum", "default"));
+
+	/** Role of a node in the schema, which decides whether object members are keywords */
+	private enum Context {
+		SCHEMA,
+		NAMED_SCHEMAS,
+		DATA
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	/** Hashes by node identity, weak so that the cache does not keep trees alive that were evicted elsewhere */
+	private final Map<JsonNode, byte[]> hashes = CacheBuilder.newBuilder().weakKeys().<JsonNode, byte[]>build().asMap();
+
+	/**
+	 * Calculate the hash of the given {@code node}.
+	 *
+	 * @param baseUri the URI of the document containing the node, used for resolving references
+	 * @param node
+	 * @return the hash as hex string
+	 */
+	public synchronized String hash(@Nonnull URI baseUri, @Nonnull JsonNode node) {
+		return toHexString(getHash(baseUri, node, Context.SCHEMA));
+	}
+
+	/**
+	 * Calculate the hash of the given bytes, in the same format as {@link #hash(URI, JsonNode)}.
+	 *
+	 * @param bytes
+	 * @return the hash as hex string
+	 */
+	public static String hash(@Nonnull byte[] bytes) {
+		return toHexString(createDigest().digest(bytes));
+	}
+
+	private byte[] getHash(URI baseUri, JsonNode node, Context context) {
+		// Only schemas are cached: the same node could be hashed in another context through the public method
+		byte[] hash = context == Context.SCHEMA ? hashes.get(node) : null;
+		if (hash != null) {
+			return hash;
+		}
+
+		MessageDigest digest = createDigest();
+		if (node.isObject()) {
+			digest.update((byte) 'O');
+			List<String> fieldNames = new ArrayList<>();
+			for (Iterator<String> fieldNameIterator = node.fieldNames(); fieldNameIterator.hasNext(); ) {
+				String fieldName = fieldNameIterator.next();
+				// Only schemas have keywords, names and data can be anything
+				if (context != Context.SCHEMA || !IGNORED_KEYWORDS.contains(fieldName)) {
+					fieldNames.add(fieldName);
+				}
+			}
+			Collections.sort(fieldNames);
+			for (String fieldName : fieldNames) {
+				JsonNode value = node.get(fieldName);
+				updateString(digest, fieldName);
+				if (context == Context.SCHEMA && "$ref".equals(fieldName) && value.isTextual()) {
+					// The same reference text means something different in another document
+					digest.update((byte) 'R');
+					updateString(digest, baseUri.resolve(value.textValue()).toString());
+				} else {
+					digest.update(getHash(baseUri, value, getMemberContext(context, fieldName)));
+				}
+			}
+		} else if (node.isArray()) {
+			digest.update((byte) 'A');
+			for (JsonNode element : node) {
+				digest.update(getHash(baseUri, element, context == Context.NAMED_SCHEMAS ? Context.SCHEMA : context));
+			}
+		} else if (node.isNumber()) {
+			digest.update((byte) 'N');
+			updateString(digest, new BigDecimal(node.asText()).stripTrailingZeros().toPlainString());
+		} else if (node.isTextual()) {
+			digest.update((byte) 'S');
+			updateString(digest, node.textValue());
+		} else if (node.isBoolean()) {
+			digest.update(node.booleanValue() ? (byte) 'T' : (byte) 'F');
+		} else {
+			digest.update((byte) 'Z');
+		}
+
+		hash = digest.digest();
+		if (context == Context.SCHEMA) {
+			hashes.put(node, hash);
+		}
+		return hash;
+	}
+
+	private static Context getMemberContext(Context context, String fieldName) {
+		switch (context) {
+		case SCHEMA:
+			if (NAMED_SCHEMAS_KEYWORDS.contains(fieldName)) {
+				return Context.NAMED_SCHEMAS;
+			}
+			return DATA_KEYWORDS.contains(fieldName) ? Context.DATA : Context.SCHEMA;
+		case NAMED_SCHEMAS:
+			return Context.SCHEMA;
+		default:
+			return Context.DATA;
+		}
+	}
+
+	private static void updateString(MessageDigest digest, String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		int length = bytes.length;
+		digest.update(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+		digest.update(bytes);
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("SHA-256 must be supported", e);
+		}
+	}
+
+	private static String toHexString(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,150 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cache;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.collaborne.jsonschema.generator.SchemaHasher;
+
+/**
+ * Content-addressed store in a directory.
+ *
+ * Contents are stored under their hash in {@code objects/}, and named references to contents are stored
+ * in {@code refs/NAMESPACE/}. All files are written to a temporary file first, and then moved into place, so that
+ * several processes (or machines, when the directory is a shared mount) can use the same store concurrently.
+ */
+public class ContentStore {
+	private final Path directory;
+
+	public ContentStore(@Nonnull Path directory) {
+		this.directory = directory;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	/**
+	 * Store the given {@code content}.
+	 *
+	 * @param content
+	 * @return the hash of the content
+	 * @throws IOException
+	 */
+	public String put(@Nonnull byte[] content) throws IOException {
+		String hash = SchemaHasher.hash(content);
+		Path objectFile = getObjectFile(hash);
+		if (!Files.exists(objectFile)) {
+			write(objectFile, content);
+		}
+		return hash;
+	}
+
+	/**
+	 * Get the content with the given {@code hash}.
+	 *
+	 * @param hash
+	 * @return the content, or {@code null} if the store does not contain it
+	 * @throws IOException
+	 */
+	@Nullable
+	public byte[] get(@Nonnull String hash) throws IOException {
+		try {
+			return Files.readAllBytes(getObjectFile(hash));
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Associate the content with the given {@code hash} with a {@code key}.
+	 *
+	 * @param namespace
+	 * @param key
+	 * @param hash
+	 * @throws IOException
+	 */
+	public void putReference(@Nonnull String namespace, @Nonnull String key, @Nonnull String hash) throws IOException {
+		write(getReferenceFile(namespace, key), hash.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Get the hash of the content associated with {@code key}.
+	 *
+	 * @param namespace
+	 * @param key
+	 * @return the hash, or {@code null} if there is no reference for the key
+	 * @throws IOException
+	 */
+	@Nullable
+	public String getReference(@Nonnull String namespace, @Nonnull String key) throws IOException {
+		try {
+			return new String(Files.readAllBytes(getReferenceFile(namespace, key)), StandardCharsets.UTF_8);
+		} catch (NoSuchFileException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Get the content associated with {@code key}.
+	 *
+	 * @param namespace
+	 * @param key
+	 * @return the content, or {@code null} if there is no reference for the key or the referenced content is missing
+	 * @throws IOException
+	 */
+	@Nullable
+	public byte[] getReferenced(@Nonnull String namespace, @Nonnull String key) throws IOException {
+		String hash = getReference(namespace, key);
+		if (hash == null) {
+			return null;
+		}
+		return get(hash);
+	}
+
+	private Path getObjectFile(String hash) {
+		return directory.resolve("objects").resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+	}
+
+	private Path getReferenceFile(String namespace, String key) {
+		// Keys can be arbitrary strings (for instance URIs), so hash them into a usable file name
+		String keyHash = SchemaHasher.hash(key.getBytes(StandardCharsets.UTF_8));
+		return directory.resolve("refs").resolve(namespace).resolve(keyHash);
+	}
+
+	private void write(Path file, byte[] content) throws IOException {
+		Files.createDirectories(file.getParent());
+		Path temporaryFile = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		Files.write(temporaryFile, content);
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
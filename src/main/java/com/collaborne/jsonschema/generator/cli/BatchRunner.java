@@ -0,0 +1,233 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cli;
+
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.java.ClassPathIndex;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.model.BatchJobs;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Injector;
+
+/**
+ * Runs several generation jobs in parallel in this process.
+ * 
+ * All jobs share the parsed schema files and the class path index, so documents used by several jobs are parsed only once.
+ */
+public class BatchRunner {
+	/**
+	 * Outcome of a single job.
+	 */
+	public static class JobResult {
+		private final String name;
+		private final long durationNanos;
+		private final int generatedTypeCount;
+		private final Exception failure;
+		
+		public JobResult(String name, long durationNanos, int generatedTypeCount, Exception failure) {
+			this.name = name;
+			this.durationNanos = durationNanos;
+			this.generatedTypeCount = generatedTypeCount;
+			this.failure = failure;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public long getDuration(TimeUnit unit) {
+			return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+		}
+		
+		public int getGeneratedTypeCount() {
+			return generatedTypeCount;
+		}
+		
+		/**
+		 * Get the reason the job failed.
+		 * 
+		 * @return the failure, or {@code null} if the job succeeded
+		 */
+		public Exception getFailure() {
+			return failure;
+		}
+	}
+	
+	private final Logger logger = LoggerFactory.getLogger(BatchRunner.class);
+	private final ObjectMapper objectMapper;
+	private final Injector injector;
+	private final Class<? extends Generator> generatorClass;
+	private final ParsedSchemaCache parsedSchemaCache;
+	private final ClassPathIndex classPathIndex = new ClassPathIndex();
+	private Path schemaCacheDirectory;
+	private boolean offline;
+	
+	public BatchRunner(@Nonnull ObjectMapper objectMapper, @Nonnull Injector injector, @Nonnull Class<? extends Generator> generatorClass) {
+		this(objectMapper, injector, generatorClass, new ParsedSchemaCache(objectMapper));
+	}
+	
+	public BatchRunner(@Nonnull ObjectMapper objectMapper, @Nonnull Injector injector, @Nonnull Class<? extends Generator> generatorClass, @Nonnull ParsedSchemaCache parsedSchemaCache) {
+		this.objectMapper = objectMapper;
+		this.injector = injector;
+		this.generatorClass = generatorClass;
+		this.parsedSchemaCache = parsedSchemaCache;
+	}
+	
+	// TODO: builder
+	public void setSchemaCacheDirectory(Path schemaCacheDirectory) {
+		this.schemaCacheDirectory = schemaCacheDirectory;
+	}
+	
+	// TODO: builder
+	public void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+	
+	public ParsedSchemaCache getParsedSchemaCache() {
+		return parsedSchemaCache;
+	}
+	
+	/**
+	 * Run all {@code jobs}.
+	 * 
+	 * Failing jobs do not stop the other jobs.
+	 * 
+	 * @param jobs
+	 * @param jobDirectory the directory against which the directories of the jobs are resolved
+	 * @param threadCount the number of jobs to run at the same time
+	 * @return the results, in the order of the jobs
+	 * @throws InterruptedException
+	 */
+	public List<JobResult> run(@Nonnull BatchJobs jobs, @Nonnull Path jobDirectory, int threadCount) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+		try {
+			List<Future<JobResult>> futures = new ArrayList<>();
+			for (int i = 0; i < jobs.getJobs().size(); i++) {
+				BatchJobs.Job job = jobs.getJobs().get(i);
+				String name = job.getName() != null ? job.getName() : "job-" + i;
+				futures.add(executor.submit(new Callable<JobResult>() {
+					@Override
+					public JobResult call() {
+						return runJob(name, job, jobDirectory);
+					}
+				}));
+			}
+			
+			List<JobResult> results = new ArrayList<>();
+			for (Future<JobResult> future : futures) {
+				try {
+					results.add(future.get());
+				} catch (ExecutionException e) {
+					// runJob() catches all exceptions
+					throw new IllegalStateException("Unexpected failure", e.getCause());
+				}
+			}
+			return results;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Log the timing of each job, and a summary.
+	 * 
+	 * @param results
+	 */
+	public void report(@Nonnull List<JobResult> results) {
+		int failedCount = 0;
+		long totalMillis = 0;
+		for (JobResult result : results) {
+			long millis = result.getDuration(TimeUnit.MILLISECONDS);
+			totalMillis += millis;
+			if (result.getFailure() != null) {
+				failedCount++;
+				logger.error("{}: Failed after {} ms", result.getName(), millis, result.getFailure());
+			} else {
+				logger.info("{}: Generated {} types in {} ms", result.getName(), result.getGeneratedTypeCount(), millis);
+			}
+		}
+		logger.info("Ran {} jobs ({} failed), {} ms in total, parsed {} schema files", results.size(), failedCount, totalMillis, parsedSchemaCache.getParseCount());
+		logger.info("Schema cache: {} hits, {} misses, {} evictions, {} bytes resident", parsedSchemaCache.getHitCount(), parsedSchemaCache.getMissCount(), parsedSchemaCache.getEvictionCount(), parsedSchemaCache.getWeight());
+	}
+	
+	private JobResult runJob(String name, BatchJobs.Job job, Path jobDirectory) {
+		long start = System.nanoTime();
+		try {
+			Path baseDirectory = jobDirectory.resolve(job.getBaseDirectory());
+			Path outputDirectory = jobDirectory.resolve(job.getOutputDirectory());
+			URI rootUri = job.getRootUri();
+			if (rootUri == null) {
+				rootUri = baseDirectory.toAbsolutePath().toUri();
+			}
+			if (!rootUri.isAbsolute()) {
+				throw new IllegalArgumentException("root URI must be absolute");
+			}
+			
+			Generator generator = injector.getInstance(generatorClass);
+			generator.setFeature(PojoGenerator.FEATURE_IGNORE_MISSING_TYPES, Boolean.TRUE);
+			generator.setFeature(PojoGenerator.FEATURE_DEDUPLICATE_ANONYMOUS_TYPES, Boolean.valueOf(job.isDeduplicateAnonymousTypes()));
+			generator.setOutputDirectory(outputDirectory);
+			if (generator instanceof PojoGenerator) {
+				((PojoGenerator) generator).setClassPathIndex(classPathIndex);
+			}
+			
+			Main main = new Main(objectMapper, generator);
+			main.setParsedSchemaCache(parsedSchemaCache);
+			if (job.isWriteManifest()) {
+				main.setManifestFile(outputDirectory.resolve(GenerationManifest.RESOURCE_NAME));
+			}
+			main.addMappings(resolve(baseDirectory, job.getMappings()));
+			main.addCatalogs(resolve(baseDirectory, job.getCatalogs()));
+			main.setSchemaCacheDirectory(schemaCacheDirectory);
+			main.setOffline(offline);
+			main.addSchemas(resolve(baseDirectory, job.getSchemas()));
+			main.addEntryPoints(job.getEntryPoints());
+			main.run(baseDirectory, rootUri);
+			
+			return new JobResult(name, System.nanoTime() - start, generator.getManifest().getEntries().size(), null);
+		} catch (Exception e) {
+			return new JobResult(name, System.nanoTime() - start, 0, e);
+		}
+	}
+	
+	private static List<Path> resolve(Path baseDirectory, List<String> files) {
+		List<Path> paths = new ArrayList<>();
+		for (String file : files) {
+			paths.add(baseDirectory.resolve(file));
+		}
+		return paths;
+	}
+}
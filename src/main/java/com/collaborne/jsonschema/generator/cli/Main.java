@@ -19,30 +19,55 @@ package com.collaborne.jsonschema.generator.cli;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.collaborne.jsonschema.generator.AbstractGenerator;
 import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.CompositeGenerator;
 import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.cache.ContentStore;
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.load.CatalogURIDownloader;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.load.SchemaCatalog;
+import com.collaborne.jsonschema.generator.model.BatchJobs;
+import com.collaborne.jsonschema.generator.model.FootprintReport;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
 import com.collaborne.jsonschema.generator.model.Mapping;
 import com.collaborne.jsonschema.generator.model.Mappings;
+import com.collaborne.jsonschema.generator.model.PruningReport;
+import com.collaborne.jsonschema.generator.output.ArchiveOutputSink;
+import com.collaborne.jsonschema.generator.output.Durability;
+import com.collaborne.jsonschema.generator.output.OutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
 import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.collaborne.jsonschema.generator.schema.MetaSchemaValidator;
+import com.collaborne.jsonschema.generator.schema.SchemaCompiler;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jackson.jsonpointer.JsonPointer;
 import com.github.fge.jackson.jsonpointer.JsonPointerException;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
@@ -50,6 +75,8 @@ import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
 import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
 import com.github.fge.jsonschema.core.load.download.URIDownloader;
 import com.github.fge.jsonschema.core.load.uri.URITranslatorConfiguration;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
@@ -59,11 +86,36 @@ public class Main {
 	private final List<Path> schemaFiles = new ArrayList<>();
 	private final ObjectMapper objectMapper;
 	private final Generator generator;
+	private final SchemaCatalog catalog = new SchemaCatalog();
+	private ContentStore schemaCache;
+	private boolean offline;
+	private Path manifestFile;
+	private ShardFilter shardFilter;
+	/** The parsed schema files, by their URI */
+	private final Map<URI, JsonNode> schemaNodes = new LinkedHashMap<>();
+	/** The targets of the explicit mappings, by the class name */
+	private final Map<String, URI> mappedClassTargets = new HashMap<>();
+	private final List<String> entryPoints = new ArrayList<>();
+	private Path pruningReportFile;
+	private Path footprintReportFile;
+	private ParsedSchemaCache parsedSchemaCache;
+	private MetaSchemaValidator metaSchemaValidator;
 	
 	@VisibleForTesting
 	protected Main(ObjectMapper objectMapper, Generator generator) {
 		this.objectMapper = objectMapper;
 		this.generator = generator;
+		this.parsedSchemaCache = new ParsedSchemaCache(objectMapper);
+	}
+	
+	/**
+	 * Set the cache for parsing the schema files, to share it with other runs.
+	 * 
+	 * @param parsedSchemaCache
+	 */
+	@VisibleForTesting
+	protected void setParsedSchemaCache(ParsedSchemaCache parsedSchemaCache) {
+		this.parsedSchemaCache = parsedSchemaCache;
 	}
 	
 	@VisibleForTesting
@@ -73,13 +125,235 @@ public class Main {
 		if (schemaFiles.isEmpty()) {
 			throw new IllegalStateException("No schema files provided");
 		}
+		if (shardFilter != null) {
+			// Shards name the types independently, so the document roots need distinct names
+			generator.setFeature(PojoGenerator.FEATURE_DOCUMENT_ROOT_BASE_URI, rootUri.toString());
+		}
 		
 		SchemaLoader schemas = loadSchemas(rootUri, baseDirectory, schemaFiles);
+		if (metaSchemaValidator != null) {
+			validateSchemas();
+		}
 		generator.setSchemaLoader(schemas);
 		
 		// Now, start the generation by asking for the types implied in the schemas (i.e. with an empty pointer):
 		Set<URI> initialTypes = getInitialTypes(rootUri, baseDirectory, schemaFiles);
+		if (!entryPoints.isEmpty()) {
+			// Only generate what the entry points need
+			Set<URI> entryPointTypes = resolveEntryPoints(rootUri);
+			Set<URI> reachableTypes = getReachableTypes(schemas, entryPointTypes);
+			reportPrunedTypes(entryPointTypes, initialTypes, reachableTypes);
+			initialTypes = new TreeSet<>(reachableTypes);
+			if (shardFilter != null) {
+				initialTypes = getShardTypes(initialTypes, shardFilter, false);
+				generator.setOutputFilter(shardFilter);
+			}
+		} else if (shardFilter != null) {
+			// Only start from the types owned by this shard: other shards take care of the rest.
+			initialTypes = getShardTypes(initialTypes, shardFilter, true);
+			generator.setOutputFilter(shardFilter);
+		}
 		generate(initialTypes);
+		
+		Generator primaryGenerator = generator instanceof CompositeGenerator ? ((CompositeGenerator) generator).getPrimary() : generator;
+		if (primaryGenerator instanceof PojoGenerator) {
+			reportCollapsedTypes((PojoGenerator) primaryGenerator);
+			if (footprintReportFile != null) {
+				writeFootprintReport((PojoGenerator) primaryGenerator, footprintReportFile);
+			}
+		}
+		
+		if (manifestFile != null) {
+			writeManifest(manifestFile);
+		}
+	}
+	
+	/**
+	 * Validate the loaded schema files, and fail when any of them is invalid.
+	 * 
+	 * @throws ProcessingException if a schema file is invalid
+	 * @throws IOException
+	 */
+	@VisibleForTesting
+	protected void validateSchemas() throws ProcessingException, IOException {
+		long start = System.nanoTime();
+		Map<URI, ProcessingReport> invalidSchemas = metaSchemaValidator.validate(schemaNodes, Runtime.getRuntime().availableProcessors());
+		logger.info("Validated {} schema files in {} ms ({} valid before)", metaSchemaValidator.getValidationCount(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), metaSchemaValidator.getSkipCount());
+		if (!invalidSchemas.isEmpty()) {
+			for (Map.Entry<URI, ProcessingReport> entry : invalidSchemas.entrySet()) {
+				logger.error("{}: Invalid schema: {}", entry.getKey(), entry.getValue());
+			}
+			throw new ProcessingException("Invalid schemas: " + invalidSchemas.keySet());
+		}
+	}
+	
+	/**
+	 * Restrict the generation to the types reachable from the given entry points.
+	 * 
+	 * Each entry point is either a URI, resolved against the root URI, or the name of a class in the explicit mappings.
+	 * 
+	 * @param entryPoints
+	 */
+	@VisibleForTesting
+	protected void addEntryPoints(List<String> entryPoints) {
+		this.entryPoints.addAll(entryPoints);
+	}
+	
+	/**
+	 * Set the file to write the {@link PruningReport} to when generating from entry points.
+	 * 
+	 * @param pruningReportFile
+	 */
+	@VisibleForTesting
+	protected void setPruningReportFile(Path pruningReportFile) {
+		this.pruningReportFile = pruningReportFile;
+	}
+	
+	/**
+	 * Set the file to write the {@link FootprintReport} of the generated classes to.
+	 * 
+	 * @param footprintReportFile
+	 */
+	@VisibleForTesting
+	protected void setFootprintReportFile(Path footprintReportFile) {
+		this.footprintReportFile = footprintReportFile;
+	}
+	
+	@VisibleForTesting
+	protected Set<URI> resolveEntryPoints(URI rootUri) {
+		Set<URI> types = new LinkedHashSet<>();
+		for (String entryPoint : entryPoints) {
+			URI type = mappedClassTargets.get(entryPoint);
+			if (type == null) {
+				type = rootUri.resolve(entryPoint);
+				if (type.getFragment() == null) {
+					type = type.resolve("#");
+				}
+			}
+			types.add(type);
+		}
+		return types;
+	}
+	
+	@VisibleForTesting
+	protected Set<URI> getReachableTypes(SchemaLoader schemas, Set<URI> entryPointTypes) throws ProcessingException {
+		try {
+			// Reuse the compiler of the generator, so that the generation does not compile the schemas again
+			SchemaCompiler compiler;
+			if (generator instanceof AbstractGenerator) {
+				compiler = ((AbstractGenerator) generator).getSchemaCompiler();
+			} else {
+				compiler = new SchemaCompiler(schemas);
+			}
+			return compiler.getReachableTypes(entryPointTypes);
+		} catch (JsonPointerException e) {
+			throw new IllegalArgumentException("Invalid entry point: " + e.getMessage(), e);
+		}
+	}
+	
+	/**
+	 * Report the types of the schema documents that are not reachable from the entry points.
+	 * 
+	 * @param entryPointTypes
+	 * @param initialTypes the root types of the schema documents
+	 * @param reachableTypes
+	 * @throws IOException
+	 */
+	@VisibleForTesting
+	protected void reportPrunedTypes(Set<URI> entryPointTypes, Set<URI> initialTypes, Set<URI> reachableTypes) throws IOException {
+		Set<URI> prunedTypes = new TreeSet<>();
+		for (URI initialType : initialTypes) {
+			prunedTypes.add(initialType);
+			prunedTypes.addAll(getDefinitionTypes(initialType));
+		}
+		prunedTypes.removeAll(reachableTypes);
+		
+		for (URI prunedType : prunedTypes) {
+			logger.debug("{}: Pruned", prunedType);
+		}
+		logger.info("Generating {} types reachable from {} entry points, pruned {} types", reachableTypes.size(), entryPointTypes.size(), prunedTypes.size());
+		
+		if (pruningReportFile != null) {
+			PruningReport report = new PruningReport();
+			report.setEntryPoints(new ArrayList<>(entryPointTypes));
+			report.setReachable(new ArrayList<>(new TreeSet<>(reachableTypes)));
+			report.setPruned(new ArrayList<>(prunedTypes));
+			if (pruningReportFile.getParent() != null) {
+				Files.createDirectories(pruningReportFile.getParent());
+			}
+			try (OutputStream output = Files.newOutputStream(pruningReportFile)) {
+				objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, report);
+			}
+		}
+	}
+	
+	/**
+	 * Set the file to write the manifest of the generated types to after the generation.
+	 * 
+	 * @param manifestFile
+	 */
+	@VisibleForTesting
+	protected void setManifestFile(Path manifestFile) {
+		this.manifestFile = manifestFile;
+	}
+	
+	@VisibleForTesting
+	protected void writeManifest(Path manifestFile) throws IOException {
+		GenerationManifest manifest = generator.getManifest();
+		logger.info("Writing manifest with {} types to {}", manifest.getEntries().size(), manifestFile);
+		if (manifestFile.getParent() != null) {
+			Files.createDirectories(manifestFile.getParent());
+		}
+		try (OutputStream output = Files.newOutputStream(manifestFile)) {
+			objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, manifest);
+		}
+	}
+	
+	/**
+	 * Register the types from all manifests found by {@code classLoader} as mappings, so that they are not generated again.
+	 * 
+	 * Explicit mappings should be added after this, so that they take precedence.
+	 * 
+	 * @param classLoader
+	 * @throws IOException
+	 */
+	@VisibleForTesting
+	protected void addManifests(ClassLoader classLoader) throws IOException {
+		for (Enumeration<URL> manifestUrls = classLoader.getResources(GenerationManifest.RESOURCE_NAME); manifestUrls.hasMoreElements(); ) {
+			URL manifestUrl = manifestUrls.nextElement();
+			try (InputStream input = manifestUrl.openStream()) {
+				GenerationManifest manifest = objectMapper.readValue(input, GenerationManifest.class);
+				logger.info("{}: Using {} precompiled types", manifestUrl, manifest.getEntries().size());
+				for (GenerationManifest.Entry entry : manifest.getEntries()) {
+					generator.addMapping(entry.getTarget(), entry);
+				}
+			}
+		}
+	}
+	
+	@VisibleForTesting
+	protected void reportCollapsedTypes(PojoGenerator pojoGenerator) {
+		int collapsedTypeCount = pojoGenerator.getCollapsedTypeCount();
+		if (collapsedTypeCount == 0) {
+			return;
+		}
+		
+		for (Map.Entry<ClassName, List<URI>> entry : pojoGenerator.getCollapsedTypes().entrySet()) {
+			logger.info("{}: Reused for {} structurally identical types: {}", entry.getKey(), entry.getValue().size(), entry.getValue());
+		}
+		logger.info("Collapsed {} anonymous types into {} classes", collapsedTypeCount, pojoGenerator.getCollapsedTypes().size());
+	}
+	
+	@VisibleForTesting
+	protected void writeFootprintReport(PojoGenerator pojoGenerator, Path footprintReportFile) throws IOException, CodeGenerationException {
+		FootprintReport report = pojoGenerator.getFootprintReport(true);
+		logger.info("Writing footprint report for {} classes to {}", report.getEntries().size(), footprintReportFile);
+		if (footprintReportFile.getParent() != null) {
+			Files.createDirectories(footprintReportFile.getParent());
+		}
+		try (OutputStream output = Files.newOutputStream(footprintReportFile)) {
+			objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, report);
+		}
 	}
 	
 	@VisibleForTesting
@@ -90,6 +364,7 @@ public class Main {
 				logger.info("{}: Generated {}.{}", type, className.getPackageName(), className.getRawClassName());
 			}
 		}
+		generator.flush();
 	}
 	
 	@VisibleForTesting
@@ -127,13 +402,115 @@ public class Main {
 			} else {
 				target = mapping.getTarget();
 			}
-			generator.addMapping(target, mapping);			
+			generator.addMapping(target, mapping);
+			if (className != null) {
+				mappedClassTargets.put(className.toString(), target);
+			}
+		}
+	}
+	
+	@VisibleForTesting
+	protected void addCatalogs(List<Path> catalogFiles) throws IOException {
+		for (Path catalogFile : catalogFiles) {
+			try (InputStream input = Files.newInputStream(catalogFile)) {
+				SchemaCatalog fileCatalog = objectMapper.readValue(input, SchemaCatalog.class);
+				fileCatalog.setBaseDirectory(catalogFile.toAbsolutePath().getParent());
+				
+				catalog.addAll(fileCatalog);
+			}
+		}
+	}
+	
+	/**
+	 * Set the validator for checking the schema files against their meta-schemas before generating.
+	 * 
+	 * @param metaSchemaValidator the validator, or {@code null} to skip validation
+	 */
+	@VisibleForTesting
+	protected void setMetaSchemaValidator(MetaSchemaValidator metaSchemaValidator) {
+		this.metaSchemaValidator = metaSchemaValidator;
+	}
+	
+	/**
+	 * Set the directory for caching downloaded schemas.
+	 * 
+	 * @param schemaCacheDirectory
+	 */
+	@VisibleForTesting
+	protected void setSchemaCacheDirectory(Path schemaCacheDirectory) {
+		this.schemaCache = schemaCacheDirectory != null ? new ContentStore(schemaCacheDirectory) : null;
+	}
+	
+	/**
+	 * Set whether remote schemas that are not in the catalog or cache should fail instead of being downloaded.
+	 * 
+	 * @param offline
+	 */
+	@VisibleForTesting
+	protected void setOffline(boolean offline) {
+		this.offline = offline;
+	}
+	
+	/**
+	 * Only generate and write the types owned by the given shard.
+	 * 
+	 * @param shardFilter
+	 */
+	@VisibleForTesting
+	protected void setShardFilter(ShardFilter shardFilter) {
+		this.shardFilter = shardFilter;
+	}
+	
+	/**
+	 * Get the types a shard has to generate: the given types of its documents, and optionally their definitions.
+	 * 
+	 * Types that are only reachable through references from other documents are not found this way, and
+	 * will be reported as missing when merging the shard manifests.
+	 * 
+	 * @param initialTypes
+	 * @param shardFilter
+	 * @param includeDefinitions whether to add the definitions of the documents of the {@code initialTypes}
+	 * @return
+	 */
+	@VisibleForTesting
+	protected Set<URI> getShardTypes(Set<URI> initialTypes, ShardFilter shardFilter, boolean includeDefinitions) {
+		Set<URI> types = new TreeSet<>();
+		for (URI initialType : initialTypes) {
+			if (!shardFilter.test(initialType)) {
+				continue;
+			}
+			types.add(initialType);
+			if (includeDefinitions) {
+				types.addAll(getDefinitionTypes(initialType));
+			}
 		}
+		return types;
+	}
+	
+	/**
+	 * Get the types defined in the {@code definitions} of a loaded schema document.
+	 * 
+	 * @param schemaUri
+	 * @return
+	 */
+	@VisibleForTesting
+	protected Set<URI> getDefinitionTypes(URI schemaUri) {
+		Set<URI> types = new TreeSet<>();
+		JsonNode schemaNode = schemaNodes.get(schemaUri.resolve("#"));
+		if (schemaNode == null || !schemaNode.path("definitions").isObject()) {
+			return types;
+		}
+		for (Iterator<String> definitionIterator = schemaNode.get("definitions").fieldNames(); definitionIterator.hasNext(); ) {
+			String definition = definitionIterator.next();
+			types.add(schemaUri.resolve("#" + JsonPointer.of("definitions", definition).toString()));
+		}
+		return types;
 	}
 	
 	@VisibleForTesting
 	protected Set<URI> getInitialTypes(URI rootUri, Path baseDirectory, List<Path> schemaFiles) {
-		Set<URI> types = new HashSet<>();
+		// Sorted, so that the order of generation (and with that the names of anonymous types) is stable
+		Set<URI> types = new TreeSet<>();
 		URI baseDirectoryUri = baseDirectory.toAbsolutePath().normalize().toUri();
 		for (Path schemaFile : schemaFiles) {
 			URI schemaFileUri = schemaFile.toAbsolutePath().normalize().toUri();
@@ -160,7 +537,9 @@ public class Main {
 			.setURITranslatorConfiguration(uriTranslatorConfiguration);
 
 		// ... instead, we use a custom downloader which executes the redirect
+		// Anything else is looked up in the catalog and cache before it gets downloaded.
 		Map<String, URIDownloader> downloaders = loadingConfigurationBuilder.freeze().getDownloaderMap();
+		URIDownloader catalogDownloader = new CatalogURIDownloader(catalog, schemaCache, offline, downloaders);
 		URIDownloader redirectingDownloader = new URIDownloader() {
 			@Override
 			public InputStream fetch(URI source) throws IOException {
@@ -170,42 +549,88 @@ public class Main {
 					source = baseDirectoryUri.resolve(relativeSourceUri);
 				}
 				
-				URIDownloader wrappedDownloader = downloaders.get(source.getScheme());
-				return wrappedDownloader.fetch(source);
+				return catalogDownloader.fetch(source);
 			}
 		};
 		for (Map.Entry<String, URIDownloader> entry : downloaders.entrySet()) {
 			loadingConfigurationBuilder.addScheme(entry.getKey(), redirectingDownloader);
 		}
 		
-		JsonNodeReader reader = new JsonNodeReader(objectMapper);
 		for (Path schemaFile : schemaFiles) {
 			URI schemaFileUri = schemaFile.toAbsolutePath().normalize().toUri();
 			URI relativeSchemaUri = baseDirectoryUri.relativize(schemaFileUri);
 			URI schemaUri = rootUri.resolve(relativeSchemaUri);
 
 			logger.info("{}: loading from {}", schemaUri, schemaFile);
-			JsonNode schemaNode = reader.fromReader(Files.newBufferedReader(schemaFile));
+			JsonNode schemaNode = parsedSchemaCache.get(schemaFile);
 			// FIXME: (upstream?): the preloaded map is accessed via the "real URI", so we need that one here as well
 			//        This smells really wrong, after all we want all these to look like they came from rootUri()
 			loadingConfigurationBuilder.preloadSchema(schemaFileUri.toASCIIString(), schemaNode);
+			schemaNodes.put(schemaUri.resolve("#"), schemaNode);
 		}
 		
 		return new SchemaLoader(loadingConfigurationBuilder.freeze());
 	}
 	
+	/**
+	 * Get the arguments for the shard workers: all arguments except the ones only relevant for the coordinator.
+	 * 
+	 * @param args
+	 * @return
+	 */
+	@VisibleForTesting
+	protected static List<String> getShardWorkerArguments(String... args) {
+		List<String> workerArguments = new ArrayList<>();
+		for (int i = 0; i < args.length; i++) {
+			if ("--shards".equals(args[i]) || "--shard-jvm-option".equals(args[i])) {
+				i++;
+			} else if (!"--write-manifest".equals(args[i])) {
+				workerArguments.add(args[i]);
+			}
+		}
+		return workerArguments;
+	}
+	
 	public static void main(String... args) throws URISyntaxException, InstantiationException, IllegalAccessException, ClassNotFoundException, IOException, ProcessingException, JsonPointerException, CodeGenerationException {
 		List<Path> schemaFiles = new ArrayList<>();
 		List<Path> mappingFiles = new ArrayList<>();
+		List<Path> catalogFiles = new ArrayList<>();
+		Path schemaCacheDirectory = null;
+		boolean offline = false;
+		boolean writeManifest = false;
+		boolean useClasspathManifests = false;
+		ShardFilter shardFilter = null;
+		Path shardManifestFile = null;
+		int shardCount = 0;
+		List<String> shardJvmOptions = new ArrayList<>();
 		
 		Path baseDirectory = Paths.get(".");
 		
 		URI rootUri = null;
 		Path outputDirectory = baseDirectory;
-		Class<? extends Generator> generatorClass = PojoGenerator.class;
+		List<Class<? extends Generator>> generatorClasses = new ArrayList<>();
+		boolean deduplicateAnonymousTypes = false;
+		boolean groupAnonymousTypes = false;
+		boolean streamingCodecs = false;
+		String streamingCodecsModule = null;
+		boolean presenceTracking = false;
+		boolean immutable = false;
+		Path outputCacheDirectory = null;
+		Path outputArchiveFile = null;
+		int writerThreads = 0;
+		int writeQueueSize = 64;
+		Durability durability = Durability.NONE;
+		List<String> entryPoints = new ArrayList<>();
+		Path pruningReportFile = null;
+		Path footprintReportFile = null;
+		Path batchFile = null;
+		int batchThreads = Runtime.getRuntime().availableProcessors();
+		long batchSchemaCacheSize = Long.MAX_VALUE;
+		boolean validateSchemas = false;
+		Path validationCacheDirectory = null;
 		for (int i = 0; i < args.length; i++) {
 			if ("--help".equals(args[i]) || "-h".equals(args[i])) {
-				System.out.println("Usage: Main [-h|--help] [--mapping MAPPING-FILE...] [--root URI] [--generator GENERATOR-CLASS] [--output-directory OUTPUT-DIRECTORY] SCHEMA-FILE...");
+				System.out.println("Usage: Main [-h|--help] [--batch JOB-FILE [--batch-threads COUNT] [--batch-schema-cache-size BYTES]] [--mapping MAPPING-FILE...] [--catalog CATALOG-FILE...] [--schema-cache DIRECTORY] [--offline] [--validate-schemas [--validation-cache DIRECTORY]] [--write-manifest] [--use-classpath-manifests] [--shards COUNT [--shard-jvm-option OPTION...]] [--root URI] [--format GENERATOR-CLASS...] [--output-directory OUTPUT-DIRECTORY] [--output-archive ARCHIVE-FILE] [--deduplicate-anonymous-types] [--group-anonymous-types] [--streaming-codecs [--streaming-codecs-module CLASS]] [--presence-tracking] [--immutable] [--output-cache DIRECTORY] [--writer-threads COUNT [--write-queue-size SIZE]] [--durability none|atomic|sync] [--entry-point URI|CLASS...] [--pruning-report FILE] [--footprint-report FILE] SCHEMA-FILE...");
 				System.exit(0);
 			} else if ("--root".equals(args[i])) {
 				String root = args[++i];
@@ -218,15 +643,100 @@ public class Main {
 			} else if ("--mapping".equals(args[i])) {
 				// XXX: is this relative to the base dir?
 				mappingFiles.add(baseDirectory.resolve(args[++i]));
+			} else if ("--catalog".equals(args[i])) {
+				catalogFiles.add(baseDirectory.resolve(args[++i]));
+			} else if ("--schema-cache".equals(args[i])) {
+				schemaCacheDirectory = Paths.get(args[++i]);
+			} else if ("--offline".equals(args[i])) {
+				offline = true;
+			} else if ("--write-manifest".equals(args[i])) {
+				writeManifest = true;
+			} else if ("--use-classpath-manifests".equals(args[i])) {
+				useClasspathManifests = true;
+			} else if ("--shards".equals(args[i])) {
+				shardCount = Integer.parseInt(args[++i]);
+			} else if ("--shard-jvm-option".equals(args[i])) {
+				shardJvmOptions.add(args[++i]);
+			} else if ("--shard".equals(args[i])) {
+				shardFilter = ShardFilter.parse(args[++i]);
+			} else if ("--shard-manifest".equals(args[i])) {
+				shardManifestFile = Paths.get(args[++i]);
 			} else if ("--format".equals(args[i])) {
-				generatorClass = Class.forName(args[++i]).asSubclass(Generator.class);
+				generatorClasses.add(Class.forName(args[++i]).asSubclass(Generator.class));
 			} else if ("--output-directory".equals(args[i])) {
 				outputDirectory = Paths.get(args[++i]);
+			} else if ("--output-archive".equals(args[i])) {
+				outputArchiveFile = Paths.get(args[++i]);
+			} else if ("--deduplicate-anonymous-types".equals(args[i])) {
+				deduplicateAnonymousTypes = true;
+			} else if ("--group-anonymous-types".equals(args[i])) {
+				groupAnonymousTypes = true;
+			} else if ("--streaming-codecs".equals(args[i])) {
+				streamingCodecs = true;
+			} else if ("--streaming-codecs-module".equals(args[i])) {
+				streamingCodecsModule = args[++i];
+			} else if ("--presence-tracking".equals(args[i])) {
+				presenceTracking = true;
+			} else if ("--immutable".equals(args[i])) {
+				immutable = true;
+			} else if ("--output-cache".equals(args[i])) {
+				outputCacheDirectory = Paths.get(args[++i]);
+			} else if ("--batch".equals(args[i])) {
+				batchFile = Paths.get(args[++i]);
+			} else if ("--batch-threads".equals(args[i])) {
+				batchThreads = Integer.parseInt(args[++i]);
+			} else if ("--validate-schemas".equals(args[i])) {
+				validateSchemas = true;
+			} else if ("--validation-cache".equals(args[i])) {
+				validationCacheDirectory = Paths.get(args[++i]);
+			} else if ("--batch-schema-cache-size".equals(args[i])) {
+				batchSchemaCacheSize = Long.parseLong(args[++i]);
+			} else if ("--entry-point".equals(args[i])) {
+				entryPoints.add(args[++i]);
+			} else if ("--pruning-report".equals(args[i])) {
+				pruningReportFile = Paths.get(args[++i]);
+			} else if ("--footprint-report".equals(args[i])) {
+				footprintReportFile = Paths.get(args[++i]);
+			} else if ("--writer-threads".equals(args[i])) {
+				writerThreads = Integer.parseInt(args[++i]);
+			} else if ("--write-queue-size".equals(args[i])) {
+				writeQueueSize = Integer.parseInt(args[++i]);
+			} else if ("--durability".equals(args[i])) {
+				durability = Durability.valueOf(args[++i].toUpperCase(Locale.ENGLISH));
 			} else {
 				schemaFiles.add(baseDirectory.resolve(args[i]));
 			}
 		}
 
+		if (generatorClasses.isEmpty()) {
+			generatorClasses.add(PojoGenerator.class);
+		}
+		
+		if (batchFile != null) {
+			ObjectMapper objectMapper = new ObjectMapper();
+			BatchJobs jobs;
+			try (InputStream input = Files.newInputStream(batchFile)) {
+				jobs = objectMapper.readValue(input, BatchJobs.class);
+			}
+			BatchRunner batchRunner = new BatchRunner(objectMapper, Guice.createInjector(), generatorClasses.get(0), new ParsedSchemaCache(objectMapper, batchSchemaCacheSize));
+			batchRunner.setSchemaCacheDirectory(schemaCacheDirectory);
+			batchRunner.setOffline(offline);
+			List<BatchRunner.JobResult> results;
+			try {
+				results = batchRunner.run(jobs, batchFile.toAbsolutePath().getParent(), batchThreads);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while running batch jobs", e);
+			}
+			batchRunner.report(results);
+			for (BatchRunner.JobResult result : results) {
+				if (result.getFailure() != null) {
+					System.exit(1);
+				}
+			}
+			System.exit(0);
+		}
+		
 		if (schemaFiles.isEmpty()) {
 			System.err.println("at least one schema must be provided");
 			System.exit(1);
@@ -241,18 +751,102 @@ public class Main {
 			System.exit(1);
 		}
 		
+		ObjectMapper objectMapper = new ObjectMapper();
+		
+		if (groupAnonymousTypes && (shardCount > 0 || shardFilter != null)) {
+			// Each shard would write its own version of the holder classes
+			System.err.println("grouping anonymous types cannot be combined with sharding");
+			System.exit(1);
+		}
+		if (streamingCodecs && (shardCount > 0 || shardFilter != null)) {
+			// Each shard would write its own version of the module
+			System.err.println("streaming codecs cannot be combined with sharding");
+			System.exit(1);
+		}
+		
+		if (shardCount > 0) {
+			// Coordinate the workers, and then merge the results.
+			ShardCoordinator coordinator = new ShardCoordinator(objectMapper, shardCount, getShardWorkerArguments(args), shardJvmOptions);
+			GenerationManifest manifest;
+			try {
+				manifest = coordinator.run(Files.createTempDirectory("json-schema-bean-generator-shards"));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for shards", e);
+			}
+			if (writeManifest) {
+				coordinator.writeManifest(manifest, outputDirectory.resolve(GenerationManifest.RESOURCE_NAME));
+			}
+			System.exit(0);
+		}
+		
 		Injector injector = Guice.createInjector();
 		
-		Generator generator = injector.getInstance(generatorClass);
+		OutputWriter outputWriter = writerThreads > 0 ? OutputWriter.async(durability, writerThreads, writeQueueSize) : OutputWriter.synchronous(durability);
+		List<Generator> backends = new ArrayList<>();
+		for (Class<? extends Generator> generatorClass : generatorClasses) {
+			Generator backend = injector.getInstance(generatorClass);
+			if (outputCacheDirectory != null && backend instanceof PojoGenerator) {
+				((PojoGenerator) backend).setOutputCache(new ContentStore(outputCacheDirectory));
+			}
+			backend.setOutputWriter(outputWriter);
+			backends.add(backend);
+		}
+		Generator generator;
+		if (backends.size() == 1) {
+			generator = backends.get(0);
+		} else {
+			// Share loading, resolution and naming between all backends
+			List<AbstractGenerator> additionalBackends = new ArrayList<>();
+			for (Generator backend : backends.subList(1, backends.size())) {
+				additionalBackends.add((AbstractGenerator) backend);
+			}
+			generator = new CompositeGenerator((AbstractGenerator) backends.get(0), additionalBackends);
+		}
 		generator.setFeature(PojoGenerator.FEATURE_IGNORE_MISSING_TYPES, Boolean.TRUE);
+		generator.setFeature(PojoGenerator.FEATURE_DEDUPLICATE_ANONYMOUS_TYPES, Boolean.valueOf(deduplicateAnonymousTypes));
+		generator.setFeature(PojoGenerator.FEATURE_GROUP_ANONYMOUS_TYPES, Boolean.valueOf(groupAnonymousTypes));
+		generator.setFeature(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.valueOf(streamingCodecs));
+		generator.setFeature(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, streamingCodecsModule);
+		generator.setFeature(PojoGenerator.FEATURE_PRESENCE_TRACKING, Boolean.valueOf(presenceTracking));
+		generator.setFeature(PojoGenerator.FEATURE_IMMUTABLE, Boolean.valueOf(immutable));
 		generator.setOutputDirectory(outputDirectory);
-		
-		ObjectMapper objectMapper = new ObjectMapper();
+		OutputSink outputSink = null;
+		if (outputArchiveFile != null) {
+			outputSink = ArchiveOutputSink.create(outputArchiveFile);
+			generator.setOutputSink(outputSink);
+		}
 		
 		Main main = new Main(objectMapper, generator);
+		if (useClasspathManifests) {
+			main.addManifests(Main.class.getClassLoader());
+		}
+		if (writeManifest) {
+			main.setManifestFile(outputDirectory.resolve(GenerationManifest.RESOURCE_NAME));
+		}
+		if (shardFilter != null) {
+			main.setShardFilter(shardFilter);
+			main.setManifestFile(shardManifestFile);
+		}
 		main.addMappings(mappingFiles);
+		main.addEntryPoints(entryPoints);
+		main.setPruningReportFile(pruningReportFile);
+		main.setFootprintReportFile(footprintReportFile);
+		main.addCatalogs(catalogFiles);
+		main.setSchemaCacheDirectory(schemaCacheDirectory);
+		main.setOffline(offline);
+		if (validateSchemas) {
+			main.setMetaSchemaValidator(new MetaSchemaValidator(JsonSchemaFactory.byDefault(), validationCacheDirectory != null ? new ContentStore(validationCacheDirectory) : null));
+		}
 		main.addSchemas(schemaFiles);
 		main.run(baseDirectory, rootUri);
+		if (generator instanceof CompositeGenerator) {
+			((CompositeGenerator) generator).close();
+		}
+		outputWriter.close();
+		if (outputSink != null) {
+			outputSink.close();
+		}
 		
 		System.exit(0);
 	}
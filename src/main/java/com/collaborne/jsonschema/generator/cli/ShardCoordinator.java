@@ -0,0 +1,192 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cli;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.model.Mapping;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the generation in several worker processes, and merges their results.
+ * 
+ * Each worker runs {@link Main} with {@code --shard INDEX/COUNT}, and writes the output for the types owned by its shard
+ * (see {@link ShardFilter}). Types owned by other shards are only named, not generated. Workers do not communicate while
+ * running: each one derives the class names from the type URIs, and document roots are named after the path of their
+ * document relative to the root URI, so that all shards agree on the names without a central assignment. Each worker
+ * writes the URI to {@link ClassName} assignments it used into a {@link GenerationManifest}, and {@link #merge(List)}
+ * checks afterwards that the shards agree. Types whose derived names collide need an explicit mapping. Because workers
+ * only communicate through these files, they can also run on different machines sharing the output directory.
+ */
+public class ShardCoordinator {
+	private final Logger logger = LoggerFactory.getLogger(ShardCoordinator.class);
+	private final ObjectMapper objectMapper;
+	private final int shardCount;
+	private final List<String> workerArguments;
+	private final List<String> workerJvmOptions;
+	
+	/**
+	 * Create the coordinator.
+	 * 
+	 * @param objectMapper
+	 * @param shardCount
+	 * @param workerArguments the arguments for {@link Main}, shared by all workers
+	 * @param workerJvmOptions the options for the worker JVMs, for instance the heap size
+	 */
+	public ShardCoordinator(@Nonnull ObjectMapper objectMapper, int shardCount, @Nonnull List<String> workerArguments, @Nonnull List<String> workerJvmOptions) {
+		this.objectMapper = objectMapper;
+		this.shardCount = shardCount;
+		this.workerArguments = workerArguments;
+		this.workerJvmOptions = workerJvmOptions;
+	}
+	
+	/**
+	 * Run all workers, and merge their manifests.
+	 * 
+	 * @param workDirectory directory for the shard manifests
+	 * @return the merged manifest
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public GenerationManifest run(@Nonnull Path workDirectory) throws IOException, InterruptedException {
+		Files.createDirectories(workDirectory);
+		
+		List<Process> processes = new ArrayList<>();
+		List<Path> shardManifestFiles = new ArrayList<>();
+		for (int i = 0; i < shardCount; i++) {
+			Path shardManifestFile = workDirectory.resolve("shard-" + i + ".json");
+			Files.deleteIfExists(shardManifestFile);
+			shardManifestFiles.add(shardManifestFile);
+			
+			List<String> command = getWorkerCommand(i, shardManifestFile);
+			logger.debug("Starting shard {}/{}: {}", i, shardCount, command);
+			processes.add(new ProcessBuilder(command).inheritIO().start());
+		}
+		
+		List<String> failedShards = new ArrayList<>();
+		for (int i = 0; i < shardCount; i++) {
+			int exitCode = processes.get(i).waitFor();
+			if (exitCode != 0) {
+				failedShards.add(i + "/" + shardCount + " (exit code " + exitCode + ")");
+			}
+		}
+		if (!failedShards.isEmpty()) {
+			throw new IOException("Shards failed: " + failedShards);
+		}
+		
+		List<GenerationManifest> shardManifests = new ArrayList<>();
+		for (Path shardManifestFile : shardManifestFiles) {
+			try (InputStream input = Files.newInputStream(shardManifestFile)) {
+				shardManifests.add(objectMapper.readValue(input, GenerationManifest.class));
+			}
+		}
+		return merge(shardManifests);
+	}
+	
+	public void writeManifest(@Nonnull GenerationManifest manifest, @Nonnull Path manifestFile) throws IOException {
+		if (manifestFile.getParent() != null) {
+			Files.createDirectories(manifestFile.getParent());
+		}
+		try (OutputStream output = Files.newOutputStream(manifestFile)) {
+			objectMapper.writerWithDefaultPrettyPrinter().writeValue(output, manifest);
+		}
+	}
+	
+	protected List<String> getWorkerCommand(int shardIndex, Path shardManifestFile) {
+		List<String> command = new ArrayList<>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.addAll(workerJvmOptions);
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(Main.class.getName());
+		command.add("--shard");
+		command.add(shardIndex + "/" + shardCount);
+		command.add("--shard-manifest");
+		command.add(shardManifestFile.toAbsolutePath().toString());
+		command.addAll(workerArguments);
+		return command;
+	}
+	
+	/**
+	 * Merge the manifests of all shards.
+	 * 
+	 * The result does not depend on the order of the manifests: entries are sorted by their target. Each reference
+	 * across shards must agree with the entry of the owning shard, and one class must not be generated for types
+	 * with different schemas.
+	 * 
+	 * @param shardManifests
+	 * @return
+	 * @throws IllegalStateException if the shards disagree
+	 */
+	public static GenerationManifest merge(@Nonnull List<GenerationManifest> shardManifests) {
+		Map<String, GenerationManifest.Entry> entries = new TreeMap<>();
+		Map<ClassName, GenerationManifest.Entry> entriesByClassName = new HashMap<>();
+		List<String> conflicts = new ArrayList<>();
+		for (GenerationManifest shardManifest : shardManifests) {
+			for (GenerationManifest.Entry entry : shardManifest.getEntries()) {
+				GenerationManifest.Entry previousEntry = entries.put(entry.getTarget().toString(), entry);
+				if (previousEntry != null && !previousEntry.getClassName().equals(entry.getClassName())) {
+					conflicts.add(entry.getTarget() + ": generated as both " + previousEntry.getClassName() + " and " + entry.getClassName());
+				}
+				
+				GenerationManifest.Entry previousClassEntry = entriesByClassName.put(entry.getClassName(), entry);
+				if (previousClassEntry != null && !previousClassEntry.getTarget().equals(entry.getTarget()) && !previousClassEntry.getHash().equals(entry.getHash())) {
+					conflicts.add(entry.getClassName() + ": generated for both " + previousClassEntry.getTarget() + " and " + entry.getTarget() + ", add a mapping for one of them");
+				}
+			}
+		}
+		
+		for (GenerationManifest shardManifest : shardManifests) {
+			for (Mapping reference : shardManifest.getReferences()) {
+				GenerationManifest.Entry entry = entries.get(reference.getTarget().toString());
+				URI target = reference.getTarget();
+				if (entry == null) {
+					conflicts.add(target + ": referenced as " + reference.getClassName() + ", but not generated by any shard");
+				} else if (!entry.getClassName().equals(reference.getClassName())) {
+					conflicts.add(target + ": referenced as " + reference.getClassName() + ", but generated as " + entry.getClassName());
+				}
+			}
+		}
+		
+		if (!conflicts.isEmpty()) {
+			throw new IllegalStateException("Shards disagree on class names: " + conflicts);
+		}
+		
+		GenerationManifest manifest = new GenerationManifest();
+		manifest.setEntries(new ArrayList<>(entries.values()));
+		return manifest;
+	}
+}
@@ -0,0 +1,77 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cli;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.function.Predicate;
+
+/**
+ * Output filter selecting the types owned by one shard.
+ * 
+ * Types are assigned to shards by a stable hash of the URI of the schema document they are in, so all types from one
+ * document end up in the same shard, and every process computes the same assignment.
+ */
+public class ShardFilter implements Predicate<URI> {
+	private final int shardIndex;
+	private final int shardCount;
+	
+	public ShardFilter(int shardIndex, int shardCount) {
+		if (shardCount <= 0 || shardIndex < 0 || shardIndex >= shardCount) {
+			throw new IllegalArgumentException("Invalid shard " + shardIndex + "/" + shardCount);
+		}
+		this.shardIndex = shardIndex;
+		this.shardCount = shardCount;
+	}
+	
+	/**
+	 * Parse a shard specification of the form {@code INDEX/COUNT}.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static ShardFilter parse(String value) {
+		int slashIndex = value.indexOf('/');
+		if (slashIndex == -1) {
+			throw new IllegalArgumentException("Invalid shard " + value + ", expected INDEX/COUNT");
+		}
+		return new ShardFilter(Integer.parseInt(value.substring(0, slashIndex)), Integer.parseInt(value.substring(slashIndex + 1)));
+	}
+	
+	public static int getShard(URI type, int shardCount) {
+		URI document;
+		try {
+			document = new URI(type.getScheme(), type.getSchemeSpecificPart(), null);
+		} catch (URISyntaxException e) {
+			assert false : "Was a URI before, we just removed the fragment";
+			throw new RuntimeException(e);
+		}
+		// String#hashCode() is specified, and therefore the same in every JVM
+		return Math.floorMod(document.toString().hashCode(), shardCount);
+	}
+	
+	@Override
+	public boolean test(URI type) {
+		return getShard(type, shardCount) == shardIndex;
+	}
+	
+	@Override
+	public String toString() {
+		return shardIndex + "/" + shardCount;
+	}
+}
@@ -0,0 +1,633 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.codec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.AbstractGenerator;
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.CompositeGenerator;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.ClassPathIndex;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.java.Kind;
+import com.collaborne.jsonschema.generator.java.Visibility;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.output.OutputBuffer;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.collaborne.jsonschema.generator.pojo.PrimitiveLists;
+import com.collaborne.jsonschema.generator.pojo.StringMaps;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
+import com.github.fge.jackson.jsonpointer.JsonPointerException;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Backend that generates dependency-free JSON codecs working directly on UTF-8 bytes.
+ *
+ * For each bean class {@code Foo} the class {@code FooByteCodec} with static {@code encode(Foo, JsonByteWriter)} and
+ * {@code decode(JsonByteReader)} methods is written into the same package. The codecs only depend on the
+ * {@code JsonByteReader} and {@code JsonByteWriter} classes, which are written once into the support package.
+ *
+ * The backend does not assign class names: it must run as additional backend of a {@link CompositeGenerator} with
+ * a {@link PojoGenerator} as primary backend, and uses the accessors of the beans generated by that.
+ */
+public class ByteCodecGenerator extends AbstractGenerator {
+	/** Package for the support classes, {@code null} for the {@code support} package below the default package */
+	public static final Feature<String> FEATURE_SUPPORT_PACKAGE_NAME = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/codec/support-package-name", String.class, null);
+	
+	/** Names of the support classes, which are copied from the templates next to this class */
+	private static final List<String> SUPPORT_CLASS_NAMES = Arrays.asList("JsonByteReader", "JsonByteWriter");
+	/** Package of the support classes in the templates */
+	private static final String TEMPLATE_PACKAGE_NAME = "com.collaborne.jsonschema.generator.codec.support";
+	/** The support classes belong to no schema, so use stable artificial types for them */
+	private static final String SUPPORT_TYPE_URI = "http://json-schema-bean-generator.collaborne.com/features/LATEST/codec/support";
+	/** Maximum number of statements or cases per generated method */
+	private static final int MAX_STATEMENTS_PER_METHOD = 256;
+	/** Maximum number of field names per string constant */
+	private static final int MAX_NAMES_PER_CONSTANT = 256;
+	
+	private static final Set<ClassName> PRIMITIVE_CLASS_NAMES = new HashSet<>(Arrays.asList(
+		ClassName.create(Integer.TYPE),
+		ClassName.create(Long.TYPE),
+		ClassName.create(Double.TYPE),
+		ClassName.create(Boolean.TYPE)
+	));
+	/** Suffix of the {@code readXXX} and {@code readNullableXXX} methods of the reader by the value classes */
+	private static final Map<ClassName, String> VALUE_METHODS = new LinkedHashMap<>();
+	static {
+		VALUE_METHODS.put(ClassName.create(Integer.TYPE), "Int");
+		VALUE_METHODS.put(ClassName.create(Integer.class), "Int");
+		VALUE_METHODS.put(ClassName.create(Long.TYPE), "Long");
+		VALUE_METHODS.put(ClassName.create(Long.class), "Long");
+		VALUE_METHODS.put(ClassName.create(Double.TYPE), "Double");
+		VALUE_METHODS.put(ClassName.create(Double.class), "Double");
+		VALUE_METHODS.put(ClassName.create(Boolean.TYPE), "Boolean");
+		VALUE_METHODS.put(ClassName.create(Boolean.class), "Boolean");
+		VALUE_METHODS.put(ClassName.create(String.class), "String");
+	}
+	private static final ClassName LIST = ClassName.create(List.class);
+	private static final ClassName ARRAY_LIST = ClassName.create(ArrayList.class);
+	
+	private final Logger logger = LoggerFactory.getLogger(ByteCodecGenerator.class);
+	/** Bean classes for which codecs were generated, or are being generated */
+	private final Set<ClassName> codecClassNames = new HashSet<>();
+	private ClassPathIndex classPathIndex = new ClassPathIndex();
+	private boolean supportClassesWritten;
+	
+	@Override
+	public ClassName generate(URI type) throws CodeGenerationException {
+		Mapping mapping = getMapping(type);
+		if (mapping == null) {
+			throw new CodeGenerationException(type, "No class name assigned, the byte codec generator must run as additional backend");
+		}
+		
+		SchemaType schema;
+		try {
+			schema = getSchemaCompiler().compile(type);
+		} catch (ProcessingException|JsonPointerException e) {
+			throw new CodeGenerationException(type, e);
+		}
+		if (schema == null || !isBean(schema, mapping) || !codecClassNames.add(mapping.getClassName())) {
+			return mapping.getClassName();
+		}
+		
+		// Generate the codecs for the referenced beans first, so that cycles end here
+		List<ClassName> propertyClassNames = new ArrayList<>(schema.getPropertyCount());
+		for (int i = 0; i < schema.getPropertyCount(); i++) {
+			propertyClassNames.add(getValueClassName(schema.getPropertyType(i)));
+		}
+		
+		ClassName additionalPropertiesClassName = null;
+		if (schema.getAdditionalProperties() != null && getFeature(PojoGenerator.FEATURE_ADDITIONAL_PROPERTIES)) {
+			additionalPropertiesClassName = StringMaps.getMapClassName(getPrimitiveListPackageName(), getValueClassName(schema.getAdditionalProperties()));
+		}
+		
+		if (isOutputType(type)) {
+			writeCodec(type, mapping.getClassName(), schema, propertyClassNames, additionalPropertiesClassName);
+		}
+		return mapping.getClassName();
+	}
+	
+	@Override
+	public void flush() throws CodeGenerationException {
+		if (!supportClassesWritten && !codecClassNames.isEmpty()) {
+			writeSupportClasses();
+			supportClassesWritten = true;
+		}
+		getOutputSink().flush();
+	}
+	
+	@Override
+	public GenerationManifest getManifest() {
+		// The codecs are derived from the classes in the manifest of the primary backend
+		return new GenerationManifest();
+	}
+	
+	/**
+	 * Set the index used for checking whether mapped classes already exist.
+	 * 
+	 * @param classPathIndex
+	 */
+	public void setClassPathIndex(ClassPathIndex classPathIndex) {
+		this.classPathIndex = classPathIndex;
+	}
+	
+	/**
+	 * Get the name of the codec class for {@code beanClassName}.
+	 * 
+	 * @param beanClassName
+	 * @return
+	 */
+	public static ClassName getCodecClassName(ClassName beanClassName) {
+		// Nested bean classes get a top-level codec
+		return new ClassName(beanClassName.getPackageName(), beanClassName.getRawClassName().replace('.', '_') + "ByteCodec");
+	}
+	
+	/**
+	 * Get the name of the package for the support classes.
+	 * 
+	 * @return
+	 */
+	protected String getSupportPackageName() {
+		String supportPackageName = getFeature(FEATURE_SUPPORT_PACKAGE_NAME);
+		return supportPackageName != null ? supportPackageName : getFeature(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME) + ".support";
+	}
+	
+	/**
+	 * Get the name of the package of the primitive list and map classes of the primary backend.
+	 * 
+	 * @return
+	 * @see PojoGenerator#FEATURE_PRIMITIVE_LISTS
+	 * @see PojoGenerator#FEATURE_ADDITIONAL_PROPERTIES
+	 */
+	private String getPrimitiveListPackageName() {
+		String supportPackageName = getFeature(PojoGenerator.FEATURE_SUPPORT_PACKAGE_NAME);
+		return supportPackageName != null ? supportPackageName : getFeature(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME) + ".support";
+	}
+	
+	private boolean isBean(SchemaType schema, Mapping mapping) {
+		if (schema.getTypeName() != null && !"object".equals(schema.getTypeName())) {
+			return false;
+		}
+		return !isPredefined(mapping.getClassName());
+	}
+	
+	/**
+	 * Check whether {@code className} is a primitive or an existing class, which the primary backend uses directly.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	private boolean isPredefined(ClassName className) {
+		if (className.getPackageName().isEmpty()) {
+			return PRIMITIVE_CLASS_NAMES.contains(className);
+		}
+		return classPathIndex.exists(className.getPackageName() + "." + className.getRawClassName().replace('.', '$'));
+	}
+	
+	/**
+	 * Get the class of the values of {@code schema}, as used by the primary backend.
+	 * 
+	 * This generates the codecs of referenced beans.
+	 * 
+	 * @param schema
+	 * @return
+	 * @throws CodeGenerationException
+	 */
+	private ClassName getValueClassName(SchemaType schema) throws CodeGenerationException {
+		Mapping mapping = getMapping(schema.getUri());
+		if (mapping != null && isPredefined(mapping.getClassName())) {
+			return mapping.getClassName();
+		}
+		
+		String typeName = schema.getTypeName() != null ? schema.getTypeName() : "object";
+		switch (typeName) {
+		case "integer":
+			return ClassName.create(Integer.TYPE);
+		case "number":
+			return ClassName.create(Double.TYPE);
+		case "boolean":
+			return ClassName.create(Boolean.TYPE);
+		case "string":
+			return ClassName.create(String.class);
+		case "array":
+			if (schema.getItems() == null) {
+				throw new CodeGenerationException(schema.getUri(), "Cannot generate byte codecs for non-items-based arrays");
+			}
+			ClassName elementClassName = getValueClassName(schema.getItems());
+			ClassName listClassName = getFeature(PojoGenerator.FEATURE_PRIMITIVE_LISTS) ? PrimitiveLists.getListClassName(getPrimitiveListPackageName(), elementClassName) : null;
+			return listClassName != null ? listClassName : ClassName.create(List.class, getBoxedClassName(elementClassName));
+		case "object":
+			return generate(schema.getUri());
+		default:
+			throw new CodeGenerationException(schema.getUri(), "Cannot generate byte codecs for type '" + typeName + "'");
+		}
+	}
+	
+	private void writeCodec(URI type, ClassName beanClassName, SchemaType schema, List<ClassName> propertyClassNames, ClassName additionalPropertiesClassName) throws CodeGenerationException {
+		// The additional properties are read through the bean, so only their values need imports
+		ClassName additionalPropertiesValueClassName = null;
+		if (additionalPropertiesClassName != null) {
+			additionalPropertiesValueClassName = StringMaps.getPrimitiveValueClassName(getPrimitiveListPackageName(), additionalPropertiesClassName);
+			if (additionalPropertiesValueClassName == null) {
+				additionalPropertiesValueClassName = additionalPropertiesClassName.getTypeArguments()[0];
+			}
+		}
+
+		ClassName codecClassName = getCodecClassName(beanClassName);
+		ClassName readerClassName = new ClassName(getSupportPackageName(), "JsonByteReader");
+		ClassName writerClassName = new ClassName(getSupportPackageName(), "JsonByteWriter");
+		
+		OutputBuffer buffer = new OutputBuffer();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
+			writer.writePackage(codecClassName);
+			writer.writeImport(readerClassName);
+			writer.writeImport(writerClassName);
+			writer.writeImport(beanClassName);
+			for (ClassName propertyClassName : propertyClassNames) {
+				writeImports(writer, propertyClassName);
+			}
+			if (additionalPropertiesValueClassName != null) {
+				writeImports(writer, additionalPropertiesValueClassName);
+			}
+			writer.writeClassStart(codecClassName, Kind.CLASS, Visibility.PUBLIC);
+			
+			// Field names, both for matching and as pre-encoded prefixes
+			List<String> nameConstants = new ArrayList<>();
+			for (int i = 0; i < schema.getPropertyCount(); i += MAX_NAMES_PER_CONSTANT) {
+				StringBuilder names = new StringBuilder();
+				for (int j = i; j < Math.min(schema.getPropertyCount(), i + MAX_NAMES_PER_CONSTANT); j++) {
+					if (j > i) {
+						names.append(',');
+					}
+					names.append(schema.getPropertyName(j));
+				}
+				nameConstants.add(JavaWriter.toStringLiteral(names.toString()));
+			}
+			writer.writeCode("private static final byte[][] NAMES = " + writer.getShortName(readerClassName) + ".names(" + String.join(", ", nameConstants) + ");");
+			writer.writeCode("private static final byte[][] FIELDS = " + writer.getShortName(writerClassName) + ".fieldNames(NAMES);");
+			
+			Map<ClassName, Integer> listHelpers = new LinkedHashMap<>();
+			
+			writer.writeMethodBodyStart(Visibility.PUBLIC, true, ClassName.VOID, "encode", null, beanClassName, "value", writerClassName, "out");
+			writer.writeCode(
+				"if (value == null) {",
+				"\tout.writeNull();",
+				"\treturn;",
+				"}",
+				"out.writeByte('{');",
+				"encodeFields(value, out);",
+				"out.writeByte('}');");
+			writer.writeMethodBodyEnd();
+			boolean[] presenceTracked = new boolean[schema.getPropertyCount()];
+			boolean hasPresenceTracked = additionalPropertiesClassName != null;
+			for (int i = 0; i < schema.getPropertyCount(); i++) {
+				presenceTracked[i] = isPresenceTracked(schema, i, propertyClassNames.get(i));
+				hasPresenceTracked |= presenceTracked[i];
+			}
+			List<String> encodeStatements = new ArrayList<>();
+			for (int i = 0; i < schema.getPropertyCount(); i++) {
+				// When fields can be omitted or added the separators depend on the written fields
+				String fieldStatement = "out." + (hasPresenceTracked ? "writeField" : "writeRaw") + "(FIELDS[" + i + "]);";
+				String valueStatement = getEncodeStatement(writer, propertyClassNames.get(i), "value." + getAccessorName("get", schema.getPropertyName(i)) + "()", listHelpers);
+				if (presenceTracked[i]) {
+					encodeStatements.add("if (value." + getAccessorName("has", schema.getPropertyName(i)) + "()) { " + fieldStatement + " " + valueStatement + " }");
+				} else {
+					encodeStatements.add(fieldStatement);
+					encodeStatements.add(valueStatement);
+				}
+			}
+			if (additionalPropertiesValueClassName != null) {
+				encodeStatements.add("for (int i = 0; i < value.additionalProperties().size(); i++) { out.writeField(value.additionalProperties().keyAt(i)); " + getEncodeStatement(writer, additionalPropertiesValueClassName, "value.additionalProperties().valueAt(i)", listHelpers) + " }");
+			}
+			writer.writeSplitMethod(Visibility.PRIVATE, true, "encodeFields", encodeStatements, MAX_STATEMENTS_PER_METHOD, beanClassName, "value", writerClassName, "out");
+			
+			// Immutable beans are decoded into their builder, which has the same setters
+			boolean immutable = getFeature(PojoGenerator.FEATURE_IMMUTABLE);
+			ClassName targetClassName = immutable ? PojoGenerator.getBuilderClassName(beanClassName) : beanClassName;
+			writer.writeMethodBodyStart(Visibility.PUBLIC, true, beanClassName, "decode", null, readerClassName, "in");
+			writer.writeCode(
+				"if (!in.beginObject()) {",
+				"\treturn null;",
+				"}",
+				writer.getShortName(targetClassName) + " value = " + (immutable ? writer.getShortName(beanClassName) + ".builder()" : "new " + writer.getShortName(beanClassName) + "()") + ";",
+				"int field = -1;",
+				"while (in.nextField()) {",
+				"\tfield = in.readFieldIndex(NAMES, field + 1);",
+				"\tdecodeField(value, in, field);",
+				"}",
+				immutable ? "return value.build();" : "return value;");
+			writer.writeMethodBodyEnd();
+			List<String> decodeCases = new ArrayList<>();
+			for (int i = 0; i < schema.getPropertyCount(); i++) {
+				String decodeStatement = "value." + getAccessorName("set", schema.getPropertyName(i)) + "(" + getDecodeExpression(writer, propertyClassNames.get(i), listHelpers) + ");";
+				if (presenceTracked[i]) {
+					// null makes the property absent, like with the other codecs
+					decodeStatement = "if (!in.readNull()) { " + decodeStatement + " }";
+				}
+				decodeCases.add(decodeStatement);
+			}
+			String decodeDefault = "in.skipValue();";
+			if (additionalPropertiesValueClassName != null) {
+				// Maps with unboxed values have put methods named after the type
+				String putMethod = "put" + (additionalPropertiesValueClassName.getPackageName().isEmpty() ? PrimitiveLists.getName(additionalPropertiesValueClassName) : "");
+				decodeDefault = "value.additionalProperties()." + putMethod + "(in.fieldName(), " + getDecodeExpression(writer, additionalPropertiesValueClassName, listHelpers) + ");";
+			}
+			writeDecodeField(writer, targetClassName, readerClassName, decodeCases, decodeDefault);
+			
+			// The helpers for lists may add helpers for nested lists
+			for (int i = 0; i < listHelpers.size(); i++) {
+				ClassName listClassName = new ArrayList<>(listHelpers.keySet()).get(i);
+				writeListHelpers(writer, i, listClassName, readerClassName, writerClassName, listHelpers);
+			}
+			
+			writer.writeClassEnd();
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+		
+		try {
+			logger.info("{}: Writing {}", type, codecClassName);
+			getOutputSink().write(type, codecClassName, buffer);
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+	}
+	
+	/**
+	 * Check whether the primary backend tracks the presence of the {@code index}-th property of {@code schema}.
+	 * 
+	 * @param schema
+	 * @param index
+	 * @param propertyClassName
+	 * @return
+	 * @see PojoGenerator#FEATURE_PRESENCE_TRACKING
+	 */
+	private boolean isPresenceTracked(SchemaType schema, int index, ClassName propertyClassName) {
+		return getFeature(PojoGenerator.FEATURE_PRESENCE_TRACKING) && !getFeature(PojoGenerator.FEATURE_IMMUTABLE) && !schema.isPropertyRequired(index) && PRIMITIVE_CLASS_NAMES.contains(propertyClassName);
+	}
+	
+	private void writeImports(JavaWriter writer, ClassName className) throws IOException {
+		if (getPrimitiveListElementClassName(className) != null) {
+			writer.writeImport(className);
+		} else if (isList(className)) {
+			writer.writeImport(LIST);
+			writer.writeImport(ARRAY_LIST);
+			writeImports(writer, className.getTypeArguments()[0]);
+		} else if (codecClassNames.contains(className)) {
+			writer.writeImport(className);
+			writer.writeImport(getCodecClassName(className));
+		} else {
+			writer.writeImport(className);
+		}
+	}
+	
+	/**
+	 * Write the {@code decodeField} method, split into several methods for wide types.
+	 * 
+	 * @param writer
+	 * @param beanClassName the class of the decoded value, or its builder
+	 * @param readerClassName
+	 * @param cases the statements for each field
+	 * @param defaultCase the statement for unknown fields
+	 * @throws IOException
+	 */
+	private void writeDecodeField(JavaWriter writer, ClassName beanClassName, ClassName readerClassName, List<String> cases, String defaultCase) throws IOException {
+		ClassName intClassName = ClassName.create(Integer.TYPE);
+		if (cases.size() <= MAX_STATEMENTS_PER_METHOD) {
+			writeDecodeFieldSwitch(writer, "decodeField", beanClassName, readerClassName, cases, 0, defaultCase);
+			return;
+		}
+		
+		int helperCount = (cases.size() + MAX_STATEMENTS_PER_METHOD - 1) / MAX_STATEMENTS_PER_METHOD;
+		writer.writeMethodBodyStart(Visibility.PRIVATE, true, ClassName.VOID, "decodeField", null, beanClassName, "value", readerClassName, "in", intClassName, "field");
+		writer.writeCode("switch (field < 0 ? -1 : field / " + MAX_STATEMENTS_PER_METHOD + ") {");
+		for (int helper = 0; helper < helperCount; helper++) {
+			writer.writeCode(
+				"case " + helper + ":",
+				"\tdecodeField$" + helper + "(value, in, field);",
+				"\tbreak;");
+		}
+		writer.writeCode(
+			"default:",
+			"\t" + defaultCase,
+			"\tbreak;",
+			"}");
+		writer.writeMethodBodyEnd();
+		for (int helper = 0; helper < helperCount; helper++) {
+			int start = helper * MAX_STATEMENTS_PER_METHOD;
+			writeDecodeFieldSwitch(writer, "decodeField$" + helper, beanClassName, readerClassName, cases.subList(start, Math.min(cases.size(), start + MAX_STATEMENTS_PER_METHOD)), start, defaultCase);
+		}
+	}
+	
+	private void writeDecodeFieldSwitch(JavaWriter writer, String methodName, ClassName beanClassName, ClassName readerClassName, List<String> cases, int firstField, String defaultCase) throws IOException {
+		writer.writeMethodBodyStart(Visibility.PRIVATE, true, ClassName.VOID, methodName, null, beanClassName, "value", readerClassName, "in", ClassName.create(Integer.TYPE), "field");
+		writer.writeCode("switch (field) {");
+		for (int i = 0; i < cases.size(); i++) {
+			writer.writeCode(
+				"case " + (firstField + i) + ":",
+				"\t" + cases.get(i),
+				"\tbreak;");
+		}
+		writer.writeCode(
+			"default:",
+			"\t" + defaultCase,
+			"\tbreak;",
+			"}");
+		writer.writeMethodBodyEnd();
+	}
+	
+	private void writeListHelpers(JavaWriter writer, int index, ClassName listClassName, ClassName readerClassName, ClassName writerClassName, Map<ClassName, Integer> listHelpers) throws IOException {
+		ClassName primitiveElementClassName = getPrimitiveListElementClassName(listClassName);
+		if (primitiveElementClassName != null) {
+			writePrimitiveListHelpers(writer, index, listClassName, primitiveElementClassName, readerClassName, writerClassName);
+			return;
+		}
+		
+		ClassName elementClassName = listClassName.getTypeArguments()[0];
+		String elementName = writer.getShortName(getBoxedClassName(elementClassName));
+		String listName = writer.getShortName(LIST) + "<" + elementName + ">";
+		
+		writer.writeMethodBodyStart(Visibility.PRIVATE, true, ClassName.VOID, "encodeList" + index, null, ClassName.create(List.class, getBoxedClassName(elementClassName)), "list", writerClassName, "out");
+		writer.writeCode(
+			"if (list == null) {",
+			"\tout.writeNull();",
+			"\treturn;",
+			"}",
+			"out.writeByte('[');",
+			"for (int i = 0; i < list.size(); i++) {",
+			"\tif (i > 0) {",
+			"\t\tout.writeByte(',');",
+			"\t}",
+			"\t" + getEncodeStatement(writer, getBoxedClassName(elementClassName), "list.get(i)", listHelpers),
+			"}",
+			"out.writeByte(']');");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeCode("private static " + listName + " decodeList" + index + "(" + writer.getShortName(readerClassName) + " in) {");
+		writer.pushIndentLevel();
+		writer.writeCode(
+			"if (!in.beginArray()) {",
+			"\treturn null;",
+			"}",
+			listName + " list = new " + writer.getShortName(ARRAY_LIST) + "<>();",
+			"while (in.nextElement()) {",
+			"\tlist.add(" + getDecodeExpression(writer, getBoxedClassName(elementClassName), listHelpers) + ");",
+			"}",
+			"return list;");
+		writer.popIndentLevel();
+		writer.writeCode("}");
+	}
+	
+	private void writePrimitiveListHelpers(JavaWriter writer, int index, ClassName listClassName, ClassName elementClassName, ClassName readerClassName, ClassName writerClassName) throws IOException {
+		String valueMethod = VALUE_METHODS.get(elementClassName);
+		String accessorName = PrimitiveLists.getName(elementClassName);
+		
+		writer.writeMethodBodyStart(Visibility.PRIVATE, true, ClassName.VOID, "encodeList" + index, null, listClassName, "list", writerClassName, "out");
+		writer.writeCode(
+			"if (list == null) {",
+			"\tout.writeNull();",
+			"\treturn;",
+			"}",
+			"out.writeByte('[');",
+			"for (int i = 0; i < list.size(); i++) {",
+			"\tif (i > 0) {",
+			"\t\tout.writeByte(',');",
+			"\t}",
+			"\tout.write" + valueMethod + "(list.get" + accessorName + "(i));",
+			"}",
+			"out.writeByte(']');");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.PRIVATE, true, listClassName, "decodeList" + index, null, readerClassName, "in");
+		writer.writeCode(
+			"if (!in.beginArray()) {",
+			"\treturn null;",
+			"}",
+			writer.getShortName(listClassName) + " list = new " + writer.getShortName(listClassName) + "();",
+			"while (in.nextElement()) {",
+			"\tlist.add" + accessorName + "(in.read" + valueMethod + "());",
+			"}",
+			"return list;");
+		writer.writeMethodBodyEnd();
+	}
+	
+	private String getEncodeStatement(JavaWriter writer, ClassName className, String expression, Map<ClassName, Integer> listHelpers) throws IOException {
+		String valueMethod = VALUE_METHODS.get(className);
+		if (valueMethod != null) {
+			return "out.write" + valueMethod + "(" + expression + ");";
+		}
+		if (isList(className) || getPrimitiveListElementClassName(className) != null) {
+			return "encodeList" + getListHelper(className, listHelpers) + "(" + expression + ", out);";
+		}
+		if (codecClassNames.contains(className)) {
+			return writer.getShortName(getCodecClassName(className)) + ".encode(" + expression + ", out);";
+		}
+		throw new IOException("Cannot generate byte codecs for values of " + className);
+	}
+	
+	private String getDecodeExpression(JavaWriter writer, ClassName className, Map<ClassName, Integer> listHelpers) throws IOException {
+		String valueMethod = VALUE_METHODS.get(className);
+		if (valueMethod != null) {
+			boolean nullable = !className.getPackageName().isEmpty() && !"String".equals(valueMethod);
+			return "in.read" + (nullable ? "Nullable" : "") + valueMethod + "()";
+		}
+		if (isList(className) || getPrimitiveListElementClassName(className) != null) {
+			return "decodeList" + getListHelper(className, listHelpers) + "(in)";
+		}
+		if (codecClassNames.contains(className)) {
+			return writer.getShortName(getCodecClassName(className)) + ".decode(in)";
+		}
+		throw new IOException("Cannot generate byte codecs for values of " + className);
+	}
+	
+	private static int getListHelper(ClassName listClassName, Map<ClassName, Integer> listHelpers) {
+		Integer index = listHelpers.get(listClassName);
+		if (index == null) {
+			index = Integer.valueOf(listHelpers.size());
+			listHelpers.put(listClassName, index);
+		}
+		return index.intValue();
+	}
+	
+	private void writeSupportClasses() throws CodeGenerationException {
+		String supportPackageName = getSupportPackageName();
+		for (String supportClassName : SUPPORT_CLASS_NAMES) {
+			ClassName className = new ClassName(supportPackageName, supportClassName);
+			URI type = URI.create(SUPPORT_TYPE_URI + "#" + supportClassName);
+			try (InputStream input = ByteCodecGenerator.class.getResourceAsStream(supportClassName + ".java.template")) {
+				if (input == null) {
+					throw new CodeGenerationException(type, "Missing template for " + supportClassName);
+				}
+				String source = new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+				source = source.replace("package " + TEMPLATE_PACKAGE_NAME + ";", "package " + supportPackageName + ";");
+				OutputBuffer buffer = new OutputBuffer();
+				buffer.write(source.getBytes(StandardCharsets.UTF_8));
+				logger.info("{}: Writing {}", type, className);
+				getOutputSink().write(type, className, buffer);
+			} catch (IOException e) {
+				throw new CodeGenerationException(type, e);
+			}
+		}
+	}
+	
+	private ClassName getPrimitiveListElementClassName(ClassName className) {
+		return getFeature(PojoGenerator.FEATURE_PRIMITIVE_LISTS) ? PrimitiveLists.getElementClassName(getPrimitiveListPackageName(), className) : null;
+	}
+	
+	private static boolean isList(ClassName className) {
+		return LIST.getPackageName().equals(className.getPackageName()) && LIST.getRawClassName().equals(className.getRawClassName());
+	}
+	
+	private static ClassName getBoxedClassName(ClassName className) {
+		switch (className.getPackageName().isEmpty() ? className.getRawClassName() : "") {
+		case "int":
+			return ClassName.create(Integer.class);
+		case "long":
+			return ClassName.create(Long.class);
+		case "double":
+			return ClassName.create(Double.class);
+		case "boolean":
+			return ClassName.create(Boolean.class);
+		default:
+			return className;
+		}
+	}
+	
+	private static String getAccessorName(String prefix, String propertyName) {
+		return prefix + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+	}
+	
+}
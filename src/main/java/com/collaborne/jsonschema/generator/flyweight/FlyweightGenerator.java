@@ -0,0 +1,627 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.flyweight;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.net.URI;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.AbstractGenerator;
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.CompositeGenerator;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.ClassPathIndex;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.java.Kind;
+import com.collaborne.jsonschema.generator.java.Visibility;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.output.OutputBuffer;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
+import com.github.fge.jackson.jsonpointer.JsonPointerException;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+
+/**
+ * Backend that generates flyweight accessors for beans with a fixed binary layout.
+ *
+ * For each bean class {@code Foo} whose properties all have a fixed width the class {@code FooFlyweight} is written
+ * into the same package. It reads and writes the properties at constant offsets in a {@link ByteBuffer}, which can be
+ * a heap buffer, a direct buffer or a memory-mapped file. The class {@code FooRepository} stores records of this layout
+ * contiguously in one buffer.
+ *
+ * Integers, numbers and booleans have a fixed width, as have enumerations of at most 255 strings, which are stored as
+ * one-based index with {@code 0} for {@code null}. Properties are laid out by decreasing width, so that all values are
+ * aligned when records start at multiples of 8. Values are stored in little-endian byte order, independent of the
+ * order of the buffers passed in, so that records written on one platform can be mapped on any other. Types with other
+ * properties, or with additional properties kept by the beans, are skipped.
+ *
+ * The backend does not assign class names: it must run as additional backend of a {@link CompositeGenerator} with
+ * a {@link PojoGenerator} as primary backend, and uses the accessors of the beans generated by that.
+ */
+public class FlyweightGenerator extends AbstractGenerator {
+	/** Maximum number of values of an enumeration stored in a single byte */
+	private static final int MAX_ENUM_VALUES = 255;
+	/** Alignment of the records */
+	private static final int RECORD_ALIGNMENT = 8;
+	/** Maximum number of statements per generated method */
+	private static final int MAX_STATEMENTS_PER_METHOD = 256;
+	/** Initial capacity of the repositories, in records */
+	private static final int DEFAULT_CAPACITY = 16;
+	/** Byte order of the values, part of the layout */
+	private static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+	
+	/** Layouts of the fixed width values */
+	private enum FieldKind {
+		DOUBLE(8, Double.TYPE, "Double"),
+		INT(4, Integer.TYPE, "Int"),
+		ENUM(1, String.class, null),
+		BOOLEAN(1, Boolean.TYPE, null);
+		
+		private final int size;
+		private final Class<?> valueClass;
+		/** Suffix of the {@link ByteBuffer} accessors, {@code null} for values stored in a single byte */
+		private final String bufferMethodSuffix;
+		
+		private FieldKind(int size, Class<?> valueClass, String bufferMethodSuffix) {
+			this.size = size;
+			this.valueClass = valueClass;
+			this.bufferMethodSuffix = bufferMethodSuffix;
+		}
+	}
+	
+	/** A property placed in the layout */
+	private static class Field {
+		private final String propertyName;
+		private final FieldKind kind;
+		private final String[] enumValues;
+		private String constantName;
+		private int offset;
+		
+		public Field(String propertyName, FieldKind kind, String[] enumValues) {
+			this.propertyName = propertyName;
+			this.kind = kind;
+			this.enumValues = enumValues;
+		}
+	}
+	
+	private final Logger logger = LoggerFactory.getLogger(FlyweightGenerator.class);
+	/** Bean classes for which flyweights were generated, or are being generated */
+	private final Set<ClassName> flyweightClassNames = new HashSet<>();
+	private ClassPathIndex classPathIndex = new ClassPathIndex();
+	
+	@Override
+	public ClassName generate(URI type) throws CodeGenerationException {
+		Mapping mapping = getMapping(type);
+		if (mapping == null) {
+			throw new CodeGenerationException(type, "No class name assigned, the flyweight generator must run as additional backend");
+		}
+		
+		SchemaType schema;
+		try {
+			schema = getSchemaCompiler().compile(type);
+		} catch (ProcessingException|JsonPointerException e) {
+			throw new CodeGenerationException(type, e);
+		}
+		if (schema == null || (schema.getTypeName() != null && !"object".equals(schema.getTypeName())) || !flyweightClassNames.add(mapping.getClassName())) {
+			return mapping.getClassName();
+		}
+		
+		// Referenced beans may have a fixed layout even when the referencing one does not
+		for (int i = 0; i < schema.getPropertyCount(); i++) {
+			generateReferenced(schema.getPropertyType(i));
+		}
+		if (schema.getAdditionalProperties() != null) {
+			generateReferenced(schema.getAdditionalProperties());
+		}
+		
+		List<Field> fields = getFields(schema);
+		if (fields == null) {
+			logger.debug("{}: Skipping flyweight, not all properties have a fixed width", type);
+			return mapping.getClassName();
+		}
+		int size = layout(fields);
+		
+		if (isOutputType(type)) {
+			writeFlyweight(type, mapping.getClassName(), fields, size);
+			writeRepository(type, mapping.getClassName());
+		}
+		return mapping.getClassName();
+	}
+	
+	@Override
+	public void flush() throws CodeGenerationException {
+		getOutputSink().flush();
+	}
+	
+	@Override
+	public GenerationManifest getManifest() {
+		// The flyweights are derived from the classes in the manifest of the primary backend
+		return new GenerationManifest();
+	}
+	
+	/**
+	 * Set the index used for checking whether mapped classes already exist.
+	 * 
+	 * @param classPathIndex
+	 */
+	public void setClassPathIndex(ClassPathIndex classPathIndex) {
+		this.classPathIndex = classPathIndex;
+	}
+	
+	/**
+	 * Get the name of the flyweight class for {@code beanClassName}.
+	 * 
+	 * @param beanClassName
+	 * @return
+	 */
+	public static ClassName getFlyweightClassName(ClassName beanClassName) {
+		// Nested bean classes get a top-level flyweight
+		return new ClassName(beanClassName.getPackageName(), beanClassName.getRawClassName().replace('.', '_') + "Flyweight");
+	}
+	
+	/**
+	 * Get the name of the repository class for {@code beanClassName}.
+	 * 
+	 * @param beanClassName
+	 * @return
+	 */
+	public static ClassName getRepositoryClassName(ClassName beanClassName) {
+		return new ClassName(beanClassName.getPackageName(), beanClassName.getRawClassName().replace('.', '_') + "Repository");
+	}
+	
+	private void generateReferenced(SchemaType schema) throws CodeGenerationException {
+		if (schema.getItems() != null) {
+			generateReferenced(schema.getItems());
+		} else if (schema.isResolved() && (schema.getTypeName() == null || "object".equals(schema.getTypeName())) && getMapping(schema.getUri()) != null) {
+			generate(schema.getUri());
+		}
+	}
+	
+	/**
+	 * Get the fields for the properties of {@code schema}.
+	 * 
+	 * @param schema
+	 * @return the fields in the order of the properties, or {@code null} if not all properties have a fixed width
+	 */
+	private List<Field> getFields(SchemaType schema) {
+		if (schema.getPropertyCount() == 0) {
+			return null;
+		}
+		if (schema.getAdditionalProperties() != null && getFeature(PojoGenerator.FEATURE_ADDITIONAL_PROPERTIES)) {
+			return null;
+		}
+		
+		List<Field> fields = new ArrayList<>(schema.getPropertyCount());
+		for (int i = 0; i < schema.getPropertyCount(); i++) {
+			SchemaType propertyType = schema.getPropertyType(i);
+			FieldKind kind = getFieldKind(propertyType);
+			if (kind == null) {
+				return null;
+			}
+			fields.add(new Field(schema.getPropertyName(i), kind, kind == FieldKind.ENUM ? propertyType.getEnumValues() : null));
+		}
+		return fields;
+	}
+	
+	private FieldKind getFieldKind(SchemaType schema) {
+		FieldKind kind;
+		String typeName = schema.getTypeName() != null ? schema.getTypeName() : "object";
+		switch (typeName) {
+		case "integer":
+			kind = FieldKind.INT;
+			break;
+		case "number":
+			kind = FieldKind.DOUBLE;
+			break;
+		case "boolean":
+			kind = FieldKind.BOOLEAN;
+			break;
+		case "string":
+			if (schema.getEnumValues() == null || schema.getEnumValues().length > MAX_ENUM_VALUES || !getFeature(PojoGenerator.FEATURE_USE_SIMPLE_PLAIN_TYPES)) {
+				return null;
+			}
+			kind = FieldKind.ENUM;
+			break;
+		default:
+			return null;
+		}
+		
+		// Mappings to existing classes change the values of the beans
+		Mapping mapping = getMapping(schema.getUri());
+		if (mapping != null && isPredefined(mapping.getClassName()) && !ClassName.create(kind.valueClass).equals(mapping.getClassName())) {
+			return null;
+		}
+		return kind;
+	}
+	
+	/**
+	 * Assign the offsets and constant names of the {@code fields}.
+	 * 
+	 * @param fields
+	 * @return the size of a record
+	 */
+	private static int layout(List<Field> fields) {
+		List<Field> sortedFields = new ArrayList<>(fields);
+		// Stable, so that fields of the same width keep the order of the properties
+		Collections.sort(sortedFields, new Comparator<Field>() {
+			@Override
+			public int compare(Field a, Field b) {
+				return Integer.compare(b.kind.size, a.kind.size);
+			}
+		});
+		int offset = 0;
+		for (Field field : sortedFields) {
+			field.offset = offset;
+			offset += field.kind.size;
+		}
+		
+		Set<String> constantNames = new HashSet<>();
+		for (int i = 0; i < fields.size(); i++) {
+			Field field = fields.get(i);
+			String constantName = getConstantName(field.propertyName);
+			if (!constantNames.add(constantName)) {
+				constantName = constantName + "_" + i;
+				constantNames.add(constantName);
+			}
+			field.constantName = constantName;
+		}
+		return (offset + RECORD_ALIGNMENT - 1) / RECORD_ALIGNMENT * RECORD_ALIGNMENT;
+	}
+	
+	private void writeFlyweight(URI type, ClassName beanClassName, List<Field> fields, int size) throws CodeGenerationException {
+		ClassName flyweightClassName = getFlyweightClassName(beanClassName);
+		boolean immutable = getFeature(PojoGenerator.FEATURE_IMMUTABLE);
+		ClassName targetClassName = immutable ? PojoGenerator.getBuilderClassName(beanClassName) : beanClassName;
+		ClassName intClassName = ClassName.create(Integer.TYPE);
+		ClassName byteBufferClassName = ClassName.create(ByteBuffer.class);
+		
+		OutputBuffer buffer = new OutputBuffer();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
+			writer.writePackage(flyweightClassName);
+			writer.writeImport(byteBufferClassName);
+			writer.writeImport(ClassName.create(ByteOrder.class));
+			writer.writeImport(beanClassName);
+			writer.writeClassStart(flyweightClassName, Kind.CLASS, Visibility.PUBLIC);
+			
+			writer.writeCode("/** Byte order of the values, buffers in other orders are accessed through a view in this order */");
+			writer.writeCode("public static final ByteOrder BYTE_ORDER = ByteOrder." + BYTE_ORDER + ";");
+			writer.writeCode("public static final int SIZE = " + size + ";");
+			for (Field field : fields) {
+				writer.writeCode("public static final int " + field.constantName + "_OFFSET = " + field.offset + ";");
+			}
+			for (Field field : fields) {
+				if (field.kind == FieldKind.ENUM) {
+					List<String> literals = new ArrayList<>();
+					for (String value : field.enumValues) {
+						literals.add(JavaWriter.toStringLiteral(value));
+					}
+					writer.writeCode("private static final String[] " + field.constantName + "_VALUES = { " + String.join(", ", literals) + " };");
+				}
+			}
+			writer.writeField(Visibility.PRIVATE, byteBufferClassName, "buffer");
+			writer.writeField(Visibility.PRIVATE, intClassName, "offset");
+			
+			writer.writeMethodBodyStart(Visibility.PUBLIC, flyweightClassName, "wrap", byteBufferClassName, "buffer", intClassName, "offset");
+			writer.writeCode(
+				"if (offset < 0 || offset > buffer.limit() - SIZE) {",
+				"\tthrow new IndexOutOfBoundsException(\"Record at \" + offset + \" out of bounds for limit \" + buffer.limit());",
+				"}",
+				"this.buffer = withByteOrder(buffer);",
+				"this.offset = offset;",
+				"return this;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, byteBufferClassName, "buffer");
+			writer.writeCode("return buffer;");
+			writer.writeMethodBodyEnd();
+			writer.writeCode("/**",
+				" * Get {@code buffer}, or a view of it in {@link #BYTE_ORDER} if it uses another order.",
+				" */");
+			writer.writeMethodBodyStart(Visibility.PUBLIC, true, byteBufferClassName, "withByteOrder", null, byteBufferClassName, "buffer");
+			writer.writeCode("return buffer.order() == BYTE_ORDER ? buffer : buffer.duplicate().order(BYTE_ORDER);");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "offset");
+			writer.writeCode("return offset;");
+			writer.writeMethodBodyEnd();
+			
+			for (Field field : fields) {
+				writeAccessors(writer, field);
+			}
+			
+			List<String> copyFromStatements = new ArrayList<>();
+			List<String> copyToStatements = new ArrayList<>();
+			for (Field field : fields) {
+				copyFromStatements.add(getAccessorName("set", field.propertyName) + "(bean." + getAccessorName("get", field.propertyName) + "());");
+				copyToStatements.add("bean." + getAccessorName("set", field.propertyName) + "(" + getAccessorName("get", field.propertyName) + "());");
+			}
+			writer.writeSplitMethod(Visibility.PUBLIC, "copyFrom", copyFromStatements, MAX_STATEMENTS_PER_METHOD, beanClassName, "bean");
+			writer.writeSplitMethod(immutable ? Visibility.PRIVATE : Visibility.PUBLIC, "copyTo", copyToStatements, MAX_STATEMENTS_PER_METHOD, targetClassName, "bean");
+			writer.writeMethodBodyStart(Visibility.PUBLIC, beanClassName, "toBean");
+			if (immutable) {
+				writer.writeCode(
+					writer.getShortName(targetClassName) + " bean = " + writer.getShortName(beanClassName) + ".builder();",
+					"copyTo(bean);",
+					"return bean.build();");
+			} else {
+				writer.writeCode(
+					writer.getShortName(beanClassName) + " bean = new " + writer.getShortName(beanClassName) + "();",
+					"copyTo(bean);",
+					"return bean;");
+			}
+			writer.writeMethodBodyEnd();
+			
+			writer.writeClassEnd();
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+		
+		try {
+			logger.info("{}: Writing {}", type, flyweightClassName);
+			getOutputSink().write(type, flyweightClassName, buffer);
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+	}
+	
+	private static void writeAccessors(JavaWriter writer, Field field) throws IOException {
+		String position = "offset + " + field.constantName + "_OFFSET";
+		String getterName = getAccessorName("get", field.propertyName);
+		String setterName = getAccessorName("set", field.propertyName);
+		ClassName valueClassName = ClassName.create(field.kind.valueClass);
+		
+		writer.writeMethodBodyStart(Visibility.PUBLIC, valueClassName, getterName);
+		switch (field.kind) {
+		case BOOLEAN:
+			writer.writeCode("return buffer.get(" + position + ") != 0;");
+			break;
+		case ENUM:
+			writer.writeCode(
+				"int index = buffer.get(" + position + ") & 0xFF;",
+				"return index == 0 ? null : " + field.constantName + "_VALUES[index - 1];");
+			break;
+		default:
+			writer.writeCode("return buffer.get" + field.kind.bufferMethodSuffix + "(" + position + ");");
+			break;
+		}
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.VOID, setterName, valueClassName, "value");
+		switch (field.kind) {
+		case BOOLEAN:
+			writer.writeCode("buffer.put(" + position + ", (byte) (value ? 1 : 0));");
+			break;
+		case ENUM:
+			writer.writeCode("buffer.put(" + position + ", " + getAccessorName("encode", field.propertyName) + "(value));");
+			break;
+		default:
+			writer.writeCode("buffer.put" + field.kind.bufferMethodSuffix + "(" + position + ", value);");
+			break;
+		}
+		writer.writeMethodBodyEnd();
+		
+		if (field.kind == FieldKind.ENUM) {
+			writer.writeMethodBodyStart(Visibility.PRIVATE, true, ClassName.create(Byte.TYPE), getAccessorName("encode", field.propertyName), null, ClassName.create(String.class), "value");
+			writer.writeCode(
+				"if (value == null) {",
+				"\treturn 0;",
+				"}",
+				"switch (value) {");
+			Set<String> seenValues = new HashSet<>();
+			for (int i = 0; i < field.enumValues.length; i++) {
+				// Duplicate values are allowed in the schema, but not as case labels
+				if (seenValues.add(field.enumValues[i])) {
+					writer.writeCode(
+						"case " + JavaWriter.toStringLiteral(field.enumValues[i]) + ":",
+						"\treturn (byte) " + (i + 1) + ";");
+				}
+			}
+			writer.writeCode(
+				"default:",
+				"\tthrow new IllegalArgumentException(\"Unknown value \" + value);",
+				"}");
+			writer.writeMethodBodyEnd();
+		}
+	}
+	
+	private void writeRepository(URI type, ClassName beanClassName) throws CodeGenerationException {
+		ClassName flyweightClassName = getFlyweightClassName(beanClassName);
+		ClassName repositoryClassName = getRepositoryClassName(beanClassName);
+		ClassName intClassName = ClassName.create(Integer.TYPE);
+		ClassName byteBufferClassName = ClassName.create(ByteBuffer.class);
+		
+		OutputBuffer buffer = new OutputBuffer();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
+			writer.writePackage(repositoryClassName);
+			writer.writeImport(ClassName.create(BufferOverflowException.class));
+			writer.writeImport(byteBufferClassName);
+			writer.writeImport(beanClassName);
+			writer.writeClassStart(repositoryClassName, Kind.CLASS, Visibility.PUBLIC);
+			String flyweight = writer.getShortName(flyweightClassName);
+			
+			writer.writeField(Visibility.PRIVATE, byteBufferClassName, "buffer");
+			writer.writeCode("/** Whether the buffer was allocated here, and can be replaced by a larger one */");
+			writer.writeCode("private final boolean growable;");
+			writer.writeField(Visibility.PRIVATE, intClassName, "size");
+			writer.writeCode("private final " + flyweight + " cursor = new " + flyweight + "();");
+			
+			String repository = repositoryClassName.getRawClassName();
+			writer.writeCode("public " + repository + "() {");
+			writer.pushIndentLevel();
+			writer.writeCode("this(" + DEFAULT_CAPACITY + ");");
+			writer.writeMethodBodyEnd();
+			writer.writeCode("public " + repository + "(int capacity) {");
+			writer.pushIndentLevel();
+			writer.writeCode("this(allocate(false, capacity), 0, true);");
+			writer.writeMethodBodyEnd();
+			writer.writeCode("/**",
+				" * Create a repository over the records at the start of {@code buffer}, for example a memory-mapped file.",
+				" *",
+				" * The repository uses the bytes up to the limit of the buffer, and cannot grow beyond that. The records are read",
+				" * and written in the byte order of the flyweight, whatever the order of {@code buffer} is.",
+				" */");
+			writer.writeCode("public " + repository + "(ByteBuffer buffer, int size) {");
+			writer.pushIndentLevel();
+			writer.writeCode("this(buffer, size, false);");
+			writer.writeMethodBodyEnd();
+			writer.writeCode("private " + repository + "(ByteBuffer buffer, int size, boolean growable) {");
+			writer.pushIndentLevel();
+			writer.writeCode(
+				"if (size < 0 || (long) size * " + flyweight + ".SIZE > buffer.limit()) {",
+				"\tthrow new IllegalArgumentException(\"Invalid size \" + size + \" for limit \" + buffer.limit());",
+				"}",
+				"this.buffer = " + flyweight + ".withByteOrder(buffer);",
+				"this.size = size;",
+				"this.growable = growable;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, true, repositoryClassName, "allocateDirect", null, intClassName, "capacity");
+			writer.writeCode("return new " + repository + "(allocate(true, capacity), 0, true);");
+			writer.writeMethodBodyEnd();
+			
+			writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "size");
+			writer.writeCode("return size;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "capacity");
+			writer.writeCode("return buffer.limit() / " + flyweight + ".SIZE;");
+			writer.writeMethodBodyEnd();
+			
+			writer.writeCode("/**",
+				" * Append a record with all bytes zero.",
+				" *",
+				" * Growing the repository moves the records into a new buffer, flyweights obtained before then must be wrapped again.",
+				" */");
+			writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "add");
+			writer.writeCode(
+				"if (size == capacity()) {",
+				"\tgrow();",
+				"}",
+				"int offset = size * " + flyweight + ".SIZE;",
+				"for (int i = 0; i < " + flyweight + ".SIZE; i += 8) {",
+				"\tbuffer.putLong(offset + i, 0L);",
+				"}",
+				"return size++;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "add", beanClassName, "bean");
+			writer.writeCode(
+				"int index = add();",
+				"get(index, cursor).copyFrom(bean);",
+				"return index;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, flyweightClassName, "get", intClassName, "index", flyweightClassName, "flyweight");
+			writer.writeCode(
+				"if (index < 0 || index >= size) {",
+				"\tthrow new IndexOutOfBoundsException(\"Index \" + index + \" out of bounds for size \" + size);",
+				"}",
+				"return flyweight.wrap(buffer, index * " + flyweight + ".SIZE);");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, flyweightClassName, "get", intClassName, "index");
+			writer.writeCode("return get(index, new " + flyweight + "());");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.VOID, "clear");
+			writer.writeCode("size = 0;");
+			writer.writeMethodBodyEnd();
+			writer.writeCode("/**",
+				" * Get a view of the records, for example for writing them to a channel.",
+				" */");
+			writer.writeMethodBodyStart(Visibility.PUBLIC, byteBufferClassName, "contents");
+			writer.writeCode(
+				"ByteBuffer contents = buffer.duplicate().order(" + flyweight + ".BYTE_ORDER);",
+				"contents.position(0);",
+				"contents.limit(size * " + flyweight + ".SIZE);",
+				"return contents;");
+			writer.writeMethodBodyEnd();
+			
+			writer.writeMethodBodyStart(Visibility.PRIVATE, ClassName.VOID, "grow");
+			writer.writeCode(
+				"if (!growable) {",
+				"\tthrow new BufferOverflowException();",
+				"}",
+				"int capacity = capacity();",
+				"int newCapacity = (int) Math.min(Integer.MAX_VALUE / " + flyweight + ".SIZE, Math.max(" + DEFAULT_CAPACITY + "L, capacity + (capacity >> 1)));",
+				"if (newCapacity == capacity) {",
+				"\tthrow new BufferOverflowException();",
+				"}",
+				"ByteBuffer grown = allocate(buffer.isDirect(), newCapacity);",
+				"grown.put(contents());",
+				"buffer = grown;");
+			writer.writeMethodBodyEnd();
+			writer.writeMethodBodyStart(Visibility.PRIVATE, true, byteBufferClassName, "allocate", null, ClassName.create(Boolean.TYPE), "direct", intClassName, "capacity");
+			writer.writeCode(
+				"if (capacity < 0 || capacity > Integer.MAX_VALUE / " + flyweight + ".SIZE) {",
+				"\tthrow new IllegalArgumentException(\"Invalid capacity \" + capacity);",
+				"}",
+				"int bytes = capacity * " + flyweight + ".SIZE;",
+				"return (direct ? ByteBuffer.allocateDirect(bytes) : ByteBuffer.allocate(bytes)).order(" + flyweight + ".BYTE_ORDER);");
+			writer.writeMethodBodyEnd();
+			
+			writer.writeClassEnd();
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+		
+		try {
+			logger.info("{}: Writing {}", type, repositoryClassName);
+			getOutputSink().write(type, repositoryClassName, buffer);
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+	}
+	
+	/**
+	 * Check whether {@code className} is a primitive or an existing class, which the primary backend uses directly.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	private boolean isPredefined(ClassName className) {
+		if (className.getPackageName().isEmpty()) {
+			return true;
+		}
+		return classPathIndex.exists(className.getPackageName() + "." + className.getRawClassName().replace('.', '$'));
+	}
+	
+	private static String getConstantName(String propertyName) {
+		StringBuilder constantName = new StringBuilder();
+		for (int i = 0; i < propertyName.length(); i++) {
+			char c = propertyName.charAt(i);
+			if (Character.isUpperCase(c) && i > 0 && !Character.isUpperCase(propertyName.charAt(i - 1))) {
+				constantName.append('_');
+			}
+			constantName.append(Character.isJavaIdentifierPart(c) ? Character.toUpperCase(c) : '_');
+		}
+		return constantName.toString();
+	}
+	
+	private static String getAccessorName(String prefix, String propertyName) {
+		return prefix + Character.toUpperCase(propertyName.charAt(0)) + propertyName.substring(1);
+	}
+	
+}
@@ -17,6 +17,8 @@
  */
 package com.collaborne.jsonschema.generator.java;
 
+import java.util.Arrays;
+
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
@@ -76,6 +78,32 @@ public class ClassName {
 		return new ClassName(packageName, rawClassName);
 	}
 	
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = 1;
+		result = prime * result + packageName.hashCode();
+		result = prime * result + rawClassName.hashCode();
+		result = prime * result + Arrays.hashCode(getNonNullTypeArguments());
+		return result;
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof ClassName)) {
+			return false;
+		}
+		ClassName other = (ClassName) obj;
+		return packageName.equals(other.packageName) && rawClassName.equals(other.rawClassName) && Arrays.equals(getNonNullTypeArguments(), other.getNonNullTypeArguments());
+	}
+	
+	private ClassName[] getNonNullTypeArguments() {
+		return typeArguments != null ? typeArguments : new ClassName[0];
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder sb = new StringBuilder();
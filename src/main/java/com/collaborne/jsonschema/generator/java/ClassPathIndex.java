@@ -0,0 +1,71 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.java;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Cache for the classes available on the class path.
+ *
+ * Looking up a missing class is expensive, as the class loader has to search the whole class path and then throws an
+ * exception. The index remembers the result for each class name, and can be shared between generators.
+ */
+public class ClassPathIndex {
+	private final ClassLoader classLoader;
+	private final ConcurrentMap<String, Boolean> classes = new ConcurrentHashMap<>();
+
+	public ClassPathIndex() {
+		this(ClassPathIndex.class.getClassLoader());
+	}
+
+	public ClassPathIndex(@Nonnull ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Check whether the class with the given fully qualified name exists.
+	 *
+	 * @param fqcn
+	 * @return
+	 */
+	public boolean exists(@Nonnull String fqcn) {
+		Boolean exists = classes.get(fqcn);
+		if (exists == null) {
+			exists = Boolean.valueOf(lookup(fqcn));
+			classes.putIfAbsent(fqcn, exists);
+		}
+		return exists.booleanValue();
+	}
+
+	public int size() {
+		return classes.size();
+	}
+
+	private boolean lookup(String fqcn) {
+		try {
+			// Don't initialize: we only need to know whether the class is there
+			Class.forName(fqcn, false, classLoader);
+			return true;
+		} catch (ClassNotFoundException|LinkageError e) {
+			return false;
+		}
+	}
+}
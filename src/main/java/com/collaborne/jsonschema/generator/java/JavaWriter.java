@@ -20,14 +20,23 @@ package com.collaborne.jsonschema.generator.java;
 import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
 import java.util.Stack;
+import java.util.TreeSet;
 
 // TODO: extract interface, this is really the "PrettyJavaWriter"
 // TODO: where should the java-awareness lie? Is this not something on top of the purely syntactic writing of java code? And how far should it go?
 public class JavaWriter implements Closeable {
-	private final BufferedWriter writer;
+	private BufferedWriter writer;
+	/** The actual output while imports are deferred, or {@code null} */
+	private BufferedWriter deferredOutput;
+	private StringWriter deferredBody;
 	// TODO: allow for different indents (like 4 spaces, 2 spaces, etc)
 	private String indent = "\t";
 	private int indentLevel = 0;
@@ -35,6 +44,13 @@ public class JavaWriter implements Closeable {
 	private Stack<ClassName> currentClassNames = new Stack<>();
 	/** Map of all imports: package.rawClassName to rawClassName */
 	private Map<String, String> importedClassNames = new HashMap<>();
+	/** The short names of all imports, to detect conflicts without scanning all imports */
+	private final Set<String> importedShortNames = new HashSet<>();
+	/** Imports that still need to be written, sorted to produce stable output */
+	private final SortedSet<String> pendingImports = new TreeSet<>();
+	private final SortedSet<String> pendingStaticImports = new TreeSet<>();
+	/** Short names that must not be used for imported classes, because they refer to nested classes */
+	private final Set<String> reservedShortNames = new HashSet<>();
 	
 	public JavaWriter(BufferedWriter writer) {
 		this.writer = writer;
@@ -42,7 +58,44 @@ public class JavaWriter implements Closeable {
 
 	@Override
 	public void close() throws IOException {
-		writer.close();
+		try {
+			if (deferredOutput != null) {
+				writer.flush();
+				writer = deferredOutput;
+				deferredOutput = null;
+				writePendingImports();
+				writer.write(deferredBody.toString());
+			} else {
+				writePendingImports();
+			}
+		} finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Write the imports only when closing the writer.
+	 * 
+	 * This allows to write several classes into one compilation unit, for example as nested classes, when the imports
+	 * are only known while writing the classes. This must be called after {@link #writePackage(ClassName)}, and before
+	 * anything else is written.
+	 */
+	public void deferImports() {
+		deferredOutput = writer;
+		deferredBody = new StringWriter();
+		writer = new BufferedWriter(deferredBody);
+	}
+	
+	/**
+	 * Reserve a short name, so that no class is imported using it.
+	 * 
+	 * Within a class nested classes shadow imported classes and classes of the same package with the same simple name,
+	 * so these have to be referred to by their fully qualified name.
+	 * 
+	 * @param shortName
+	 */
+	public void reserveShortName(String shortName) {
+		reservedShortNames.add(shortName);
 	}
 	
 	public void pushIndentLevel() {
@@ -82,16 +135,23 @@ public class JavaWriter implements Closeable {
 		}
 		
 		String rawClassName = fqcn.getRawClassName();
-		if (importedClassNames.values().contains(rawClassName)) {
-			// Don't write imports that boil down to the same short form
+		int nestedIndex = rawClassName.indexOf('.');
+		if (nestedIndex != -1) {
+			// Import the top-level class, and refer to the nested class through it
+			String topLevelClassName = rawClassName.substring(0, nestedIndex);
+			writeImport(new ClassName(packageName, topLevelClassName));
+			if (topLevelClassName.equals(importedClassNames.get(packageName + "." + topLevelClassName))) {
+				importedClassNames.put(packageName + "." + rawClassName, rawClassName);
+			}
 			return;
 		}
-
-		String importClassName = packageName + "." + rawClassName;
-		if (importedClassNames.put(importClassName, rawClassName) != null) {
-			// Don't write the same import twice
+		if (reservedShortNames.contains(rawClassName) || !importedShortNames.add(rawClassName)) {
+			// Don't write imports that boil down to the same short form, or the same import twice
 			return;
 		}
+
+		String importClassName = packageName + "." + rawClassName;
+		importedClassNames.put(importClassName, rawClassName);
 		
 		writeImportForce(fqcn);
 	}
@@ -110,6 +170,14 @@ public class JavaWriter implements Closeable {
 			className = importedClassNames.get(importClassName);
 		}
 		
+		if (className != null && !reservedShortNames.isEmpty() && !packageName.isEmpty()) {
+			int nestedIndex = className.indexOf('.');
+			if (reservedShortNames.contains(nestedIndex != -1 ? className.substring(0, nestedIndex) : className)) {
+				// Shadowed by a nested class
+				className = null;
+			}
+		}
+		
 		StringBuilder sb = new StringBuilder();
 		if (className == null) {
 			sb.append(packageName);
@@ -123,45 +191,120 @@ public class JavaWriter implements Closeable {
 		ClassName[] typeArguments = fqcn.getTypeArguments();
 		if (typeArguments != null && typeArguments.length > 0) {
 			sb.append("<");
-			for (ClassName typeArgument : typeArguments) {
-				sb.append(getAvailableShortName(typeArgument));
+			for (int i = 0; i < typeArguments.length; i++) {
+				if (i > 0) {
+					sb.append(", ");
+				}
+				sb.append(getAvailableShortName(typeArguments[i]));
 			}
 			sb.append(">");
 		}
 		return sb.toString();
 	}
 	
+	/**
+	 * Import the given class.
+	 * 
+	 * Imports are written in sorted order before the first class starts.
+	 * 
+	 * @param fqcn
+	 * @throws IOException
+	 */
 	public void writeImportForce(ClassName fqcn) throws IOException {
 		if (!fqcn.getPackageName().isEmpty()) {
-			writer.write("import ");
-			writer.write(fqcn.getPackageName());
-			writer.write(".");
-			writer.write(fqcn.getRawClassName());
-			writer.write(";\n");
+			pendingImports.add(fqcn.getPackageName() + "." + fqcn.getRawClassName());
 		}
 	}
 	
 	public void writeImport(ClassName fqcn, String methodName) throws IOException {
-		writer.write("import static ");
+		StringBuilder sb = new StringBuilder();
 		if (!fqcn.getPackageName().isEmpty()) {
-			writer.write(fqcn.getPackageName());
-			writer.write(".");
+			sb.append(fqcn.getPackageName());
+			sb.append(".");
 		}
-		writer.write(fqcn.getRawClassName());
-		writer.write(".");
-		writer.write(methodName);
-		writer.write(";\n");
+		sb.append(fqcn.getRawClassName());
+		sb.append(".");
+		sb.append(methodName);
+		pendingStaticImports.add(sb.toString());
+	}
+	
+	protected void writePendingImports() throws IOException {
+		if (deferredOutput != null) {
+			// Written when closing
+			return;
+		}
+		for (String pendingImport : pendingImports) {
+			writer.write("import ");
+			writer.write(pendingImport);
+			writer.write(";\n");
+		}
+		pendingImports.clear();
+		for (String pendingStaticImport : pendingStaticImports) {
+			writer.write("import static ");
+			writer.write(pendingStaticImport);
+			writer.write(";\n");
+		}
+		pendingStaticImports.clear();
+	}
+	
+	/**
+	 * Check whether a class was started and not yet ended, so that the next class is a nested class.
+	 * 
+	 * @return
+	 */
+	public boolean isInClass() {
+		return !currentClassNames.isEmpty();
 	}
 	
+	/**
+	 * Start a class.
+	 * 
+	 * When a class is already started the new class is a static nested class of it, and {@code fqcn} must be the
+	 * name of the nested class ({@code OUTER.NESTED}).
+	 * 
+	 * @param fqcn
+	 * @param kind
+	 * @param visibility
+	 * @throws IOException
+	 */
 	public void writeClassStart(ClassName fqcn, Kind kind, Visibility visibility) throws IOException {
+		writeClassStart(fqcn, null, kind, visibility);
+	}
+	
+	/**
+	 * Start a class extending {@code superClassName}.
+	 * 
+	 * @param fqcn
+	 * @param superClassName the super class, or {@code null}
+	 * @param kind
+	 * @param visibility
+	 * @throws IOException
+	 * @see #writeClassStart(ClassName, Kind, Visibility)
+	 */
+	public void writeClassStart(ClassName fqcn, ClassName superClassName, Kind kind, Visibility visibility) throws IOException {
+		String rawClassName = fqcn.getRawClassName();
+		boolean nested = !currentClassNames.isEmpty();
+		if (!nested) {
+			writePendingImports();
+		}
 		// XXX: visibility in the mapping? options ("all public", "all minimum?")
 		writeIndent();
-		writer.write(visibility.getValue());
-		writer.write(" ");
+		if (!visibility.getValue().isEmpty()) {
+			writer.write(visibility.getValue());
+			writer.write(" ");
+		}
+		if (nested) {
+			writer.write("static ");
+			rawClassName = rawClassName.substring(rawClassName.lastIndexOf('.') + 1);
+		}
 		writer.write(kind.getValue());
 		writer.write(" ");
 		// XXX: generating generic types won't work with just this
-		writer.write(fqcn.getRawClassName());
+		writer.write(rawClassName);
+		if (superClassName != null) {
+			writer.write(" extends ");
+			writeClassName(superClassName);
+		}
 		writer.write(" {\n");
 		pushIndentLevel();
 		currentClassNames.push(fqcn);
@@ -186,10 +329,30 @@ public class JavaWriter implements Closeable {
 
 	// FIXME: declaration is really weird, should introduce a dedicated type for (ClassName, String)
 	public void writeMethodBodyStart(Visibility visibility, ClassName className, String methodName, Object... typesAndValues) throws IOException {
+		writeMethodBodyStart(visibility, false, className, methodName, null, typesAndValues);
+	}
+	
+	/**
+	 * Start a method that is possibly {@code static}, and declares the given exceptions.
+	 * 
+	 * @param visibility
+	 * @param isStatic
+	 * @param className the return type
+	 * @param methodName
+	 * @param exceptionClassNames the declared exceptions, can be {@code null}
+	 * @param typesAndValues the parameter types and names
+	 * @throws IOException
+	 */
+	public void writeMethodBodyStart(Visibility visibility, boolean isStatic, ClassName className, String methodName, List<ClassName> exceptionClassNames, Object... typesAndValues) throws IOException {
 		assert typesAndValues == null || typesAndValues.length % 2 == 0;
 		writeIndent();
-		writer.write(visibility.getValue());
-		writer.write(" ");
+		if (!visibility.getValue().isEmpty()) {
+			writer.write(visibility.getValue());
+			writer.write(" ");
+		}
+		if (isStatic) {
+			writer.write("static ");
+		}
 		writeClassName(className);
 		writer.write(" ");
 		writer.write(methodName);
@@ -202,10 +365,79 @@ public class JavaWriter implements Closeable {
 				writeMethodBodyStartFormalArgument((ClassName) typesAndValues[i], (String) typesAndValues[i + 1]);
 			}
 		};
-		writer.write(") {\n");
+		writer.write(")");
+		if (exceptionClassNames != null && !exceptionClassNames.isEmpty()) {
+			writer.write(" throws ");
+			for (int i = 0; i < exceptionClassNames.size(); i++) {
+				if (i > 0) {
+					writer.write(", ");
+				}
+				writeClassName(exceptionClassNames.get(i));
+			}
+		}
+		writer.write(" {\n");
 		pushIndentLevel();
 	}
 	
+	/**
+	 * Write a {@code void} method whose body is a sequence of independent statements.
+	 * 
+	 * The JVM limits the code of a single method to 64 KB, which a method with one statement per property can exceed
+	 * for types with many properties. Bodies with more than {@code maxStatementsPerMethod} statements are therefore
+	 * split into private helper methods {@code METHOD$0}, {@code METHOD$1}, ..., which receive the same parameters.
+	 * 
+	 * @param visibility
+	 * @param methodName
+	 * @param statements the statements, each one a single line
+	 * @param maxStatementsPerMethod
+	 * @param typesAndValues the parameter types and names
+	 * @throws IOException
+	 */
+	public void writeSplitMethod(Visibility visibility, String methodName, List<String> statements, int maxStatementsPerMethod, Object... typesAndValues) throws IOException {
+		writeSplitMethod(visibility, false, methodName, statements, maxStatementsPerMethod, typesAndValues);
+	}
+	
+	/**
+	 * Write a possibly {@code static} {@code void} method whose body is a sequence of independent statements.
+	 * 
+	 * @param visibility
+	 * @param isStatic whether the method and its helpers are {@code static}
+	 * @param methodName
+	 * @param statements
+	 * @param maxStatementsPerMethod
+	 * @param typesAndValues
+	 * @throws IOException
+	 * @see #writeSplitMethod(Visibility, String, List, int, Object...)
+	 */
+	public void writeSplitMethod(Visibility visibility, boolean isStatic, String methodName, List<String> statements, int maxStatementsPerMethod, Object... typesAndValues) throws IOException {
+		if (statements.size() <= maxStatementsPerMethod) {
+			writeMethodBodyStart(visibility, isStatic, ClassName.VOID, methodName, null, typesAndValues);
+			for (String statement : statements) {
+				writeCode(statement);
+			}
+			writeMethodBodyEnd();
+			return;
+		}
+		
+		StringBuilder arguments = new StringBuilder();
+		for (int i = 1; i < typesAndValues.length; i += 2) {
+			if (i > 1) {
+				arguments.append(", ");
+			}
+			arguments.append(typesAndValues[i]);
+		}
+		int helperCount = (statements.size() + maxStatementsPerMethod - 1) / maxStatementsPerMethod;
+		writeMethodBodyStart(visibility, isStatic, ClassName.VOID, methodName, null, typesAndValues);
+		for (int helper = 0; helper < helperCount; helper++) {
+			writeCode(methodName + "$" + helper + "(" + arguments + ");");
+		}
+		writeMethodBodyEnd();
+		for (int helper = 0; helper < helperCount; helper++) {
+			int end = Math.min(statements.size(), (helper + 1) * maxStatementsPerMethod);
+			writeSplitMethod(Visibility.PRIVATE, isStatic, methodName + "$" + helper, statements.subList(helper * maxStatementsPerMethod, end), maxStatementsPerMethod, typesAndValues);
+		}
+	}
+	
 	public void writeCode(String... lines) throws IOException {
 		assert lines != null;
 		for (String line : lines) {
@@ -227,6 +459,37 @@ public class JavaWriter implements Closeable {
 		writer.write(parameterName);
 	}
 	
+	/**
+	 * Get the Java string literal for {@code value}.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	public static String toStringLiteral(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				sb.append('\\').append(c);
+			} else if (c < 0x20 || c > 0x7e) {
+				sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+			} else {
+				sb.append(c);
+			}
+		}
+		return sb.append('"').toString();
+	}
+	
+	/**
+	 * Get the name to use for {@code fqcn} in code.
+	 * 
+	 * @param fqcn
+	 * @return the short name if the class is imported or otherwise available, the fully qualified name otherwise
+	 */
+	public String getShortName(ClassName fqcn) {
+		return getAvailableShortName(fqcn);
+	}
+	
 	/**
 	 * Write a class name that can be shortened
 	 *  
@@ -0,0 +1,127 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.load;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.cache.ContentStore;
+import com.github.fge.jsonschema.core.load.download.URIDownloader;
+import com.google.common.io.ByteStreams;
+
+/**
+ * {@link URIDownloader} that serves schemas from a {@link SchemaCatalog} and a {@link ContentStore} before downloading them.
+ *
+ * Downloaded schemas are put into the store, so each remote document is fetched at most once, across all runs
+ * sharing the store. In offline mode remote documents that are neither in the catalog nor in the store fail immediately.
+ */
+public class CatalogURIDownloader implements URIDownloader {
+	/** Namespace for the references from URIs to the downloaded contents in the {@link ContentStore} */
+	private static final String CACHE_NAMESPACE = "schemas";
+	/** Schemes that never require network access */
+	private static final Set<String> LOCAL_SCHEMES = new HashSet<>(Arrays.asList("file", "jar", "resource"));
+
+	private final Logger logger = LoggerFactory.getLogger(CatalogURIDownloader.class);
+	private final SchemaCatalog catalog;
+	private final ContentStore cache;
+	private final boolean offline;
+	private final Map<String, URIDownloader> downloaders;
+	private final ConcurrentMap<URI, Object> locks = new ConcurrentHashMap<>();
+
+	/**
+	 * Create the downloader.
+	 *
+	 * @param catalog the catalog with local copies, can be {@code null}
+	 * @param cache the store for downloaded documents, can be {@code null}
+	 * @param offline whether to fail instead of downloading remote documents
+	 * @param downloaders the downloaders to use for each scheme
+	 */
+	public CatalogURIDownloader(@Nullable SchemaCatalog catalog, @Nullable ContentStore cache, boolean offline, @Nonnull Map<String, URIDownloader> downloaders) {
+		this.catalog = catalog;
+		this.cache = cache;
+		this.offline = offline;
+		this.downloaders = downloaders;
+	}
+
+	@Override
+	public InputStream fetch(URI source) throws IOException {
+		if (catalog != null) {
+			InputStream input = catalog.open(source);
+			if (input != null) {
+				logger.debug("{}: Using catalog entry", source);
+				return input;
+			}
+		}
+
+		if (LOCAL_SCHEMES.contains(source.getScheme())) {
+			return getDownloader(source).fetch(source);
+		}
+
+		// Avoid concurrent downloads of the same document
+		Object lock = locks.putIfAbsent(source, new Object());
+		if (lock == null) {
+			lock = locks.get(source);
+		}
+		synchronized (lock) {
+			String key = source.toString();
+			if (cache != null) {
+				byte[] cached = cache.getReferenced(CACHE_NAMESPACE, key);
+				if (cached != null) {
+					logger.debug("{}: Using cached copy", source);
+					return new ByteArrayInputStream(cached);
+				}
+			}
+
+			if (offline) {
+				throw new IOException("Cannot fetch " + source + " in offline mode: not in catalog or cache");
+			}
+
+			logger.info("{}: Downloading", source);
+			byte[] content;
+			try (InputStream input = getDownloader(source).fetch(source)) {
+				content = ByteStreams.toByteArray(input);
+			}
+			if (cache != null) {
+				cache.putReference(CACHE_NAMESPACE, key, cache.put(content));
+			}
+			return new ByteArrayInputStream(content);
+		}
+	}
+
+	private URIDownloader getDownloader(URI source) throws IOException {
+		URIDownloader downloader = downloaders.get(source.getScheme());
+		if (downloader == null) {
+			throw new IOException("Unsupported scheme for " + source);
+		}
+		return downloader;
+	}
+}
@@ -0,0 +1,364 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.load;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nonnull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JsonNodeReader;
+import com.google.common.annotations.VisibleForTesting;
+
+/**
+ * Cache of parsed schema documents.
+ *
+ * Each document is parsed once, even when several threads request it at the same time. Documents are identified by
+ * their loading URI: schema files use their {@code file:} URI, other documents are loaded through a caller-provided
+ * loader. The parsed nodes are shared, and must not be modified.
+ *
+ * The cache can be bounded by the approximate retained size of the parsed nodes: when the total weight exceeds
+ * the maximum the least recently used documents are evicted, and loaded again when requested again.
+ */
+public class ParsedSchemaCache {
+	/** Approximate size of a node object, assuming a 64-bit JVM with compressed references */
+	private static final int NODE_WEIGHT = 16;
+	/** Approximate size of a {@link String} without its characters */
+	private static final int STRING_WEIGHT = 40;
+	/** Approximate size of a map entry of an object node */
+	private static final int FIELD_WEIGHT = 40;
+	/** Approximate size of a list or map without its elements */
+	private static final int CONTAINER_WEIGHT = 48;
+
+	private static class Entry {
+		private final JsonNode node;
+		private final long weight;
+
+		public Entry(JsonNode node, long weight) {
+			this.node = node;
+			this.weight = weight;
+		}
+	}
+
+	private final JsonNodeReader reader;
+	private final long maximumWeight;
+	/** Parsed documents, in access order */
+	private final LinkedHashMap<URI, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+	/** Documents currently being parsed */
+	private final ConcurrentMap<URI, FutureTask<Entry>> pending = new ConcurrentHashMap<>();
+	private long weight;
+	private final AtomicLong invalidationCount = new AtomicLong();
+	private final AtomicInteger parseCount = new AtomicInteger();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+
+	public ParsedSchemaCache(@Nonnull ObjectMapper objectMapper) {
+		this(objectMapper, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Create a cache bounded by weight.
+	 *
+	 * @param objectMapper
+	 * @param maximumWeight the maximum approximate retained size of all parsed files in bytes
+	 */
+	public ParsedSchemaCache(@Nonnull ObjectMapper objectMapper, long maximumWeight) {
+		this.reader = new JsonNodeReader(objectMapper);
+		this.maximumWeight = maximumWeight;
+	}
+
+	/**
+	 * Get the parsed contents of {@code schemaFile}.
+	 *
+	 * @param schemaFile
+	 * @return
+	 * @throws IOException if the file cannot be read or parsed
+	 */
+	public JsonNode get(@Nonnull Path schemaFile) throws IOException {
+		Path file = schemaFile.toAbsolutePath().normalize();
+		return get(file.toUri(), new Callable<JsonNode>() {
+			@Override
+			public JsonNode call() throws IOException {
+				try (Reader input = Files.newBufferedReader(file)) {
+					return reader.fromReader(input);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Get the parsed contents of the document at {@code documentUri}, loading it with {@code loader} if needed.
+	 *
+	 * @param documentUri the loading URI of the document, a fragment is ignored
+	 * @param loader loader for the parsed contents of the document
+	 * @return
+	 * @throws IOException if the document cannot be loaded, the cause is the exception thrown by {@code loader}
+	 */
+	public JsonNode get(@Nonnull URI documentUri, @Nonnull Callable<JsonNode> loader) throws IOException {
+		URI key = getKey(documentUri);
+		synchronized (entries) {
+			Entry entry = entries.get(key);
+			if (entry != null) {
+				hitCount.incrementAndGet();
+				return entry.node;
+			}
+		}
+		missCount.incrementAndGet();
+
+		boolean parsing = false;
+		FutureTask<Entry> task = pending.get(key);
+		if (task == null) {
+			FutureTask<Entry> newTask = new FutureTask<>(new Callable<Entry>() {
+				@Override
+				public Entry call() throws Exception {
+					JsonNode node = loader.call();
+					parseCount.incrementAndGet();
+					return new Entry(node, estimateWeight(node));
+				}
+			});
+			task = pending.putIfAbsent(key, newTask);
+			if (task == null) {
+				task = newTask;
+				parsing = true;
+				task.run();
+			}
+		}
+
+		Entry entry;
+		try {
+			entry = task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for " + key, e);
+		} catch (ExecutionException e) {
+			// Don't cache failures, the document might get fixed
+			pending.remove(key, task);
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException("Cannot load " + key, e.getCause());
+		}
+
+		if (parsing) {
+			synchronized (entries) {
+				// Skip caching when the document was invalidated while parsing it
+				if (pending.remove(key, task)) {
+					put(key, entry);
+				}
+			}
+		}
+		return entry.node;
+	}
+
+	/**
+	 * Check whether the document at {@code documentUri} is currently cached.
+	 *
+	 * This does not count as a use of the document.
+	 *
+	 * @param documentUri the loading URI of the document, a fragment is ignored
+	 * @return
+	 */
+	public boolean contains(@Nonnull URI documentUri) {
+		URI key = getKey(documentUri);
+		synchronized (entries) {
+			return entries.containsKey(key);
+		}
+	}
+
+	/**
+	 * Remove the parsed contents of {@code schemaFile}, so that the next request parses the file again.
+	 *
+	 * @param schemaFile
+	 */
+	public void invalidate(@Nonnull Path schemaFile) {
+		invalidate(schemaFile.toAbsolutePath().normalize().toUri());
+	}
+
+	/**
+	 * Remove the parsed contents of the document at {@code documentUri}, so that the next request loads it again.
+	 *
+	 * @param documentUri the loading URI of the document, a fragment is ignored
+	 */
+	public void invalidate(@Nonnull URI documentUri) {
+		URI key = getKey(documentUri);
+		synchronized (entries) {
+			invalidationCount.incrementAndGet();
+			pending.remove(key);
+			Entry entry = entries.remove(key);
+			if (entry != null) {
+				weight -= entry.weight;
+			}
+		}
+	}
+
+	/**
+	 * Remove all parsed contents.
+	 */
+	public void invalidateAll() {
+		synchronized (entries) {
+			invalidationCount.incrementAndGet();
+			pending.clear();
+			entries.clear();
+			weight = 0;
+		}
+	}
+
+	/**
+	 * Get the number of invalidations so far.
+	 *
+	 * Users holding information derived from the parsed documents can compare this to drop that information when
+	 * documents were invalidated.
+	 *
+	 * @return
+	 */
+	public long getInvalidationCount() {
+		return invalidationCount.get();
+	}
+
+	/**
+	 * Get the number of documents that were successfully parsed.
+	 *
+	 * @return
+	 */
+	public int getParseCount() {
+		return parseCount.get();
+	}
+
+	/**
+	 * Get the number of requests served from the cache.
+	 *
+	 * @return
+	 */
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * Get the number of requests that had to wait for parsing the file.
+	 *
+	 * @return
+	 */
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	/**
+	 * Get the number of documents evicted to stay within the maximum weight.
+	 *
+	 * @return
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	/**
+	 * Get the approximate retained size of all currently cached documents in bytes.
+	 *
+	 * @return
+	 */
+	public long getWeight() {
+		synchronized (entries) {
+			return weight;
+		}
+	}
+
+	private void put(URI key, Entry entry) {
+		assert Thread.holdsLock(entries);
+		Entry previousEntry = entries.put(key, entry);
+		if (previousEntry != null) {
+			weight -= previousEntry.weight;
+		}
+		weight += entry.weight;
+
+		// Evict the least recently used documents, but always keep the one just parsed
+		for (Iterator<Map.Entry<URI, Entry>> entryIterator = entries.entrySet().iterator(); weight > maximumWeight && entries.size() > 1; ) {
+			Map.Entry<URI, Entry> eldestEntry = entryIterator.next();
+			weight -= eldestEntry.getValue().weight;
+			entryIterator.remove();
+			evictionCount.incrementAndGet();
+		}
+	}
+
+	private static URI getKey(URI documentUri) {
+		if ("file".equals(documentUri.getScheme())) {
+			// Use the same form as the keys of schema files
+			return Paths.get(URI.create(documentUri.getScheme() + ":" + documentUri.getRawSchemeSpecificPart())).toAbsolutePath().normalize().toUri();
+		}
+		try {
+			return new URI(documentUri.getScheme(), documentUri.getSchemeSpecificPart(), null).normalize();
+		} catch (URISyntaxException e) {
+			assert false : "Was a URI before, we just removed the fragment";
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	/**
+	 * Estimate the retained size of {@code node} in bytes.
+	 *
+	 * @param node
+	 * @return
+	 */
+	@VisibleForTesting
+	protected static long estimateWeight(@Nonnull JsonNode node) {
+		long weight = 0;
+		Deque<JsonNode> pendingNodes = new ArrayDeque<>();
+		pendingNodes.add(node);
+		while (!pendingNodes.isEmpty()) {
+			JsonNode pendingNode = pendingNodes.remove();
+			weight += NODE_WEIGHT;
+			if (pendingNode.isObject()) {
+				weight += CONTAINER_WEIGHT;
+				for (Iterator<Map.Entry<String, JsonNode>> fieldIterator = pendingNode.fields(); fieldIterator.hasNext(); ) {
+					Map.Entry<String, JsonNode> field = fieldIterator.next();
+					weight += FIELD_WEIGHT + STRING_WEIGHT + 2L * field.getKey().length();
+					pendingNodes.add(field.getValue());
+				}
+			} else if (pendingNode.isArray()) {
+				weight += CONTAINER_WEIGHT + 4L * pendingNode.size();
+				for (JsonNode element : pendingNode) {
+					pendingNodes.add(element);
+				}
+			} else if (pendingNode.isTextual()) {
+				weight += STRING_WEIGHT + 2L * pendingNode.textValue().length();
+			} else if (pendingNode.isBigDecimal() || pendingNode.isBigInteger()) {
+				weight += CONTAINER_WEIGHT;
+			}
+		}
+		return weight;
+	}
+}
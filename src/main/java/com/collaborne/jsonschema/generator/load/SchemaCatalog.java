@@ -0,0 +1,167 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.load;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Catalog of local copies of (remote) schemas.
+ *
+ * Each entry maps a URI to either a {@code file} or a class path {@code resource}. If the URI of an entry ends with
+ * a {@code '/'} it maps all URIs below it, and the rest of the requested URI is appended to the file or resource.
+ */
+public class SchemaCatalog {
+	public static class Entry {
+		private URI uri;
+		private String file;
+		private String resource;
+
+		public Entry() {
+			// For jackson
+		}
+
+		public URI getUri() {
+			return uri;
+		}
+
+		public void setUri(URI uri) {
+			this.uri = uri;
+		}
+
+		public String getFile() {
+			return file;
+		}
+
+		public void setFile(String file) {
+			this.file = file;
+		}
+
+		public String getResource() {
+			return resource;
+		}
+
+		public void setResource(String resource) {
+			this.resource = resource;
+		}
+
+		@Override
+		public String toString() {
+			return "Entry(" + uri + " -> " + (file != null ? file : "classpath:" + resource) + ")";
+		}
+	}
+
+	private List<Entry> entries = new ArrayList<>();
+	private Path baseDirectory = Paths.get(".");
+	private ClassLoader classLoader = SchemaCatalog.class.getClassLoader();
+
+	public List<Entry> getEntries() {
+		return entries;
+	}
+
+	public void setEntries(List<Entry> entries) {
+		this.entries = entries;
+	}
+
+	/**
+	 * Set the directory against which relative {@code file} entries are resolved.
+	 *
+	 * @param baseDirectory
+	 */
+	@JsonIgnore
+	public void setBaseDirectory(Path baseDirectory) {
+		this.baseDirectory = baseDirectory;
+	}
+
+	@JsonIgnore
+	public void setClassLoader(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	/**
+	 * Add all entries from the {@code other} catalog, resolving their files against the base directory of that catalog.
+	 *
+	 * @param other
+	 */
+	public void addAll(@Nonnull SchemaCatalog other) {
+		for (Entry otherEntry : other.getEntries()) {
+			Entry entry = new Entry();
+			entry.setUri(otherEntry.getUri());
+			if (otherEntry.getFile() != null) {
+				entry.setFile(other.baseDirectory.resolve(otherEntry.getFile()).toString());
+			}
+			entry.setResource(otherEntry.getResource());
+			entries.add(entry);
+		}
+	}
+
+	/**
+	 * Open the local copy of the schema at {@code uri}.
+	 *
+	 * @param uri the URI of the schema, without fragment
+	 * @return the stream for the schema, or {@code null} if the catalog has no entry for the URI
+	 * @throws IOException if the entry exists, but cannot be opened
+	 */
+	@Nullable
+	public InputStream open(@Nonnull URI uri) throws IOException {
+		String requested = uri.toString();
+		Entry bestEntry = null;
+		String bestSuffix = null;
+		for (Entry entry : entries) {
+			String entryUri = entry.getUri().toString();
+			if (requested.equals(entryUri)) {
+				bestEntry = entry;
+				bestSuffix = "";
+				break;
+			}
+			if (entryUri.endsWith("/") && requested.startsWith(entryUri) && (bestSuffix == null || requested.length() - entryUri.length() < bestSuffix.length())) {
+				bestEntry = entry;
+				bestSuffix = requested.substring(entryUri.length());
+			}
+		}
+
+		if (bestEntry == null) {
+			return null;
+		}
+
+		if (bestEntry.getFile() != null) {
+			return Files.newInputStream(baseDirectory.resolve(bestEntry.getFile() + bestSuffix));
+		}
+
+		String resource = bestEntry.getResource() + bestSuffix;
+		if (resource.startsWith("/")) {
+			resource = resource.substring(1);
+		}
+		InputStream input = classLoader.getResourceAsStream(resource);
+		if (input == null) {
+			throw new IOException("Missing resource " + resource + " for " + uri + " in catalog");
+		}
+		return input;
+	}
+}
@@ -0,0 +1,138 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Description of generation jobs to run together.
+ * 
+ * Directories of a job are relative to the directory of the job file, the schema, mapping and catalog files are relative
+ * to the base directory of the job.
+ */
+public class BatchJobs {
+	public static class Job {
+		private String name;
+		private String baseDirectory = ".";
+		private URI rootUri;
+		private String outputDirectory = ".";
+		private List<String> schemas = new ArrayList<>();
+		private List<String> mappings = new ArrayList<>();
+		private List<String> catalogs = new ArrayList<>();
+		private List<String> entryPoints = new ArrayList<>();
+		private boolean writeManifest;
+		private boolean deduplicateAnonymousTypes;
+		
+		public String getName() {
+			return name;
+		}
+		
+		public void setName(String name) {
+			this.name = name;
+		}
+		
+		public String getBaseDirectory() {
+			return baseDirectory;
+		}
+		
+		public void setBaseDirectory(String baseDirectory) {
+			this.baseDirectory = baseDirectory;
+		}
+		
+		/**
+		 * Get the URI under which the schemas in the base directory are visible.
+		 * 
+		 * @return the URI, or {@code null} to use the URI of the base directory
+		 */
+		public URI getRootUri() {
+			return rootUri;
+		}
+		
+		public void setRootUri(URI rootUri) {
+			this.rootUri = rootUri;
+		}
+		
+		public String getOutputDirectory() {
+			return outputDirectory;
+		}
+		
+		public void setOutputDirectory(String outputDirectory) {
+			this.outputDirectory = outputDirectory;
+		}
+		
+		public List<String> getSchemas() {
+			return schemas;
+		}
+		
+		public void setSchemas(List<String> schemas) {
+			this.schemas = schemas;
+		}
+		
+		public List<String> getMappings() {
+			return mappings;
+		}
+		
+		public void setMappings(List<String> mappings) {
+			this.mappings = mappings;
+		}
+		
+		public List<String> getCatalogs() {
+			return catalogs;
+		}
+		
+		public void setCatalogs(List<String> catalogs) {
+			this.catalogs = catalogs;
+		}
+		
+		public List<String> getEntryPoints() {
+			return entryPoints;
+		}
+		
+		public void setEntryPoints(List<String> entryPoints) {
+			this.entryPoints = entryPoints;
+		}
+		
+		public boolean isWriteManifest() {
+			return writeManifest;
+		}
+		
+		public void setWriteManifest(boolean writeManifest) {
+			this.writeManifest = writeManifest;
+		}
+		
+		public boolean isDeduplicateAnonymousTypes() {
+			return deduplicateAnonymousTypes;
+		}
+		
+		public void setDeduplicateAnonymousTypes(boolean deduplicateAnonymousTypes) {
+			this.deduplicateAnonymousTypes = deduplicateAnonymousTypes;
+		}
+	}
+	
+	private List<Job> jobs = new ArrayList<>();
+	
+	public List<Job> getJobs() {
+		return jobs;
+	}
+	
+	public void setJobs(List<Job> jobs) {
+		this.jobs = jobs;
+	}
+}
@@ -0,0 +1,182 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
+
+/**
+ * Report of the estimated heap footprint of the generated classes.
+ *
+ * All sizes are in bytes, and assume a HotSpot JVM with compressed class pointers and 8 byte object alignment.
+ */
+public class FootprintReport {
+	public static class Field {
+		private String name;
+		private ClassName type;
+		private int size;
+		private long retainedSize;
+		
+		public String getName() {
+			return name;
+		}
+		
+		public void setName(String name) {
+			this.name = name;
+		}
+		
+		@JsonSerialize(using=ToStringSerializer.class)
+		public ClassName getType() {
+			return type;
+		}
+		
+		public void setType(ClassName type) {
+			this.type = type;
+		}
+		
+		/**
+		 * Get the size of the field inside the instance.
+		 * 
+		 * @return
+		 */
+		public int getSize() {
+			return size;
+		}
+		
+		public void setSize(int size) {
+			this.size = size;
+		}
+		
+		/**
+		 * Get the expected size of the objects owned by the field, such as boxed values or collections.
+		 * 
+		 * Instances of other generated classes are not included, they are reported in their own entries.
+		 * 
+		 * @return
+		 */
+		public long getRetainedSize() {
+			return retainedSize;
+		}
+		
+		public void setRetainedSize(long retainedSize) {
+			this.retainedSize = retainedSize;
+		}
+	}
+	
+	public static class Entry {
+		private ClassName className;
+		private URI type;
+		private long shallowSize;
+		private long retainedSize;
+		private List<Field> fields = new ArrayList<>();
+		
+		@JsonSerialize(using=ToStringSerializer.class)
+		public ClassName getClassName() {
+			return className;
+		}
+		
+		public void setClassName(ClassName className) {
+			this.className = className;
+		}
+		
+		public URI getType() {
+			return type;
+		}
+		
+		public void setType(URI type) {
+			this.type = type;
+		}
+		
+		/**
+		 * Get the size of an instance, including the object header and padding.
+		 * 
+		 * @return
+		 */
+		public long getShallowSize() {
+			return shallowSize;
+		}
+		
+		public void setShallowSize(long shallowSize) {
+			this.shallowSize = shallowSize;
+		}
+		
+		/**
+		 * Get the expected size of an instance and the objects owned by its fields.
+		 * 
+		 * @return
+		 */
+		public long getRetainedSize() {
+			return retainedSize;
+		}
+		
+		public void setRetainedSize(long retainedSize) {
+			this.retainedSize = retainedSize;
+		}
+		
+		public List<Field> getFields() {
+			return fields;
+		}
+		
+		public void setFields(List<Field> fields) {
+			this.fields = fields;
+		}
+	}
+	
+	private boolean compressedOops;
+	private int expectedCollectionSize;
+	private List<Entry> entries = new ArrayList<>();
+	
+	/**
+	 * Get whether references were assumed to be compressed to 4 bytes.
+	 * 
+	 * @return
+	 */
+	public boolean isCompressedOops() {
+		return compressedOops;
+	}
+	
+	public void setCompressedOops(boolean compressedOops) {
+		this.compressedOops = compressedOops;
+	}
+	
+	/**
+	 * Get the number of elements assumed for collections without a {@code minItems}.
+	 * 
+	 * @return
+	 */
+	public int getExpectedCollectionSize() {
+		return expectedCollectionSize;
+	}
+	
+	public void setExpectedCollectionSize(int expectedCollectionSize) {
+		this.expectedCollectionSize = expectedCollectionSize;
+	}
+	
+	public List<Entry> getEntries() {
+		return entries;
+	}
+	
+	public void setEntries(List<Entry> entries) {
+		this.entries = entries;
+	}
+}
@@ -0,0 +1,91 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Manifest of the types produced by a generator run.
+ * 
+ * The manifest is written next to the generated sources, so that it ends up in the jar with the compiled classes. Later runs can
+ * discover it on the class path and use the existing classes instead of generating them again.
+ */
+@JsonInclude(Include.NON_EMPTY)
+public class GenerationManifest {
+	/** Name of the manifest resource, relative to the output directory or the class path root */
+	public static final String RESOURCE_NAME = "META-INF/json-schema-bean-generator/manifest.json";
+	
+	/**
+	 * A generated type: a {@link Mapping} together with the hash of the schema it was generated from.
+	 */
+	public static class Entry extends Mapping {
+		private String hash;
+		
+		public Entry() {
+			// For jackson
+		}
+		
+		public Entry(Mapping mapping, String hash) {
+			super(mapping.getTarget(), mapping.getClassName());
+			this.hash = hash;
+		}
+		
+		/**
+		 * Get the structural hash of the schema.
+		 * 
+		 * @return
+		 * @see com.collaborne.jsonschema.generator.SchemaHasher
+		 */
+		public String getHash() {
+			return hash;
+		}
+		
+		public void setHash(String hash) {
+			this.hash = hash;
+		}
+	}
+	
+	private List<Entry> entries = new ArrayList<>();
+	private List<Mapping> references = new ArrayList<>();
+	
+	public List<Entry> getEntries() {
+		return entries;
+	}
+	
+	public void setEntries(List<Entry> entries) {
+		this.entries = entries;
+	}
+	
+	/**
+	 * Get the types that were referenced, but for which the output was not written.
+	 * 
+	 * @return
+	 * @see com.collaborne.jsonschema.generator.Generator#setOutputFilter(java.util.function.Predicate)
+	 */
+	public List<Mapping> getReferences() {
+		return references;
+	}
+	
+	public void setReferences(List<Mapping> references) {
+		this.references = references;
+	}
+}
@@ -20,14 +20,20 @@ package com.collaborne.jsonschema.generator.model;
 import java.net.URI;
 
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.ToStringSerializer;
 
 // XXX: should be generated by the generator?
 // TODO: need "additional interfaces to be implemented", "inject header" (for licenses etc)
 // TODO: decide whether className is FQCN or we have a #getPackage() as well
+@JsonInclude(Include.NON_NULL)
 public class Mapping {
 	private URI target;
 	private ClassName className;
+	private String packageName;
 
 	public Mapping() {
 		// For jackson
@@ -47,6 +53,7 @@ public class Mapping {
 	}
 
 	@JsonDeserialize(converter=ClassNameConverter.class)
+	@JsonSerialize(using=ToStringSerializer.class)
 	public ClassName getClassName() {
 		return className;
 	}
@@ -55,8 +62,22 @@ public class Mapping {
 		this.className = className;
 	}
 
+	/**
+	 * Get the package for the types matched by a pattern mapping.
+	 *
+	 * @return
+	 * @see MappingTrie
+	 */
+	public String getPackageName() {
+		return packageName;
+	}
+
+	public void setPackageName(String packageName) {
+		this.packageName = packageName;
+	}
+
 	@Override
 	public String toString() {
-		return "Mapping(" + target + " -> " + className + ")";
+		return "Mapping(" + target + " -> " + (className != null ? className : packageName + ".*") + ")";
 	}
 }
\ No newline at end of file
@@ -0,0 +1,232 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+
+/**
+ * Trie of pattern mappings over the segments of a URI.
+ *
+ * A pattern mapping has a target whose last segment is either {@code *} (matching exactly one segment), or {@code **}
+ * (matching one or more segments). For example {@code http://x/schemas/billing/#/definitions/*} matches all
+ * definitions in the billing schema. The class name for a matched type is built from the package name of the
+ * mapping, and the steps of the matched URI covered by the wildcard: for {@code **} these are joined, leaving out the
+ * {@code properties}, {@code patternProperties} and {@code definitions} keywords, so that {@code a/properties/id} becomes
+ * {@code AId} and does not clash with {@code b/properties/id}.
+ *
+ * Lookups walk the trie once, so they take time proportional to the number of segments of the URI, independent of the
+ * number of patterns. If several patterns match, the one with the longest literal prefix wins, and {@code *} wins over
+ * {@code **} on the same prefix.
+ */
+public class MappingTrie {
+	private static final String SINGLE_WILDCARD = "*";
+	private static final String DEEP_WILDCARD = "**";
+	/** Keywords that are always followed by a name, and therefore left out of the class names of deep matches */
+	private static final Set<String> NAMING_KEYWORDS = new HashSet<>(Arrays.asList("properties", "patternProperties", "definitions"));
+
+	private static class Node {
+		private final Map<String, Node> children = new HashMap<>();
+		private Mapping singleWildcard;
+		private Mapping deepWildcard;
+	}
+
+	private final Node root = new Node();
+	private int size;
+
+	/**
+	 * Check whether the given {@code target} is a pattern that should be added to a {@link MappingTrie}.
+	 *
+	 * @param target
+	 * @return
+	 */
+	public static boolean isPattern(@Nonnull URI target) {
+		List<String> segments = getSegments(target);
+		String lastSegment = segments.get(segments.size() - 1);
+		return SINGLE_WILDCARD.equals(lastSegment) || DEEP_WILDCARD.equals(lastSegment);
+	}
+
+	/**
+	 * Add a pattern mapping.
+	 *
+	 * A later mapping for the same pattern replaces an earlier one.
+	 *
+	 * @param pattern
+	 * @param mapping the mapping, must provide a package name either directly or through its class name
+	 * @throws IllegalArgumentException if {@code pattern} is not a pattern, or the mapping does not define a package
+	 */
+	public void add(@Nonnull URI pattern, @Nonnull Mapping mapping) {
+		if (getPackageName(mapping) == null) {
+			throw new IllegalArgumentException("Pattern mapping for " + pattern + " must provide a package name");
+		}
+
+		List<String> segments = getSegments(pattern);
+		String lastSegment = segments.get(segments.size() - 1);
+
+		Node node = root;
+		for (String segment : segments.subList(0, segments.size() - 1)) {
+			Node child = node.children.get(segment);
+			if (child == null) {
+				child = new Node();
+				node.children.put(segment, child);
+			}
+			node = child;
+		}
+
+		Mapping previous;
+		if (SINGLE_WILDCARD.equals(lastSegment)) {
+			previous = node.singleWildcard;
+			node.singleWildcard = mapping;
+		} else if (DEEP_WILDCARD.equals(lastSegment)) {
+			previous = node.deepWildcard;
+			node.deepWildcard = mapping;
+		} else {
+			throw new IllegalArgumentException("Not a pattern: " + pattern);
+		}
+
+		if (previous == null) {
+			size++;
+		}
+	}
+
+	/**
+	 * Find the mapping for the given {@code type}.
+	 *
+	 * @param type
+	 * @return a mapping with the {@code type} as target, or {@code null} if no pattern matches
+	 */
+	@Nullable
+	public Mapping find(@Nonnull URI type) {
+		List<String> segments = getSegments(type);
+		Mapping deepMatch = null;
+		int deepMatchStart = -1;
+		Mapping singleMatch = null;
+
+		Node node = root;
+		for (int i = 0; i < segments.size() && node != null; i++) {
+			if (node.deepWildcard != null) {
+				deepMatch = node.deepWildcard;
+				deepMatchStart = i;
+			}
+			if (i == segments.size() - 1) {
+				singleMatch = node.singleWildcard;
+			}
+			node = node.children.get(segments.get(i));
+		}
+
+		Mapping match = singleMatch != null ? singleMatch : deepMatch;
+		if (match == null) {
+			return null;
+		}
+
+		String lastSegment = segments.get(segments.size() - 1);
+		if (singleMatch != null) {
+			return new Mapping(type, new ClassName(getPackageName(match), createRawClassName(lastSegment)));
+		}
+		StringBuilder rawClassName = new StringBuilder();
+		for (String segment : segments.subList(deepMatchStart, segments.size())) {
+			if (!NAMING_KEYWORDS.contains(segment) && !"#".equals(segment) && !segment.isEmpty()) {
+				rawClassName.append(createRawClassName(segment));
+			}
+		}
+		return new Mapping(type, new ClassName(getPackageName(match), rawClassName.length() > 0 ? rawClassName.toString() : createRawClassName(lastSegment)));
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private static String getPackageName(Mapping mapping) {
+		if (mapping.getPackageName() != null) {
+			return mapping.getPackageName();
+		}
+		if (mapping.getClassName() != null) {
+			return mapping.getClassName().getPackageName();
+		}
+		return null;
+	}
+
+	/**
+	 * Split the URI into segments: the steps of the scheme-specific part, a {@code "#"} marker, and the steps of the fragment.
+	 *
+	 * @param uri
+	 * @return
+	 */
+	private static List<String> getSegments(URI uri) {
+		List<String> segments = new ArrayList<>();
+		if (uri.getScheme() != null) {
+			segments.add(uri.getScheme() + ":");
+		}
+		addSegments(segments, uri.getRawSchemeSpecificPart());
+		String fragment = uri.getRawFragment();
+		if (fragment != null) {
+			segments.add("#");
+			addSegments(segments, fragment);
+		}
+		return segments;
+	}
+
+	private static void addSegments(List<String> segments, String path) {
+		int start = 0;
+		for (int i = 0; i < path.length(); i++) {
+			if (path.charAt(i) == '/') {
+				segments.add(path.substring(start, i));
+				start = i + 1;
+			}
+		}
+		segments.add(path.substring(start));
+	}
+
+	private static String createRawClassName(String step) {
+		// Undo the JSON pointer escaping, and replace all characters not valid for Java
+		String decodedStep = URI.create("#" + step).getFragment().replace("~1", "/").replace("~0", "~");
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < decodedStep.length(); i++) {
+			char c = decodedStep.charAt(i);
+			if (sb.length() == 0) {
+				if (Character.isJavaIdentifierStart(c)) {
+					sb.append(Character.toUpperCase(c));
+				} else if (Character.isJavaIdentifierPart(c)) {
+					sb.append('_');
+					sb.append(c);
+				}
+			} else if (Character.isJavaIdentifierPart(c)) {
+				sb.append(c);
+			}
+		}
+		if (sb.length() == 0) {
+			sb.append("Type");
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,65 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Report of a generation that started from explicit entry points.
+ */
+public class PruningReport {
+	private List<URI> entryPoints = new ArrayList<>();
+	private List<URI> reachable = new ArrayList<>();
+	private List<URI> pruned = new ArrayList<>();
+	
+	public List<URI> getEntryPoints() {
+		return entryPoints;
+	}
+	
+	public void setEntryPoints(List<URI> entryPoints) {
+		this.entryPoints = entryPoints;
+	}
+	
+	/**
+	 * Get the types reachable from the entry points, including inline types.
+	 * 
+	 * @return
+	 */
+	public List<URI> getReachable() {
+		return reachable;
+	}
+	
+	public void setReachable(List<URI> reachable) {
+		this.reachable = reachable;
+	}
+	
+	/**
+	 * Get the root and {@code definitions} types of the schema documents that were not generated.
+	 * 
+	 * @return
+	 */
+	public List<URI> getPruned() {
+		return pruned;
+	}
+	
+	public void setPruned(List<URI> pruned) {
+		this.pruned = pruned;
+	}
+}
@@ -0,0 +1,87 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.GregorianCalendar;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.annotation.Nonnull;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.java.ClassName;
+
+/**
+ * {@link OutputSink} that writes all sources into a ZIP archive, for instance a source JAR.
+ *
+ * Entries are written in the order of generation, and carry a fixed modification time so that the same output produces
+ * the same archive. The archive is complete after {@link #close()}.
+ */
+public class ArchiveOutputSink implements OutputSink {
+	/** Modification time of all entries: the earliest time representable in a ZIP archive */
+	private static final long ENTRY_TIME = new GregorianCalendar(1980, 0, 1).getTimeInMillis();
+
+	private final ZipOutputStream output;
+
+	public ArchiveOutputSink(@Nonnull OutputStream output) {
+		this.output = new ZipOutputStream(output);
+	}
+
+	/**
+	 * Create a sink writing into {@code archiveFile}.
+	 *
+	 * @param archiveFile
+	 * @return
+	 * @throws IOException
+	 */
+	public static ArchiveOutputSink create(@Nonnull Path archiveFile) throws IOException {
+		Path parent = archiveFile.toAbsolutePath().getParent();
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+		return new ArchiveOutputSink(Files.newOutputStream(archiveFile));
+	}
+
+	@Override
+	public synchronized void write(URI type, ClassName className, OutputBuffer buffer) throws IOException {
+		try {
+			ZipEntry entry = new ZipEntry(OutputSink.getSourceFileName(className));
+			entry.setTime(ENTRY_TIME);
+			output.putNextEntry(entry);
+			buffer.writeTo(output);
+			output.closeEntry();
+		} finally {
+			buffer.release();
+		}
+	}
+
+	@Override
+	public synchronized void flush() throws CodeGenerationException {
+		// Entries are written synchronously, and the archive only becomes readable when closed
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		output.close();
+	}
+}
@@ -0,0 +1,87 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Policy for how output files are written.
+ */
+public enum Durability {
+	/** Write the file in place, and leave flushing to the operating system */
+	NONE {
+		@Override
+		public void write(Path file, OutputBuffer buffer) throws IOException {
+			writeFile(file, buffer, false);
+		}
+	},
+	/** Write to a temporary file, and move it into place, so that readers never see partially written files */
+	ATOMIC {
+		@Override
+		public void write(Path file, OutputBuffer buffer) throws IOException {
+			writeAtomically(file, buffer, false);
+		}
+	},
+	/** Like {@link #ATOMIC}, but force the contents to the storage device before moving the file into place */
+	SYNC {
+		@Override
+		public void write(Path file, OutputBuffer buffer) throws IOException {
+			writeAtomically(file, buffer, true);
+		}
+	};
+
+	/**
+	 * Write the contents of {@code buffer} into {@code file}, creating the parent directories as needed.
+	 *
+	 * @param file
+	 * @param buffer
+	 * @throws IOException
+	 */
+	public abstract void write(Path file, OutputBuffer buffer) throws IOException;
+
+	private static void writeAtomically(Path file, OutputBuffer buffer, boolean force) throws IOException {
+		Path temporaryFile = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+		writeFile(temporaryFile, buffer, force);
+		try {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static void writeFile(Path file, OutputBuffer buffer, boolean force) throws IOException {
+		Files.createDirectories(file.getParent());
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			ByteBuffer contents = buffer.asByteBuffer();
+			while (contents.hasRemaining()) {
+				channel.write(contents);
+			}
+			if (force) {
+				channel.force(true);
+			}
+		}
+	}
+}
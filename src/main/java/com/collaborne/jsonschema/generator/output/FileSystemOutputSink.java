@@ -0,0 +1,78 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.java.ClassName;
+
+/**
+ * {@link OutputSink} that writes each source into its own file below an output directory.
+ *
+ * The files are written through an {@link OutputWriter}, which remains owned by the caller: closing the sink does not
+ * close the writer.
+ */
+public class FileSystemOutputSink implements OutputSink {
+	private final Logger logger = LoggerFactory.getLogger(FileSystemOutputSink.class);
+	private final Path outputDirectory;
+	private final OutputWriter outputWriter;
+
+	public FileSystemOutputSink(@Nonnull Path outputDirectory, @Nonnull OutputWriter outputWriter) {
+		this.outputDirectory = outputDirectory;
+		this.outputWriter = outputWriter;
+	}
+
+	public Path getOutputDirectory() {
+		return outputDirectory;
+	}
+
+	/**
+	 * Get the file for the source of {@code className}.
+	 *
+	 * @param className
+	 * @return
+	 */
+	public Path getSourceFile(@Nonnull ClassName className) {
+		return outputDirectory.resolve(OutputSink.getSourceFileName(className));
+	}
+
+	@Override
+	public void write(URI type, ClassName className, OutputBuffer buffer) throws IOException {
+		Path outputFile = getSourceFile(className);
+		logger.debug("{}: Writing {}", type, outputFile);
+		outputWriter.write(type, outputFile, buffer);
+	}
+
+	@Override
+	public void flush() throws CodeGenerationException {
+		outputWriter.flush();
+	}
+
+	@Override
+	public void close() {
+		// The writer is owned by the caller
+	}
+}
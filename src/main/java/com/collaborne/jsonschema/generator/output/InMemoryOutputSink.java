@@ -0,0 +1,97 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+
+/**
+ * {@link OutputSink} that keeps the UTF-8 encoded sources in memory.
+ *
+ * The sink keeps the buffers it receives instead of copying them, and hands out read-only views on their contents.
+ * Buffers are therefore not returned to their pool until the sink is cleared.
+ */
+public class InMemoryOutputSink implements OutputSink {
+	private final Map<ClassName, OutputBuffer> buffers = new ConcurrentHashMap<>();
+
+	@Override
+	public void write(URI type, ClassName className, OutputBuffer buffer) {
+		OutputBuffer previous = buffers.put(className, buffer);
+		if (previous != null) {
+			previous.release();
+		}
+	}
+
+	@Override
+	public void flush() {
+		// Nothing to do, writes are complete immediately
+	}
+
+	/**
+	 * Get the source for {@code className}.
+	 *
+	 * @param className
+	 * @return a read-only view of the source, or {@code null} if no source was written for the class
+	 */
+	@Nullable
+	public ByteBuffer getSource(@Nonnull ClassName className) {
+		OutputBuffer buffer = buffers.get(className);
+		return buffer != null ? buffer.asByteBuffer() : null;
+	}
+
+	/**
+	 * Get all sources written so far.
+	 *
+	 * @return map of class names to read-only views of their sources
+	 */
+	public Map<ClassName, ByteBuffer> getSources() {
+		Map<ClassName, ByteBuffer> sources = new HashMap<>();
+		for (Map.Entry<ClassName, OutputBuffer> entry : buffers.entrySet()) {
+			sources.put(entry.getKey(), entry.getValue().asByteBuffer());
+		}
+		return Collections.unmodifiableMap(sources);
+	}
+
+	/**
+	 * Drop all sources, and return their buffers to their pools.
+	 *
+	 * Views obtained earlier must not be used afterwards.
+	 */
+	public void clear() {
+		for (ClassName className : buffers.keySet()) {
+			OutputBuffer buffer = buffers.remove(className);
+			if (buffer != null) {
+				buffer.release();
+			}
+		}
+	}
+
+	@Override
+	public void close() {
+		// The sources stay available until cleared
+	}
+}
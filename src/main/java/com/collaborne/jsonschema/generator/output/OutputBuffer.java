@@ -0,0 +1,84 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Growable byte buffer for rendered output, that can be reused through an {@link OutputBufferPool}.
+ */
+public class OutputBuffer extends ByteArrayOutputStream {
+	private OutputBufferPool<?> pool;
+	/** Whether the buffer is currently in the pool, to make releasing idempotent */
+	boolean pooled;
+
+	public OutputBuffer() {
+		super();
+	}
+
+	public OutputBuffer(int initialCapacity) {
+		super(initialCapacity);
+	}
+
+	void setPool(OutputBufferPool<?> pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Get the capacity of the underlying array.
+	 *
+	 * @return
+	 */
+	public synchronized int capacity() {
+		return buf.length;
+	}
+
+	/**
+	 * Get a stream over the contents, without copying them.
+	 *
+	 * @return
+	 */
+	public synchronized InputStream getInputStream() {
+		return new ByteArrayInputStream(buf, 0, count);
+	}
+
+	/**
+	 * Get a read-only view of the contents, without copying them.
+	 *
+	 * The view is only valid until the buffer is modified or released.
+	 *
+	 * @return
+	 */
+	public synchronized ByteBuffer asByteBuffer() {
+		return ByteBuffer.wrap(buf, 0, count).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Return the buffer to the pool it came from.
+	 *
+	 * The buffer must not be used afterwards. Buffers that do not come from a pool are left for the garbage collector.
+	 */
+	public void release() {
+		if (pool != null) {
+			pool.release(this);
+		}
+	}
+}
@@ -0,0 +1,78 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Pool of reusable {@link OutputBuffer}s.
+ *
+ * Released buffers keep their capacity, so after a warm-up phase rendering no longer needs to grow (and copy) buffers.
+ * Buffers that grew beyond {@code maxRetainedCapacity} are dropped instead of pooled, so that a few huge outputs do not
+ * pin memory for the rest of the run.
+ */
+public class OutputBufferPool<T extends OutputBuffer> {
+	public static final int DEFAULT_INITIAL_CAPACITY = 8 * 1024;
+	public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+	private final Supplier<? extends T> factory;
+	private final BlockingQueue<T> available;
+	private final int maxRetainedCapacity;
+
+	public OutputBufferPool(int maxPooledBuffers, Supplier<? extends T> factory) {
+		this(maxPooledBuffers, DEFAULT_MAX_RETAINED_CAPACITY, factory);
+	}
+
+	public OutputBufferPool(int maxPooledBuffers, int maxRetainedCapacity, Supplier<? extends T> factory) {
+		this.available = new ArrayBlockingQueue<>(maxPooledBuffers);
+		this.maxRetainedCapacity = maxRetainedCapacity;
+		this.factory = factory;
+	}
+
+	/**
+	 * Get an empty buffer.
+	 *
+	 * @return
+	 */
+	public T acquire() {
+		T buffer = available.poll();
+		if (buffer == null) {
+			buffer = factory.get();
+			buffer.setPool(this);
+		}
+		buffer.pooled = false;
+		return buffer;
+	}
+
+	@SuppressWarnings("unchecked")
+	void release(OutputBuffer buffer) {
+		if (buffer.pooled || buffer.capacity() > maxRetainedCapacity) {
+			return;
+		}
+		buffer.reset();
+		buffer.pooled = true;
+		// If the pool is full the buffer is simply dropped
+		available.offer((T) buffer);
+	}
+
+	public int getAvailableCount() {
+		return available.size();
+	}
+}
@@ -0,0 +1,71 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URI;
+
+import javax.annotation.Nonnull;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.java.ClassName;
+
+/**
+ * Destination for generated sources.
+ *
+ * @see FileSystemOutputSink
+ * @see ArchiveOutputSink
+ * @see InMemoryOutputSink
+ */
+public interface OutputSink extends Closeable {
+	/**
+	 * Write the source for {@code className}.
+	 *
+	 * The sink takes ownership of the {@code buffer}: the buffer must not be used by the caller afterwards.
+	 *
+	 * @param type the type for which the source was generated, for reporting failures
+	 * @param className
+	 * @param buffer
+	 * @throws IOException
+	 */
+	void write(@Nonnull URI type, @Nonnull ClassName className, @Nonnull OutputBuffer buffer) throws IOException;
+
+	/**
+	 * Wait until all previously written sources are stored.
+	 *
+	 * @throws CodeGenerationException if storing a source failed
+	 */
+	void flush() throws CodeGenerationException;
+
+	/**
+	 * Get the {@code '/'}-separated path of the source file for {@code className}, relative to the source root.
+	 *
+	 * @param className
+	 * @return
+	 */
+	static String getSourceFileName(@Nonnull ClassName className) {
+		StringBuilder fqcnBuilder = new StringBuilder();
+		if (!className.getPackageName().isEmpty()) {
+			fqcnBuilder.append(className.getPackageName());
+			fqcnBuilder.append(".");
+		}
+		fqcnBuilder.append(className.getRawClassName());
+		return fqcnBuilder.toString().replace('.', '/') + ".java";
+	}
+}
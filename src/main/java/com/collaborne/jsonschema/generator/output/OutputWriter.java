@@ -0,0 +1,283 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+
+/**
+ * Writes rendered {@link OutputBuffer}s into files.
+ *
+ * An asynchronous writer hands the buffers to a bounded queue that is drained by dedicated writer threads, so that
+ * the filesystem latency overlaps with the generation. When the queue is full {@link #write(URI, Path, OutputBuffer)}
+ * blocks, which limits the memory held by pending output. Failures are reported by {@link #flush()}.
+ *
+ * Writer threads are virtual threads when the runtime supports them, and daemon threads otherwise.
+ */
+public class OutputWriter implements Closeable {
+	private static class Task {
+		private final URI type;
+		private final Path file;
+		private final OutputBuffer buffer;
+
+		public Task(URI type, Path file, OutputBuffer buffer) {
+			this.type = type;
+			this.file = file;
+			this.buffer = buffer;
+		}
+	}
+
+	/** Marker to stop a writer thread */
+	private static final Task STOP = new Task(null, null, null);
+
+	private final Logger logger = LoggerFactory.getLogger(OutputWriter.class);
+	private final Durability durability;
+	private final BlockingQueue<Task> queue;
+	private final Thread[] threads;
+	private final Object pendingLock = new Object();
+	private int pending;
+	private CodeGenerationException failure;
+
+	private OutputWriter(Durability durability, int threadCount, int queueCapacity) {
+		this.durability = durability;
+		if (threadCount == 0) {
+			this.queue = null;
+			this.threads = new Thread[0];
+			return;
+		}
+
+		this.queue = new ArrayBlockingQueue<>(queueCapacity);
+		this.threads = new Thread[threadCount];
+		ThreadFactory threadFactory = createThreadFactory();
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = threadFactory.newThread(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+			threads[i].start();
+		}
+	}
+
+	/**
+	 * Create a writer that writes in the calling thread.
+	 *
+	 * @param durability
+	 * @return
+	 */
+	public static OutputWriter synchronous(@Nonnull Durability durability) {
+		return new OutputWriter(durability, 0, 0);
+	}
+
+	/**
+	 * Create a writer that writes in {@code threadCount} writer threads.
+	 *
+	 * @param durability
+	 * @param threadCount number of writer threads
+	 * @param queueCapacity number of buffers that can be pending before {@link #write(URI, Path, OutputBuffer)} blocks
+	 * @return
+	 */
+	public static OutputWriter async(@Nonnull Durability durability, int threadCount, int queueCapacity) {
+		if (threadCount <= 0 || queueCapacity <= 0) {
+			throw new IllegalArgumentException("Thread count and queue capacity must be positive");
+		}
+		return new OutputWriter(durability, threadCount, queueCapacity);
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public boolean isAsync() {
+		return queue != null;
+	}
+
+	/**
+	 * Write the contents of {@code buffer} into {@code file}.
+	 *
+	 * The writer takes ownership of the buffer, and releases it when the contents are written.
+	 *
+	 * @param type the type for which the output was generated, for reporting failures
+	 * @param file
+	 * @param buffer
+	 * @throws IOException if writing failed, or the calling thread was interrupted while waiting for space in the queue
+	 */
+	public void write(@Nonnull URI type, @Nonnull Path file, @Nonnull OutputBuffer buffer) throws IOException {
+		if (queue == null) {
+			try {
+				durability.write(file, buffer);
+			} finally {
+				buffer.release();
+			}
+			return;
+		}
+
+		synchronized (pendingLock) {
+			pending++;
+		}
+		try {
+			queue.put(new Task(type, file, buffer));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			completed(null);
+			throw new InterruptedIOException("Interrupted while queueing " + file);
+		}
+	}
+
+	/**
+	 * Wait until all queued output has been written.
+	 *
+	 * Pending writes are always finished, an interrupt of the calling thread is restored afterwards.
+	 *
+	 * @throws CodeGenerationException for the first failed write since the last flush
+	 */
+	public void flush() throws CodeGenerationException {
+		CodeGenerationException result;
+		boolean interrupted = false;
+		synchronized (pendingLock) {
+			while (pending > 0) {
+				try {
+					pendingLock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			result = failure;
+			failure = null;
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (result != null) {
+			throw result;
+		}
+	}
+
+	/**
+	 * Stop the writer threads after the queued output has been written.
+	 *
+	 * Failures that were not reported through {@link #flush()} are logged.
+	 */
+	@Override
+	public void close() throws IOException {
+		for (int i = 0; i < threads.length; i++) {
+			try {
+				queue.put(STOP);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while stopping writer threads");
+			}
+		}
+		for (Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while stopping writer threads");
+			}
+		}
+		synchronized (pendingLock) {
+			if (failure != null) {
+				logger.error("Unreported output failure", failure);
+			}
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			Task task;
+			try {
+				task = queue.take();
+			} catch (InterruptedException e) {
+				logger.warn("Writer thread interrupted, stopping");
+				return;
+			}
+			if (task == STOP) {
+				return;
+			}
+
+			CodeGenerationException taskFailure = null;
+			try {
+				logger.debug("{}: Writing {}", task.type, task.file);
+				durability.write(task.file, task.buffer);
+			} catch (IOException|RuntimeException e) {
+				taskFailure = new CodeGenerationException(task.type, "Cannot write " + task.file, e);
+			} finally {
+				task.buffer.release();
+			}
+			completed(taskFailure);
+		}
+	}
+
+	private void completed(CodeGenerationException taskFailure) {
+		synchronized (pendingLock) {
+			if (taskFailure != null) {
+				if (failure == null) {
+					failure = taskFailure;
+				} else {
+					failure.addSuppressed(taskFailure);
+				}
+			}
+			pending--;
+			if (pending == 0) {
+				pendingLock.notifyAll();
+			}
+		}
+	}
+
+	private static ThreadFactory createThreadFactory() {
+		// Use virtual threads when running on a JVM that has them, while staying compatible with older runtimes
+		try {
+			Method ofVirtual = Thread.class.getMethod("ofVirtual");
+			Object builder = ofVirtual.invoke(null);
+			Method factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+			return (ThreadFactory) factory.invoke(builder);
+		} catch (ReflectiveOperationException|RuntimeException e) {
+			// Fall through
+		}
+
+		final ThreadFactory defaultThreadFactory = Executors.defaultThreadFactory();
+		final AtomicInteger threadCount = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = defaultThreadFactory.newThread(r);
+				thread.setName("output-writer-" + threadCount.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+}
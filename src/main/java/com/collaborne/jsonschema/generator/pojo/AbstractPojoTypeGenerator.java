@@ -18,22 +18,15 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.IOException;
-import java.net.URI;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 
 abstract class AbstractPojoTypeGenerator implements PojoTypeGenerator {
-	protected interface SchemaVisitor<T extends Exception> {
-		void visitSchema(URI type, SchemaTree schema) throws T;
-		void visitSchema(URI type) throws T;
-	}
-	
 	@Override
-	public ClassName generate(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer) throws IOException, CodeGenerationException {
+	public ClassName generate(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException {
 		ClassName className = context.getMapping().getClassName();
 		writer.writePackage(className);
 
@@ -42,25 +35,5 @@ abstract class AbstractPojoTypeGenerator implements PojoTypeGenerator {
 		return className;
 	}
 	
-	protected abstract void generateType(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer) throws IOException, CodeGenerationException;
-	
-	// XXX: do we need elementUri here, schema knows where it came from.
-	protected <T extends Exception> boolean visitSchema(URI elementUri, SchemaTree schema, SchemaVisitor<T> visitor) throws T {
-		JsonNode element = schema.getNode();
-		if (!element.isContainerNode()) {
-			return false;
-		}
-		
-		// We handle "id" here in the same way as the json-schema-validator: it's fairly non-trust-worthy.
-		// In a properly written document the id is useless, as we already had that with a $ref, and you cannot just modify things in place.
-		if (element.hasNonNull("$ref")) {
-			// A reference to something else.
-			String refValue = element.get("$ref").textValue();
-			visitor.visitSchema(elementUri.resolve(refValue));
-		} else {
-			visitor.visitSchema(elementUri, schema);
-		}
-		
-		return true;
-	}
+	protected abstract void generateType(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException;
 }
\ No newline at end of file
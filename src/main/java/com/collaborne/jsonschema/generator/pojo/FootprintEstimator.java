@@ -0,0 +1,315 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.net.URI;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.FootprintReport;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
+
+/**
+ * Estimates the heap footprint of generated classes from the field types of their {@link PojoPropertyGenerator}s.
+ *
+ * The estimates follow the HotSpot object layout: a 12 byte header (16 bytes without compressed references), fields
+ * packed by size with smaller fields filling the gap before 8 byte fields, and instances aligned to 8 bytes.
+ */
+class FootprintEstimator {
+	/** Number of elements assumed for collections without a {@code minItems} */
+	public static final int DEFAULT_EXPECTED_COLLECTION_SIZE = 10;
+	private static final int OBJECT_ALIGNMENT = 8;
+	private static final Map<String, Integer> PRIMITIVE_SIZES = new HashMap<>();
+	private static final Map<String, Integer> BOXED_SIZES = new HashMap<>();
+	static {
+		PRIMITIVE_SIZES.put(Boolean.TYPE.getName(), Integer.valueOf(1));
+		PRIMITIVE_SIZES.put(Byte.TYPE.getName(), Integer.valueOf(1));
+		PRIMITIVE_SIZES.put(Character.TYPE.getName(), Integer.valueOf(2));
+		PRIMITIVE_SIZES.put(Short.TYPE.getName(), Integer.valueOf(2));
+		PRIMITIVE_SIZES.put(Integer.TYPE.getName(), Integer.valueOf(4));
+		PRIMITIVE_SIZES.put(Float.TYPE.getName(), Integer.valueOf(4));
+		PRIMITIVE_SIZES.put(Long.TYPE.getName(), Integer.valueOf(8));
+		PRIMITIVE_SIZES.put(Double.TYPE.getName(), Integer.valueOf(8));
+		BOXED_SIZES.put(Boolean.class.getName(), Integer.valueOf(1));
+		BOXED_SIZES.put(Byte.class.getName(), Integer.valueOf(1));
+		BOXED_SIZES.put(Character.class.getName(), Integer.valueOf(2));
+		BOXED_SIZES.put(Short.class.getName(), Integer.valueOf(2));
+		BOXED_SIZES.put(Integer.class.getName(), Integer.valueOf(4));
+		BOXED_SIZES.put(Float.class.getName(), Integer.valueOf(4));
+		BOXED_SIZES.put(Long.class.getName(), Integer.valueOf(8));
+		BOXED_SIZES.put(Double.class.getName(), Integer.valueOf(8));
+	}
+	
+	private final boolean compressedOops;
+	private final int headerSize;
+	private final int referenceSize;
+	private final Map<ClassName, ClassName> primitiveListElementClassNames;
+	
+	/**
+	 * Create the estimator.
+	 * 
+	 * @param compressedOops
+	 * @param primitiveListElementClassNames the element types of the primitive list classes
+	 */
+	public FootprintEstimator(boolean compressedOops, Map<ClassName, ClassName> primitiveListElementClassNames) {
+		this.compressedOops = compressedOops;
+		this.primitiveListElementClassNames = primitiveListElementClassNames;
+		this.headerSize = compressedOops ? 12 : 16;
+		this.referenceSize = compressedOops ? 4 : 8;
+	}
+	
+	public boolean isCompressedOops() {
+		return compressedOops;
+	}
+	
+	/**
+	 * Estimate the size of an instance of a class with the given properties.
+	 * 
+	 * @param propertyGenerators
+	 * @param additionalPropertiesClassName the map class holding the additional properties, or {@code null}
+	 * @return
+	 */
+	public long getShallowSize(List<PojoPropertyGenerator> propertyGenerators, ClassName additionalPropertiesClassName) {
+		long fieldsSize = additionalPropertiesClassName != null ? referenceSize : 0;
+		long smallFieldsSize = fieldsSize;
+		boolean hasLargeFields = false;
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			for (ClassName fieldType : propertyGenerator.getFieldTypes()) {
+				int fieldSize = getFieldSize(fieldType);
+				fieldsSize += fieldSize;
+				if (fieldSize < 8) {
+					smallFieldsSize += fieldSize;
+				} else {
+					hasLargeFields = true;
+				}
+			}
+		}
+		return getObjectSize(fieldsSize, smallFieldsSize, hasLargeFields);
+	}
+	
+	/**
+	 * Estimate the footprint of a generated class.
+	 * 
+	 * @param className
+	 * @param type
+	 * @param schema the schema of the class
+	 * @param propertyGenerators the generators of the properties of the class, in the order of the schema properties
+	 * @param additionalPropertiesClassName the map class holding the additional properties, or {@code null}
+	 * @param shallowSizes the sizes of the other generated classes
+	 * @return
+	 */
+	public FootprintReport.Entry estimate(ClassName className, URI type, SchemaType schema, List<PojoPropertyGenerator> propertyGenerators, ClassName additionalPropertiesClassName, Map<ClassName, Long> shallowSizes) {
+		FootprintReport.Entry entry = new FootprintReport.Entry();
+		entry.setClassName(className);
+		entry.setType(type);
+		entry.setShallowSize(getShallowSize(propertyGenerators, additionalPropertiesClassName));
+		long retainedSize = entry.getShallowSize();
+		for (int i = 0; i < propertyGenerators.size(); i++) {
+			for (ClassName fieldType : propertyGenerators.get(i).getFieldTypes()) {
+				FootprintReport.Field field = new FootprintReport.Field();
+				field.setName(schema.getPropertyName(i));
+				field.setType(fieldType);
+				field.setSize(getFieldSize(fieldType));
+				field.setRetainedSize(getRetainedSize(fieldType, schema.getPropertyType(i), shallowSizes));
+				entry.getFields().add(field);
+				retainedSize += field.getRetainedSize();
+			}
+		}
+		if (additionalPropertiesClassName != null) {
+			FootprintReport.Field field = new FootprintReport.Field();
+			field.setName("additionalProperties");
+			field.setType(additionalPropertiesClassName);
+			field.setSize(referenceSize);
+			field.setRetainedSize(getStringMapSize(additionalPropertiesClassName, schema.getAdditionalProperties(), shallowSizes));
+			entry.getFields().add(field);
+			retainedSize += field.getRetainedSize();
+		}
+		entry.setRetainedSize(retainedSize);
+		return entry;
+	}
+	
+	private int getFieldSize(ClassName fieldType) {
+		if (fieldType.getPackageName().isEmpty()) {
+			Integer primitiveSize = PRIMITIVE_SIZES.get(fieldType.getRawClassName());
+			if (primitiveSize != null) {
+				return primitiveSize.intValue();
+			}
+		}
+		return referenceSize;
+	}
+	
+	/**
+	 * Estimate the size of the objects owned by a field of the given type.
+	 * 
+	 * @param fieldType
+	 * @param schema the schema of the property
+	 * @param shallowSizes the sizes of the generated classes
+	 * @return
+	 */
+	private long getRetainedSize(ClassName fieldType, SchemaType schema, Map<ClassName, Long> shallowSizes) {
+		String fqcn = getRawName(fieldType);
+		ClassName primitiveElementType = primitiveListElementClassNames.get(fieldType);
+		if (primitiveElementType != null) {
+			// Primitive list: elements, size, modCount, and the unboxed values (booleans as bits)
+			int expectedSize = getExpectedCollectionSize(schema);
+			long size = getObjectSize(referenceSize + 8, 8, false);
+			if (expectedSize > 0) {
+				if (Boolean.TYPE.getName().equals(primitiveElementType.getRawClassName())) {
+					size += getArraySize(8, (expectedSize + 63) / 64);
+				} else {
+					size += getArraySize(PRIMITIVE_SIZES.get(primitiveElementType.getRawClassName()).intValue(), Math.max(DEFAULT_EXPECTED_COLLECTION_SIZE, expectedSize));
+				}
+			}
+			return size;
+		} else if (List.class.getName().equals(fqcn) || "java.util.Collection".equals(fqcn)) {
+			// ArrayList: elementData, size, modCount
+			int expectedSize = getExpectedCollectionSize(schema);
+			long size = getObjectSize(referenceSize + 8, 8, false);
+			if (expectedSize > 0) {
+				size += getArraySize(referenceSize, Math.max(DEFAULT_EXPECTED_COLLECTION_SIZE, expectedSize));
+				size += expectedSize * getElementSize(getTypeArgument(fieldType, 0), schema != null ? schema.getItems() : null, shallowSizes);
+			}
+			return size;
+		} else if (Map.class.getName().equals(fqcn)) {
+			// HashMap: table, entrySet, keySet, values, size, modCount, threshold, loadFactor
+			int expectedSize = getExpectedCollectionSize(null);
+			long size = getObjectSize(4 * referenceSize + 16, 16, false);
+			int capacity = Integer.highestOneBit(Math.max(1, (int) (expectedSize / 0.75f)) * 2 - 1);
+			size += getArraySize(referenceSize, capacity);
+			// Nodes: hash, key, value, next
+			long nodeSize = getObjectSize(3 * referenceSize + 4, 3 * referenceSize + 4, false);
+			size += expectedSize * (nodeSize + getElementSize(getTypeArgument(fieldType, 0), null, shallowSizes) + getElementSize(getTypeArgument(fieldType, 1), schema != null ? schema.getAdditionalProperties() : null, shallowSizes));
+			return size;
+		} else if (shallowSizes.containsKey(fieldType)) {
+			// Reported in its own entry
+			return 0;
+		}
+		return getValueSize(fieldType, schema);
+	}
+	
+	/**
+	 * Estimate the size of a {@code StringMap} with the expected number of entries.
+	 * 
+	 * @param mapClassName
+	 * @param schema the schema of the values
+	 * @param shallowSizes the sizes of the generated classes
+	 * @return
+	 * @see StringMaps
+	 */
+	private long getStringMapSize(ClassName mapClassName, SchemaType schema, Map<ClassName, Long> shallowSizes) {
+		// keys, values, table, size, modCount
+		int expectedSize = getExpectedCollectionSize(null);
+		long size = getObjectSize(3 * referenceSize + 8, 3 * referenceSize + 8, false);
+		int capacity = Math.max(8, Integer.highestOneBit(expectedSize - 1) << 1);
+		size += getArraySize(referenceSize, capacity);
+		size += getArraySize(4, Integer.highestOneBit(capacity * 2 - 1) << 1);
+		ClassName primitiveValueType = StringMaps.getPrimitiveValueClassName(mapClassName.getPackageName(), mapClassName);
+		if (primitiveValueType != null) {
+			size += getArraySize(PRIMITIVE_SIZES.get(primitiveValueType.getRawClassName()).intValue(), capacity);
+		} else {
+			size += getArraySize(referenceSize, capacity);
+			size += expectedSize * getElementSize(getTypeArgument(mapClassName, 0), schema, shallowSizes);
+		}
+		// The keys
+		size += expectedSize * getValueSize(ClassName.create(String.class), null);
+		return size;
+	}
+	
+	private long getElementSize(ClassName elementType, SchemaType schema, Map<ClassName, Long> shallowSizes) {
+		if (elementType == null) {
+			return 0;
+		}
+		Long shallowSize = shallowSizes.get(elementType);
+		if (shallowSize != null) {
+			return shallowSize.longValue();
+		}
+		if (elementType.getPackageName().isEmpty() && PRIMITIVE_SIZES.containsKey(elementType.getRawClassName())) {
+			// Collections can only hold the boxed values
+			return getBoxedSize(PRIMITIVE_SIZES.get(elementType.getRawClassName()).intValue());
+		}
+		return getValueSize(elementType, schema);
+	}
+	
+	/**
+	 * Estimate the size of a boxed primitive or string object.
+	 * 
+	 * @param valueType
+	 * @param schema
+	 * @return the size, or 0 for other types
+	 */
+	private long getValueSize(ClassName valueType, SchemaType schema) {
+		String fqcn = getRawName(valueType);
+		Integer boxedSize = BOXED_SIZES.get(fqcn);
+		if (boxedSize != null) {
+			return getBoxedSize(boxedSize.intValue());
+		} else if (String.class.getName().equals(fqcn)) {
+			// value, hash, coder, hashIsZero; assume one byte per character
+			int expectedLength = schema != null ? Math.max(0, schema.getMinLength()) : 0;
+			return getObjectSize(referenceSize + 6, referenceSize + 6, false) + getArraySize(1, expectedLength);
+		}
+		return 0;
+	}
+	
+	private long getBoxedSize(int valueSize) {
+		return getObjectSize(valueSize, valueSize < 8 ? valueSize : 0, valueSize >= 8);
+	}
+	
+	private long getArraySize(int elementSize, int length) {
+		// Header and length, elements start aligned to the element size
+		long size = align(headerSize + 4, Math.min(elementSize, OBJECT_ALIGNMENT));
+		return align(size + (long) elementSize * length, OBJECT_ALIGNMENT);
+	}
+	
+	private long getObjectSize(long fieldsSize, long smallFieldsSize, boolean hasLargeFields) {
+		long size = headerSize + fieldsSize;
+		int headerGap = (int) (align(headerSize, 8) - headerSize);
+		if (hasLargeFields && smallFieldsSize < headerGap) {
+			// 8 byte fields are aligned, and there are not enough smaller fields to fill the gap after the header
+			size += headerGap - smallFieldsSize;
+		}
+		return align(size, OBJECT_ALIGNMENT);
+	}
+	
+	private static int getExpectedCollectionSize(SchemaType schema) {
+		int expectedSize = DEFAULT_EXPECTED_COLLECTION_SIZE;
+		if (schema != null) {
+			if (schema.getMinItems() != SchemaType.NO_LIMIT && schema.getMinItems() > 0) {
+				expectedSize = schema.getMinItems();
+			}
+			if (schema.getMaxItems() != SchemaType.NO_LIMIT && schema.getMaxItems() < expectedSize) {
+				expectedSize = schema.getMaxItems();
+			}
+		}
+		return expectedSize;
+	}
+	
+	private static ClassName getTypeArgument(ClassName className, int index) {
+		ClassName[] typeArguments = className.getTypeArguments();
+		return typeArguments != null && typeArguments.length > index ? typeArguments[index] : null;
+	}
+	
+	private static String getRawName(ClassName className) {
+		return className.getPackageName().isEmpty() ? className.getRawClassName() : className.getPackageName() + "." + className.getRawClassName();
+	}
+	
+	private static long align(long size, int alignment) {
+		return (size + alignment - 1) / alignment * alignment;
+	}
+}
@@ -0,0 +1,194 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.java.Visibility;
+
+/**
+ * Generator for properties of immutable classes, which are held in {@code final} fields and set through the builder.
+ *
+ * The builder has a field with the same name as the property, so the statements reading the property with the
+ * streaming codecs work unchanged in the builder.
+ *
+ * Lists are copied from the builder, so that neither the builder nor the caller can change the instance later. Lists
+ * of boxed values are exposed as unmodifiable views, primitive lists cannot be wrapped and the getter returns a copy.
+ */
+class ImmutablePojoPropertyGenerator extends SimplePojoPropertyGenerator {
+	public static final ClassName OBJECTS = ClassName.create(Objects.class);
+	private static final ClassName LIST = ClassName.create(List.class);
+	private static final ClassName ARRAY_LIST = ClassName.create(ArrayList.class);
+	private static final ClassName COLLECTIONS = ClassName.create(Collections.class);
+	
+	private final ClassName primitiveListElementClassName;
+	
+	/**
+	 * Create the generator.
+	 * 
+	 * @param className
+	 * @param propertyName
+	 * @param primitiveListElementClassName the element type if {@code className} is a primitive list, otherwise {@code null}
+	 */
+	public ImmutablePojoPropertyGenerator(ClassName className, String propertyName, ClassName primitiveListElementClassName) {
+		super(className, propertyName);
+		this.primitiveListElementClassName = primitiveListElementClassName;
+	}
+	
+	@Override
+	public void generateImports(JavaWriter writer) throws IOException {
+		super.generateImports(writer);
+		writer.writeImport(OBJECTS);
+		if (isList()) {
+			writer.writeImport(ARRAY_LIST);
+			writer.writeImport(COLLECTIONS);
+		}
+	}
+	
+	@Override
+	public void generateGetter(JavaWriter writer) throws IOException {
+		if (primitiveListElementClassName == null) {
+			super.generateGetter(writer);
+			return;
+		}
+		writer.writeMethodBodyStart(Visibility.PUBLIC, getClassName(), getPrefixedPropertyName("get", getPropertyName()));
+		writer.writeCode("return " + getCopyExpression(writer, getPropertyName()) + ";");
+		writer.writeMethodBodyEnd();
+	}
+	
+	@Override
+	public void generateFields(JavaWriter writer) throws IOException {
+		writer.writeCode("private final " + writer.getShortName(getClassName()) + " " + getPropertyName() + ";");
+	}
+	
+	@Override
+	public void generateSetter(JavaWriter writer) throws IOException {
+		// Set through the builder
+	}
+	
+	/**
+	 * Write the field of the builder holding the property.
+	 * 
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void generateBuilderField(JavaWriter writer) throws IOException {
+		// Visible to the constructors of the parts of the class
+		writer.writeCode(writer.getShortName(getClassName()) + " " + getPropertyName() + ";");
+	}
+	
+	/**
+	 * Write the setter of the builder, which returns the builder.
+	 * 
+	 * @param writer
+	 * @param builderClassName
+	 * @throws IOException
+	 */
+	public void generateBuilderSetter(JavaWriter writer, ClassName builderClassName) throws IOException {
+		writer.writeMethodBodyStart(Visibility.PUBLIC, builderClassName, getPrefixedPropertyName("set", getPropertyName()), getClassName(), "value");
+		writer.writeCode("this." + getPropertyName() + " = value;");
+		writer.writeCode("return this;");
+		writer.writeMethodBodyEnd();
+	}
+	
+	/**
+	 * Write the statement of {@code toBuilder()} copying the property into the {@code builder}.
+	 * 
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void generateCopyToBuilder(JavaWriter writer) throws IOException {
+		// The field may be in a super part
+		writer.writeCode("builder." + getPropertyName() + " = " + getPrefixedPropertyName("get", getPropertyName()) + "();");
+	}
+	
+	/**
+	 * Write the statement of the constructor taking the property from the {@code builder}.
+	 * 
+	 * @param writer
+	 * @throws IOException
+	 */
+	public void generateAssignment(JavaWriter writer) throws IOException {
+		writer.writeCode("this." + getPropertyName() + " = " + getCopyExpression(writer, "builder." + getPropertyName()) + ";");
+	}
+	
+	/**
+	 * Get the expression copying the property {@code value}, so that changes to it are not visible in the instance.
+	 * 
+	 * @param writer
+	 * @param value
+	 * @return
+	 */
+	private String getCopyExpression(JavaWriter writer, String value) {
+		if (primitiveListElementClassName != null) {
+			String name = PrimitiveLists.getName(primitiveListElementClassName);
+			return value + " != null ? " + writer.getShortName(getClassName()) + ".of(" + value + ".to" + name + "Array()) : null";
+		} else if (isList()) {
+			return value + " != null ? " + writer.getShortName(COLLECTIONS) + ".unmodifiableList(new " + writer.getShortName(ARRAY_LIST) + "<>(" + value + ")) : null";
+		}
+		return value;
+	}
+	
+	private boolean isList() {
+		return LIST.getPackageName().equals(getClassName().getPackageName()) && LIST.getRawClassName().equals(getClassName().getRawClassName());
+	}
+	
+	/**
+	 * Get the expression comparing the property of {@code this} and {@code other}.
+	 * 
+	 * @param writer
+	 * @return
+	 */
+	public String getEqualsExpression(JavaWriter writer) {
+		String field = getPropertyName();
+		switch (getPrimitiveTypeName()) {
+		case "double":
+			// Like Double.equals(), so that equal values have equal hash codes
+			return "Double.compare(this." + field + ", other." + field + ") == 0";
+		case "":
+			return writer.getShortName(OBJECTS) + ".equals(this." + field + ", other." + field + ")";
+		default:
+			return "this." + field + " == other." + field;
+		}
+	}
+	
+	/**
+	 * Get the expression computing the hash code of the property.
+	 * 
+	 * @param writer
+	 * @return
+	 */
+	public String getHashCodeExpression(JavaWriter writer) {
+		String field = getPropertyName();
+		String primitiveTypeName = getPrimitiveTypeName();
+		if (primitiveTypeName.isEmpty()) {
+			return writer.getShortName(OBJECTS) + ".hashCode(this." + field + ")";
+		}
+		return PrimitiveLists.getBoxedClassName(getClassName()).getRawClassName() + ".hashCode(this." + field + ")";
+	}
+	
+	private String getPrimitiveTypeName() {
+		return getClassName().getPackageName().isEmpty() ? getClassName().getRawClassName() : "";
+	}
+}
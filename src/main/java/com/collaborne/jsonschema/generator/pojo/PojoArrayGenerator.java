@@ -18,50 +18,40 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.IOException;
-import java.net.URI;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
-import com.github.fge.jackson.jsonpointer.JsonPointer;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 
 public class PojoArrayGenerator extends AbstractPojoTypeGenerator {
 	@Override
-	public ClassName generate(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer) throws IOException, CodeGenerationException {
-		// In the easy case we just have type=array, items=SCHEMA, which means we produce a List<SCHEMA-TYPE> reference
+	public ClassName generate(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException {
+		// In the easy case we just have type=array, items=SCHEMA, which means we produce a List<SCHEMA-TYPE> reference, or a
+		// primitive list for primitive SCHEMA-TYPEs
 		// In other cases we might have to also produce a class extending AbstractList implementing the restrictions given
 		// XXX: for now we just basically ignore the other restrictions
-		if (schema.getNode().hasNonNull("items")) {
-			SchemaTree itemsSchema = schema.append(JsonPointer.of("items"));
-			URI elementUri = schema.getLoadingRef().toURI();
-			AtomicReference<ClassName> elementClassName = new AtomicReference<>();
-			visitSchema(elementUri, itemsSchema, new SchemaVisitor<CodeGenerationException>() {
-				@Override
-				public void visitSchema(URI type, SchemaTree schema) throws CodeGenerationException {
-					visitSchema(type);
-				}
-
-				@Override
-				public void visitSchema(URI type) throws CodeGenerationException {
-					elementClassName.set(context.getGenerator().generate(type));
-				}
-			});
-			
-			if (elementClassName.get() == null) {
+		SchemaType items = schema.getItems();
+		if (items != null) {
+			ClassName elementClassName = context.getGenerator().generate(items.getUri());
+			if (elementClassName == null) {
 				throw new CodeGenerationException(context.getType(), "Unknown element type: cannot create array type");
 			}
 			
-			return ClassName.create(List.class, elementClassName.get());
+			// Avoid boxing primitive elements where possible, collections can only hold the boxed values otherwise
+			ClassName listClassName = context.getPrimitiveListClassName(elementClassName);
+			if (listClassName != null) {
+				return listClassName;
+			}
+			return ClassName.create(List.class, PrimitiveLists.getBoxedClassName(elementClassName));
 		}
 		
 		return super.generate(context, schema, writer);
 	}
 	
 	@Override
-	protected void generateType(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer) throws IOException, CodeGenerationException {
+	protected void generateType(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException {
 		throw new CodeGenerationException(context.getType(), new UnsupportedOperationException("Cannot generate for non-items-based arrays"));
 	}
 }
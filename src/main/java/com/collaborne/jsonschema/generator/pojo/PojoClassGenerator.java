@@ -21,142 +21,620 @@ import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import java.util.StringJoiner;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.InvalidTypeReferenceException;
+import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
 import com.collaborne.jsonschema.generator.java.Kind;
 import com.collaborne.jsonschema.generator.java.Visibility;
 import com.collaborne.jsonschema.generator.model.Mapping;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jackson.jsonpointer.JsonPointer;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 
 /**
  * Generator for a "class" with properties.
  */
 class PojoClassGenerator extends AbstractPojoTypeGenerator {
-	private interface PropertyVisitor<T extends Exception> {
-		void visitProperty(String propertyName, URI type, SchemaTree schema) throws T;
-		void visitProperty(String propertyName, URI type) throws T;
-	}
-	
-	private final Logger logger = LoggerFactory.getLogger(PojoClassGenerator.class);
-	
-	protected <T extends Exception> boolean visitProperties(SchemaTree schema, PojoClassGenerator.PropertyVisitor<T> visitor) throws T {
-		JsonNode propertiesNode = schema.getNode().get("properties");
-		if (propertiesNode == null || !propertiesNode.isContainerNode()) {
-			return false;
-		}
-		
-		for (Iterator<String> fieldIterator = propertiesNode.fieldNames(); fieldIterator.hasNext(); ) {
-			String fieldName = fieldIterator.next();
-
-			SchemaTree propertySchema = schema.append(JsonPointer.of("properties", fieldName));
-			PojoClassGenerator.SchemaVisitor<T> schemaVisitor = new PojoClassGenerator.SchemaVisitor<T>() {
-				@Override
-				public void visitSchema(URI type, SchemaTree schema) throws T {
-					visitor.visitProperty(fieldName, type, schema);
-				}
-				
-				@Override
-				public void visitSchema(URI type) throws T {
-					visitor.visitProperty(fieldName, type);
-				}
-			};
-			
-			// XXX: what about "relative" references, won't adding a '#' break resolving those? Are those legal?
-			URI elementUri = propertySchema.getLoadingRef().toURI().resolve("#" + propertySchema.getPointer().toString());
-			if (!visitSchema(elementUri, propertySchema, schemaVisitor)) {
-				// XXX: can there be meta information here?
-				// XXX: context information missing here
-				logger.warn("{}: not a container value");
-			}
-		}
-		
-		return true;
-	}
+	private static final ClassName STRING_JOINER = ClassName.create(StringJoiner.class);
 	
-	protected Set<URI> getRequiredTypes(SchemaTree schema) {
+	@Override
+	public Set<URI> getRequiredTypes(SchemaType schema) {
 		Set<URI> requiredTypes = new HashSet<>();
-		
-		SchemaVisitor<RuntimeException> schemaVisitor = new SchemaVisitor<RuntimeException>() {
-			@Override
-			public void visitSchema(URI type, SchemaTree schema) {
-				visitSchema(type);
-			}
-			
-			@Override
-			public void visitSchema(URI type) {
-				requiredTypes.add(type);
-			}
-		}; 
-		
-		visitProperties(schema, new PropertyVisitor<RuntimeException>() {
-			@Override
-			public void visitProperty(String propertyName, URI type, SchemaTree schema) {
-				visitProperty(propertyName, type);
-			}
-			
-			@Override
-			public void visitProperty(String propertyName, URI type) {
-				schemaVisitor.visitSchema(type);
-			}
-		});
+		for (int i = 0; i < schema.getPropertyCount(); i++) {
+			requiredTypes.add(schema.getPropertyType(i).getUri());
+		}
 		
 		// Check if "additionalProperties" is a schema as well, if so we need to be able to resolve that one.
-		if (schema.getNode().hasNonNull("additionalProperties")) {
-			SchemaTree additionalPropertiesSchema = schema.append(JsonPointer.of("additionalProperties"));
-			URI additionalPropertiesUri = additionalPropertiesSchema.getLoadingRef().toURI().resolve("#" + additionalPropertiesSchema.getPointer().toString());
-			visitSchema(additionalPropertiesUri, additionalPropertiesSchema, schemaVisitor);
+		if (schema.getAdditionalProperties() != null) {
+			requiredTypes.add(schema.getAdditionalProperties().getUri());
 		}
 		return requiredTypes;
 	}
 	
 	@Override
-	public void generateType(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer) throws IOException, CodeGenerationException {
+	public void useSupportClasses(PojoCodeGenerationContext context, SchemaType schema) throws CodeGenerationException {
+		// Primitive lists are registered when generating the array types of the properties
+		getAdditionalPropertiesClassName(context, schema);
+	}
+	
+	@Override
+	public void generateType(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException {
 		Mapping mapping = context.getMapping();
+		boolean immutable = context.isImmutable();
+		ClassName builderClassName = immutable ? PojoGenerator.getBuilderClassName(mapping.getClassName()) : null;
 		
-		// Process the properties into PropertyGenerators
-		List<PojoPropertyGenerator> propertyGenerators = new ArrayList<>();
-
-		visitProperties(schema, new PropertyVisitor<CodeGenerationException>() {
-			@Override
-			public void visitProperty(String propertyName, URI type, SchemaTree schema) throws CodeGenerationException {
-				visitProperty(propertyName, type);
+		List<PojoPropertyGenerator> propertyGenerators = createPropertyGenerators(context, schema);
+		ClassName additionalPropertiesClassName = getAdditionalPropertiesClassName(context, schema);
+		
+		ClassName additionalPropertiesValueClassName = additionalPropertiesClassName != null ? getAdditionalPropertiesValueClassName(context, additionalPropertiesClassName) : null;
+		StreamingCodecs codecs = context.isStreamingCodecsEnabled() ? new StreamingCodecs(context) : null;
+		generateImports(writer, codecs, propertyGenerators, additionalPropertiesClassName, additionalPropertiesValueClassName, immutable);
+		
+		// Split wide types into a chain of public super classes, each one holding a part of the properties.
+		// Top-level parts go into their own source files: javac would add bridges for the accessors inherited from
+		// non-public classes to the type itself.
+		boolean nested = writer.isInClass();
+		int maxPropertiesPerClass = getMaxPropertiesPerClass(context);
+		int partCount = Math.max(1, (propertyGenerators.size() + maxPropertiesPerClass - 1) / maxPropertiesPerClass);
+		for (int part = 0; part < partCount; part++) {
+			ClassName partClassName = part == 0 ? mapping.getClassName() : getPartClassName(mapping.getClassName(), part);
+			ClassName superClassName = part + 1 < partCount ? getPartClassName(mapping.getClassName(), part + 1) : null;
+			List<PojoPropertyGenerator> partPropertyGenerators = propertyGenerators.subList(Math.min(propertyGenerators.size(), part * maxPropertiesPerClass), Math.min(propertyGenerators.size(), (part + 1) * maxPropertiesPerClass));
+			
+			JavaWriter partWriter = writer;
+			if (part > 0 && !nested) {
+				partWriter = context.createAdditionalSourceWriter(partClassName);
+				partWriter.writePackage(partClassName);
+				generateImports(partWriter, codecs, propertyGenerators, additionalPropertiesClassName, additionalPropertiesValueClassName, immutable);
 			}
-
-			@Override
-			public void visitProperty(String propertyName, URI type) throws CodeGenerationException {
-				propertyGenerators.add(context.createPropertyGenerator(type, propertyName));
+			try {
+				generatePart(partWriter, mapping, part, partClassName, superClassName, propertyGenerators, partPropertyGenerators, maxPropertiesPerClass, builderClassName, additionalPropertiesClassName, additionalPropertiesValueClassName, codecs, immutable);
+			} finally {
+				if (partWriter != writer) {
+					partWriter.close();
+				}
 			}
-		});
-		
+		}
+	}
+	
+	private void generateImports(JavaWriter writer, StreamingCodecs codecs, List<PojoPropertyGenerator> propertyGenerators, ClassName additionalPropertiesClassName, ClassName additionalPropertiesValueClassName, boolean immutable) throws IOException {
 		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
 			propertyGenerator.generateImports(writer);
 		}
-		
-		writer.writeClassStart(mapping.getClassName(), Kind.CLASS, Visibility.PUBLIC);
+		if (additionalPropertiesClassName != null) {
+			writer.writeImport(additionalPropertiesClassName);
+			for (ClassName typeArgument : additionalPropertiesClassName.getTypeArguments()) {
+				writer.writeImport(typeArgument);
+			}
+		}
+		if (immutable) {
+			writer.writeImport(STRING_JOINER);
+		}
+		if (codecs != null) {
+			generateStreamingCodecImports(writer, codecs, propertyGenerators);
+			if (additionalPropertiesValueClassName != null) {
+				codecs.generateImports(writer, additionalPropertiesValueClassName);
+			}
+		}
+	}
+	
+	private void generatePart(JavaWriter writer, Mapping mapping, int part, ClassName partClassName, ClassName superClassName, List<PojoPropertyGenerator> propertyGenerators, List<PojoPropertyGenerator> partPropertyGenerators, int maxPropertiesPerClass, ClassName builderClassName, ClassName additionalPropertiesClassName, ClassName additionalPropertiesValueClassName, StreamingCodecs codecs, boolean immutable) throws IOException, CodeGenerationException {
+		writer.writeClassStart(partClassName, superClassName, Kind.CLASS, Visibility.PUBLIC);
 		try {
 			// Write properties
-			for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			for (PojoPropertyGenerator propertyGenerator : partPropertyGenerators) {
 				propertyGenerator.generateFields(writer);
 			}
+			// The last part holds the additional properties, so that the names unknown to all parts end up there
+			if (additionalPropertiesClassName != null && superClassName == null) {
+				generateAdditionalProperties(writer, additionalPropertiesClassName, immutable);
+			}
+			if (immutable) {
+				if (part == 0) {
+					// Computed lazily, 0 until then
+					writer.writeCode("private int $hashCode;");
+				}
+				generateConstructor(writer, partClassName, builderClassName, partPropertyGenerators, part == 0, superClassName != null, superClassName == null ? additionalPropertiesClassName : null);
+			}
 			
 			// Write accessors
 			// TODO: style to create them: pairs, or ordered? 
 			// TODO: whether to generate setters in the first place, or just getters
-			for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			for (PojoPropertyGenerator propertyGenerator : partPropertyGenerators) {
 				propertyGenerator.generateGetter(writer);
 				propertyGenerator.generateSetter(writer);
 			}
+			
+			if (immutable) {
+				generateValueMethods(writer, partClassName, partPropertyGenerators, part == 0, superClassName != null, superClassName == null && additionalPropertiesClassName != null);
+			}
+			
+			if (codecs != null) {
+				generateStreamingCodecWriteFields(writer, codecs, partPropertyGenerators, part == 0, superClassName != null, additionalPropertiesClassName, additionalPropertiesValueClassName);
+				if (!immutable) {
+					generateStreamingCodecReadField(writer, codecs, partPropertyGenerators, "readField", superClassName != null ? "super.readField" : null, additionalPropertiesValueClassName);
+				}
+				if (part == 0) {
+					generateStreamingCodec(writer, mapping.getClassName(), builderClassName);
+				}
+			}
+			
+			if (immutable && part == 0) {
+				generateBuilder(writer, codecs, builderClassName, mapping.getClassName(), propertyGenerators, additionalPropertiesClassName, additionalPropertiesValueClassName, maxPropertiesPerClass);
+			}
 		} finally {
 			writer.writeClassEnd();
 		}
 	}
+	
+	/**
+	 * Process the properties of {@code schema} into {@link PojoPropertyGenerator}s.
+	 * 
+	 * @param context
+	 * @param schema
+	 * @return the property generators, in the order of the properties
+	 * @throws CodeGenerationException
+	 */
+	List<PojoPropertyGenerator> createPropertyGenerators(PojoCodeGenerationContext context, SchemaType schema) throws CodeGenerationException {
+		List<PojoPropertyGenerator> propertyGenerators = new ArrayList<>(schema.getPropertyCount());
+		int maxPropertiesPerClass = getMaxPropertiesPerClass(context);
+		int presenceBit = 0;
+		for (int i = 0; i < schema.getPropertyCount(); i++) {
+			if (i % maxPropertiesPerClass == 0) {
+				// Each part of the class has its own presence masks
+				presenceBit = 0;
+			}
+			PojoPropertyGenerator propertyGenerator = context.createPropertyGenerator(schema.getPropertyType(i).getUri(), schema.getPropertyName(i), schema.isPropertyRequired(i), presenceBit);
+			if (propertyGenerator instanceof PresenceTrackingPojoPropertyGenerator) {
+				presenceBit++;
+			}
+			propertyGenerators.add(propertyGenerator);
+		}
+		return propertyGenerators;
+	}
+	
+	/**
+	 * Get the map class holding the {@code additionalProperties} of {@code schema}.
+	 * 
+	 * @param context
+	 * @param schema
+	 * @return the map class, or {@code null} if there are no additional properties to keep
+	 * @throws CodeGenerationException
+	 * @see PojoGenerator#FEATURE_ADDITIONAL_PROPERTIES
+	 */
+	static ClassName getAdditionalPropertiesClassName(PojoCodeGenerationContext context, SchemaType schema) throws CodeGenerationException {
+		if (schema.getAdditionalProperties() == null) {
+			return null;
+		}
+		URI type = schema.getAdditionalProperties().getUri();
+		ClassName valueClassName = context.getGenerator().generate(type);
+		if (valueClassName == null) {
+			throw new InvalidTypeReferenceException(type);
+		}
+		return context.getStringMapClassName(valueClassName);
+	}
+	
+	/**
+	 * Get the type of the values returned by {@code valueAt(int)} of the map class {@code mapClassName}.
+	 * 
+	 * @param context
+	 * @param mapClassName
+	 * @return
+	 */
+	private static ClassName getAdditionalPropertiesValueClassName(PojoCodeGenerationContext context, ClassName mapClassName) {
+		ClassName primitiveValueClassName = context.getStringMapPrimitiveValueClassName(mapClassName);
+		return primitiveValueClassName != null ? primitiveValueClassName : mapClassName.getTypeArguments()[0];
+	}
+	
+	/**
+	 * Write the field holding the additional properties, and the accessor for it.
+	 * 
+	 * The accessor has no {@code get} prefix, so that it is not mistaken for a property.
+	 * 
+	 * @param writer
+	 * @param mapClassName
+	 * @param immutable whether the constructor initializes the field from the builder
+	 * @throws IOException
+	 */
+	private static void generateAdditionalProperties(JavaWriter writer, ClassName mapClassName, boolean immutable) throws IOException {
+		if (immutable) {
+			writer.writeCode("private final " + writer.getShortName(mapClassName) + " $additionalProperties;");
+		} else {
+			writer.writeCode("private final " + writer.getShortName(mapClassName) + " $additionalProperties = " + getNewStringMapExpression(writer, mapClassName) + ";");
+		}
+		writer.writeMethodBodyStart(Visibility.PUBLIC, mapClassName, "additionalProperties");
+		if (immutable) {
+			// The map class cannot be wrapped, so hand out a copy
+			writer.writeCode(writer.getShortName(mapClassName) + " additionalProperties = " + getNewStringMapExpression(writer, mapClassName) + ";");
+			writer.writeCode("additionalProperties.putAll($additionalProperties);");
+			writer.writeCode("return additionalProperties;");
+		} else {
+			writer.writeCode("return $additionalProperties;");
+		}
+		writer.writeMethodBodyEnd();
+	}
+	
+	private static String getNewStringMapExpression(JavaWriter writer, ClassName mapClassName) {
+		String rawShortName = writer.getShortName(new ClassName(mapClassName.getPackageName(), mapClassName.getRawClassName()));
+		boolean generic = mapClassName.getTypeArguments().length > 0;
+		return "new " + rawShortName + (generic ? "<>" : "") + "()";
+	}
+	
+	/**
+	 * Write the constructor of a part of an immutable class, which takes the properties from the builder.
+	 * 
+	 * @param writer
+	 * @param partClassName
+	 * @param builderClassName
+	 * @param propertyGenerators the property generators of the part
+	 * @param firstPart whether the part is the class itself, which only the builder instantiates
+	 * @param hasSuperPart whether the part extends a further part
+	 * @param additionalPropertiesClassName the map class of the additional properties held by the part, or {@code null}
+	 * @throws IOException
+	 */
+	private static void generateConstructor(JavaWriter writer, ClassName partClassName, ClassName builderClassName, List<PojoPropertyGenerator> propertyGenerators, boolean firstPart, boolean hasSuperPart, ClassName additionalPropertiesClassName) throws IOException {
+		String rawClassName = partClassName.getRawClassName();
+		writer.writeCode((firstPart ? "private " : "") + rawClassName + "(" + writer.getShortName(builderClassName) + " builder) {");
+		writer.pushIndentLevel();
+		if (hasSuperPart) {
+			writer.writeCode("super(builder);");
+		}
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			((ImmutablePojoPropertyGenerator) propertyGenerator).generateAssignment(writer);
+		}
+		if (additionalPropertiesClassName != null) {
+			// Copy, so that the builder can be used further
+			writer.writeCode("this.$additionalProperties = " + getNewStringMapExpression(writer, additionalPropertiesClassName) + ";");
+			writer.writeCode("this.$additionalProperties.putAll(builder.$additionalProperties);");
+		}
+		writer.writeMethodBodyEnd();
+	}
+	
+	/**
+	 * Write the structural {@code equals}, {@code hashCode} and {@code toString} of an immutable class.
+	 * 
+	 * Each part compares, hashes and describes its own properties and then delegates to its super part, and the class
+	 * itself caches the hash code.
+	 * 
+	 * @param writer
+	 * @param partClassName
+	 * @param propertyGenerators the property generators of the part
+	 * @param firstPart whether the part is the class itself
+	 * @param hasSuperPart whether the part extends a further part
+	 * @param hasAdditionalProperties whether the part holds the additional properties
+	 * @throws IOException
+	 */
+	private static void generateValueMethods(JavaWriter writer, ClassName partClassName, List<PojoPropertyGenerator> propertyGenerators, boolean firstPart, boolean hasSuperPart, boolean hasAdditionalProperties) throws IOException {
+		ClassName booleanClassName = ClassName.create(Boolean.TYPE);
+		ClassName intClassName = ClassName.create(Integer.TYPE);
+		
+		List<String> conditions = new ArrayList<>();
+		if (hasSuperPart) {
+			conditions.add("super.$equalsProperties(other)");
+		}
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			conditions.add(((ImmutablePojoPropertyGenerator) propertyGenerator).getEqualsExpression(writer));
+		}
+		if (hasAdditionalProperties) {
+			conditions.add("this.$additionalProperties.equals(other.$additionalProperties)");
+		}
+		writer.writeMethodBodyStart(Visibility.DEFAULT, booleanClassName, "$equalsProperties", partClassName, "other");
+		// One statement per condition: javac compiles long chains of '&&' recursively
+		for (String condition : conditions) {
+			writer.writeCode("if (!(" + condition + ")) {");
+			writer.writeCode("\treturn false;");
+			writer.writeCode("}");
+		}
+		writer.writeCode("return true;");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.DEFAULT, intClassName, "$hashCodeProperties");
+		writer.writeCode("int hashCode = " + (hasSuperPart ? "super.$hashCodeProperties()" : "1") + ";");
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			writer.writeCode("hashCode = 31 * hashCode + " + ((ImmutablePojoPropertyGenerator) propertyGenerator).getHashCodeExpression(writer) + ";");
+		}
+		if (hasAdditionalProperties) {
+			writer.writeCode("hashCode = 31 * hashCode + this.$additionalProperties.hashCode();");
+		}
+		writer.writeCode("return hashCode;");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.DEFAULT, ClassName.VOID, "$toStringProperties", STRING_JOINER, "joiner");
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			writer.writeCode("joiner.add(" + JavaWriter.toStringLiteral(propertyGenerator.getPropertyName() + "=") + " + this." + propertyGenerator.getPropertyName() + ");");
+		}
+		// The super parts hold the later properties
+		if (hasSuperPart) {
+			writer.writeCode("super.$toStringProperties(joiner);");
+		}
+		if (hasAdditionalProperties) {
+			writer.writeCode("joiner.add(\"additionalProperties=\" + this.$additionalProperties);");
+		}
+		writer.writeMethodBodyEnd();
+		
+		if (!firstPart) {
+			return;
+		}
+		String shortName = writer.getShortName(partClassName);
+		writer.writeCode("@Override");
+		writer.writeMethodBodyStart(Visibility.PUBLIC, booleanClassName, "equals", ClassName.create(Object.class), "object");
+		writer.writeCode(
+			"if (object == this) {",
+			"\treturn true;",
+			"}",
+			"if (object == null || object.getClass() != getClass()) {",
+			"\treturn false;",
+			"}",
+			shortName + " other = (" + shortName + ") object;",
+			"return hashCode() == other.hashCode() && $equalsProperties(other);");
+		writer.writeMethodBodyEnd();
+		
+		// The fields are final, so racing threads compute the same value
+		writer.writeCode("@Override");
+		writer.writeMethodBodyStart(Visibility.PUBLIC, intClassName, "hashCode");
+		writer.writeCode(
+			"int hashCode = this.$hashCode;",
+			"if (hashCode == 0) {",
+			"\thashCode = $hashCodeProperties();",
+			"\tthis.$hashCode = hashCode;",
+			"}",
+			"return hashCode;");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeCode("@Override");
+		writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.create(String.class), "toString");
+		writer.writeCode(
+			writer.getShortName(STRING_JOINER) + " joiner = new " + writer.getShortName(STRING_JOINER) + "(\", \", " + JavaWriter.toStringLiteral(partClassName.getRawClassName() + "{") + ", \"}\");",
+			"$toStringProperties(joiner);",
+			"return joiner.toString();");
+		writer.writeMethodBodyEnd();
+	}
+	
+	/**
+	 * Write the builder of an immutable class, and the {@code builder()} and {@code toBuilder()} methods creating it.
+	 * 
+	 * The builder setters return the builder, and with streaming codecs the builder reads the properties.
+	 * 
+	 * @param writer
+	 * @param codecs the streaming codecs, or {@code null}
+	 * @param builderClassName
+	 * @param className
+	 * @param propertyGenerators the property generators of all parts
+	 * @param additionalPropertiesClassName the map class of the additional properties, or {@code null}
+	 * @param additionalPropertiesValueClassName the type of the values in that map, or {@code null}
+	 * @throws IOException
+	 */
+	private void generateBuilder(JavaWriter writer, StreamingCodecs codecs, ClassName builderClassName, ClassName className, List<PojoPropertyGenerator> propertyGenerators, ClassName additionalPropertiesClassName, ClassName additionalPropertiesValueClassName, int maxPropertiesPerMethod) throws IOException {
+		writer.writeMethodBodyStart(Visibility.PUBLIC, true, builderClassName, "builder", null);
+		writer.writeCode("return new " + writer.getShortName(builderClassName) + "();");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.PUBLIC, builderClassName, "toBuilder");
+		writer.writeCode(writer.getShortName(builderClassName) + " builder = new " + writer.getShortName(builderClassName) + "();");
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			((ImmutablePojoPropertyGenerator) propertyGenerator).generateCopyToBuilder(writer);
+		}
+		if (additionalPropertiesClassName != null) {
+			writer.writeCode("builder.$additionalProperties.putAll(additionalProperties());");
+		}
+		writer.writeCode("return builder;");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeClassStart(builderClassName, Kind.CLASS, Visibility.PUBLIC);
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			((ImmutablePojoPropertyGenerator) propertyGenerator).generateBuilderField(writer);
+		}
+		if (additionalPropertiesClassName != null) {
+			writer.writeCode("final " + writer.getShortName(additionalPropertiesClassName) + " $additionalProperties = " + getNewStringMapExpression(writer, additionalPropertiesClassName) + ";");
+			writer.writeMethodBodyStart(Visibility.PUBLIC, additionalPropertiesClassName, "additionalProperties");
+			writer.writeCode("return $additionalProperties;");
+			writer.writeMethodBodyEnd();
+		}
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			((ImmutablePojoPropertyGenerator) propertyGenerator).generateBuilderSetter(writer, builderClassName);
+		}
+		writer.writeMethodBodyStart(Visibility.PUBLIC, className, "build");
+		writer.writeCode("return new " + writer.getShortName(className) + "(this);");
+		writer.writeMethodBodyEnd();
+		if (codecs != null) {
+			// The builder holds all properties, so split the reading into a chain of methods like the parts of the class
+			int methodCount = Math.max(1, (propertyGenerators.size() + maxPropertiesPerMethod - 1) / maxPropertiesPerMethod);
+			for (int method = 0; method < methodCount; method++) {
+				List<PojoPropertyGenerator> methodPropertyGenerators = propertyGenerators.subList(Math.min(propertyGenerators.size(), method * maxPropertiesPerMethod), Math.min(propertyGenerators.size(), (method + 1) * maxPropertiesPerMethod));
+				boolean lastMethod = method + 1 == methodCount;
+				generateStreamingCodecReadField(writer, codecs, methodPropertyGenerators, getReadFieldMethodName(method), lastMethod ? null : getReadFieldMethodName(method + 1), lastMethod ? additionalPropertiesValueClassName : null);
+			}
+		}
+		writer.writeClassEnd();
+	}
+	
+	private static String getReadFieldMethodName(int method) {
+		return method == 0 ? "readField" : "readField" + method;
+	}
+	
+	private static int getMaxPropertiesPerClass(PojoCodeGenerationContext context) {
+		return Math.max(1, context.getGenerator().getFeature(PojoGenerator.FEATURE_MAX_PROPERTIES_PER_CLASS).intValue());
+	}
+	
+	private void generateStreamingCodecImports(JavaWriter writer, StreamingCodecs codecs, List<PojoPropertyGenerator> propertyGenerators) throws IOException {
+		writer.writeImport(StreamingCodecs.IO_EXCEPTION);
+		writer.writeImport(StreamingCodecs.JSON_GENERATOR);
+		writer.writeImport(StreamingCodecs.JSON_PARSER);
+		writer.writeImport(StreamingCodecs.JSON_TOKEN);
+		writer.writeImport(StreamingCodecs.JSON_PARSE_EXCEPTION);
+		writer.writeImport(StreamingCodecs.SERIALIZED_STRING);
+		writer.writeImport(StreamingCodecs.JSON_SERIALIZER);
+		writer.writeImport(StreamingCodecs.JSON_DESERIALIZER);
+		writer.writeImport(StreamingCodecs.SERIALIZER_PROVIDER);
+		writer.writeImport(StreamingCodecs.DESERIALIZATION_CONTEXT);
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			for (ClassName fieldType : propertyGenerator.getFieldTypes()) {
+				codecs.generateImports(writer, fieldType);
+			}
+		}
+	}
+	
+	/**
+	 * Write the method writing the properties of one part of the class.
+	 * 
+	 * Field names are written from pre-encoded {@code SerializedString} constants. The first part writes the additional
+	 * properties after all properties.
+	 * 
+	 * @param writer
+	 * @param codecs
+	 * @param propertyGenerators the property generators of the part
+	 * @param firstPart whether the part is the class itself
+	 * @param hasSuperPart whether the part extends a further part
+	 * @param additionalPropertiesClassName the map class of the additional properties, or {@code null}
+	 * @param additionalPropertiesValueClassName the type of the values of the additional properties, or {@code null}
+	 * @throws IOException
+	 */
+	private void generateStreamingCodecWriteFields(JavaWriter writer, StreamingCodecs codecs, List<PojoPropertyGenerator> propertyGenerators, boolean firstPart, boolean hasSuperPart, ClassName additionalPropertiesClassName, ClassName additionalPropertiesValueClassName) throws IOException {
+		String serializedString = writer.getShortName(StreamingCodecs.SERIALIZED_STRING);
+		for (int i = 0; i < propertyGenerators.size(); i++) {
+			writer.writeCode("private static final " + serializedString + " $NAME_" + i + " = new " + serializedString + "(" + JavaWriter.toStringLiteral(propertyGenerators.get(i).getPropertyName()) + ");");
+		}
+		
+		writer.writeMethodBodyStart(Visibility.PROTECTED, false, ClassName.VOID, "writeFields", StreamingCodecs.EXCEPTIONS, StreamingCodecs.JSON_GENERATOR, "generator");
+		if (hasSuperPart) {
+			writer.writeCode("super.writeFields(generator);");
+		}
+		for (int i = 0; i < propertyGenerators.size(); i++) {
+			propertyGenerators.get(i).generateWriteField(writer, codecs, "$NAME_" + i);
+		}
+		if (additionalPropertiesClassName != null && firstPart) {
+			// Immutable classes return a copy of the map, so only get it once
+			writer.writeCode(writer.getShortName(additionalPropertiesClassName) + " additionalProperties = additionalProperties();");
+			writer.writeCode("for (int i = 0; i < additionalProperties.size(); i++) {");
+			writer.pushIndentLevel();
+			writer.writeCode("generator.writeFieldName(additionalProperties.keyAt(i));");
+			codecs.generateWriteValue(writer, additionalPropertiesValueClassName, "additionalProperties.valueAt(i)", 0);
+			writer.popIndentLevel();
+			writer.writeCode("}");
+		}
+		writer.writeMethodBodyEnd();
+	}
+	
+	/**
+	 * Write the method reading the properties of one part of the class, or of a part of the builder of an immutable class.
+	 * 
+	 * Field names are matched with a {@code switch}, and unknown properties are passed on to the next method, or read
+	 * into the additional properties when there is no further method.
+	 * 
+	 * @param writer
+	 * @param codecs
+	 * @param propertyGenerators the property generators of the part
+	 * @param methodName the name of the method, {@code readField} for the first method
+	 * @param nextMethod the method reading the further properties, or {@code null}
+	 * @param additionalPropertiesValueClassName the type of the values of the additional properties, or {@code null}
+	 * @throws IOException
+	 */
+	private void generateStreamingCodecReadField(JavaWriter writer, StreamingCodecs codecs, List<PojoPropertyGenerator> propertyGenerators, String methodName, String nextMethod, ClassName additionalPropertiesValueClassName) throws IOException {
+		writer.writeMethodBodyStart("readField".equals(methodName) ? Visibility.PROTECTED : Visibility.PRIVATE, false, ClassName.VOID, methodName, StreamingCodecs.EXCEPTIONS, StreamingCodecs.JSON_PARSER, "parser", ClassName.create(String.class), "name");
+		writer.writeCode("switch (name) {");
+		for (PojoPropertyGenerator propertyGenerator : propertyGenerators) {
+			writer.writeCode("case " + JavaWriter.toStringLiteral(propertyGenerator.getPropertyName()) + ":");
+			writer.pushIndentLevel();
+			propertyGenerator.generateReadField(writer, codecs);
+			writer.writeCode("break;");
+			writer.popIndentLevel();
+		}
+		writer.writeCode("default:");
+		writer.pushIndentLevel();
+		if (nextMethod != null) {
+			writer.writeCode(nextMethod + "(parser, name);");
+		} else if (additionalPropertiesValueClassName != null) {
+			// Maps with unboxed values have put methods named after the type
+			boolean primitive = additionalPropertiesValueClassName.getPackageName().isEmpty();
+			writer.writeCode("{");
+			writer.pushIndentLevel();
+			writer.writeCode(writer.getShortName(additionalPropertiesValueClassName) + " additionalValue;");
+			codecs.generateReadValue(writer, additionalPropertiesValueClassName, "additionalValue", 0);
+			writer.writeCode("this.$additionalProperties.put" + (primitive ? PrimitiveLists.getName(additionalPropertiesValueClassName) : "") + "(name, additionalValue);");
+			writer.popIndentLevel();
+			writer.writeCode("}");
+		}
+		writer.writeCode("break;");
+		writer.popIndentLevel();
+		writer.writeCode("}");
+		writer.writeMethodBodyEnd();
+	}
+	
+	/**
+	 * Write the {@code writeTo} and {@code readFrom} methods, and the nested Jackson serializer and deserializer classes.
+	 * 
+	 * @param writer
+	 * @param className
+	 * @param builderClassName the builder reading the properties of an immutable class, or {@code null}
+	 * @throws IOException
+	 */
+	private void generateStreamingCodec(JavaWriter writer, ClassName className, ClassName builderClassName) throws IOException {
+		String shortName = writer.getShortName(className);
+		String jsonToken = writer.getShortName(StreamingCodecs.JSON_TOKEN);
+		
+		writer.writeMethodBodyStart(Visibility.PUBLIC, false, ClassName.VOID, "writeTo", StreamingCodecs.EXCEPTIONS, StreamingCodecs.JSON_GENERATOR, "generator");
+		writer.writeCode("generator.writeStartObject();");
+		writer.writeCode("writeFields(generator);");
+		writer.writeCode("generator.writeEndObject();");
+		writer.writeMethodBodyEnd();
+		
+		// Accept the parser before the value, at the start of the object, or at the first field name
+		writer.writeMethodBodyStart(Visibility.PUBLIC, true, className, "readFrom", StreamingCodecs.EXCEPTIONS, StreamingCodecs.JSON_PARSER, "parser");
+		writer.writeCode(
+			jsonToken + " token = parser.getCurrentToken();",
+			"if (token == null) {",
+			"\ttoken = parser.nextToken();",
+			"}",
+			"if (token == " + jsonToken + ".VALUE_NULL) {",
+			"\treturn null;",
+			"}",
+			"if (token == " + jsonToken + ".START_OBJECT) {",
+			"\ttoken = parser.nextToken();",
+			"} else if (token != " + jsonToken + ".FIELD_NAME && token != " + jsonToken + ".END_OBJECT) {",
+			"\tthrow new " + writer.getShortName(StreamingCodecs.JSON_PARSE_EXCEPTION) + "(\"Expected an object for " + shortName + "\", parser.getCurrentLocation());",
+			"}",
+			(builderClassName != null ? writer.getShortName(builderClassName) + " value = new " + writer.getShortName(builderClassName) + "();" : shortName + " value = new " + shortName + "();"),
+			"while (token == " + jsonToken + ".FIELD_NAME) {",
+			"\tString name = parser.getCurrentName();",
+			"\tparser.nextToken();",
+			"\tvalue.readField(parser, name);",
+			"\tparser.skipChildren();",
+			"\ttoken = parser.nextToken();",
+			"}",
+			"if (token != " + jsonToken + ".END_OBJECT) {",
+			"\tthrow new " + writer.getShortName(StreamingCodecs.JSON_PARSE_EXCEPTION) + "(\"Expected the end of the object for " + shortName + "\", parser.getCurrentLocation());",
+			"}",
+			builderClassName != null ? "return value.build();" : "return value;");
+		writer.writeMethodBodyEnd();
+		
+		ClassName serializerClassName = new ClassName(className.getPackageName(), className.getRawClassName() + ".StreamingSerializer");
+		writer.writeClassStart(serializerClassName, new ClassName(StreamingCodecs.JSON_SERIALIZER.getPackageName(), StreamingCodecs.JSON_SERIALIZER.getRawClassName(), className), Kind.CLASS, Visibility.PUBLIC);
+		writer.writeCode("@Override");
+		writer.writeMethodBodyStart(Visibility.PUBLIC, false, ClassName.VOID, "serialize", StreamingCodecs.EXCEPTIONS, className, "value", StreamingCodecs.JSON_GENERATOR, "generator", StreamingCodecs.SERIALIZER_PROVIDER, "provider");
+		writer.writeCode("value.writeTo(generator);");
+		writer.writeMethodBodyEnd();
+		writer.writeClassEnd();
+		
+		ClassName deserializerClassName = new ClassName(className.getPackageName(), className.getRawClassName() + ".StreamingDeserializer");
+		writer.writeClassStart(deserializerClassName, new ClassName(StreamingCodecs.JSON_DESERIALIZER.getPackageName(), StreamingCodecs.JSON_DESERIALIZER.getRawClassName(), className), Kind.CLASS, Visibility.PUBLIC);
+		writer.writeCode("@Override");
+		writer.writeMethodBodyStart(Visibility.PUBLIC, false, className, "deserialize", StreamingCodecs.EXCEPTIONS, StreamingCodecs.JSON_PARSER, "parser", StreamingCodecs.DESERIALIZATION_CONTEXT, "context");
+		writer.writeCode("return readFrom(parser);");
+		writer.writeMethodBodyEnd();
+		writer.writeClassEnd();
+	}
+	
+	/**
+	 * Get the name of the class holding the {@code part}-th part of the properties of {@code className}.
+	 * 
+	 * @param className
+	 * @param part
+	 * @return
+	 */
+	private static ClassName getPartClassName(ClassName className, int part) {
+		return new ClassName(className.getPackageName(), className.getRawClassName() + "$Properties" + part);
+	}
 }
\ No newline at end of file
@@ -17,7 +17,14 @@
  */
 package com.collaborne.jsonschema.generator.pojo;
 
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 import javax.annotation.Nonnull;
 
@@ -25,11 +32,13 @@ import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.Generator;
 import com.collaborne.jsonschema.generator.InvalidTypeReferenceException;
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
 import com.collaborne.jsonschema.generator.model.Mapping;
 
 class PojoCodeGenerationContext {
 	private final Generator generator;
 	private final Mapping mapping;
+	private final Map<ClassName, ByteArrayOutputStream> additionalSources = new LinkedHashMap<>();
 	
 	public PojoCodeGenerationContext(@Nonnull Generator generator, @Nonnull Mapping mapping) {
 		this.generator = generator;
@@ -48,6 +57,73 @@ class PojoCodeGenerationContext {
 		return mapping.getTarget();
 	}
 	
+	/**
+	 * Create a writer for the source of an additional top-level class of the type.
+	 * 
+	 * The source is written next to the source of the type once the writer is closed.
+	 * 
+	 * @param className
+	 * @return
+	 */
+	public JavaWriter createAdditionalSourceWriter(@Nonnull ClassName className) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		additionalSources.put(className, output);
+		return new JavaWriter(new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8)));
+	}
+	
+	/**
+	 * Get the sources written through {@link #createAdditionalSourceWriter(ClassName)}.
+	 * 
+	 * @return
+	 */
+	Map<ClassName, ByteArrayOutputStream> getAdditionalSources() {
+		return Collections.unmodifiableMap(additionalSources);
+	}
+	
+	public boolean isStreamingCodecsEnabled() {
+		return generator.getFeature(PojoGenerator.FEATURE_STREAMING_CODECS);
+	}
+	
+	public boolean isImmutable() {
+		return generator.getFeature(PojoGenerator.FEATURE_IMMUTABLE);
+	}
+	
+	public boolean hasStreamingCodec(ClassName className) {
+		return generator instanceof PojoGenerator && ((PojoGenerator) generator).hasStreamingCodec(className);
+	}
+	
+	/**
+	 * Get the primitive list class for elements of {@code elementClassName}.
+	 * 
+	 * @param elementClassName
+	 * @return the list class, or {@code null} if the elements need a list of boxed values
+	 */
+	public ClassName getPrimitiveListClassName(ClassName elementClassName) {
+		return generator instanceof PojoGenerator ? ((PojoGenerator) generator).usePrimitiveList(elementClassName) : null;
+	}
+	
+	public ClassName getPrimitiveListElementClassName(ClassName listClassName) {
+		return generator instanceof PojoGenerator ? ((PojoGenerator) generator).getPrimitiveListElementClassName(listClassName) : null;
+	}
+	
+	/**
+	 * Get the map class for {@code additionalProperties} with values of {@code valueClassName}.
+	 * 
+	 * @param valueClassName
+	 * @return the map class, or {@code null} if additional properties are not kept
+	 * @see PojoGenerator#FEATURE_ADDITIONAL_PROPERTIES
+	 */
+	public ClassName getStringMapClassName(ClassName valueClassName) {
+		if (!generator.getFeature(PojoGenerator.FEATURE_ADDITIONAL_PROPERTIES) || !(generator instanceof PojoGenerator)) {
+			return null;
+		}
+		return ((PojoGenerator) generator).useStringMap(valueClassName);
+	}
+	
+	public ClassName getStringMapPrimitiveValueClassName(ClassName mapClassName) {
+		return generator instanceof PojoGenerator ? ((PojoGenerator) generator).getStringMapPrimitiveValueClassName(mapClassName) : null;
+	}
+	
 	public PojoPropertyGenerator createPropertyGenerator(URI type, String propertyName) throws CodeGenerationException {
 		ClassName className = generator.generate(type);
 		if (className == null) {
@@ -56,6 +132,34 @@ class PojoCodeGenerationContext {
 		return createPropertyGenerator(className, propertyName);
 	}
 	
+	/**
+	 * Create the generator for a property, which tracks the presence of optional primitive properties if enabled.
+	 * 
+	 * Immutable classes do not track the presence.
+	 * 
+	 * @param type
+	 * @param propertyName
+	 * @param required whether the property is required
+	 * @param presenceBit the bit to use for tracking the presence
+	 * @return
+	 * @throws CodeGenerationException
+	 * @see PojoGenerator#FEATURE_PRESENCE_TRACKING
+	 * @see PojoGenerator#FEATURE_IMMUTABLE
+	 */
+	public PojoPropertyGenerator createPropertyGenerator(URI type, String propertyName, boolean required, int presenceBit) throws CodeGenerationException {
+		ClassName className = generator.generate(type);
+		if (className == null) {
+			throw new InvalidTypeReferenceException(type);
+		}
+		if (isImmutable()) {
+			return new ImmutablePojoPropertyGenerator(className, propertyName, getPrimitiveListElementClassName(className));
+		}
+		if (!required && generator.getFeature(PojoGenerator.FEATURE_PRESENCE_TRACKING) && generator instanceof PojoGenerator && ((PojoGenerator) generator).isPrimitive(className)) {
+			return new PresenceTrackingPojoPropertyGenerator(className, propertyName, presenceBit);
+		}
+		return createPropertyGenerator(className, propertyName);
+	}
+	
 	public PojoPropertyGenerator createPropertyGenerator(ClassName className, String propertyName) throws CodeGenerationException {
 		return new SimplePojoPropertyGenerator(className, propertyName);
 	}
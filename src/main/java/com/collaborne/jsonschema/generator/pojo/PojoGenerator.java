@@ -18,40 +18,54 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.BufferedWriter;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.net.URI;
-import java.net.URISyntaxException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardCopyOption;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.collaborne.jsonschema.generator.AbstractGenerator;
+import com.collaborne.jsonschema.generator.BuildFingerprint;
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.MissingSchemaException;
+import com.collaborne.jsonschema.generator.SchemaHasher;
+import com.collaborne.jsonschema.generator.cache.ContentStore;
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.ClassPathIndex;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.java.Kind;
+import com.collaborne.jsonschema.generator.java.Visibility;
+import com.collaborne.jsonschema.generator.model.FootprintReport;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
 import com.collaborne.jsonschema.generator.model.Mapping;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.github.fge.jackson.jsonpointer.JsonPointer;
+import com.collaborne.jsonschema.generator.output.OutputBuffer;
+import com.collaborne.jsonschema.generator.output.OutputBufferPool;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 import com.github.fge.jackson.jsonpointer.JsonPointerException;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
-import com.github.fge.jsonschema.core.load.SchemaLoader;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
 import com.google.common.annotations.VisibleForTesting;
 
 // XXX: URI vs JsonRef vs SchemaKey
@@ -108,9 +122,80 @@ public class PojoGenerator extends AbstractGenerator {
 		
 		public abstract String createClassName(URI type);
 	}
+	/**
+	 * Base URI for naming document roots after the path of their document relative to it, or {@code null} to name them {@code Type}
+	 * 
+	 * Shards derive the class names independently, so their document roots need names that do not collide.
+	 */
+	public static final Feature<String> FEATURE_DOCUMENT_ROOT_BASE_URI = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/document-root-base-uri", String.class, null);
 	public static final Feature<AnonymousClassNameGenerator> FEATURE_CLASS_NAME_GENERATOR = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/class-name-generator", AnonymousClassNameGenerator.class, AnonymousClassNameGenerator.CAMEL_CASE);
 	/** Whether to ignore constraints (enum-ness, min/max value, etc) on non-"object" types */
 	public static final Feature<Boolean> FEATURE_USE_SIMPLE_PLAIN_TYPES = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/simple-plain-types", Boolean.class, Boolean.TRUE);	
+	/** Whether to use a single class for all structurally identical anonymous types */
+	public static final Feature<Boolean> FEATURE_DEDUPLICATE_ANONYMOUS_TYPES = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/deduplicate-anonymous-types", Boolean.class, Boolean.FALSE);
+	/**
+	 * Whether to generate the anonymous types of each schema document as static nested classes of one holder class
+	 * 
+	 * The holder classes are written when flushing the generator.
+	 */
+	public static final Feature<Boolean> FEATURE_GROUP_ANONYMOUS_TYPES = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/group-anonymous-types", Boolean.class, Boolean.FALSE);
+	/**
+	 * Maximum number of properties per generated class
+	 * 
+	 * Types with more properties are split into a chain of super classes, so that no class file exceeds the limits of the JVM.
+	 */
+	public static final Feature<Integer> FEATURE_MAX_PROPERTIES_PER_CLASS = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/max-properties-per-class", Integer.class, Integer.valueOf(1000));
+	/**
+	 * Whether to generate streaming Jackson codecs for the generated classes
+	 * 
+	 * Each class gets {@code writeTo(JsonGenerator)} and {@code static readFrom(JsonParser)} methods, and nested
+	 * serializer and deserializer classes. The Jackson module registering these is written when flushing the generator.
+	 */
+	public static final Feature<Boolean> FEATURE_STREAMING_CODECS = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/streaming-codecs", Boolean.class, Boolean.FALSE);
+	/** Name of the Jackson module class registering the streaming codecs, {@code null} for {@code StreamingCodecsModule} in the default package */
+	public static final Feature<String> FEATURE_STREAMING_CODECS_MODULE = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/streaming-codecs-module", String.class, null);
+	/**
+	 * Whether to use lists of unboxed values for arrays of integers, numbers and booleans
+	 * 
+	 * The list classes are written into the support package when flushing the generator. Otherwise such arrays use
+	 * lists of the boxed values.
+	 * 
+	 * @see PrimitiveLists
+	 */
+	public static final Feature<Boolean> FEATURE_PRIMITIVE_LISTS = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/primitive-lists", Boolean.class, Boolean.TRUE);
+	/**
+	 * Whether to track the presence of optional properties with primitive types
+	 * 
+	 * The properties keep their primitive fields, and the generated classes record which ones were set in {@code long}
+	 * bit masks. Such properties get {@code hasXXX()} and {@code clearXXX()} accessors, and the generated codecs omit
+	 * absent ones. Plain Jackson databind omits them as well, using annotated accessors that require
+	 * {@code jackson-annotations}. A {@code null} value in the JSON makes the property absent.
+	 */
+	public static final Feature<Boolean> FEATURE_PRESENCE_TRACKING = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/presence-tracking", Boolean.class, Boolean.FALSE);
+	/**
+	 * Whether to generate immutable classes
+	 * 
+	 * The properties are held in {@code final} fields, and set through a nested {@code Builder} available from
+	 * {@code builder()} and {@code toBuilder()}. The classes implement structural {@code equals}, {@code toString} and a
+	 * lazily cached {@code hashCode}, so values of the properties must not be modified after building. The presence of
+	 * properties is not tracked, and plain Jackson databind can only write such classes; the streaming codecs and the
+	 * byte codecs read them through the builder.
+	 */
+	public static final Feature<Boolean> FEATURE_IMMUTABLE = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/immutable", Boolean.class, Boolean.FALSE);
+	/**
+	 * Whether to keep the {@code additionalProperties} of objects, if these have a schema
+	 * 
+	 * The generated classes hold them in an insertion-ordered map with {@code String} keys, which is available through
+	 * {@code additionalProperties()}. The map classes are written into the support package when flushing the generator.
+	 * 
+	 * @see StringMaps
+	 */
+	public static final Feature<Boolean> FEATURE_ADDITIONAL_PROPERTIES = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/additional-properties", Boolean.class, Boolean.TRUE);
+	/** Package for the support classes, {@code null} for the {@code support} package below the default package */
+	public static final Feature<String> FEATURE_SUPPORT_PACKAGE_NAME = new Feature<>("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/support-package-name", String.class, null);
+	
+	/** Maximum number of registrations per method of the streaming codecs module */
+	private static final int MAX_REGISTRATIONS_PER_METHOD = 500;
 	
 	private static class SimplePojoTypeGenerator implements PojoTypeGenerator {
 		private final ClassName className;
@@ -120,18 +205,65 @@ public class PojoGenerator extends AbstractGenerator {
 		}
 		
 		@Override
-		public ClassName generate(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter javaWriter) {
+		public ClassName generate(PojoCodeGenerationContext context, SchemaType schema, JavaWriter javaWriter) {
 			return className;
 		}
 	}
 	
+	/**
+	 * A type generated as nested class of a holder class.
+	 */
+	private static class GroupedType {
+		private final Mapping mapping;
+		private final SchemaType schema;
+		private final AbstractPojoTypeGenerator typeGenerator;
+		
+		public GroupedType(Mapping mapping, SchemaType schema, AbstractPojoTypeGenerator typeGenerator) {
+			this.mapping = mapping;
+			this.schema = schema;
+			this.typeGenerator = typeGenerator;
+		}
+	}
+	
+	/**
+	 * Top-level class holding the anonymous types of one schema document.
+	 */
+	private static class Holder {
+		private final URI document;
+		private final ClassName className;
+		private final Set<String> nestedClassNames = new HashSet<>();
+		/** Grouped types by their nested class name, sorted to produce stable output */
+		private final Map<String, GroupedType> types = new TreeMap<>();
+		private boolean changed;
+		
+		public Holder(URI document, ClassName className) {
+			this.document = document;
+			this.className = className;
+		}
+		
+		public ClassName assignNestedClassName(String rawClassName) {
+			String nestedClassName = rawClassName;
+			for (int suffix = 1; nestedClassName.equals(className.getRawClassName()) || !nestedClassNames.add(nestedClassName); suffix++) {
+				// A nested class cannot have the name of the holder either
+				nestedClassName = rawClassName + "$" + suffix;
+			}
+			return new ClassName(className.getPackageName(), className.getRawClassName() + "." + nestedClassName);
+		}
+	}
+	
 	@VisibleForTesting
-	protected static class Buffer extends ByteArrayOutputStream {
-		public InputStream getInputStream() {
-			return new ByteArrayInputStream(buf);
+	protected static class Buffer extends OutputBuffer {
+		public Buffer() {
+			super(OutputBufferPool.DEFAULT_INITIAL_CAPACITY);
 		}
 	}
 	
+	/** Maximum number of idle render buffers kept for reuse */
+	private static final int MAX_POOLED_BUFFERS = 64;
+	
+	/** Namespace for the references from cache keys to the generated code in the output cache */
+	private static final String OUTPUT_CACHE_NAMESPACE = "pojo-sources";
+	
 	private static final List<String> PRIMITIVE_TYPE_NAMES = Arrays.asList(
 		Boolean.TYPE.getName(),
 		Character.TYPE.getName(),
@@ -148,6 +280,38 @@ public class PojoGenerator extends AbstractGenerator {
 	private final Map<String, PojoTypeGenerator> typeGenerators = new HashMap<>();
 	private final Map<URI, ClassName> generatedClassNames = new HashMap<>();
 	private final Set<URI> nullTypes = new HashSet<>();
+	/** All class names assigned to anonymous types, including the ones still being generated */
+	private final Set<ClassName> assignedClassNames = new HashSet<>();
+	private ContentStore outputCache;
+	private ClassPathIndex classPathIndex = new ClassPathIndex();
+	private final OutputBufferPool<Buffer> bufferPool = new OutputBufferPool<>(MAX_POOLED_BUFFERS, new Supplier<Buffer>() {
+		@Override
+		public Buffer get() {
+			return new Buffer();
+		}
+	});
+	/** Map of structural hash to the class generated for the first anonymous type with that hash */
+	private final Map<String, ClassName> structuralClassNames = new HashMap<>();
+	/** Map of class name to the anonymous types that were collapsed into it */
+	private final Map<ClassName, List<URI>> collapsedTypes = new LinkedHashMap<>();
+	private final Map<URI, GenerationManifest.Entry> manifestEntries = new HashMap<>();
+	private final Map<URI, Mapping> manifestReferences = new HashMap<>();
+	/** Holder classes by their schema document */
+	private final Map<URI, Holder> holders = new HashMap<>();
+	/** Holder classes by the class names of their nested classes */
+	private final Map<ClassName, Holder> nestedClassHolders = new HashMap<>();
+	/** Grouped types whose referenced types were not generated yet */
+	private final Deque<GroupedType> unresolvedGroupedTypes = new ArrayDeque<>();
+	/** Classes that have (or will have) streaming codecs */
+	private final Set<ClassName> streamingCodecClassNames = new HashSet<>();
+	/** Whether the streaming codecs module needs to be written */
+	private boolean streamingCodecsChanged;
+	/** Element types of the used primitive list classes */
+	private final Map<ClassName, ClassName> primitiveListElementClassNames = new HashMap<>();
+	/** Used support classes, without type arguments */
+	private final Set<ClassName> supportClassNames = new LinkedHashSet<>();
+	/** Support classes that were written */
+	private final Set<ClassName> writtenSupportClassNames = new HashSet<>();
 	
 	@Inject
 	@VisibleForTesting
@@ -180,8 +344,27 @@ public class PojoGenerator extends AbstractGenerator {
 		
 		// Find or create the mapping for this type
 		Mapping mapping = getMapping(type);
+		String structuralHash = null;
 		if (mapping == null) {
 			logger.debug("{}: No mapping defined", type);
+			if (getFeature(FEATURE_DEDUPLICATE_ANONYMOUS_TYPES)) {
+				structuralHash = getStructuralHash(type);
+				ClassName structuralClassName = structuralClassNames.get(structuralHash);
+				if (structuralClassName != null) {
+					logger.debug("{}: Reusing structurally identical {}", type, structuralClassName);
+					List<URI> collapsed = collapsedTypes.get(structuralClassName);
+					if (collapsed == null) {
+						collapsed = new ArrayList<>();
+						collapsedTypes.put(structuralClassName, collapsed);
+					}
+					collapsed.add(type);
+					// Record the decision, so that generators sharing the mappings use the same class
+					addMapping(type, new Mapping(type, structuralClassName));
+					manifestEntries.put(type, new GenerationManifest.Entry(new Mapping(type, structuralClassName), structuralHash));
+					generatedClassNames.put(type, structuralClassName);
+					return structuralClassName;
+				}
+			}
 			mapping = generateMapping(type);
 			addMapping(type, mapping);
 		}
@@ -202,10 +385,237 @@ public class PojoGenerator extends AbstractGenerator {
 			nullTypes.add(type);
 		} else {
 			generatedClassNames.put(type, generatedClassName);
+			assignedClassNames.add(generatedClassName);
+			if (structuralHash != null && generatedClassName.equals(mapping.getClassName())) {
+				// Only reuse actually generated classes, everything else is cheap to resolve again
+				structuralClassNames.put(structuralHash, generatedClassName);
+			}
 		}
 		return generatedClassName;
 	}
 	
+	@Override
+	public GenerationManifest getManifest() {
+		Comparator<Mapping> targetComparator = new Comparator<Mapping>() {
+			@Override
+			public int compare(Mapping o1, Mapping o2) {
+				return o1.getTarget().toString().compareTo(o2.getTarget().toString());
+			}
+		};
+		List<GenerationManifest.Entry> entries = new ArrayList<>(manifestEntries.values());
+		Collections.sort(entries, targetComparator);
+		List<Mapping> references = new ArrayList<>(manifestReferences.values());
+		Collections.sort(references, targetComparator);
+		
+		GenerationManifest manifest = new GenerationManifest();
+		manifest.setEntries(entries);
+		manifest.setReferences(references);
+		return manifest;
+	}
+	
+	/**
+	 * Check whether the schema for a precompiled {@code entry} still matches the schema used for generating it.
+	 * 
+	 * @param type
+	 * @param entry
+	 * @return
+	 */
+	private boolean isUnchangedManifestEntry(URI type, GenerationManifest.Entry entry) {
+		String hash = getStructuralHash(type);
+		return hash != null && hash.equals(entry.getHash());
+	}
+	
+	/**
+	 * Get the anonymous types that reused the class of a structurally identical type.
+	 * 
+	 * @return map of the reused class names to the types that were collapsed into them
+	 * @see #FEATURE_DEDUPLICATE_ANONYMOUS_TYPES
+	 */
+	public Map<ClassName, List<URI>> getCollapsedTypes() {
+		return Collections.unmodifiableMap(collapsedTypes);
+	}
+	
+	/**
+	 * Get the number of classes that were not generated because a structurally identical class was reused.
+	 * 
+	 * @return
+	 */
+	public int getCollapsedTypeCount() {
+		int count = 0;
+		for (List<URI> collapsed : collapsedTypes.values()) {
+			count += collapsed.size();
+		}
+		return count;
+	}
+	
+	/**
+	 * Estimate the heap footprint of the generated classes.
+	 * 
+	 * @param compressedOops whether references are compressed to 4 bytes
+	 * @return
+	 * @throws CodeGenerationException
+	 */
+	public FootprintReport getFootprintReport(boolean compressedOops) throws CodeGenerationException {
+		FootprintReport report = new FootprintReport();
+		report.setCompressedOops(compressedOops);
+		report.setExpectedCollectionSize(FootprintEstimator.DEFAULT_EXPECTED_COLLECTION_SIZE);
+		PojoTypeGenerator objectGenerator = typeGenerators.get("object");
+		if (!(objectGenerator instanceof PojoClassGenerator)) {
+			return report;
+		}
+		
+		// Determine all shallow sizes first, collections of generated classes need those for the retained size
+		FootprintEstimator estimator = new FootprintEstimator(compressedOops, primitiveListElementClassNames);
+		Map<Mapping, SchemaType> classSchemas = new LinkedHashMap<>();
+		Map<Mapping, List<PojoPropertyGenerator>> classPropertyGenerators = new HashMap<>();
+		Map<Mapping, ClassName> classAdditionalPropertiesClassNames = new HashMap<>();
+		Map<ClassName, Long> shallowSizes = new HashMap<>();
+		for (Mapping mapping : getClassMappings()) {
+			SchemaType schema;
+			try {
+				schema = getSchemaType(mapping.getTarget());
+			} catch (ProcessingException|JsonPointerException e) {
+				throw new CodeGenerationException(mapping.getTarget(), e);
+			}
+			if (schema == null || (schema.getTypeName() != null && !"object".equals(schema.getTypeName()))) {
+				continue;
+			}
+			
+			PojoCodeGenerationContext context = new PojoCodeGenerationContext(this, mapping);
+			List<PojoPropertyGenerator> propertyGenerators = ((PojoClassGenerator) objectGenerator).createPropertyGenerators(context, schema);
+			ClassName additionalPropertiesClassName = PojoClassGenerator.getAdditionalPropertiesClassName(context, schema);
+			classSchemas.put(mapping, schema);
+			classPropertyGenerators.put(mapping, propertyGenerators);
+			classAdditionalPropertiesClassNames.put(mapping, additionalPropertiesClassName);
+			shallowSizes.put(mapping.getClassName(), Long.valueOf(estimator.getShallowSize(propertyGenerators, additionalPropertiesClassName)));
+		}
+		for (Map.Entry<Mapping, SchemaType> entry : classSchemas.entrySet()) {
+			Mapping mapping = entry.getKey();
+			report.getEntries().add(estimator.estimate(mapping.getClassName(), mapping.getTarget(), entry.getValue(), classPropertyGenerators.get(mapping), classAdditionalPropertiesClassNames.get(mapping), shallowSizes));
+		}
+		return report;
+	}
+	
+	/**
+	 * Get the mappings of the generated classes, ordered by class name.
+	 * 
+	 * Collapsed types share the class, so only the first type for each class is included.
+	 * 
+	 * @return
+	 */
+	private Collection<Mapping> getClassMappings() {
+		Map<String, Mapping> classMappings = new TreeMap<>();
+		for (GenerationManifest.Entry entry : new TreeMap<>(manifestEntries).values()) {
+			if (!classMappings.containsKey(entry.getClassName().toString())) {
+				classMappings.put(entry.getClassName().toString(), entry);
+			}
+		}
+		return classMappings.values();
+	}
+	
+	/**
+	 * Check whether {@code className} has streaming codecs.
+	 * 
+	 * @param className
+	 * @return
+	 * @see #FEATURE_STREAMING_CODECS
+	 */
+	boolean hasStreamingCodec(ClassName className) {
+		return streamingCodecClassNames.contains(className);
+	}
+	
+	/**
+	 * Get the primitive list class for elements of {@code elementClassName}, and remember to write it when flushing.
+	 * 
+	 * @param elementClassName
+	 * @return the list class, or {@code null} if the elements need a list of boxed values
+	 * @see #FEATURE_PRIMITIVE_LISTS
+	 */
+	ClassName usePrimitiveList(ClassName elementClassName) {
+		if (!getFeature(FEATURE_PRIMITIVE_LISTS)) {
+			return null;
+		}
+		ClassName listClassName = PrimitiveLists.getListClassName(getSupportPackageName(), elementClassName);
+		if (listClassName != null) {
+			primitiveListElementClassNames.put(listClassName, elementClassName);
+			supportClassNames.add(listClassName);
+		}
+		return listClassName;
+	}
+	
+	/**
+	 * Get the name of the builder of the immutable class {@code className}.
+	 * 
+	 * @param className
+	 * @return
+	 * @see #FEATURE_IMMUTABLE
+	 */
+	public static ClassName getBuilderClassName(ClassName className) {
+		return new ClassName(className.getPackageName(), className.getRawClassName() + ".Builder");
+	}
+	
+	/**
+	 * Get the map class for {@code additionalProperties} with values of {@code valueClassName}, and remember to write it when flushing.
+	 * 
+	 * @param valueClassName
+	 * @return the map class
+	 * @see #FEATURE_ADDITIONAL_PROPERTIES
+	 */
+	ClassName useStringMap(ClassName valueClassName) {
+		ClassName mapClassName = StringMaps.getMapClassName(getSupportPackageName(), valueClassName);
+		supportClassNames.add(new ClassName(mapClassName.getPackageName(), mapClassName.getRawClassName()));
+		return mapClassName;
+	}
+	
+	/**
+	 * Get the unboxed value type of the map class {@code mapClassName}.
+	 * 
+	 * @param mapClassName
+	 * @return the primitive value type, or {@code null} if {@code mapClassName} is no map with unboxed values
+	 */
+	ClassName getStringMapPrimitiveValueClassName(ClassName mapClassName) {
+		return StringMaps.getPrimitiveValueClassName(getSupportPackageName(), mapClassName);
+	}
+	
+	/**
+	 * Get the element type of the primitive list class {@code listClassName}.
+	 * 
+	 * @param listClassName
+	 * @return the primitive element type, or {@code null} if {@code listClassName} is no primitive list class
+	 */
+	ClassName getPrimitiveListElementClassName(ClassName listClassName) {
+		return primitiveListElementClassNames.get(listClassName);
+	}
+	
+	/**
+	 * Get the name of the package for the support classes.
+	 * 
+	 * @return
+	 * @see #FEATURE_SUPPORT_PACKAGE_NAME
+	 */
+	protected String getSupportPackageName() {
+		String supportPackageName = getFeature(FEATURE_SUPPORT_PACKAGE_NAME);
+		return supportPackageName != null ? supportPackageName : getFeature(FEATURE_DEFAULT_PACKAGE_NAME) + ".support";
+	}
+	
+	/**
+	 * Calculate the structural hash of the schema for {@code type}.
+	 * 
+	 * @param type
+	 * @return the hash, or {@code null} if the schema cannot be found
+	 */
+	@VisibleForTesting
+	protected String getStructuralHash(URI type) {
+		try {
+			SchemaType schema = getSchemaType(type);
+			return schema != null ? schema.getHash() : null;
+		} catch (ProcessingException|JsonPointerException e) {
+			// Let the actual generation report the problem
+			logger.debug("{}: Cannot calculate structural hash", type, e);
+			return null;
+		}
+	}
+	
 	/**
 	 * Generate code for the {@code type} using the provided {@code mapping}.
 	 * 
@@ -215,6 +625,18 @@ public class PojoGenerator extends AbstractGenerator {
 	 * @throws CodeGenerationException
 	 */
 	protected ClassName generateInternal(URI type, Mapping mapping) throws CodeGenerationException {
+		// Types from manifests are precompiled, unless their schema changed since
+		if (mapping instanceof GenerationManifest.Entry) {
+			if (isUnchangedManifestEntry(type, (GenerationManifest.Entry) mapping)) {
+				logger.debug("{}: Using precompiled {}", type, mapping.getClassName());
+				return mapping.getClassName();
+			}
+			if (isExistingClass(mapping.getClassName())) {
+				logger.warn("{}: Using precompiled {}, but the schema changed since it was generated", type, mapping.getClassName());
+				return mapping.getClassName();
+			}
+		}
+		
 		// If the mapping wants a primitive type or existing type, do that (ignoring whatever the schema does)
 		if (isPrimitive(mapping.getClassName()) || isExistingClass(mapping.getClassName())) {
 			return mapping.getClassName();
@@ -222,20 +644,17 @@ public class PojoGenerator extends AbstractGenerator {
 
 		try {
 			// 1. Find the schema for the type
-			SchemaTree schema = getSchema(getSchemaLoader(), type);
-			if (schema == null || schema.getNode() == null) {
+			SchemaType schema = getSchemaType(type);
+			if (schema == null || !schema.isResolved()) {
 				throw new MissingSchemaException(type);
 			}
 
 			// 2. Determine the type of the schema
-			String schemaType;
-			JsonNode schemaTypeNode = schema.getNode().get("type");
-			if (schemaTypeNode == null) {
+			String schemaType = schema.getTypeName();
+			if (schemaType == null) {
 				// FIXME: hyper-schema!
 				logger.warn("{}: Missing type keyword, assuming 'object'", type);
 				schemaType = "object";
-			} else {
-				schemaType = schemaTypeNode.textValue();
 			}
 			
 			if ("null".equals(schemaType)) {
@@ -249,19 +668,78 @@ public class PojoGenerator extends AbstractGenerator {
 				throw new CodeGenerationException(type, "Cannot handle type '" + type + "' ('" + schemaType + "')");
 			}
 			
+			if ("object".equals(schemaType) && typeGenerator instanceof PojoClassGenerator && getFeature(FEATURE_STREAMING_CODECS)) {
+				// Register before generating, so that (recursive) references can use the codecs
+				streamingCodecClassNames.add(mapping.getClassName());
+				streamingCodecsChanged = true;
+			}
+			
+			if ("object".equals(schemaType) && !isOutputType(type)) {
+				// The class is generated elsewhere, we only need its name
+				logger.debug("{}: Skipping generation of {}", type, mapping.getClassName());
+				manifestReferences.put(type, mapping);
+				return mapping.getClassName();
+			}
+			
+			Holder holder = nestedClassHolders.get(mapping.getClassName());
+			if (holder != null && "object".equals(schemaType) && typeGenerator instanceof AbstractPojoTypeGenerator) {
+				// Written together with the other types of the schema document when flushing
+				logger.debug("{}: Grouping {} into {}", type, mapping.getClassName(), holder.className);
+				GroupedType groupedType = new GroupedType(mapping, schema, (AbstractPojoTypeGenerator) typeGenerator);
+				holder.types.put(mapping.getClassName().getRawClassName(), groupedType);
+				holder.changed = true;
+				unresolvedGroupedTypes.add(groupedType);
+				manifestEntries.put(type, new GenerationManifest.Entry(mapping, schema.getHash()));
+				return mapping.getClassName();
+			}
+			
 			PojoCodeGenerationContext codeGenerationContext = new PojoCodeGenerationContext(this, mapping);
 			
+			// Check whether we generated the same code before
+			String outputCacheKey = null;
+			if (outputCache != null && isOutputType(type)) {
+				outputCacheKey = getOutputCacheKey(mapping, schema, typeGenerator);
+				byte[] cachedOutput = outputCacheKey != null ? outputCache.getReferenced(OUTPUT_CACHE_NAMESPACE, outputCacheKey) : null;
+				if (cachedOutput != null) {
+					logger.debug("{}: Using cached output for {}", type, mapping.getClassName());
+					typeGenerator.useSupportClasses(codeGenerationContext, schema);
+					Buffer buffer = bufferPool.acquire();
+					buffer.write(cachedOutput);
+					writeSource(type, mapping.getClassName(), buffer);
+					manifestEntries.put(type, new GenerationManifest.Entry(mapping, schema.getHash()));
+					return mapping.getClassName();
+				}
+			}
+			
 			// Generate into a buffer
 			// If the generator doesn't actually produce output (for example because it resolved the class differently),
 			// then we do not have to do anything further.
 			ClassName className;
-			Buffer buffer = new Buffer();
-			try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer)))) {
+			Buffer buffer = bufferPool.acquire();
+			try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
 				className = typeGenerator.generate(codeGenerationContext, schema, writer);
 			}
 
-			if (buffer.size() > 0) {
+			Map<ClassName, ByteArrayOutputStream> additionalSources = codeGenerationContext.getAdditionalSources();
+			if (buffer.size() > 0 && isOutputType(type)) {
+				// Update the cache first: writing the source hands over the buffer
+				// The cache holds a single source, so types with additional sources are not cached
+				if (outputCacheKey != null && className.equals(mapping.getClassName()) && additionalSources.isEmpty()) {
+					outputCache.putReference(OUTPUT_CACHE_NAMESPACE, outputCacheKey, outputCache.put(buffer.toByteArray()));
+				}
+				manifestEntries.put(type, new GenerationManifest.Entry(mapping, schema.getHash()));
 				writeSource(type, className, buffer);
+				for (Map.Entry<ClassName, ByteArrayOutputStream> additionalSource : additionalSources.entrySet()) {
+					Buffer additionalBuffer = bufferPool.acquire();
+					additionalSource.getValue().writeTo(additionalBuffer);
+					writeSource(type, additionalSource.getKey(), additionalBuffer);
+				}
+			} else {
+				if (buffer.size() > 0) {
+					logger.debug("{}: Skipping output of {}", type, className);
+					manifestReferences.put(type, mapping);
+				}
+				buffer.release();
 			}
 			
 			return className;
@@ -270,6 +748,242 @@ public class PojoGenerator extends AbstractGenerator {
 		}
 	}
 
+	@Override
+	public void flush() throws CodeGenerationException {
+		writeGroupedTypes();
+		writeStreamingCodecsModule();
+		writeSupportClasses();
+		getOutputSink().flush();
+	}
+	
+	/**
+	 * Write the support classes that were used since the last flush.
+	 * 
+	 * @throws CodeGenerationException
+	 * @see #FEATURE_PRIMITIVE_LISTS
+	 * @see #FEATURE_ADDITIONAL_PROPERTIES
+	 */
+	protected void writeSupportClasses() throws CodeGenerationException {
+		for (ClassName className : supportClassNames) {
+			if (!writtenSupportClassNames.add(className)) {
+				continue;
+			}
+			
+			// The support classes belong to no schema, so use stable artificial types for them
+			URI type = URI.create("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/support#" + className.getRawClassName());
+			Buffer buffer = bufferPool.acquire();
+			try {
+				String source = primitiveListElementClassNames.containsKey(className) ? PrimitiveLists.getSource(className) : StringMaps.getSource(className);
+				buffer.write(source.getBytes(StandardCharsets.UTF_8));
+			} catch (IOException e) {
+				buffer.release();
+				throw new CodeGenerationException(type, e);
+			}
+			
+			try {
+				writeSource(type, className, buffer);
+			} catch (IOException e) {
+				throw new CodeGenerationException(type, e);
+			}
+		}
+	}
+	
+	/**
+	 * Write the Jackson module registering the streaming codecs of all generated classes, if these changed since the last flush.
+	 * 
+	 * @throws CodeGenerationException
+	 * @see #FEATURE_STREAMING_CODECS
+	 */
+	protected void writeStreamingCodecsModule() throws CodeGenerationException {
+		if (!streamingCodecsChanged) {
+			return;
+		}
+		streamingCodecsChanged = false;
+		
+		String moduleClassName = getFeature(FEATURE_STREAMING_CODECS_MODULE);
+		ClassName className = ClassName.parse(moduleClassName != null ? moduleClassName : getFeature(FEATURE_DEFAULT_PACKAGE_NAME) + ".StreamingCodecsModule");
+		// The module belongs to no schema, so use a stable artificial type for it
+		URI type = URI.create("http://json-schema-bean-generator.collaborne.com/features/LATEST/pojo/streaming-codecs-module");
+		List<ClassName> codecClassNames = new ArrayList<>();
+		for (Mapping mapping : getClassMappings()) {
+			if (streamingCodecClassNames.contains(mapping.getClassName())) {
+				codecClassNames.add(mapping.getClassName());
+			}
+		}
+		
+		Buffer buffer = bufferPool.acquire();
+		try {
+			try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
+				writer.writePackage(className);
+				writer.writeImport(StreamingCodecs.SIMPLE_MODULE);
+				for (ClassName codecClassName : codecClassNames) {
+					writer.writeImport(codecClassName);
+				}
+				writer.writeClassStart(className, StreamingCodecs.SIMPLE_MODULE, Kind.CLASS, Visibility.PUBLIC);
+				writer.writeCode("private static final long serialVersionUID = 1L;");
+				writer.writeCode("public " + className.getRawClassName() + "() {");
+				writer.pushIndentLevel();
+				writer.writeCode("super(" + JavaWriter.toStringLiteral(className.getRawClassName()) + ");");
+				writer.writeCode("register();");
+				writer.popIndentLevel();
+				writer.writeCode("}");
+				List<String> statements = new ArrayList<>(codecClassNames.size() * 2);
+				for (ClassName codecClassName : codecClassNames) {
+					String shortName = writer.getShortName(codecClassName);
+					statements.add("addSerializer(" + shortName + ".class, new " + shortName + ".StreamingSerializer());");
+					statements.add("addDeserializer(" + shortName + ".class, new " + shortName + ".StreamingDeserializer());");
+				}
+				writer.writeSplitMethod(Visibility.PRIVATE, "register", statements, MAX_REGISTRATIONS_PER_METHOD);
+				writer.writeClassEnd();
+			}
+		} catch (IOException e) {
+			buffer.release();
+			throw new CodeGenerationException(type, e);
+		}
+		
+		try {
+			writeSource(type, className, buffer);
+		} catch (IOException e) {
+			throw new CodeGenerationException(type, e);
+		}
+	}
+	
+	/**
+	 * Write the holder classes that changed since the last flush.
+	 * 
+	 * @throws CodeGenerationException
+	 * @see #FEATURE_GROUP_ANONYMOUS_TYPES
+	 */
+	protected void writeGroupedTypes() throws CodeGenerationException {
+		while (true) {
+			// Generate the referenced types first, which may add further grouped types
+			GroupedType groupedType;
+			while ((groupedType = unresolvedGroupedTypes.poll()) != null) {
+				Set<URI> requiredTypes = groupedType.typeGenerator.getRequiredTypes(groupedType.schema);
+				if (requiredTypes != null) {
+					for (URI requiredType : requiredTypes) {
+						generate(requiredType);
+					}
+				}
+			}
+			
+			List<Holder> changedHolders = new ArrayList<>();
+			for (Holder holder : holders.values()) {
+				if (holder.changed) {
+					changedHolders.add(holder);
+				}
+			}
+			if (changedHolders.isEmpty()) {
+				return;
+			}
+			Collections.sort(changedHolders, new Comparator<Holder>() {
+				@Override
+				public int compare(Holder o1, Holder o2) {
+					return o1.className.toString().compareTo(o2.className.toString());
+				}
+			});
+			for (Holder holder : changedHolders) {
+				writeHolder(holder);
+			}
+		}
+	}
+	
+	private void writeHolder(Holder holder) throws CodeGenerationException {
+		holder.changed = false;
+		Buffer buffer = bufferPool.acquire();
+		try {
+			try (JavaWriter writer = new JavaWriter(new BufferedWriter(new OutputStreamWriter(buffer, StandardCharsets.UTF_8)))) {
+				writer.writePackage(holder.className);
+				writer.deferImports();
+				for (String nestedClassName : holder.nestedClassNames) {
+					writer.reserveShortName(nestedClassName);
+				}
+				writer.writeClassStart(holder.className, Kind.CLASS, Visibility.PUBLIC);
+				for (GroupedType groupedType : new ArrayList<>(holder.types.values())) {
+					groupedType.typeGenerator.generateType(new PojoCodeGenerationContext(this, groupedType.mapping), groupedType.schema, writer);
+				}
+				writer.writeClassEnd();
+			}
+		} catch (IOException e) {
+			buffer.release();
+			throw new CodeGenerationException(holder.document, e);
+		}
+		
+		try {
+			writeSource(holder.document, holder.className, buffer);
+		} catch (IOException e) {
+			throw new CodeGenerationException(holder.document, e);
+		}
+	}
+	
+	/**
+	 * Set the index used for checking whether mapped classes already exist.
+	 * 
+	 * The index can be shared between generators.
+	 * 
+	 * @param classPathIndex
+	 */
+	public void setClassPathIndex(ClassPathIndex classPathIndex) {
+		this.classPathIndex = classPathIndex;
+	}
+	
+	/**
+	 * Set the cache for generated code.
+	 * 
+	 * The cache can be shared between runs, projects, and machines: the key for each entry covers the schema, the mapping,
+	 * the class names of all referenced types, the features, and the generator version.
+	 * 
+	 * @param outputCache the cache, or {@code null} to not use a cache
+	 */
+	public void setOutputCache(ContentStore outputCache) {
+		this.outputCache = outputCache;
+	}
+	
+	/**
+	 * Calculate the key for the output of {@code typeGenerator} for {@code schema}.
+	 * 
+	 * This generates all types the output depends on.
+	 * 
+	 * @param mapping
+	 * @param schema
+	 * @param typeGenerator
+	 * @return the key, or {@code null} if the output cannot be cached
+	 * @throws CodeGenerationException
+	 */
+	@VisibleForTesting
+	protected String getOutputCacheKey(Mapping mapping, SchemaType schema, PojoTypeGenerator typeGenerator) throws CodeGenerationException {
+		Set<URI> requiredTypes = typeGenerator.getRequiredTypes(schema);
+		if (requiredTypes == null) {
+			return null;
+		}
+		String generatorVersion = getGeneratorVersion();
+		if (generatorVersion == null) {
+			// Without knowing the generator build a cached output could come from different code
+			return null;
+		}
+		
+		StringBuilder key = new StringBuilder();
+		key.append("version=").append(generatorVersion).append('\n');
+		key.append("generator=").append(typeGenerator.getClass().getName()).append('\n');
+		key.append("features=").append(getFeatureFingerprint()).append('\n');
+		key.append("schema=").append(schema.getHash()).append('\n');
+		key.append("class=").append(mapping.getClassName()).append('\n');
+		for (URI requiredType : new TreeSet<>(requiredTypes)) {
+			key.append("requires=").append(requiredType).append(" -> ").append(generate(requiredType)).append('\n');
+		}
+		return SchemaHasher.hash(key.toString().getBytes(StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Get the fingerprint of the generator build for the output cache keys.
+	 * 
+	 * @return the fingerprint, or {@code null} if the build cannot be identified and outputs must not be cached
+	 */
+	@Nullable
+	protected String getGeneratorVersion() {
+		return BuildFingerprint.get();
+	}
+	
 	@VisibleForTesting
 	protected boolean isPrimitive(ClassName className) {
 		if (!className.getPackageName().isEmpty()) {
@@ -280,39 +994,29 @@ public class PojoGenerator extends AbstractGenerator {
 
 	@VisibleForTesting
 	protected boolean isExistingClass(ClassName className) {
+		// Nested classes use '$' in their binary name
 		String fqcn = className.getPackageName();
 		if (!fqcn.isEmpty()) {
 			fqcn += ".";
 		}
-		fqcn += className.getRawClassName();
-		try {
-			Class.forName(fqcn);
-			return true;
-		} catch (ClassNotFoundException e) {
-			return false;
-		}
+		fqcn += className.getRawClassName().replace('.', '$');
+		return classPathIndex.exists(fqcn);
 	}
 
+	/**
+	 * Write the source for {@code className}.
+	 * 
+	 * This takes ownership of the {@code buffer}: the buffer must not be used by the caller afterwards.
+	 * 
+	 * @param type
+	 * @param className
+	 * @param buffer
+	 * @throws IOException
+	 */
 	@VisibleForTesting
 	protected void writeSource(URI type, ClassName className, Buffer buffer) throws IOException {
-		// Create the file based on the className in the mapping
-		Path outputFile = getClassSourceFile(className);
-		logger.info("{}: Writing {}", type, outputFile);
-
-		// Write stuff into it
-		Files.createDirectories(outputFile.getParent());
-		Files.copy(buffer.getInputStream(), outputFile, StandardCopyOption.REPLACE_EXISTING);
-	}
-	
-	protected Path getClassSourceFile(ClassName className) {
-		StringBuilder fqcnBuilder = new StringBuilder();
-		if (!className.getPackageName().isEmpty()) {
-			fqcnBuilder.append(className.getPackageName());
-			fqcnBuilder.append(".");
-		}
-		fqcnBuilder.append(className.getRawClassName());
-		String classFileName = fqcnBuilder.toString().replace('.', '/') + ".java";
-		return getOutputDirectory().resolve(classFileName);
+		logger.info("{}: Writing {}", type, className);
+		getOutputSink().write(type, className, buffer);
 	}
 	
 	@VisibleForTesting
@@ -332,42 +1036,88 @@ public class PojoGenerator extends AbstractGenerator {
 		// TODO: should produce ClassName directly
 		AnonymousClassNameGenerator classNameGenerator = getFeature(FEATURE_CLASS_NAME_GENERATOR);
 		String rawClassName = classNameGenerator.createClassName(type);
-		ClassName className = new ClassName(packageName, rawClassName);
-		while (generatedClassNames.containsValue(className)) {
-			// Make the name reasonably unique by adding a timestamp
-			className = new ClassName(packageName, rawClassName + "$" + System.nanoTime());
+		String documentRootBaseUri = getFeature(FEATURE_DOCUMENT_ROOT_BASE_URI);
+		if (documentRootBaseUri != null && type.getFragment().isEmpty()) {
+			// Name document roots after their document, so that roots of different documents do not collide
+			String path = URI.create(documentRootBaseUri).relativize(type.resolve("#")).getPath();
+			rawClassName = createDocumentClassName(path != null ? path : type.getSchemeSpecificPart());
+		}
+		ClassName className;
+		if (getFeature(FEATURE_GROUP_ANONYMOUS_TYPES)) {
+			Holder holder = getHolder(type, packageName);
+			// The holder already carries the name of the document
+			className = holder.assignNestedClassName(type.getFragment().isEmpty() ? "Type" : rawClassName);
+			nestedClassHolders.put(className, holder);
+		} else {
+			className = assignClassName(packageName, rawClassName);
 		}
 		mapping.setClassName(className);
 		return mapping;
 	}
-
+	
+	private ClassName assignClassName(String packageName, String rawClassName) {
+		ClassName className = new ClassName(packageName, rawClassName);
+		for (int suffix = 1; !assignedClassNames.add(className); suffix++) {
+			// Make the name unique with a counter, so that the names only depend on the order of generation
+			className = new ClassName(packageName, rawClassName + "$" + suffix);
+		}
+		return className;
+	}
+	
 	/**
-	 * Get the {@link SchemaTree} for the given {@code uri}.
+	 * Get the holder class for the anonymous types of the schema document of {@code type}.
+	 * 
+	 * The name of the holder is derived from the file name of the document.
 	 * 
-	 * This is similar to {@link SchemaLoader#get(URI)}, but allows {@code uri} to contain a fragment.
+	 * @param type
+	 * @param packageName
+	 * @return
+	 */
+	private Holder getHolder(URI type, String packageName) {
+		URI document = type.resolve("#");
+		Holder holder = holders.get(document);
+		if (holder == null) {
+			String path = document.getPath() != null ? document.getPath() : document.getSchemeSpecificPart();
+			holder = new Holder(document, assignClassName(packageName, createDocumentClassName(path.substring(path.lastIndexOf('/') + 1))));
+			holders.put(document, holder);
+		}
+		return holder;
+	}
+	
+	/**
+	 * Create a raw class name for a schema document from its {@code path}, without the extension of the file name.
 	 * 
-	 * @param uri
+	 * @param path the path of the document, or only its file name
 	 * @return
-	 * @throws ProcessingException 
-	 * @throws JsonPointerException 
 	 */
-	// XXX: Should this be the default behavior of SchemaLoader#get()?
-	// XXX: review exceptions
-	@VisibleForTesting
-	protected SchemaTree getSchema(SchemaLoader schemaLoader, URI uri) throws ProcessingException, JsonPointerException {
-		String fragment = uri.getFragment();
-		if (fragment == null) {
-			return schemaLoader.get(uri);
-		} else {
-			try {
-				URI schemaTreeUri = new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
-				JsonPointer pointer = new JsonPointer(fragment);
-				SchemaTree schema = schemaLoader.get(schemaTreeUri);
-				return schema.setPointer(pointer);
-			} catch (URISyntaxException e) {
-				assert false : "Was a URI before, we just removed the fragment";
-				throw new RuntimeException(e);
+	private static String createDocumentClassName(String path) {
+		int extensionIndex = path.indexOf('.', path.lastIndexOf('/') + 1);
+		if (extensionIndex != -1) {
+			path = path.substring(0, extensionIndex);
+		}
+		StringBuilder rawClassName = new StringBuilder();
+		for (String pathStep : path.split("[^\\p{javaJavaIdentifierPart}]+")) {
+			if (!pathStep.isEmpty()) {
+				rawClassName.append(Character.toUpperCase(pathStep.charAt(0)));
+				rawClassName.append(pathStep.substring(1));
 			}
 		}
+		if (rawClassName.length() == 0 || !Character.isJavaIdentifierStart(rawClassName.charAt(0))) {
+			rawClassName.insert(0, "Schema");
+		}
+		return rawClassName.toString();
+	}
+
+	/**
+	 * Get the compiled schema for the given {@code type}.
+	 * 
+	 * @param type
+	 * @return the schema, or {@code null} if the document of the {@code type} does not contain it
+	 * @throws ProcessingException if the document cannot be loaded
+	 * @throws JsonPointerException
+	 */
+	@VisibleForTesting
+	protected SchemaType getSchemaType(URI type) throws ProcessingException, JsonPointerException {
+		return getSchemaCompiler().compile(type);
 	}
 }
@@ -18,7 +18,9 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.IOException;
+import java.util.List;
 
+import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
 
 interface PojoPropertyGenerator {
@@ -26,4 +28,33 @@ interface PojoPropertyGenerator {
 	void generateFields(JavaWriter writer) throws IOException;
 	void generateGetter(JavaWriter writer) throws IOException;
 	void generateSetter(JavaWriter writer) throws IOException;
+	/**
+	 * Get the types of the fields written by {@link #generateFields(JavaWriter)}.
+	 * 
+	 * @return
+	 */
+	List<ClassName> getFieldTypes();
+	/**
+	 * Get the name of the property in JSON.
+	 * 
+	 * @return
+	 */
+	String getPropertyName();
+	/**
+	 * Write the statements writing the property to the {@code generator}.
+	 * 
+	 * @param writer
+	 * @param codecs
+	 * @param serializedNameField the field holding the name of the property as {@code SerializedString}
+	 * @throws IOException
+	 */
+	void generateWriteField(JavaWriter writer, StreamingCodecs codecs, String serializedNameField) throws IOException;
+	/**
+	 * Write the statements reading the property from the current value of the {@code parser}.
+	 * 
+	 * @param writer
+	 * @param codecs
+	 * @throws IOException
+	 */
+	void generateReadField(JavaWriter writer, StreamingCodecs codecs) throws IOException;
 }
\ No newline at end of file
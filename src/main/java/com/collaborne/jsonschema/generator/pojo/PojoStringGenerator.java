@@ -21,11 +21,11 @@ import java.io.IOException;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 
 public class PojoStringGenerator extends AbstractPojoTypeGenerator {
 	@Override
-	protected void generateType(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter writer)
+	protected void generateType(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer)
 			throws IOException, CodeGenerationException {
 		// TODO Auto-generated method stub
 
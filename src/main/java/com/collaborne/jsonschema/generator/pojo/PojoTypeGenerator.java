@@ -18,11 +18,13 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.IOException;
+import java.net.URI;
+import java.util.Set;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
-import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 
 interface PojoTypeGenerator {
 	/**
@@ -35,5 +37,30 @@ interface PojoTypeGenerator {
 	 * @throws IOException
 	 * @throws CodeGenerationException 
 	 */
-	ClassName generate(PojoCodeGenerationContext context, SchemaTree schema, JavaWriter javaWriter) throws IOException, CodeGenerationException;
+	ClassName generate(PojoCodeGenerationContext context, SchemaType schema, JavaWriter javaWriter) throws IOException, CodeGenerationException;
+	
+	/**
+	 * Get the types whose class names the output for {@code schema} depends on.
+	 * 
+	 * Together with the schema itself and the mapping these determine the generated code, which allows caching it.
+	 * 
+	 * @param schema
+	 * @return the types, or {@code null} if the output of this generator cannot be cached
+	 */
+	default Set<URI> getRequiredTypes(SchemaType schema) {
+		return null;
+	}
+	
+	/**
+	 * Register the support classes the output for {@code schema} uses, without generating the output.
+	 * 
+	 * This is needed when the output is taken from a cache.
+	 * 
+	 * @param context
+	 * @param schema
+	 * @throws CodeGenerationException
+	 */
+	default void useSupportClasses(PojoCodeGenerationContext context, SchemaType schema) throws CodeGenerationException {
+		// No support classes
+	}
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.java.Visibility;
+
+/**
+ * Generator for optional properties with primitive types, which records whether the property is present in a bit
+ * of a {@code long} mask field.
+ *
+ * The property with the first bit of a mask also writes the mask field. Jackson databind uses boxed accessors that
+ * map absent properties to {@code null}, and omits them when writing. A {@code null} value in the JSON makes the
+ * property absent, as it cannot be represented by the primitive field.
+ */
+class PresenceTrackingPojoPropertyGenerator extends SimplePojoPropertyGenerator {
+	private static final ClassName MASK_CLASS_NAME = ClassName.create(Long.TYPE);
+	private static final ClassName JSON_IGNORE = new ClassName("com.fasterxml.jackson.annotation", "JsonIgnore");
+	private static final ClassName JSON_INCLUDE = new ClassName("com.fasterxml.jackson.annotation", "JsonInclude");
+	private static final ClassName JSON_PROPERTY = new ClassName("com.fasterxml.jackson.annotation", "JsonProperty");
+	
+	private final int presenceBit;
+	
+	public PresenceTrackingPojoPropertyGenerator(ClassName className, String propertyName, int presenceBit) {
+		super(className, propertyName);
+		this.presenceBit = presenceBit;
+	}
+	
+	/**
+	 * Get the name of the mask field for the {@code presenceBit}.
+	 * 
+	 * @param presenceBit
+	 * @return
+	 */
+	public static String getMaskFieldName(int presenceBit) {
+		return "$present" + (presenceBit / 64);
+	}
+	
+	@Override
+	public void generateImports(JavaWriter writer) throws IOException {
+		super.generateImports(writer);
+		writer.writeImport(JSON_IGNORE);
+		writer.writeImport(JSON_INCLUDE);
+		writer.writeImport(JSON_PROPERTY);
+	}
+	
+	@Override
+	public void generateFields(JavaWriter writer) throws IOException {
+		if (presenceBit % 64 == 0) {
+			writer.writeField(Visibility.PRIVATE, MASK_CLASS_NAME, getMaskFieldName(presenceBit));
+		}
+		super.generateFields(writer);
+	}
+	
+	@Override
+	public void generateGetter(JavaWriter writer) throws IOException {
+		writer.writeCode("@" + writer.getShortName(JSON_IGNORE));
+		super.generateGetter(writer);
+		writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.create(Boolean.TYPE), getPrefixedPropertyName("has", getPropertyName()));
+		writer.writeCode("return " + getPresentCondition() + ";");
+		writer.writeMethodBodyEnd();
+		
+		ClassName boxedClassName = PrimitiveLists.getBoxedClassName(getClassName());
+		writer.writeCode("@" + writer.getShortName(JSON_PROPERTY) + "(\"" + getPropertyName() + "\")");
+		writer.writeCode("@" + writer.getShortName(JSON_INCLUDE) + "(" + writer.getShortName(JSON_INCLUDE) + ".Include.NON_NULL)");
+		writer.writeMethodBodyStart(Visibility.PRIVATE, boxedClassName, getPrefixedPropertyName("get$", getPropertyName()));
+		writer.writeCode("return " + getPresentCondition() + " ? " + boxedClassName.getRawClassName() + ".valueOf(this." + getPropertyName() + ") : null;");
+		writer.writeMethodBodyEnd();
+	}
+	
+	@Override
+	public void generateSetter(JavaWriter writer) throws IOException {
+		writer.writeCode("@" + writer.getShortName(JSON_IGNORE));
+		writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.VOID, getPrefixedPropertyName("set", getPropertyName()), getClassName(), "value");
+		writer.writeCode("this." + getPropertyName() + " = value;");
+		writer.writeCode("this." + getMaskFieldName(presenceBit) + " |= " + getMask() + ";");
+		writer.writeMethodBodyEnd();
+		
+		writer.writeMethodBodyStart(Visibility.PUBLIC, ClassName.VOID, getPrefixedPropertyName("clear", getPropertyName()));
+		writer.writeCode("this." + getPropertyName() + " = " + getDefaultValue() + ";");
+		writer.writeCode("this." + getMaskFieldName(presenceBit) + " &= ~" + getMask() + ";");
+		writer.writeMethodBodyEnd();
+		
+		ClassName boxedClassName = PrimitiveLists.getBoxedClassName(getClassName());
+		writer.writeCode("@" + writer.getShortName(JSON_PROPERTY) + "(\"" + getPropertyName() + "\")");
+		writer.writeMethodBodyStart(Visibility.PRIVATE, ClassName.VOID, getPrefixedPropertyName("set$", getPropertyName()), boxedClassName, "value");
+		writer.writeCode(
+			"if (value == null) {",
+			"\t" + getPrefixedPropertyName("clear", getPropertyName()) + "();",
+			"} else {",
+			"\t" + getPrefixedPropertyName("set", getPropertyName()) + "(value." + getClassName().getRawClassName() + "Value());",
+			"}");
+		writer.writeMethodBodyEnd();
+	}
+	
+	@Override
+	public List<ClassName> getFieldTypes() {
+		if (presenceBit % 64 == 0) {
+			return Arrays.asList(MASK_CLASS_NAME, getClassName());
+		}
+		return super.getFieldTypes();
+	}
+	
+	@Override
+	public void generateWriteField(JavaWriter writer, StreamingCodecs codecs, String serializedNameField) throws IOException {
+		// Absent properties are omitted
+		writer.writeCode("if (" + getPresentCondition() + ") {");
+		writer.pushIndentLevel();
+		super.generateWriteField(writer, codecs, serializedNameField);
+		writer.popIndentLevel();
+		writer.writeCode("}");
+	}
+	
+	@Override
+	public void generateReadField(JavaWriter writer, StreamingCodecs codecs) throws IOException {
+		writer.writeCode("if (parser.getCurrentToken() == " + writer.getShortName(StreamingCodecs.JSON_TOKEN) + ".VALUE_NULL) {");
+		writer.pushIndentLevel();
+		writer.writeCode("this." + getPropertyName() + " = " + getDefaultValue() + ";");
+		writer.writeCode("this." + getMaskFieldName(presenceBit) + " &= ~" + getMask() + ";");
+		writer.popIndentLevel();
+		writer.writeCode("} else {");
+		writer.pushIndentLevel();
+		super.generateReadField(writer, codecs);
+		writer.writeCode("this." + getMaskFieldName(presenceBit) + " |= " + getMask() + ";");
+		writer.popIndentLevel();
+		writer.writeCode("}");
+	}
+	
+	private String getDefaultValue() {
+		return "boolean".equals(getClassName().getRawClassName()) ? "false" : "0";
+	}
+	
+	private String getPresentCondition() {
+		return "(this." + getMaskFieldName(presenceBit) + " & " + getMask() + ") != 0";
+	}
+	
+	private String getMask() {
+		return "0x" + Long.toHexString(1L << (presenceBit % 64)) + "L";
+	}
+}
@@ -0,0 +1,145 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Growable lists of unboxed values, used for arrays of integers, numbers and booleans.
+ *
+ * The list classes ({@code IntList}, {@code LongList}, {@code DoubleList} and the bit set {@code BooleanList}) are written
+ * from the templates next to this class into a support package. They implement {@link java.util.List} for the boxed values,
+ * so Jackson databind can read and write them, and provide {@code getXXX(int)} and {@code addXXX(value)} methods for the
+ * unboxed values.
+ */
+public class PrimitiveLists {
+	/** Package of the list classes in the templates */
+	private static final String TEMPLATE_PACKAGE_NAME = "com.collaborne.jsonschema.generator.pojo.support";
+	/** Suffix of the list class name and of the accessors by the element type names */
+	private static final Map<String, String> NAMES = new HashMap<>();
+	private static final Map<String, ClassName> BOXED_TYPES = new HashMap<>();
+	static {
+		NAMES.put(Integer.TYPE.getName(), "Int");
+		NAMES.put(Long.TYPE.getName(), "Long");
+		NAMES.put(Double.TYPE.getName(), "Double");
+		NAMES.put(Boolean.TYPE.getName(), "Boolean");
+		BOXED_TYPES.put(Integer.TYPE.getName(), ClassName.create(Integer.class));
+		BOXED_TYPES.put(Long.TYPE.getName(), ClassName.create(Long.class));
+		BOXED_TYPES.put(Double.TYPE.getName(), ClassName.create(Double.class));
+		BOXED_TYPES.put(Boolean.TYPE.getName(), ClassName.create(Boolean.class));
+	}
+	
+	/**
+	 * Get the list class for elements of {@code elementClassName}.
+	 * 
+	 * @param packageName the support package
+	 * @param elementClassName
+	 * @return the list class, or {@code null} if there is no specialized list for the elements
+	 */
+	@Nullable
+	public static ClassName getListClassName(@Nonnull String packageName, @Nonnull ClassName elementClassName) {
+		String name = getName(elementClassName);
+		return name != null ? new ClassName(packageName, name + "List") : null;
+	}
+	
+	/**
+	 * Get the element type of the list class {@code listClassName}.
+	 * 
+	 * @param packageName the support package
+	 * @param listClassName
+	 * @return the primitive element type, or {@code null} if {@code listClassName} is no specialized list
+	 */
+	@Nullable
+	public static ClassName getElementClassName(@Nonnull String packageName, @Nonnull ClassName listClassName) {
+		if (!packageName.equals(listClassName.getPackageName())) {
+			return null;
+		}
+		for (Map.Entry<String, String> entry : NAMES.entrySet()) {
+			if ((entry.getValue() + "List").equals(listClassName.getRawClassName())) {
+				return new ClassName("", entry.getKey());
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the suffix of the unboxed accessors ({@code getXXX}, {@code setXXX}, {@code addXXX}) for elements of {@code elementClassName}.
+	 * 
+	 * @param elementClassName
+	 * @return the suffix, or {@code null} if there is no specialized list for the elements
+	 */
+	@Nullable
+	public static String getName(@Nonnull ClassName elementClassName) {
+		return elementClassName.getPackageName().isEmpty() ? NAMES.get(elementClassName.getRawClassName()) : null;
+	}
+	
+	/**
+	 * Get the boxed type for a primitive type.
+	 * 
+	 * @param className
+	 * @return the boxed type, or {@code className} if it is not primitive
+	 */
+	@Nonnull
+	public static ClassName getBoxedClassName(@Nonnull ClassName className) {
+		ClassName boxedClassName = className.getPackageName().isEmpty() ? BOXED_TYPES.get(className.getRawClassName()) : null;
+		return boxedClassName != null ? boxedClassName : className;
+	}
+	
+	/**
+	 * Get the source of the list class {@code listClassName}.
+	 * 
+	 * @param listClassName a class returned by {@link #getListClassName(String, ClassName)}
+	 * @return
+	 * @throws IOException
+	 */
+	@Nonnull
+	public static String getSource(@Nonnull ClassName listClassName) throws IOException {
+		ClassName elementClassName = getElementClassName(listClassName.getPackageName(), listClassName);
+		if (elementClassName == null) {
+			throw new IllegalArgumentException("No primitive list class: " + listClassName);
+		}
+		
+		boolean isBitSet = "boolean".equals(elementClassName.getRawClassName());
+		String source = readTemplate(isBitSet ? "BooleanList.java.template" : "PrimitiveList.java.template");
+		source = source.replace("package " + TEMPLATE_PACKAGE_NAME + ";", "package " + listClassName.getPackageName() + ";");
+		return source
+			.replace("${List}", listClassName.getRawClassName())
+			.replace("${Name}", getName(elementClassName))
+			.replace("${Boxed}", getBoxedClassName(elementClassName).getRawClassName())
+			.replace("${type}", elementClassName.getRawClassName());
+	}
+	
+	private static String readTemplate(String name) throws IOException {
+		try (InputStream input = PrimitiveLists.class.getResourceAsStream(name)) {
+			if (input == null) {
+				throw new IOException("Missing template " + name);
+			}
+			return new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+		}
+	}
+}
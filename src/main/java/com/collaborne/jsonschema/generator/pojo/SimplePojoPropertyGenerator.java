@@ -18,6 +18,8 @@
 package com.collaborne.jsonschema.generator.pojo;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import com.collaborne.jsonschema.generator.java.ClassName;
 import com.collaborne.jsonschema.generator.java.JavaWriter;
@@ -32,6 +34,10 @@ class SimplePojoPropertyGenerator extends AbstractPojoPropertyGenerator {
 		this.propertyName = propertyName;
 	}
 	
+	protected ClassName getClassName() {
+		return className;
+	}
+	
 	@Override
 	public void generateImports(JavaWriter writer) throws IOException {
 		writer.writeImport(className);
@@ -55,4 +61,25 @@ class SimplePojoPropertyGenerator extends AbstractPojoPropertyGenerator {
 		writer.writeCode("this." + propertyName + " = value;");
 		writer.writeMethodBodyEnd();
 	}
+
+	@Override
+	public List<ClassName> getFieldTypes() {
+		return Collections.singletonList(className);
+	}
+	
+	@Override
+	public String getPropertyName() {
+		return propertyName;
+	}
+	
+	@Override
+	public void generateWriteField(JavaWriter writer, StreamingCodecs codecs, String serializedNameField) throws IOException {
+		writer.writeCode("generator.writeFieldName(" + serializedNameField + ");");
+		codecs.generateWriteValue(writer, className, "this." + propertyName, 0);
+	}
+	
+	@Override
+	public void generateReadField(JavaWriter writer, StreamingCodecs codecs) throws IOException {
+		codecs.generateReadValue(writer, className, "this." + propertyName, 0);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,244 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+
+/**
+ * Generates the code for reading and writing values with the Jackson streaming API.
+ *
+ * Classes with streaming codecs provide {@code writeTo(JsonGenerator)} and {@code static readFrom(JsonParser)}, other
+ * values are read and written with the primitive methods of the parser and generator, or using the codec of them.
+ */
+class StreamingCodecs {
+	public static final ClassName IO_EXCEPTION = ClassName.create(IOException.class);
+	public static final ClassName JSON_GENERATOR = new ClassName("com.fasterxml.jackson.core", "JsonGenerator");
+	public static final ClassName JSON_PARSER = new ClassName("com.fasterxml.jackson.core", "JsonParser");
+	public static final ClassName JSON_TOKEN = new ClassName("com.fasterxml.jackson.core", "JsonToken");
+	public static final ClassName JSON_PARSE_EXCEPTION = new ClassName("com.fasterxml.jackson.core", "JsonParseException");
+	public static final ClassName SERIALIZED_STRING = new ClassName("com.fasterxml.jackson.core.io", "SerializedString");
+	public static final ClassName TYPE_REFERENCE = new ClassName("com.fasterxml.jackson.core.type", "TypeReference");
+	public static final ClassName JSON_SERIALIZER = new ClassName("com.fasterxml.jackson.databind", "JsonSerializer");
+	public static final ClassName JSON_DESERIALIZER = new ClassName("com.fasterxml.jackson.databind", "JsonDeserializer");
+	public static final ClassName SERIALIZER_PROVIDER = new ClassName("com.fasterxml.jackson.databind", "SerializerProvider");
+	public static final ClassName DESERIALIZATION_CONTEXT = new ClassName("com.fasterxml.jackson.databind", "DeserializationContext");
+	public static final ClassName SIMPLE_MODULE = new ClassName("com.fasterxml.jackson.databind.module", "SimpleModule");
+	/** Exceptions declared by all codec methods */
+	public static final List<ClassName> EXCEPTIONS = Arrays.asList(IO_EXCEPTION);
+	
+	private static final ClassName LIST = ClassName.create(List.class);
+	private static final ClassName ARRAY_LIST = ClassName.create(ArrayList.class);
+	private static final ClassName STRING = ClassName.create(String.class);
+	/** Boxed types by the primitive type names */
+	private static final Map<String, ClassName> BOXED_TYPES = new HashMap<>();
+	/** Suffix of the {@code JsonParser.getValueAsXXX()} and {@code JsonGenerator.writeXXX()} methods by the primitive type names */
+	private static final Map<String, String> VALUE_METHODS = new HashMap<>();
+	static {
+		BOXED_TYPES.put(Integer.TYPE.getName(), ClassName.create(Integer.class));
+		BOXED_TYPES.put(Long.TYPE.getName(), ClassName.create(Long.class));
+		BOXED_TYPES.put(Double.TYPE.getName(), ClassName.create(Double.class));
+		BOXED_TYPES.put(Boolean.TYPE.getName(), ClassName.create(Boolean.class));
+		VALUE_METHODS.put(Integer.TYPE.getName(), "Int");
+		VALUE_METHODS.put(Long.TYPE.getName(), "Long");
+		VALUE_METHODS.put(Double.TYPE.getName(), "Double");
+		VALUE_METHODS.put(Boolean.TYPE.getName(), "Boolean");
+	}
+	
+	private final PojoCodeGenerationContext context;
+	
+	public StreamingCodecs(PojoCodeGenerationContext context) {
+		this.context = context;
+	}
+	
+	/**
+	 * Import the classes needed for reading and writing values of {@code type}.
+	 * 
+	 * @param writer
+	 * @param type
+	 * @throws IOException
+	 */
+	public void generateImports(JavaWriter writer, ClassName type) throws IOException {
+		if (isList(type)) {
+			writer.writeImport(ARRAY_LIST);
+			generateImports(writer, getElementType(type));
+		} else if (type.getTypeArguments() != null && type.getTypeArguments().length > 0) {
+			writer.writeImport(TYPE_REFERENCE);
+			for (ClassName typeArgument : type.getTypeArguments()) {
+				writer.writeImport(typeArgument);
+			}
+		}
+	}
+	
+	/**
+	 * Write the statements that write {@code expression} of {@code type} to the {@code generator}.
+	 * 
+	 * @param writer
+	 * @param type
+	 * @param expression an expression without side-effects
+	 * @param depth the nesting depth, used for naming local variables
+	 * @throws IOException
+	 */
+	public void generateWriteValue(JavaWriter writer, ClassName type, String expression, int depth) throws IOException {
+		String valueMethod = getValueMethod(type);
+		if (valueMethod != null) {
+			writer.writeCode("generator.write" + (valueMethod.equals("Boolean") ? "Boolean" : "Number") + "(" + expression + ");");
+			return;
+		}
+		if (STRING.equals(type)) {
+			writer.writeCode("generator.writeString(" + expression + ");");
+			return;
+		}
+		
+		writer.writeCode("if (" + expression + " == null) {");
+		writer.pushIndentLevel();
+		writer.writeCode("generator.writeNull();");
+		writer.popIndentLevel();
+		writer.writeCode("} else {");
+		writer.pushIndentLevel();
+		ClassName primitiveElementType = context.getPrimitiveListElementClassName(type);
+		if (primitiveElementType != null) {
+			String index = "index" + depth;
+			writer.writeCode("generator.writeStartArray();");
+			writer.writeCode("for (int " + index + " = 0; " + index + " < " + expression + ".size(); " + index + "++) {");
+			writer.pushIndentLevel();
+			generateWriteValue(writer, primitiveElementType, expression + ".get" + PrimitiveLists.getName(primitiveElementType) + "(" + index + ")", depth + 1);
+			writer.popIndentLevel();
+			writer.writeCode("}");
+			writer.writeCode("generator.writeEndArray();");
+		} else if (isList(type)) {
+			ClassName elementType = getElementType(type);
+			String element = "element" + depth;
+			writer.writeCode("generator.writeStartArray();");
+			writer.writeCode("for (" + writer.getShortName(elementType) + " " + element + " : " + expression + ") {");
+			writer.pushIndentLevel();
+			generateWriteValue(writer, elementType, element, depth + 1);
+			writer.popIndentLevel();
+			writer.writeCode("}");
+			writer.writeCode("generator.writeEndArray();");
+		} else if (BOXED_TYPES.containsValue(type)) {
+			writer.writeCode("generator.write" + (type.getRawClassName().equals("Boolean") ? "Boolean" : "Number") + "(" + expression + ");");
+		} else if (context.hasStreamingCodec(type)) {
+			writer.writeCode(expression + ".writeTo(generator);");
+		} else {
+			writer.writeCode("generator.writeObject(" + expression + ");");
+		}
+		writer.popIndentLevel();
+		writer.writeCode("}");
+	}
+	
+	/**
+	 * Write the statements that read a value of {@code type} from the current token of the {@code parser} into {@code target}.
+	 * 
+	 * Afterwards the parser is positioned at the last token of the value.
+	 * 
+	 * @param writer
+	 * @param type
+	 * @param target the variable or field to assign
+	 * @param depth the nesting depth, used for naming local variables
+	 * @throws IOException
+	 */
+	public void generateReadValue(JavaWriter writer, ClassName type, String target, int depth) throws IOException {
+		String valueMethod = getValueMethod(type);
+		if (valueMethod != null) {
+			writer.writeCode(target + " = parser.getValueAs" + valueMethod + "();");
+		} else if (STRING.equals(type)) {
+			writer.writeCode(target + " = parser.getValueAsString();");
+		} else if (context.hasStreamingCodec(type)) {
+			writer.writeCode(target + " = " + writer.getShortName(type) + ".readFrom(parser);");
+		} else {
+			writer.writeCode("if (parser.getCurrentToken() == " + writer.getShortName(JSON_TOKEN) + ".VALUE_NULL) {");
+			writer.pushIndentLevel();
+			writer.writeCode(target + " = null;");
+			writer.popIndentLevel();
+			ClassName primitiveElementType = context.getPrimitiveListElementClassName(type);
+			if (primitiveElementType != null || isList(type)) {
+				String list = "list" + depth;
+				writer.writeCode("} else if (parser.getCurrentToken() != " + writer.getShortName(JSON_TOKEN) + ".START_ARRAY) {");
+				writer.pushIndentLevel();
+				writer.writeCode("throw new " + writer.getShortName(JSON_PARSE_EXCEPTION) + "(\"Expected an array\", parser.getCurrentLocation());");
+				writer.popIndentLevel();
+				writer.writeCode("} else {");
+				writer.pushIndentLevel();
+				if (primitiveElementType != null) {
+					writer.writeCode(writer.getShortName(type) + " " + list + " = new " + writer.getShortName(type) + "();");
+					writer.writeCode("while (parser.nextToken() != " + writer.getShortName(JSON_TOKEN) + ".END_ARRAY) {");
+					writer.pushIndentLevel();
+					writer.writeCode(list + ".add" + PrimitiveLists.getName(primitiveElementType) + "(parser.getValueAs" + getValueMethod(primitiveElementType) + "());");
+				} else {
+					ClassName elementType = getElementType(type);
+					String element = "element" + depth;
+					writer.writeCode(writer.getShortName(type) + " " + list + " = new " + writer.getShortName(ARRAY_LIST) + "<>();");
+					writer.writeCode("while (parser.nextToken() != " + writer.getShortName(JSON_TOKEN) + ".END_ARRAY) {");
+					writer.pushIndentLevel();
+					writer.writeCode(writer.getShortName(elementType) + " " + element + ";");
+					generateReadValue(writer, elementType, element, depth + 1);
+					writer.writeCode("parser.skipChildren();");
+					writer.writeCode(list + ".add(" + element + ");");
+				}
+				writer.popIndentLevel();
+				writer.writeCode("}");
+				writer.writeCode(target + " = " + list + ";");
+			} else {
+				writer.writeCode("} else {");
+				writer.pushIndentLevel();
+				String boxedValueMethod = getBoxedValueMethod(type);
+				if (boxedValueMethod != null) {
+					writer.writeCode(target + " = " + writer.getShortName(type) + ".valueOf(parser.getValueAs" + boxedValueMethod + "());");
+				} else if (type.getTypeArguments() != null && type.getTypeArguments().length > 0) {
+					writer.writeCode(target + " = parser.readValueAs(new " + writer.getShortName(TYPE_REFERENCE) + "<" + writer.getShortName(type) + ">() {});");
+				} else {
+					writer.writeCode(target + " = parser.readValueAs(" + writer.getShortName(type) + ".class);");
+				}
+			}
+			writer.popIndentLevel();
+			writer.writeCode("}");
+		}
+	}
+	
+	private static boolean isList(ClassName type) {
+		return LIST.getPackageName().equals(type.getPackageName()) && LIST.getRawClassName().equals(type.getRawClassName());
+	}
+	
+	private static ClassName getElementType(ClassName listType) {
+		ClassName elementType = listType.getTypeArguments()[0];
+		// Collections can only hold boxed values
+		ClassName boxedType = elementType.getPackageName().isEmpty() ? BOXED_TYPES.get(elementType.getRawClassName()) : null;
+		return boxedType != null ? boxedType : elementType;
+	}
+	
+	private static String getValueMethod(ClassName type) {
+		return type.getPackageName().isEmpty() ? VALUE_METHODS.get(type.getRawClassName()) : null;
+	}
+	
+	private static String getBoxedValueMethod(ClassName type) {
+		for (Map.Entry<String, ClassName> entry : BOXED_TYPES.entrySet()) {
+			if (entry.getValue().equals(type)) {
+				return VALUE_METHODS.get(entry.getKey());
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,116 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.pojo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Insertion-ordered open addressing maps with {@code String} keys, used for {@code additionalProperties}.
+ *
+ * The generic {@code StringMap<V>} and the maps with unboxed values ({@code StringIntMap}, {@code StringLongMap} and
+ * {@code StringDoubleMap}) are written from the templates next to this class into a support package. They implement
+ * {@link java.util.Map}, and provide {@code keyAt(int)} and {@code valueAt(int)} for iterating without allocating.
+ */
+public class StringMaps {
+	/** Package of the map classes in the templates */
+	private static final String TEMPLATE_PACKAGE_NAME = "com.collaborne.jsonschema.generator.pojo.support";
+	private static final String GENERIC_MAP_NAME = "StringMap";
+	/** Value types with a specialized map */
+	private static final Set<String> PRIMITIVE_VALUE_TYPE_NAMES = new HashSet<>(Arrays.asList(Integer.TYPE.getName(), Long.TYPE.getName(), Double.TYPE.getName()));
+	
+	/**
+	 * Get the map class for values of {@code valueClassName}.
+	 * 
+	 * @param packageName the support package
+	 * @param valueClassName
+	 * @return
+	 */
+	@Nonnull
+	public static ClassName getMapClassName(@Nonnull String packageName, @Nonnull ClassName valueClassName) {
+		if (valueClassName.getPackageName().isEmpty() && PRIMITIVE_VALUE_TYPE_NAMES.contains(valueClassName.getRawClassName())) {
+			return new ClassName(packageName, "String" + PrimitiveLists.getName(valueClassName) + "Map");
+		}
+		return new ClassName(packageName, GENERIC_MAP_NAME, PrimitiveLists.getBoxedClassName(valueClassName));
+	}
+	
+	/**
+	 * Get the unboxed value type of the map class {@code mapClassName}.
+	 * 
+	 * @param packageName the support package
+	 * @param mapClassName
+	 * @return the primitive value type, or {@code null} if {@code mapClassName} is no map with unboxed values
+	 */
+	@Nullable
+	public static ClassName getPrimitiveValueClassName(@Nonnull String packageName, @Nonnull ClassName mapClassName) {
+		if (!packageName.equals(mapClassName.getPackageName())) {
+			return null;
+		}
+		for (String typeName : PRIMITIVE_VALUE_TYPE_NAMES) {
+			ClassName valueClassName = new ClassName("", typeName);
+			if (("String" + PrimitiveLists.getName(valueClassName) + "Map").equals(mapClassName.getRawClassName())) {
+				return valueClassName;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Get the source of the map class {@code mapClassName}.
+	 * 
+	 * @param mapClassName a class returned by {@link #getMapClassName(String, ClassName)}
+	 * @return
+	 * @throws IOException
+	 */
+	@Nonnull
+	public static String getSource(@Nonnull ClassName mapClassName) throws IOException {
+		String source;
+		ClassName valueClassName = getPrimitiveValueClassName(mapClassName.getPackageName(), mapClassName);
+		if (valueClassName != null) {
+			source = readTemplate("StringPrimitiveMap.java.template")
+				.replace("${Map}", mapClassName.getRawClassName())
+				.replace("${Name}", PrimitiveLists.getName(valueClassName))
+				.replace("${Boxed}", PrimitiveLists.getBoxedClassName(valueClassName).getRawClassName())
+				.replace("${type}", valueClassName.getRawClassName());
+		} else if (GENERIC_MAP_NAME.equals(mapClassName.getRawClassName())) {
+			source = readTemplate("StringMap.java.template");
+		} else {
+			throw new IllegalArgumentException("No string map class: " + mapClassName);
+		}
+		return source.replace("package " + TEMPLATE_PACKAGE_NAME + ";", "package " + mapClassName.getPackageName() + ";");
+	}
+	
+	private static String readTemplate(String name) throws IOException {
+		try (InputStream input = StringMaps.class.getResourceAsStream(name)) {
+			if (input == null) {
+				throw new IOException("Missing template " + name);
+			}
+			return new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.runtime;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Class loader for the classes generated for one schema.
+ *
+ * Dropping all references to the loader and its classes allows the JVM to unload them.
+ */
+class GeneratedClassLoader extends ClassLoader {
+	static {
+		registerAsParallelCapable();
+	}
+
+	private final Map<String, byte[]> classFiles;
+
+	public GeneratedClassLoader(ClassLoader parent, Map<String, byte[]> classFiles) {
+		super(parent);
+		this.classFiles = new HashMap<>(classFiles);
+	}
+
+	@Override
+	protected Class<?> findClass(String name) throws ClassNotFoundException {
+		byte[] classFile;
+		synchronized (classFiles) {
+			// Once defined the class file is no longer needed
+			classFile = classFiles.remove(name);
+		}
+		if (classFile == null) {
+			throw new ClassNotFoundException(name);
+		}
+		return defineClass(name, classFile, 0, classFile.length);
+	}
+}
@@ -0,0 +1,188 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.Nonnull;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+
+/**
+ * Compiles Java sources into class files without using the filesystem.
+ */
+class InMemoryJavaCompiler {
+	private static class SourceFile extends SimpleJavaFileObject {
+		private final CharSequence source;
+
+		public SourceFile(String className, CharSequence source) {
+			super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+			this.source = source;
+		}
+
+		@Override
+		public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+			return source;
+		}
+	}
+
+	private static class ClassFile extends SimpleJavaFileObject {
+		private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+		public ClassFile(String className) {
+			super(URI.create("bytes:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+		}
+
+		@Override
+		public OutputStream openOutputStream() {
+			return output;
+		}
+	}
+
+	private final JavaCompiler compiler;
+	private final String classPath;
+
+	public InMemoryJavaCompiler(@Nonnull String classPath) {
+		this.compiler = ToolProvider.getSystemJavaCompiler();
+		if (compiler == null) {
+			throw new IllegalStateException("No Java compiler available, a JDK is required");
+		}
+		this.classPath = classPath;
+	}
+
+	/**
+	 * Get the class path for compiling against the classes visible to {@code classLoader}.
+	 *
+	 * This collects the file URLs of all {@link URLClassLoader}s in the hierarchy, and the {@code java.class.path} for the
+	 * system class loader. The entries of parent loaders come first, matching the delegation order.
+	 *
+	 * @param classLoader
+	 * @return the class path
+	 */
+	public static String getClassPath(@Nonnull ClassLoader classLoader) {
+		List<List<String>> loaderEntries = new ArrayList<>();
+		ClassLoader systemClassLoader = ClassLoader.getSystemClassLoader();
+		for (ClassLoader loader = classLoader; loader != null; loader = loader.getParent()) {
+			List<String> entries = new ArrayList<>();
+			if (loader instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) loader).getURLs()) {
+					if ("file".equals(url.getProtocol())) {
+						try {
+							entries.add(Paths.get(url.toURI()).toString());
+						} catch (URISyntaxException e) {
+							// Not a usable file, javac could not read it either
+						}
+					}
+				}
+			}
+			if (loader == systemClassLoader) {
+				entries.addAll(Arrays.asList(System.getProperty("java.class.path").split(File.pathSeparator)));
+			}
+			loaderEntries.add(entries);
+		}
+		Collections.reverse(loaderEntries);
+
+		Set<String> classPath = new LinkedHashSet<>();
+		for (List<String> entries : loaderEntries) {
+			classPath.addAll(entries);
+		}
+		return String.join(File.pathSeparator, classPath);
+	}
+
+	/**
+	 * Compile the given sources.
+	 *
+	 * @param type the type for which the sources were generated, for reporting failures
+	 * @param sources map of fully qualified class names to their source
+	 * @return map of the binary class names to the class files
+	 * @throws CodeGenerationException if compilation fails
+	 */
+	public Map<String, byte[]> compile(@Nonnull URI type, @Nonnull Map<String, ? extends CharSequence> sources) throws CodeGenerationException {
+		List<JavaFileObject> sourceFiles = new ArrayList<>();
+		for (Map.Entry<String, ? extends CharSequence> source : sources.entrySet()) {
+			sourceFiles.add(new SourceFile(source.getKey(), source.getValue()));
+		}
+
+		Map<String, ClassFile> classFiles = new HashMap<>();
+		DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+		StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8);
+		JavaFileManager fileManager = new ForwardingJavaFileManager<StandardJavaFileManager>(standardFileManager) {
+			@Override
+			public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind, FileObject sibling) {
+				ClassFile classFile = new ClassFile(className);
+				classFiles.put(className, classFile);
+				return classFile;
+			}
+		};
+
+		boolean success;
+		try {
+			success = compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-classpath", classPath, "-proc:none"), null, sourceFiles).call().booleanValue();
+		} finally {
+			try {
+				fileManager.close();
+			} catch (IOException e) {
+				// In-memory files, nothing can fail here
+			}
+		}
+
+		if (!success) {
+			StringBuilder message = new StringBuilder("Cannot compile generated sources:");
+			for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+				if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+					message.append('\n').append(diagnostic.getSource() != null ? diagnostic.getSource().getName() : "?");
+					message.append(':').append(diagnostic.getLineNumber()).append(": ").append(diagnostic.getMessage(null));
+				}
+			}
+			throw new CodeGenerationException(type, message.toString());
+		}
+
+		Map<String, byte[]> result = new HashMap<>();
+		for (Map.Entry<String, ClassFile> classFile : classFiles.entrySet()) {
+			result.put(classFile.getKey(), classFile.getValue().output.toByteArray());
+		}
+		return result;
+	}
+}
@@ -0,0 +1,321 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.runtime;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.output.InMemoryOutputSink;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+
+/**
+ * Generates, compiles and loads bean classes for schemas at runtime.
+ *
+ * The classes for each requested batch of types are generated with a fresh {@link Generator}, compiled in memory
+ * against the class path of the parent class loader, and defined in a class loader shared by the batch. The loaded
+ * types are kept in a cache with least-recently-used eviction: once all types of an evicted class loader are evicted
+ * and its classes are no longer referenced the JVM can unload them. Types that do not need a class are cached as well.
+ * Concurrent requests for the same type share a single generation.
+ */
+public class RuntimeBeanLoader {
+	private static final LoadedType NO_CLASS = new LoadedType(null, null);
+
+	private static class LoadedType {
+		private final ClassLoader classLoader;
+		private final Class<?> beanClass;
+
+		public LoadedType(ClassLoader classLoader, Class<?> beanClass) {
+			this.classLoader = classLoader;
+			this.beanClass = beanClass;
+		}
+	}
+
+	private final Logger logger = LoggerFactory.getLogger(RuntimeBeanLoader.class);
+	private final Supplier<? extends Generator> generatorFactory;
+	private final SchemaLoader schemaLoader;
+	private final ParsedSchemaCache parsedSchemaCache;
+	private final ClassLoader parentClassLoader;
+	private final InMemoryJavaCompiler compiler;
+	private final Map<URI, LoadedType> loadedTypes;
+	private final Map<URI, FutureTask<Map<URI, LoadedType>>> pendingTypes = new HashMap<>();
+	private int generationCount;
+
+	/**
+	 * Create the loader.
+	 *
+	 * @param generatorFactory factory for the generators, called once for each generated batch of types
+	 * @param schemaLoader the loader for the schemas
+	 * @param parentClassLoader the parent for the class loaders of the generated classes, must be able to load all mapped classes
+	 * @param maximumLoadedTypes maximum number of types that are kept
+	 */
+	public RuntimeBeanLoader(@Nonnull Supplier<? extends Generator> generatorFactory, @Nonnull SchemaLoader schemaLoader, @Nonnull ClassLoader parentClassLoader, int maximumLoadedTypes) {
+		this(generatorFactory, schemaLoader, null, parentClassLoader, maximumLoadedTypes);
+	}
+
+	/**
+	 * Create the loader, loading the schema documents through a bounded cache.
+	 *
+	 * The schema loader should not cache the documents itself, see
+	 * {@link com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder#setEnableCache(boolean)}.
+	 *
+	 * @param generatorFactory factory for the generators, called once for each generated batch of types
+	 * @param schemaLoader the loader for the schemas
+	 * @param parsedSchemaCache the cache for the schema documents, shared by all generations, or {@code null}
+	 * @param parentClassLoader the parent for the class loaders of the generated classes, must be able to load all mapped classes
+	 * @param maximumLoadedTypes maximum number of types that are kept
+	 */
+	public RuntimeBeanLoader(@Nonnull Supplier<? extends Generator> generatorFactory, @Nonnull SchemaLoader schemaLoader, @Nullable ParsedSchemaCache parsedSchemaCache, @Nonnull ClassLoader parentClassLoader, int maximumLoadedTypes) {
+		this.generatorFactory = generatorFactory;
+		this.schemaLoader = schemaLoader;
+		this.parsedSchemaCache = parsedSchemaCache;
+		this.parentClassLoader = parentClassLoader;
+		this.compiler = new InMemoryJavaCompiler(InMemoryJavaCompiler.getClassPath(parentClassLoader));
+		this.loadedTypes = new LinkedHashMap<URI, LoadedType>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<URI, LoadedType> eldest) {
+				if (size() > maximumLoadedTypes) {
+					logger.debug("{}: Evicting class loader", eldest.getKey());
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Get the bean class for {@code type}, generating it if needed.
+	 *
+	 * @param type
+	 * @return the class, or {@code null} if the type does not need a class
+	 * @throws CodeGenerationException
+	 */
+	public Class<?> getBeanClass(@Nonnull URI type) throws CodeGenerationException {
+		return getBeanClasses(Collections.singleton(type)).get(type);
+	}
+
+	/**
+	 * Get the bean classes for {@code types}, generating the missing ones together.
+	 *
+	 * All classes generated by one call are defined in the same class loader. Types that were generated along with
+	 * {@code types}, for instance the types of their properties, are remembered with that class loader as well.
+	 *
+	 * @param types
+	 * @return map of the types to their classes, the class is {@code null} if the type does not need a class
+	 * @throws CodeGenerationException
+	 */
+	public Map<URI, Class<?>> getBeanClasses(@Nonnull Collection<URI> types) throws CodeGenerationException {
+		Map<URI, LoadedType> loaded = new HashMap<>();
+		Map<URI, FutureTask<Map<URI, LoadedType>>> waiting = new HashMap<>();
+		List<URI> batch = new ArrayList<>();
+		FutureTask<Map<URI, LoadedType>> task = null;
+		synchronized (loadedTypes) {
+			for (URI type : types) {
+				LoadedType loadedType = loadedTypes.get(type);
+				if (loadedType != null) {
+					loaded.put(type, loadedType);
+					continue;
+				}
+				FutureTask<Map<URI, LoadedType>> pendingTask = pendingTypes.get(type);
+				if (pendingTask != null) {
+					waiting.put(type, pendingTask);
+				} else if (!batch.contains(type)) {
+					batch.add(type);
+				}
+			}
+			if (!batch.isEmpty()) {
+				task = new FutureTask<>(new Callable<Map<URI, LoadedType>>() {
+					@Override
+					public Map<URI, LoadedType> call() throws CodeGenerationException {
+						return load(batch);
+					}
+				});
+				for (URI type : batch) {
+					pendingTypes.put(type, task);
+					waiting.put(type, task);
+				}
+			}
+		}
+
+		if (task != null) {
+			try {
+				task.run();
+			} finally {
+				synchronized (loadedTypes) {
+					for (URI type : batch) {
+						pendingTypes.remove(type);
+					}
+					try {
+						Map<URI, LoadedType> batchTypes = task.get();
+						// Keep the classes of already loaded types, which might have been handed out before
+						for (Map.Entry<URI, LoadedType> entry : batchTypes.entrySet()) {
+							if (!batch.contains(entry.getKey()) && !loadedTypes.containsKey(entry.getKey())) {
+								loadedTypes.put(entry.getKey(), entry.getValue());
+							}
+						}
+						// Record the requested types last, so they are the most recently used ones
+						for (URI type : batch) {
+							loadedTypes.put(type, batchTypes.get(type));
+						}
+					} catch (InterruptedException|ExecutionException e) {
+						// Reported below
+					}
+				}
+			}
+		}
+
+		for (Map.Entry<URI, FutureTask<Map<URI, LoadedType>>> entry : waiting.entrySet()) {
+			URI type = entry.getKey();
+			try {
+				loaded.put(type, entry.getValue().get().get(type));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CodeGenerationException(type, "Interrupted while waiting for generation", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof CodeGenerationException) {
+					throw (CodeGenerationException) e.getCause();
+				}
+				throw new CodeGenerationException(type, e.getCause());
+			}
+		}
+
+		Map<URI, Class<?>> result = new LinkedHashMap<>();
+		for (URI type : types) {
+			result.put(type, loaded.get(type).beanClass);
+		}
+		return result;
+	}
+
+	/**
+	 * Get the number of types for which classes are currently kept.
+	 *
+	 * @return
+	 */
+	public int getLoadedTypeCount() {
+		synchronized (loadedTypes) {
+			return loadedTypes.size();
+		}
+	}
+
+	/**
+	 * Get the number of generations done so far.
+	 *
+	 * @return
+	 */
+	public synchronized int getGenerationCount() {
+		return generationCount;
+	}
+
+	/**
+	 * Drop the class loader for {@code type}.
+	 *
+	 * @param type
+	 */
+	public void evict(@Nonnull URI type) {
+		synchronized (loadedTypes) {
+			loadedTypes.remove(type);
+		}
+	}
+
+	private Map<URI, LoadedType> load(List<URI> types) throws CodeGenerationException {
+		synchronized (this) {
+			generationCount++;
+		}
+
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		URI type = types.get(0);
+		try {
+			Generator generator = generatorFactory.get();
+			generator.setSchemaLoader(schemaLoader);
+			generator.setParsedSchemaCache(parsedSchemaCache);
+			generator.setOutputSink(outputSink);
+			Map<URI, ClassName> classNames = new LinkedHashMap<>();
+			for (URI t : types) {
+				type = t;
+				classNames.put(type, generator.generate(type));
+			}
+			generator.flush();
+
+			Map<String, CharSequence> sources = new HashMap<>();
+			for (Map.Entry<ClassName, ByteBuffer> source : outputSink.getSources().entrySet()) {
+				sources.put(getBinaryName(source.getKey()), StandardCharsets.UTF_8.decode(source.getValue()));
+			}
+			logger.debug("{}: Compiling {} generated classes for {} types", type, sources.size(), types.size());
+			ClassLoader classLoader = sources.isEmpty() ? parentClassLoader : new GeneratedClassLoader(parentClassLoader, compiler.compile(type, sources));
+
+			Map<URI, LoadedType> result = new HashMap<>();
+			for (Map.Entry<URI, ClassName> className : classNames.entrySet()) {
+				type = className.getKey();
+				if (className.getValue() == null) {
+					result.put(type, NO_CLASS);
+				} else {
+					result.put(type, new LoadedType(classLoader, classLoader.loadClass(getBinaryName(className.getValue()))));
+				}
+			}
+			for (GenerationManifest.Entry entry : generator.getManifest().getEntries()) {
+				type = entry.getTarget();
+				if (result.containsKey(type) || entry.getClassName() == null) {
+					continue;
+				}
+				// Only classes compiled in this batch: mapped existing classes are not generated here
+				String binaryName = getBinaryName(entry.getClassName());
+				if (sources.containsKey(binaryName)) {
+					result.put(type, new LoadedType(classLoader, classLoader.loadClass(binaryName)));
+				}
+			}
+			return result;
+		} catch (ClassNotFoundException e) {
+			throw new CodeGenerationException(type, e);
+		} finally {
+			outputSink.clear();
+		}
+	}
+
+	private static String getBinaryName(ClassName className) {
+		// Type arguments are erased, nested classes use '$'
+		String rawClassName = className.getRawClassName().replace('.', '$');
+		if (className.getPackageName().isEmpty()) {
+			return rawClassName;
+		}
+		return className.getPackageName() + "." + rawClassName;
+	}
+}
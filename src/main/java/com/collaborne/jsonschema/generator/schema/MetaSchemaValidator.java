@@ -0,0 +1,184 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.schema;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.SchemaHasher;
+import com.collaborne.jsonschema.generator.cache.ContentStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchema;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+
+/**
+ * Validates schema documents against their meta-schemas.
+ *
+ * Documents are validated in parallel, and each meta-schema is loaded only once. Documents that passed are remembered
+ * by the hash of their content, and recorded in the optional {@link ContentStore} so that later runs skip them.
+ */
+public class MetaSchemaValidator {
+	/** Meta-schema for documents without a {@code $schema} */
+	private static final String DEFAULT_META_SCHEMA = "http://json-schema.org/draft-04/schema#";
+	/** Namespace for the references from the hashes of valid documents in the {@link ContentStore} */
+	private static final String STORE_NAMESPACE = "valid-schemas";
+
+	private final Logger logger = LoggerFactory.getLogger(MetaSchemaValidator.class);
+	private final JsonSchemaFactory factory;
+	private final ContentStore store;
+	private final ConcurrentMap<String, JsonSchema> metaSchemas = new ConcurrentHashMap<>();
+	private final Set<String> validHashes = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final AtomicInteger validationCount = new AtomicInteger();
+	private final AtomicInteger skipCount = new AtomicInteger();
+
+	/**
+	 * Create the validator.
+	 *
+	 * @param factory the factory for the meta-schema validators
+	 * @param store the store for recording valid documents, can be {@code null}
+	 */
+	public MetaSchemaValidator(@Nonnull JsonSchemaFactory factory, @Nullable ContentStore store) {
+		this.factory = factory;
+		this.store = store;
+	}
+
+	/**
+	 * Validate all {@code documents} against their meta-schemas.
+	 *
+	 * @param documents the documents by their URI
+	 * @param threads the number of threads to use
+	 * @return the reports of the invalid documents, by their URI
+	 * @throws ProcessingException if a meta-schema cannot be loaded
+	 * @throws IOException if the store cannot be accessed
+	 */
+	public Map<URI, ProcessingReport> validate(@Nonnull Map<URI, JsonNode> documents, int threads) throws ProcessingException, IOException {
+		List<URI> documentUris = new ArrayList<>(documents.keySet());
+		List<Callable<ProcessingReport>> tasks = new ArrayList<>(documentUris.size());
+		for (URI documentUri : documentUris) {
+			JsonNode document = documents.get(documentUri);
+			tasks.add(new Callable<ProcessingReport>() {
+				@Override
+				public ProcessingReport call() throws ProcessingException, IOException {
+					return validate(documentUri, document);
+				}
+			});
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())));
+		try {
+			List<Future<ProcessingReport>> futures = executor.invokeAll(tasks);
+			Map<URI, ProcessingReport> invalidDocuments = new TreeMap<>();
+			for (int i = 0; i < futures.size(); i++) {
+				ProcessingReport report = futures.get(i).get();
+				if (report != null) {
+					invalidDocuments.put(documentUris.get(i), report);
+				}
+			}
+			return invalidDocuments;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while validating schemas", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof ProcessingException) {
+				throw (ProcessingException) e.getCause();
+			} else if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IllegalStateException("Cannot validate schemas", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Get the number of documents that were actually validated.
+	 *
+	 * @return
+	 */
+	public int getValidationCount() {
+		return validationCount.get();
+	}
+
+	/**
+	 * Get the number of documents skipped because they were valid before.
+	 *
+	 * @return
+	 */
+	public int getSkipCount() {
+		return skipCount.get();
+	}
+
+	private ProcessingReport validate(URI documentUri, JsonNode document) throws ProcessingException, IOException {
+		JsonNode schemaNode = document.get("$schema");
+		String metaSchemaUri = schemaNode != null && schemaNode.isTextual() ? schemaNode.textValue() : DEFAULT_META_SCHEMA;
+		String hash = SchemaHasher.hash((metaSchemaUri + "\n" + document).getBytes(StandardCharsets.UTF_8));
+		if (validHashes.contains(hash) || (store != null && store.getReference(STORE_NAMESPACE, hash) != null)) {
+			logger.debug("{}: Skipping validation, valid before", documentUri);
+			skipCount.incrementAndGet();
+			return null;
+		}
+
+		ProcessingReport report = getMetaSchema(metaSchemaUri).validate(document, true);
+		validationCount.incrementAndGet();
+		if (!report.isSuccess()) {
+			return report;
+		}
+		validHashes.add(hash);
+		if (store != null) {
+			// The reference needs an object in the store: use the meta-schema URI as the marker
+			String marker = store.put(metaSchemaUri.getBytes(StandardCharsets.UTF_8));
+			store.putReference(STORE_NAMESPACE, hash, marker);
+		}
+		return null;
+	}
+
+	private JsonSchema getMetaSchema(String metaSchemaUri) throws ProcessingException {
+		JsonSchema metaSchema = metaSchemas.get(metaSchemaUri);
+		if (metaSchema == null) {
+			metaSchema = factory.getJsonSchema(metaSchemaUri);
+			JsonSchema existingMetaSchema = metaSchemas.putIfAbsent(metaSchemaUri, metaSchema);
+			if (existingMetaSchema != null) {
+				metaSchema = existingMetaSchema;
+			}
+		}
+		return metaSchema;
+	}
+}
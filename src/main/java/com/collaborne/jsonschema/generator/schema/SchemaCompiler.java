@@ -0,0 +1,424 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.schema;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.collaborne.jsonschema.generator.SchemaHasher;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.jsonpointer.JsonPointer;
+import com.github.fge.jackson.jsonpointer.JsonPointerException;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.ref.JsonRef;
+import com.github.fge.jsonschema.core.tree.CanonicalSchemaTree;
+import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.github.fge.jsonschema.core.tree.key.SchemaKey;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Compiles schemas into {@link SchemaType}s.
+ *
+ * Compilation happens on demand: compiling a type compiles the schemas of its properties, items and additional
+ * properties, and follows their references. Compiled types are cached, so every schema is compiled only once.
+ *
+ * With a {@link ParsedSchemaCache} the documents are loaded through that cache, and the compiled types follow it: the
+ * types of documents evicted from the cache are dropped, and all types are dropped when documents were invalidated.
+ */
+public class SchemaCompiler {
+	/** Property and type names are shared between all compiled types */
+	private static final Interner<String> NAMES = Interners.newWeakInterner();
+
+	private final Logger logger = LoggerFactory.getLogger(SchemaCompiler.class);
+	private final SchemaLoader schemaLoader;
+	private final ParsedSchemaCache parsedSchemaCache;
+	private final SchemaHasher schemaHasher = new SchemaHasher();
+	/** Compiled types by their URI, references map to the referenced type */
+	private final Map<URI, SchemaType> types = new HashMap<>();
+	/** URIs of the compiled types by the URI of their document, only kept when using a parsed schema cache */
+	private final Map<URI, Set<URI>> documentTypes = new HashMap<>();
+	/** Invalidation count of the parsed schema cache when the types were last checked */
+	private long invalidationCount;
+	/** References currently being resolved, to detect cycles consisting only of references */
+	private final Set<URI> resolvingReferences = new HashSet<>();
+
+	public SchemaCompiler(@Nullable SchemaLoader schemaLoader) {
+		this(schemaLoader, null);
+	}
+
+	/**
+	 * Create a compiler loading the documents through {@code parsedSchemaCache}.
+	 *
+	 * The schema loader should not cache documents itself, so that only the bounded cache holds them.
+	 *
+	 * @param schemaLoader
+	 * @param parsedSchemaCache the cache for the documents, or {@code null} to use only the schema loader
+	 */
+	public SchemaCompiler(@Nullable SchemaLoader schemaLoader, @Nullable ParsedSchemaCache parsedSchemaCache) {
+		this.schemaLoader = schemaLoader;
+		this.parsedSchemaCache = parsedSchemaCache;
+		this.invalidationCount = parsedSchemaCache != null ? parsedSchemaCache.getInvalidationCount() : 0;
+	}
+
+	/**
+	 * Compile the schema at {@code uri}.
+	 *
+	 * @param uri
+	 * @return the compiled type, or {@code null} if the document exists but has no schema at the given pointer
+	 * @throws ProcessingException if the document cannot be loaded
+	 * @throws JsonPointerException if the fragment of {@code uri} is not a valid JSON pointer
+	 */
+	@Nullable
+	public synchronized SchemaType compile(@Nonnull URI uri) throws ProcessingException, JsonPointerException {
+		checkDocuments();
+		SchemaType type = types.get(uri);
+		if (type != null) {
+			return type;
+		}
+		return compile(uri, loadSchema(uri));
+	}
+
+	/**
+	 * Compile the given {@code schema}.
+	 *
+	 * @param schema
+	 * @return the compiled type, or {@code null} if the schema has no node at its pointer
+	 */
+	@Nullable
+	public synchronized SchemaType compile(@Nonnull SchemaTree schema) {
+		checkDocuments();
+		URI documentUri = schema.getLoadingRef().toURI();
+		return compile(documentUri.resolve("#" + schema.getPointer()), schema);
+	}
+
+	/**
+	 * Get the types reachable from the {@code entryPoints}.
+	 *
+	 * This follows references, properties, items and additional properties. Unresolved references are included, so
+	 * that generating them reports the problem.
+	 *
+	 * @param entryPoints
+	 * @return the URIs of the entry points and of all reachable types, in the order they were found
+	 * @throws ProcessingException if the document of an entry point cannot be loaded
+	 * @throws JsonPointerException
+	 * @throws IllegalArgumentException if an entry point does not exist
+	 */
+	public synchronized Set<URI> getReachableTypes(@Nonnull Collection<URI> entryPoints) throws ProcessingException, JsonPointerException {
+		checkDocuments();
+		Set<URI> reachableTypes = new LinkedHashSet<>();
+		Set<SchemaType> visited = new HashSet<>();
+		Deque<SchemaType> pending = new ArrayDeque<>();
+		for (URI entryPoint : entryPoints) {
+			SchemaType type = compile(entryPoint);
+			if (type == null) {
+				throw new IllegalArgumentException("No schema at entry point " + entryPoint);
+			}
+			reachableTypes.add(entryPoint);
+			pending.add(type);
+		}
+
+		while (!pending.isEmpty()) {
+			SchemaType type = pending.remove();
+			if (!visited.add(type)) {
+				continue;
+			}
+			reachableTypes.add(type.getUri());
+			for (int i = 0; i < type.getPropertyCount(); i++) {
+				pending.add(type.getPropertyType(i));
+			}
+			if (type.getItems() != null) {
+				pending.add(type.getItems());
+			}
+			if (type.getAdditionalProperties() != null) {
+				pending.add(type.getAdditionalProperties());
+			}
+		}
+		return reachableTypes;
+	}
+
+	private SchemaType compile(URI uri, SchemaTree schema) {
+		JsonNode node = schema.getNode();
+		if (node == null || node.isMissingNode()) {
+			return null;
+		}
+		return compileNode(uri, schema.getLoadingRef().toURI(), schema.getPointer(), node);
+	}
+
+	private SchemaTree loadSchema(URI uri) throws ProcessingException, JsonPointerException {
+		String fragment = uri.getFragment();
+		if (fragment == null) {
+			return loadDocument(uri);
+		}
+		return loadDocument(getDocumentUri(uri)).setPointer(new JsonPointer(fragment));
+	}
+
+	private SchemaTree loadDocument(URI documentUri) throws ProcessingException {
+		if (parsedSchemaCache == null) {
+			return schemaLoader.get(documentUri);
+		}
+
+		JsonNode document;
+		try {
+			document = parsedSchemaCache.get(documentUri, new Callable<JsonNode>() {
+				@Override
+				public JsonNode call() throws ProcessingException {
+					return schemaLoader.get(documentUri).getBaseNode();
+				}
+			});
+		} catch (IOException e) {
+			if (e.getCause() instanceof ProcessingException) {
+				throw (ProcessingException) e.getCause();
+			}
+			throw new ProcessingException("Cannot load " + documentUri, e);
+		}
+		return new CanonicalSchemaTree(SchemaKey.forJsonRef(JsonRef.fromURI(documentUri)), document);
+	}
+
+	/**
+	 * Drop the types that no longer match the documents in the parsed schema cache.
+	 */
+	private void checkDocuments() {
+		if (parsedSchemaCache == null) {
+			return;
+		}
+
+		long currentInvalidationCount = parsedSchemaCache.getInvalidationCount();
+		if (currentInvalidationCount != invalidationCount) {
+			// Types of other documents may refer to the invalidated ones, so start over
+			logger.debug("Schema documents were invalidated, dropping {} compiled types", types.size());
+			invalidationCount = currentInvalidationCount;
+			types.clear();
+			documentTypes.clear();
+			return;
+		}
+
+		for (Iterator<Map.Entry<URI, Set<URI>>> documentIterator = documentTypes.entrySet().iterator(); documentIterator.hasNext(); ) {
+			Map.Entry<URI, Set<URI>> document = documentIterator.next();
+			if (!parsedSchemaCache.contains(document.getKey())) {
+				// Evicted, but unchanged: types of other documents can keep referring to the dropped types
+				types.keySet().removeAll(document.getValue());
+				documentIterator.remove();
+			}
+		}
+	}
+
+	private void putType(URI uri, SchemaType type) {
+		types.put(uri, type);
+		if (parsedSchemaCache != null) {
+			URI documentUri = getDocumentUri(uri);
+			Set<URI> uris = documentTypes.get(documentUri);
+			if (uris == null) {
+				uris = new HashSet<>();
+				documentTypes.put(documentUri, uris);
+			}
+			uris.add(uri);
+		}
+	}
+
+	private static URI getDocumentUri(URI uri) {
+		if (uri.getFragment() == null) {
+			return uri;
+		}
+		try {
+			return new URI(uri.getScheme(), uri.getSchemeSpecificPart(), null);
+		} catch (URISyntaxException e) {
+			assert false : "Was a URI before, we just removed the fragment";
+			throw new RuntimeException(e);
+		}
+	}
+
+	private SchemaType compileNode(URI uri, URI documentUri, JsonPointer pointer, JsonNode node) {
+		SchemaType type = types.get(uri);
+		if (type != null) {
+			return type;
+		}
+
+		// We handle "id" here in the same way as the json-schema-validator: it's fairly non-trust-worthy.
+		// In a properly written document the id is useless, as we already had that with a $ref, and you cannot just modify things in place.
+		JsonNode refNode = node.get("$ref");
+		if (refNode != null && refNode.isTextual()) {
+			type = resolveReference(uri, uri.resolve(refNode.textValue()));
+			if (type.isResolved()) {
+				putType(uri, type);
+			}
+			return type;
+		}
+
+		type = new SchemaType(uri, true);
+		// Register the type before compiling the subschemas, so that recursive structures link back to it
+		putType(uri, type);
+		type.hash = schemaHasher.hash(documentUri, node);
+
+		JsonNode typeNode = node.get("type");
+		if (typeNode != null) {
+			type.typeName = NAMES.intern(typeNode.isTextual() ? typeNode.textValue() : typeNode.toString());
+		}
+
+		JsonNode propertiesNode = node.get("properties");
+		if (propertiesNode != null && propertiesNode.isObject()) {
+			Set<String> requiredNames = getRequiredNames(node);
+			List<String> propertyNames = new ArrayList<>(propertiesNode.size());
+			List<SchemaType> propertyTypes = new ArrayList<>(propertiesNode.size());
+			for (Iterator<Map.Entry<String, JsonNode>> fieldIterator = propertiesNode.fields(); fieldIterator.hasNext(); ) {
+				Map.Entry<String, JsonNode> field = fieldIterator.next();
+				SchemaType propertyType = compileSubschema(documentUri, pointer.append("properties").append(field.getKey()), field.getValue());
+				if (propertyType == null) {
+					// XXX: can there be meta information here?
+					logger.warn("{}: property {} is not a schema", uri, field.getKey());
+					continue;
+				}
+				propertyNames.add(NAMES.intern(field.getKey()));
+				propertyTypes.add(propertyType);
+			}
+			if (!propertyNames.isEmpty()) {
+				type.propertyNames = propertyNames.toArray(new String[propertyNames.size()]);
+				type.propertyTypes = propertyTypes.toArray(new SchemaType[propertyTypes.size()]);
+				type.propertyRequired = new boolean[type.propertyNames.length];
+				for (int i = 0; i < type.propertyNames.length; i++) {
+					type.propertyRequired[i] = requiredNames.contains(type.propertyNames[i]);
+				}
+			}
+		}
+
+		// XXX: tuple-typed items (arrays of schemas) are not supported
+		JsonNode itemsNode = node.get("items");
+		if (itemsNode != null && itemsNode.isObject()) {
+			type.items = compileSubschema(documentUri, pointer.append("items"), itemsNode);
+		}
+
+		JsonNode additionalPropertiesNode = node.get("additionalProperties");
+		if (additionalPropertiesNode != null) {
+			if (additionalPropertiesNode.isObject()) {
+				type.additionalProperties = compileSubschema(documentUri, pointer.append("additionalProperties"), additionalPropertiesNode);
+			} else if (additionalPropertiesNode.isBoolean()) {
+				type.additionalPropertiesAllowed = additionalPropertiesNode.booleanValue();
+			}
+		}
+
+		type.minLength = getInt(node, "minLength");
+		type.maxLength = getInt(node, "maxLength");
+		type.minItems = getInt(node, "minItems");
+		type.maxItems = getInt(node, "maxItems");
+		type.uniqueItems = node.path("uniqueItems").asBoolean(false);
+		type.minimum = getDouble(node, "minimum");
+		type.maximum = getDouble(node, "maximum");
+		type.exclusiveMinimum = node.path("exclusiveMinimum").asBoolean(false);
+		type.exclusiveMaximum = node.path("exclusiveMaximum").asBoolean(false);
+		type.format = getString(node, "format");
+		type.pattern = getString(node, "pattern");
+		type.enumValues = getStringEnum(node);
+		return type;
+	}
+
+	private SchemaType compileSubschema(URI documentUri, JsonPointer pointer, JsonNode node) {
+		if (!node.isObject()) {
+			return null;
+		}
+		// XXX: what about "relative" references, won't adding a '#' break resolving those? Are those legal?
+		return compileNode(documentUri.resolve("#" + pointer), documentUri, pointer, node);
+	}
+
+	private SchemaType resolveReference(URI uri, URI target) {
+		SchemaType type = types.get(target);
+		if (type != null) {
+			return type;
+		}
+
+		if (!resolvingReferences.add(target)) {
+			logger.warn("{}: reference cycle through {}", uri, target);
+			return new SchemaType(target, false);
+		}
+		try {
+			SchemaType targetType = compile(target, loadSchema(target));
+			if (targetType != null) {
+				return targetType;
+			}
+		} catch (ProcessingException|JsonPointerException e) {
+			// Generating the referenced type will report the problem
+			logger.debug("{}: cannot resolve reference to {}", uri, target, e);
+		} finally {
+			resolvingReferences.remove(target);
+		}
+		return new SchemaType(target, false);
+	}
+
+	private static Set<String> getRequiredNames(JsonNode node) {
+		JsonNode requiredNode = node.get("required");
+		if (requiredNode == null || !requiredNode.isArray()) {
+			return new HashSet<>();
+		}
+		Set<String> requiredNames = new HashSet<>();
+		for (JsonNode requiredName : requiredNode) {
+			requiredNames.add(requiredName.asText());
+		}
+		return requiredNames;
+	}
+
+	private static int getInt(JsonNode node, String keyword) {
+		JsonNode value = node.get(keyword);
+		return value != null && value.canConvertToInt() ? value.intValue() : SchemaType.NO_LIMIT;
+	}
+
+	private static double getDouble(JsonNode node, String keyword) {
+		JsonNode value = node.get(keyword);
+		return value != null && value.isNumber() ? value.doubleValue() : Double.NaN;
+	}
+
+	private static String[] getStringEnum(JsonNode node) {
+		JsonNode enumNode = node.get("enum");
+		if (enumNode == null || !enumNode.isArray()) {
+			return null;
+		}
+		String[] values = new String[enumNode.size()];
+		for (int i = 0; i < values.length; i++) {
+			JsonNode value = enumNode.get(i);
+			if (!value.isTextual()) {
+				return null;
+			}
+			values[i] = value.textValue();
+		}
+		return values;
+	}
+
+	private static String getString(JsonNode node, String keyword) {
+		JsonNode value = node.get(keyword);
+		return value != null && value.isTextual() ? value.textValue() : null;
+	}
+}
@@ -0,0 +1,234 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.schema;
+
+import java.net.URI;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Compiled form of a schema, as produced by the {@link SchemaCompiler}.
+ *
+ * References ({@code $ref}) are resolved into direct links to the referenced types, property names are interned, and
+ * the constraints are stored in primitive fields. Types are effectively immutable: they are only modified by the
+ * compiler before they are published, so they can be shared between threads.
+ */
+public final class SchemaType {
+	/** Value of the integer constraints when they are absent */
+	public static final int NO_LIMIT = -1;
+
+	static final String[] NO_NAMES = new String[0];
+	static final SchemaType[] NO_TYPES = new SchemaType[0];
+	static final boolean[] NO_FLAGS = new boolean[0];
+
+	private final URI uri;
+	private final boolean resolved;
+
+	// Filled in by the compiler
+	String hash;
+	String typeName;
+	String[] propertyNames = NO_NAMES;
+	SchemaType[] propertyTypes = NO_TYPES;
+	boolean[] propertyRequired = NO_FLAGS;
+	SchemaType items;
+	SchemaType additionalProperties;
+	boolean additionalPropertiesAllowed = true;
+	int minLength = NO_LIMIT;
+	int maxLength = NO_LIMIT;
+	int minItems = NO_LIMIT;
+	int maxItems = NO_LIMIT;
+	boolean uniqueItems;
+	double minimum = Double.NaN;
+	double maximum = Double.NaN;
+	boolean exclusiveMinimum;
+	boolean exclusiveMaximum;
+	String format;
+	String pattern;
+	String[] enumValues;
+
+	SchemaType(@Nonnull URI uri, boolean resolved) {
+		this.uri = uri;
+		this.resolved = resolved;
+	}
+
+	/**
+	 * Get the URI of the schema.
+	 *
+	 * For references this is the URI of the referenced schema.
+	 *
+	 * @return
+	 */
+	@Nonnull
+	public URI getUri() {
+		return uri;
+	}
+
+	/**
+	 * Whether the schema could be loaded.
+	 *
+	 * Unresolved types are placeholders for references that could not be followed, all other information is missing.
+	 *
+	 * @return
+	 */
+	public boolean isResolved() {
+		return resolved;
+	}
+
+	/**
+	 * Get the structural hash of the schema.
+	 *
+	 * @return
+	 * @see com.collaborne.jsonschema.generator.SchemaHasher
+	 */
+	public String getHash() {
+		return hash;
+	}
+
+	/**
+	 * Get the value of the {@code type} keyword.
+	 *
+	 * @return the type, or {@code null} if the schema does not have a {@code type}
+	 */
+	@Nullable
+	public String getTypeName() {
+		return typeName;
+	}
+
+	public int getPropertyCount() {
+		return propertyNames.length;
+	}
+
+	public String getPropertyName(int index) {
+		return propertyNames[index];
+	}
+
+	public SchemaType getPropertyType(int index) {
+		return propertyTypes[index];
+	}
+
+	public boolean isPropertyRequired(int index) {
+		return propertyRequired[index];
+	}
+
+	/**
+	 * Find the index of the property with the given {@code name}.
+	 *
+	 * @param name
+	 * @return the index, or {@code -1} if there is no such property
+	 */
+	public int indexOfProperty(String name) {
+		for (int i = 0; i < propertyNames.length; i++) {
+			if (propertyNames[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Nullable
+	public SchemaType getItems() {
+		return items;
+	}
+
+	/**
+	 * Get the schema for additional properties.
+	 *
+	 * @return the schema, or {@code null} if {@code additionalProperties} is not a schema
+	 */
+	@Nullable
+	public SchemaType getAdditionalProperties() {
+		return additionalProperties;
+	}
+
+	public boolean isAdditionalPropertiesAllowed() {
+		return additionalPropertiesAllowed;
+	}
+
+	public int getMinLength() {
+		return minLength;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	public int getMinItems() {
+		return minItems;
+	}
+
+	public int getMaxItems() {
+		return maxItems;
+	}
+
+	public boolean isUniqueItems() {
+		return uniqueItems;
+	}
+
+	/**
+	 * Get the {@code minimum}.
+	 *
+	 * @return the minimum, or {@link Double#NaN} if absent
+	 */
+	public double getMinimum() {
+		return minimum;
+	}
+
+	/**
+	 * Get the {@code maximum}.
+	 *
+	 * @return the maximum, or {@link Double#NaN} if absent
+	 */
+	public double getMaximum() {
+		return maximum;
+	}
+
+	public boolean isExclusiveMinimum() {
+		return exclusiveMinimum;
+	}
+
+	public boolean isExclusiveMaximum() {
+		return exclusiveMaximum;
+	}
+
+	@Nullable
+	public String getFormat() {
+		return format;
+	}
+
+	@Nullable
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Get the allowed values of a string enumeration.
+	 *
+	 * @return the values in the order of the schema, or {@code null} if the schema has no {@code enum}, or allows
+	 * non-string values
+	 */
+	@Nullable
+	public String[] getEnumValues() {
+		return enumValues;
+	}
+
+	@Override
+	public String toString() {
+		return "SchemaType(" + uri + (resolved ? ", " + typeName : ", unresolved") + ")";
+	}
+}
@@ -0,0 +1,77 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.output.Durability;
+import com.collaborne.jsonschema.generator.output.InMemoryOutputSink;
+import com.collaborne.jsonschema.generator.output.OutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+
+public class AbstractGeneratorTest {
+	private static class EmptyGenerator extends AbstractGenerator {
+		@Override
+		public ClassName generate(URI type) throws CodeGenerationException {
+			return null;
+		}
+
+		@Override
+		public void flush() {
+			// Nothing to write
+		}
+
+		@Override
+		public GenerationManifest getManifest() {
+			return new GenerationManifest();
+		}
+	}
+
+	@Test
+	public void getOutputSinkKeepsDefaultSink() {
+		AbstractGenerator generator = new EmptyGenerator();
+		generator.setOutputDirectory(Jimfs.newFileSystem(Configuration.unix()).getPath("/output"));
+		OutputSink outputSink = generator.getOutputSink();
+		assertSame(outputSink, generator.getOutputSink());
+
+		// Changing the directory or the writer replaces the sink
+		generator.setOutputDirectory(Jimfs.newFileSystem(Configuration.unix()).getPath("/other"));
+		OutputSink otherOutputSink = generator.getOutputSink();
+		assertNotSame(outputSink, otherOutputSink);
+		generator.setOutputWriter(OutputWriter.synchronous(Durability.ATOMIC));
+		assertNotSame(otherOutputSink, generator.getOutputSink());
+	}
+
+	@Test
+	public void getOutputSinkPrefersSetSink() {
+		AbstractGenerator generator = new EmptyGenerator();
+		generator.setOutputDirectory(Jimfs.newFileSystem(Configuration.unix()).getPath("/output"));
+		OutputSink outputSink = new InMemoryOutputSink();
+		generator.setOutputSink(outputSink);
+		assertSame(outputSink, generator.getOutputSink());
+	}
+}
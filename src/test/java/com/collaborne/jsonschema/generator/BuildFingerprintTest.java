@@ -0,0 +1,55 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BuildFingerprintTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void getIdentifiesGeneratorBuild() {
+		assertNotNull(BuildFingerprint.get());
+		assertEquals(BuildFingerprint.get(), BuildFingerprint.calculate(BuildFingerprint.class));
+	}
+
+	@Test
+	public void calculateChangesWithClassFiles() throws IOException {
+		Path directory = temporaryFolder.newFolder("classes").toPath();
+		Path classFile = directory.resolve("com/example/Foo.class");
+		Files.createDirectories(classFile.getParent());
+		Files.write(classFile, "version 1".getBytes(StandardCharsets.UTF_8));
+		String fingerprint = BuildFingerprint.calculate(directory);
+		assertEquals(fingerprint, BuildFingerprint.calculate(directory));
+
+		Files.write(classFile, "version 2".getBytes(StandardCharsets.UTF_8));
+		assertNotEquals(fingerprint, BuildFingerprint.calculate(directory));
+	}
+}
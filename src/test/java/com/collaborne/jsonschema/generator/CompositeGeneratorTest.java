@@ -0,0 +1,151 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.output.Durability;
+import com.collaborne.jsonschema.generator.output.InMemoryOutputSink;
+import com.collaborne.jsonschema.generator.output.OutputWriter;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.google.inject.Guice;
+
+public class CompositeGeneratorTest {
+	private static final URI INVOICE = URI.create("http://example.com/common.json#/definitions/invoice");
+	private static final URI ORDER = URI.create("http://example.com/common.json#/definitions/order");
+
+	/**
+	 * Backend that records the class names assigned to the types it sees.
+	 */
+	private static class RecordingGenerator extends AbstractGenerator {
+		private final Map<URI, ClassName> classNames = new ConcurrentHashMap<>();
+
+		@Override
+		public ClassName generate(URI type) throws CodeGenerationException {
+			if (getMapping(type) == null) {
+				throw new CodeGenerationException(type, "No class name assigned");
+			}
+			ClassName className = getMapping(type).getClassName();
+			classNames.put(type, className);
+			return className;
+		}
+
+		@Override
+		public void flush() {
+			// Nothing to write
+		}
+
+		@Override
+		public GenerationManifest getManifest() {
+			return new GenerationManifest();
+		}
+	}
+
+	private SchemaLoader schemaLoader;
+
+	@Before
+	public void setUp() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/pruning/common.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/common.json", new JsonNodeReader().fromReader(reader));
+		}
+		schemaLoader = new SchemaLoader(loadingConfigurationBuilder.freeze());
+	}
+
+	@Test
+	public void generateSharesClassNamesAndSchemas() throws CodeGenerationException {
+		PojoGenerator pojoGenerator = Guice.createInjector().getInstance(PojoGenerator.class);
+		RecordingGenerator recordingGenerator = new RecordingGenerator();
+		try (CompositeGenerator generator = new CompositeGenerator(pojoGenerator, Collections.singletonList(recordingGenerator))) {
+			generator.setSchemaLoader(schemaLoader);
+			generator.setOutputSink(new InMemoryOutputSink());
+
+			ClassName invoice = generator.generate(INVOICE);
+			generator.generate(ORDER);
+			generator.flush();
+
+			assertEquals(invoice, recordingGenerator.classNames.get(INVOICE));
+			assertEquals(pojoGenerator.generate(ORDER), recordingGenerator.classNames.get(ORDER));
+			assertSame(generator.getSchemaCompiler(), recordingGenerator.getSchemaCompiler());
+			assertSame(generator.getSchemaCompiler(), pojoGenerator.getSchemaCompiler());
+		}
+	}
+
+	@Test
+	public void flushReportsBackendFailures() throws CodeGenerationException {
+		PojoGenerator pojoGenerator = Guice.createInjector().getInstance(PojoGenerator.class);
+		RecordingGenerator failingGenerator = new RecordingGenerator() {
+			@Override
+			public ClassName generate(URI type) throws CodeGenerationException {
+				if (ORDER.equals(type)) {
+					throw new CodeGenerationException(type, "Cannot generate");
+				}
+				return super.generate(type);
+			}
+		};
+		try (CompositeGenerator generator = new CompositeGenerator(pojoGenerator, Collections.singletonList(failingGenerator))) {
+			generator.setSchemaLoader(schemaLoader);
+			generator.setOutputSink(new InMemoryOutputSink());
+
+			// The failure only shows up when waiting for the backends
+			generator.generate(ORDER);
+			generator.generate(INVOICE);
+			try {
+				generator.flush();
+				fail("Expected the backend failure");
+			} catch (CodeGenerationException e) {
+				assertEquals(ORDER, e.getType());
+			}
+			// Later types are still processed
+			assertEquals(pojoGenerator.generate(INVOICE), failingGenerator.classNames.get(INVOICE));
+		}
+	}
+
+	@Test
+	public void setOutputWriterReachesAllBackends() throws IOException {
+		PojoGenerator pojoGenerator = Guice.createInjector().getInstance(PojoGenerator.class);
+		RecordingGenerator recordingGenerator = new RecordingGenerator();
+		try (CompositeGenerator generator = new CompositeGenerator(pojoGenerator, Collections.singletonList(recordingGenerator));
+				OutputWriter outputWriter = OutputWriter.synchronous(Durability.ATOMIC)) {
+			generator.setOutputWriter(outputWriter);
+
+			assertSame(outputWriter, pojoGenerator.getOutputWriter());
+			assertSame(outputWriter, recordingGenerator.getOutputWriter());
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Factory for generators with features set, for tests generating classes at runtime.
+ */
+public class FeatureGeneratorFactory implements Supplier<Generator> {
+	private static class FeatureValue<T> {
+		private final Generator.Feature<T> feature;
+		private final T value;
+
+		public FeatureValue(Generator.Feature<T> feature, T value) {
+			this.feature = feature;
+			this.value = value;
+		}
+
+		public void apply(Generator generator) {
+			generator.setFeature(feature, value);
+		}
+	}
+
+	private final Supplier<? extends Generator> generatorFactory;
+	private final List<FeatureValue<?>> featureValues = new ArrayList<>();
+
+	public FeatureGeneratorFactory(@Nonnull Supplier<? extends Generator> generatorFactory) {
+		this.generatorFactory = generatorFactory;
+	}
+
+	/**
+	 * Set {@code feature} on all created generators.
+	 *
+	 * @param feature
+	 * @param value
+	 * @return this factory
+	 */
+	public <T> FeatureGeneratorFactory with(@Nonnull Generator.Feature<T> feature, T value) {
+		featureValues.add(new FeatureValue<>(feature, value));
+		return this;
+	}
+
+	@Override
+	public Generator get() {
+		Generator generator = generatorFactory.get();
+		for (FeatureValue<?> featureValue : featureValues) {
+			featureValue.apply(generator);
+		}
+		return generator;
+	}
+}
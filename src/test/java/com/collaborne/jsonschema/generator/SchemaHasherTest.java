@@ -0,0 +1,59 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.net.URI;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.fge.jackson.JsonNodeReader;
+
+public class SchemaHasherTest {
+	private static final URI BASE = URI.create("http://example.com/schema.json");
+
+	private static String hash(String schema) throws IOException {
+		JsonNode node = new JsonNodeReader().fromReader(new StringReader(schema));
+		return new SchemaHasher().hash(BASE, node);
+	}
+
+	@Test
+	public void hashIgnoresDocumentationKeywords() throws IOException {
+		assertEquals(
+			hash("{\"type\": \"object\", \"properties\": {\"a\": {\"type\": \"string\"}}}"),
+			hash("{\"title\": \"A\", \"type\": \"object\", \"properties\": {\"a\": {\"type\": \"string\", \"description\": \"The a\"}}}"));
+	}
+
+	@Test
+	public void hashKeepsPropertiesNamedLikeKeywords() throws IOException {
+		String withTitle = "{\"type\": \"object\", \"properties\": {\"title\": {\"type\": \"string\"}, \"a\": {\"type\": \"string\"}}}";
+		String withoutTitle = "{\"type\": \"object\", \"properties\": {\"a\": {\"type\": \"string\"}}}";
+		assertNotEquals(hash(withoutTitle), hash(withTitle));
+		assertNotEquals(
+			hash("{\"definitions\": {\"description\": {\"type\": \"string\"}}}"),
+			hash("{\"definitions\": {}}"));
+		assertNotEquals(
+			hash("{\"enum\": [{\"title\": 1}]}"),
+			hash("{\"enum\": [{}]}"));
+	}
+}
@@ -0,0 +1,89 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.model.BatchJobs;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.inject.Guice;
+
+public class BatchRunnerTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private static BatchJobs.Job createJob(String name, String outputDirectory, String... schemas) {
+		BatchJobs.Job job = new BatchJobs.Job();
+		job.setName(name);
+		job.setBaseDirectory("schemas");
+		job.setRootUri(URI.create("http://example.com/"));
+		job.setOutputDirectory(outputDirectory);
+		job.setSchemas(Arrays.asList(schemas));
+		return job;
+	}
+	
+	@Test
+	public void runParsesSharedSchemasOnce() throws IOException, InterruptedException {
+		Path jobDirectory = temporaryFolder.getRoot().toPath();
+		Path schemaDirectory = temporaryFolder.newFolder("schemas").toPath();
+		for (String name : Arrays.asList("service.json", "common.json")) {
+			try (InputStream input = getClass().getResourceAsStream("/schemas/pruning/" + name)) {
+				Files.copy(input, schemaDirectory.resolve(name));
+			}
+		}
+		
+		BatchJobs.Job serviceJob = createJob("service", "service-output", "service.json", "common.json");
+		serviceJob.setEntryPoints(Collections.singletonList("service.json"));
+		BatchJobs.Job commonJob = createJob("common", "common-output", "common.json");
+		commonJob.setEntryPoints(Collections.singletonList("common.json#/definitions/invoice"));
+		BatchJobs.Job brokenJob = createJob("broken", "broken-output", "missing.json");
+		BatchJobs jobs = new BatchJobs();
+		jobs.setJobs(Arrays.asList(serviceJob, commonJob, brokenJob));
+		
+		BatchRunner batchRunner = new BatchRunner(new ObjectMapper(), Guice.createInjector(), PojoGenerator.class);
+		List<BatchRunner.JobResult> results = batchRunner.run(jobs, jobDirectory, 3);
+		batchRunner.report(results);
+		
+		assertEquals(3, results.size());
+		assertEquals("service", results.get(0).getName());
+		assertNull(results.get(0).getFailure());
+		assertNull(results.get(1).getFailure());
+		// A failing job does not affect the others
+		assertNotNull(results.get(2).getFailure());
+		assertTrue(Files.exists(jobDirectory.resolve("service-output/anonymous/Order.java")));
+		assertTrue(Files.exists(jobDirectory.resolve("common-output/anonymous/Invoice.java")));
+		assertEquals(2, batchRunner.getParsedSchemaCache().getParseCount());
+	}
+}
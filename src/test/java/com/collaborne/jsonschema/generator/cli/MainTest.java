@@ -17,10 +17,16 @@
  */
 package com.collaborne.jsonschema.generator.cli;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystem;
 import java.nio.file.FileVisitResult;
@@ -32,21 +38,27 @@ import java.nio.file.StandardCopyOption;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.LinkedHashSet;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.rules.TestName;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
 import com.collaborne.jsonschema.generator.Generator;
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
 import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.model.Mappings;
+import com.collaborne.jsonschema.generator.model.PruningReport;
 import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
 import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
 import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
@@ -61,6 +73,9 @@ public class MainTest {
 
 	@Rule
 	public TestName name = new TestName();
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
 	private FileSystem fs;
 	private Main main;
@@ -190,4 +205,112 @@ public class MainTest {
 		Path generatedInlineTypeFile = outputDirectory.resolve("com/example/test/schemas/Inline.java"); 
 		assertTrue(Files.exists(generatedInlineTypeFile));
 	}	
+
+	@Test
+	public void runSmokeTestDeduplicateAnonymousTypes() throws IOException, CodeGenerationException {
+		URI rootUri = URI.create("http://example.com/");
+		
+		Path outputDirectory = fs.getPath("output");
+		generator.setOutputDirectory(outputDirectory);
+		generator.setFeature(PojoGenerator.FEATURE_DEDUPLICATE_ANONYMOUS_TYPES, Boolean.TRUE);
+		
+		SchemaLoader schemas = loadSchema(rootUri, "/schemas/duplicate-inline.json");
+		generator.setSchemaLoader(schemas);
+		
+		Mapping rootMapping = new Mapping(URI.create("http://example.com/schemas/duplicate-inline.json#"), new ClassName("com.example.test.schemas", "WithDuplicates"));
+		generator.addMapping(rootMapping.getTarget(), rootMapping);
+		
+		main.generate(Collections.singleton(rootMapping.getTarget()));
+		
+		assertTrue(Files.exists(outputDirectory.resolve("anonymous/First.java")));
+		assertFalse(Files.exists(outputDirectory.resolve("anonymous/Second.java")));
+		assertTrue(Files.exists(outputDirectory.resolve("anonymous/Third.java")));
+		assertEquals(1, ((PojoGenerator) generator).getCollapsedTypeCount());
+		String generatedType = new String(Files.readAllBytes(outputDirectory.resolve("com/example/test/schemas/WithDuplicates.java")), StandardCharsets.UTF_8);
+		assertTrue(generatedType.contains("private First second;"));
+	}
+
+	@Test
+	public void runSmokeTestManifest() throws IOException, CodeGenerationException {
+		URI rootUri = URI.create("http://example.com/");
+		
+		generator.setOutputDirectory(fs.getPath("output"));
+		SchemaLoader schemas = loadSchema(rootUri, "/schemas/simple.json");
+		generator.setSchemaLoader(schemas);
+		
+		Mapping rootMapping = new Mapping(URI.create("http://example.com/schemas/simple.json#/definitions/type"), new ClassName("com.example.test.schemas", "Type"));
+		generator.addMapping(rootMapping.getTarget(), rootMapping);
+		main.generate(Collections.singleton(rootMapping.getTarget()));
+		
+		GenerationManifest manifest = generator.getManifest();
+		assertEquals(1, manifest.getEntries().size());
+		assertNotNull(manifest.getEntries().get(0).getHash());
+		
+		Path classPathDirectory = temporaryFolder.newFolder().toPath();
+		main.writeManifest(classPathDirectory.resolve(GenerationManifest.RESOURCE_NAME));
+		
+		// A later run discovers the manifest, and uses the same class name without an explicit mapping
+		Generator otherGenerator = Guice.createInjector().getInstance(PojoGenerator.class);
+		otherGenerator.setOutputDirectory(fs.getPath("other-output"));
+		otherGenerator.setSchemaLoader(schemas);
+		Main otherMain = new Main(new ObjectMapper(), otherGenerator);
+		try (URLClassLoader classLoader = new URLClassLoader(new URL[] { classPathDirectory.toUri().toURL() }, null)) {
+			otherMain.addManifests(classLoader);
+		}
+		
+		assertEquals(rootMapping.getClassName(), otherGenerator.generate(rootMapping.getTarget()));
+		otherGenerator.flush();
+		// The unchanged type is registered from the manifest, not generated again
+		assertFalse(Files.exists(fs.getPath("other-output")));
+		
+		// A changed schema is generated again
+		Generator changedGenerator = Guice.createInjector().getInstance(PojoGenerator.class);
+		changedGenerator.setOutputDirectory(fs.getPath("changed-output"));
+		changedGenerator.setSchemaLoader(schemas);
+		changedGenerator.addMapping(rootMapping.getTarget(), new GenerationManifest.Entry(rootMapping, "outdated"));
+		changedGenerator.generate(rootMapping.getTarget());
+		changedGenerator.flush();
+		assertTrue(Files.exists(fs.getPath("changed-output/com/example/test/schemas/Type.java")));
+	}
+	
+	@Test
+	public void runWithEntryPointsPrunesUnreachableTypes() throws IOException, ProcessingException, CodeGenerationException {
+		Path baseDirectory = temporaryFolder.newFolder("schemas").toPath();
+		for (String name : Arrays.asList("service.json", "common.json")) {
+			try (InputStream input = getClass().getResourceAsStream("/schemas/pruning/" + name)) {
+				Files.copy(input, baseDirectory.resolve(name));
+			}
+		}
+		URI rootUri = URI.create("http://example.com/");
+		Path outputDirectory = fs.getPath("output");
+		generator.setOutputDirectory(outputDirectory);
+		
+		Mappings mappings = new Mappings();
+		mappings.setBaseUri(rootUri);
+		mappings.setMappings(Collections.singletonList(new Mapping(URI.create("service.json#"), new ClassName("com.example.test", "Service"))));
+		main.addMappings(mappings);
+		main.addSchemas(Arrays.asList(baseDirectory.resolve("service.json"), baseDirectory.resolve("common.json")));
+		main.addEntryPoints(Collections.singletonList("com.example.test.Service"));
+		Path reportFile = temporaryFolder.getRoot().toPath().resolve("pruning.json");
+		main.setPruningReportFile(reportFile);
+		main.run(baseDirectory, rootUri);
+		
+		assertTrue(Files.exists(outputDirectory.resolve("com/example/test/Service.java")));
+		assertTrue(Files.exists(outputDirectory.resolve("anonymous/Order.java")));
+		assertTrue(Files.exists(outputDirectory.resolve("anonymous/Line.java")));
+		assertFalse(Files.exists(outputDirectory.resolve("anonymous/Invoice.java")));
+		
+		PruningReport report = new ObjectMapper().readValue(reportFile.toFile(), PruningReport.class);
+		assertEquals(Collections.singletonList(rootUri.resolve("service.json#")), report.getEntryPoints());
+		assertEquals(Arrays.asList(rootUri.resolve("common.json#"), rootUri.resolve("common.json#/definitions/invoice")), report.getPruned());
+		assertTrue(report.getReachable().contains(rootUri.resolve("common.json#/definitions/line")));
+	}
+	
+	@Test
+	public void resolveEntryPointsAcceptsPlainDocumentNames() {
+		URI rootUri = URI.create("http://example.com/");
+		main.addEntryPoints(Arrays.asList("service.json", "common.json#/definitions/order"));
+		
+		assertEquals(new LinkedHashSet<>(Arrays.asList(rootUri.resolve("service.json#"), rootUri.resolve("common.json#/definitions/order"))), main.resolveEntryPoints(rootUri));
+	}
 }
@@ -0,0 +1,152 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.cli;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.model.GenerationManifest;
+import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.google.inject.Guice;
+
+public class ShardCoordinatorTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private static GenerationManifest createManifest(GenerationManifest.Entry... entries) {
+		GenerationManifest manifest = new GenerationManifest();
+		manifest.setEntries(new ArrayList<>(Arrays.asList(entries)));
+		return manifest;
+	}
+	
+	private static GenerationManifest.Entry createEntry(String target, String className, String hash) {
+		return new GenerationManifest.Entry(new Mapping(URI.create(target), ClassName.parse(className)), hash);
+	}
+	
+	@Test
+	public void mergeSortsEntries() {
+		GenerationManifest first = createManifest(createEntry("http://example.com/b.json#", "com.example.B", "1"));
+		GenerationManifest second = createManifest(createEntry("http://example.com/a.json#", "com.example.A", "2"));
+		
+		GenerationManifest merged = ShardCoordinator.merge(Arrays.asList(first, second));
+		GenerationManifest mergedReverse = ShardCoordinator.merge(Arrays.asList(second, first));
+		
+		assertEquals(2, merged.getEntries().size());
+		assertEquals(URI.create("http://example.com/a.json#"), merged.getEntries().get(0).getTarget());
+		assertEquals(merged.getEntries().get(0).getTarget(), mergedReverse.getEntries().get(0).getTarget());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void mergeDetectsClassNameCollisions() {
+		GenerationManifest first = createManifest(createEntry("http://example.com/a.json#/definitions/item", "anonymous.Item", "1"));
+		GenerationManifest second = createManifest(createEntry("http://example.com/b.json#/definitions/item", "anonymous.Item", "2"));
+		
+		ShardCoordinator.merge(Arrays.asList(first, second));
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void mergeDetectsMismatchingReferences() {
+		GenerationManifest first = createManifest(createEntry("http://example.com/a.json#", "com.example.A", "1"));
+		GenerationManifest second = createManifest();
+		second.getReferences().add(new Mapping(URI.create("http://example.com/a.json#"), ClassName.parse("anonymous.A")));
+		
+		ShardCoordinator.merge(Arrays.asList(first, second));
+	}
+	
+	@Test
+	public void getShardWorkerArgumentsRemovesCoordinatorArguments() {
+		List<String> workerArguments = Main.getShardWorkerArguments("--shards", "4", "--shard-jvm-option", "-Xmx1g", "--write-manifest", "--output-directory", "out", "a.json");
+		assertEquals(Arrays.asList("--output-directory", "out", "a.json"), workerArguments);
+	}
+	
+	@Test
+	public void shardsTogetherGenerateAllTypes() throws IOException, ProcessingException, CodeGenerationException {
+		Path baseDirectory = temporaryFolder.newFolder("schemas").toPath();
+		Path outputDirectory = temporaryFolder.newFolder("output").toPath();
+		for (String name : Arrays.asList("a.json", "b.json")) {
+			try (InputStream input = getClass().getResourceAsStream("/schemas/shards/" + name)) {
+				Files.copy(input, baseDirectory.resolve(name));
+			}
+		}
+		URI rootUri = URI.create("http://example.com/");
+		
+		List<GenerationManifest> shardManifests = new ArrayList<>();
+		int shardCount = 2;
+		for (int i = 0; i < shardCount; i++) {
+			Generator generator = Guice.createInjector().getInstance(PojoGenerator.class);
+			generator.setOutputDirectory(outputDirectory);
+			Main main = new Main(new ObjectMapper(), generator);
+			main.addSchemas(Arrays.asList(baseDirectory.resolve("a.json"), baseDirectory.resolve("b.json")));
+			main.setShardFilter(new ShardFilter(i, shardCount));
+			main.run(baseDirectory, rootUri);
+			shardManifests.add(generator.getManifest());
+		}
+		
+		GenerationManifest merged = ShardCoordinator.merge(shardManifests);
+		List<String> classNames = new ArrayList<>();
+		for (GenerationManifest.Entry entry : merged.getEntries()) {
+			classNames.add(entry.getClassName().toString());
+			assertTrue(Files.exists(outputDirectory.resolve(entry.getClassName().toString().replace('.', '/') + ".java")));
+		}
+		Collections.sort(classNames);
+		assertEquals(Arrays.asList("anonymous.A", "anonymous.B", "anonymous.Inline", "anonymous.Item", "anonymous.ItemDetails"), classNames);
+	}
+	
+	@Test
+	public void runMergesManifestsOfWorkerProcesses() throws IOException, InterruptedException {
+		Path baseDirectory = temporaryFolder.newFolder("schemas").toPath();
+		Path outputDirectory = temporaryFolder.newFolder("output").toPath();
+		for (String name : Arrays.asList("a.json", "b.json")) {
+			try (InputStream input = getClass().getResourceAsStream("/schemas/shards/" + name)) {
+				Files.copy(input, baseDirectory.resolve(name));
+			}
+		}
+		
+		List<String> workerArguments = Arrays.asList("--base-directory", baseDirectory.toString(), "--root", "http://example.com/", "--output-directory", outputDirectory.toString(), "a.json", "b.json");
+		ShardCoordinator coordinator = new ShardCoordinator(new ObjectMapper(), 2, workerArguments, Arrays.asList("--add-opens", "java.base/java.lang=ALL-UNNAMED"));
+		GenerationManifest merged = coordinator.run(temporaryFolder.newFolder("work").toPath());
+		
+		List<String> classNames = new ArrayList<>();
+		for (GenerationManifest.Entry entry : merged.getEntries()) {
+			classNames.add(entry.getClassName().toString());
+			assertTrue(Files.exists(outputDirectory.resolve(entry.getClassName().toString().replace('.', '/') + ".java")));
+		}
+		Collections.sort(classNames);
+		assertEquals(Arrays.asList("anonymous.A", "anonymous.B", "anonymous.Inline", "anonymous.Item", "anonymous.ItemDetails"), classNames);
+	}
+}
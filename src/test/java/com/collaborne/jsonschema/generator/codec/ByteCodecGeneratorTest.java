@@ -0,0 +1,219 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.codec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.collaborne.jsonschema.generator.CompositeGenerator;
+import com.collaborne.jsonschema.generator.FeatureGeneratorFactory;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.collaborne.jsonschema.generator.runtime.RuntimeBeanLoader;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+public class ByteCodecGeneratorTest {
+	private static final URI BEAN = URI.create("http://example.com/codecs/bean.json#/definitions/bean");
+	private static final URI EXTENSIBLE = URI.create("http://example.com/codecs/bean.json#/definitions/extensible");
+	private static final URI DIRECTORY = URI.create("http://example.com/codecs/bean.json#/definitions/directory");
+	private static final String[] DOCUMENTS = {
+		"{\"name\":\"root\",\"count\":3,\"price\":1.5,\"active\":true,\"tags\":[\"a\",null,\"c\"],\"parts\":[{\"label\":\"x\"},null,{}],\"main\":{\"label\":\"y\"},\"counts\":[1,-2,3],\"samples\":[0.5,2.0,-1.0E-9],\"flags\":[true,false,true]}",
+		"{\"name\":\"\\u00e4\\\"\\n\\t\\u0001\\ud83d\\ude00/\",\"count\":-2147483648,\"price\":-0.0,\"active\":false,\"tags\":[],\"parts\":null,\"main\":null,\"counts\":[],\"samples\":null,\"flags\":[]}",
+		"{ \"price\" : 0.1 , \"count\" : 2147483647, \"unknown\": {\"name\": [1, \"]\", {}]}, \"name\": null }",
+		"{\"price\":1e300,\"count\":0}",
+		"{\"price\":123456789.125}",
+		"{\"price\":1.0E7}",
+		"{\"price\":4.9E-324}",
+		"{\"price\":\"NaN\"}",
+		"{}"
+	};
+
+	private SchemaLoader schemaLoader;
+	private Supplier<Generator> generatorFactory;
+
+	@Before
+	public void setUp() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/codecs/bean.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/codecs/bean.json", new JsonNodeReader().fromReader(reader));
+		}
+		schemaLoader = new SchemaLoader(loadingConfigurationBuilder.freeze());
+
+		Injector injector = Guice.createInjector();
+		generatorFactory = new Supplier<Generator>() {
+			@Override
+			public Generator get() {
+				return new CompositeGenerator(injector.getInstance(PojoGenerator.class), Collections.singletonList(new ByteCodecGenerator()));
+			}
+		};
+	}
+
+	@Test
+	public void codecsConformToJackson() throws Exception {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		ClassLoader classLoader = beanClass.getClassLoader();
+		Class<?> codecClass = classLoader.loadClass("anonymous.BeanByteCodec");
+		Class<?> readerClass = classLoader.loadClass("anonymous.support.JsonByteReader");
+		Class<?> writerClass = classLoader.loadClass("anonymous.support.JsonByteWriter");
+
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+		// Start with a tiny buffer, so that the writer has to grow it
+		Object writer = writerClass.getConstructor(byte[].class).newInstance(new byte[1]);
+		Object reader = readerClass.getDeclaredConstructor().newInstance();
+		for (String document : DOCUMENTS) {
+			Object expected = mapper.readValue(document, beanClass);
+
+			writerClass.getMethod("reset").invoke(writer);
+			codecClass.getMethod("encode", beanClass, writerClass).invoke(null, expected, writer);
+			byte[] encoded = (byte[]) writerClass.getMethod("toByteArray").invoke(writer);
+			assertArrayEquals(document, mapper.writeValueAsBytes(expected), encoded);
+
+			readerClass.getMethod("reset", byte[].class).invoke(reader, document.getBytes(StandardCharsets.UTF_8));
+			Object decoded = codecClass.getMethod("decode", readerClass).invoke(null, reader);
+			readerClass.getMethod("finish").invoke(reader);
+			assertEquals(document, mapper.valueToTree(expected), mapper.valueToTree(decoded));
+		}
+
+		readerClass.getMethod("reset", byte[].class).invoke(reader, " null ".getBytes(StandardCharsets.UTF_8));
+		assertNull(codecClass.getMethod("decode", readerClass).invoke(null, reader));
+	}
+
+	@Test
+	public void codecsOmitAbsentProperties() throws Exception {
+		Supplier<Generator> presenceGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_PRESENCE_TRACKING, Boolean.TRUE);
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(presenceGeneratorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		ClassLoader classLoader = beanClass.getClassLoader();
+		Class<?> codecClass = classLoader.loadClass("anonymous.BeanByteCodec");
+		Class<?> readerClass = classLoader.loadClass("anonymous.support.JsonByteReader");
+		Class<?> writerClass = classLoader.loadClass("anonymous.support.JsonByteWriter");
+
+		Object reader = readerClass.getDeclaredConstructor().newInstance();
+		readerClass.getMethod("reset", byte[].class).invoke(reader, "{\"price\":1.5,\"active\":true}".getBytes(StandardCharsets.UTF_8));
+		Object decoded = codecClass.getMethod("decode", readerClass).invoke(null, reader);
+		assertEquals(Boolean.FALSE, beanClass.getMethod("hasCount").invoke(decoded));
+		assertEquals(Boolean.TRUE, beanClass.getMethod("hasPrice").invoke(decoded));
+
+		Object writer = writerClass.getDeclaredConstructor().newInstance();
+		codecClass.getMethod("encode", beanClass, writerClass).invoke(null, decoded, writer);
+		String encoded = new String((byte[]) writerClass.getMethod("toByteArray").invoke(writer), StandardCharsets.UTF_8);
+		assertEquals("{\"name\":null,\"price\":1.5,\"active\":true,\"tags\":null,\"parts\":null,\"main\":null,\"counts\":null,\"samples\":null,\"flags\":null}", encoded);
+		
+		// null makes the property absent
+		readerClass.getMethod("reset", byte[].class).invoke(reader, "{\"count\":null,\"active\":true}".getBytes(StandardCharsets.UTF_8));
+		decoded = codecClass.getMethod("decode", readerClass).invoke(null, reader);
+		assertEquals(Boolean.FALSE, beanClass.getMethod("hasCount").invoke(decoded));
+	}
+
+	@Test
+	public void readerParsesLongsExactly() throws Exception {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		Class<?> readerClass = loader.getBeanClass(BEAN).getClassLoader().loadClass("anonymous.support.JsonByteReader");
+
+		assertEquals(Long.MAX_VALUE, readLong(readerClass, "9223372036854775807"));
+		assertEquals(Long.MIN_VALUE, readLong(readerClass, "-9223372036854775808"));
+		assertEquals(9007199254740993L, readLong(readerClass, "9007199254740993.5"));
+		assertEquals(1234567890123456789L, readLong(readerClass, "\"1234567890123456789\""));
+		assertEquals(0L, readLong(readerClass, "0e1000000"));
+		for (String document : new String[] { "9223372036854775808", "-9223372036854775809", "1e1000000" }) {
+			try {
+				readLong(readerClass, document);
+				fail("Expected " + document + " to be rejected");
+			} catch (InvocationTargetException e) {
+				assertTrue(e.getCause() instanceof IllegalArgumentException);
+			}
+		}
+	}
+
+	@Test
+	public void readerCopiesDirectBuffersIntoOwnArray() throws Exception {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		Class<?> readerClass = loader.getBeanClass(BEAN).getClassLoader().loadClass("anonymous.support.JsonByteReader");
+
+		byte[] data = "\"caller data\"".getBytes(StandardCharsets.UTF_8);
+		byte[] expected = data.clone();
+		Object reader = readerClass.getConstructor(byte[].class).newInstance(data);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(8);
+		buffer.put("\"other\"".getBytes(StandardCharsets.UTF_8)).flip();
+		readerClass.getMethod("reset", ByteBuffer.class).invoke(reader, buffer);
+		assertEquals("other", readerClass.getMethod("readString").invoke(reader));
+		assertArrayEquals(expected, data);
+	}
+
+	@Test
+	public void codecsKeepAdditionalProperties() throws Exception {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		assertEquals("{\"name\":\"n\",\"b\":2,\"a\":-1,\"c\\n\":3}", roundTrip(loader.getBeanClass(EXTENSIBLE), "{\"b\":2,\"name\":\"n\",\"a\":-1,\"c\\n\":3}"));
+		assertEquals("{\"x\":{\"label\":\"y\"},\"z\":null}", roundTrip(loader.getBeanClass(DIRECTORY), "{ \"x\" : {\"label\": \"y\"}, \"z\": null }"));
+		assertEquals("{}", roundTrip(loader.getBeanClass(DIRECTORY), "{}"));
+	}
+
+	@Test
+	public void codecsDecodeImmutableBeansThroughBuilder() throws Exception {
+		Supplier<Generator> immutableGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE);
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(immutableGeneratorFactory, schemaLoader, getClass().getClassLoader(), 4);
+		String document = "{\"name\":\"root\",\"count\":3,\"price\":1.5,\"active\":true,\"tags\":[\"a\",null],\"parts\":[{\"label\":\"x\"},null],\"main\":null,\"counts\":[1,-2],\"samples\":[0.5],\"flags\":[true]}";
+		assertEquals(document, roundTrip(loader.getBeanClass(BEAN), document));
+		assertEquals("{\"name\":\"n\",\"a\":1}", roundTrip(loader.getBeanClass(EXTENSIBLE), "{\"a\":1,\"name\":\"n\"}"));
+	}
+
+	private static String roundTrip(Class<?> beanClass, String document) throws Exception {
+		ClassLoader classLoader = beanClass.getClassLoader();
+		Class<?> codecClass = classLoader.loadClass(beanClass.getName() + "ByteCodec");
+		Class<?> readerClass = classLoader.loadClass("anonymous.support.JsonByteReader");
+		Class<?> writerClass = classLoader.loadClass("anonymous.support.JsonByteWriter");
+
+		Object reader = readerClass.getConstructor(byte[].class).newInstance(document.getBytes(StandardCharsets.UTF_8));
+		Object decoded = codecClass.getMethod("decode", readerClass).invoke(null, reader);
+		Object writer = writerClass.getDeclaredConstructor().newInstance();
+		codecClass.getMethod("encode", beanClass, writerClass).invoke(null, decoded, writer);
+		return new String((byte[]) writerClass.getMethod("toByteArray").invoke(writer), StandardCharsets.UTF_8);
+	}
+
+	private static long readLong(Class<?> readerClass, String document) throws Exception {
+		Object reader = readerClass.getConstructor(byte[].class).newInstance(document.getBytes(StandardCharsets.UTF_8));
+		return (Long) readerClass.getMethod("readLong").invoke(reader);
+	}
+}
@@ -0,0 +1,248 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.flyweight;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URI;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.CompositeGenerator;
+import com.collaborne.jsonschema.generator.FeatureGeneratorFactory;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.collaborne.jsonschema.generator.runtime.RuntimeBeanLoader;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+public class FlyweightGeneratorTest {
+	private static final URI HOLDER = URI.create("http://example.com/flyweight/item.json#/definitions/holder");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private SchemaLoader schemaLoader;
+	private Supplier<Generator> generatorFactory;
+
+	@Before
+	public void setUp() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/flyweight/item.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/flyweight/item.json", new JsonNodeReader().fromReader(reader));
+		}
+		schemaLoader = new SchemaLoader(loadingConfigurationBuilder.freeze());
+
+		Injector injector = Guice.createInjector();
+		generatorFactory = new Supplier<Generator>() {
+			@Override
+			public Generator get() {
+				return new CompositeGenerator(injector.getInstance(PojoGenerator.class), Collections.singletonList(new FlyweightGenerator()));
+			}
+		};
+	}
+
+	@Test
+	public void flyweightsUseFixedLayout() throws Exception {
+		ClassLoader classLoader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4).getBeanClass(HOLDER).getClassLoader();
+		Class<?> flyweightClass = classLoader.loadClass("anonymous.ItemFlyweight");
+
+		// The double first, then the int, then the single bytes in the order of the properties, padded to 8 bytes
+		assertEquals(16, flyweightClass.getField("SIZE").getInt(null));
+		assertEquals(8, flyweightClass.getField("ID_OFFSET").getInt(null));
+		assertEquals(0, flyweightClass.getField("PRICE_OFFSET").getInt(null));
+		assertEquals(12, flyweightClass.getField("ACTIVE_OFFSET").getInt(null));
+		assertEquals(13, flyweightClass.getField("STATUS_OFFSET").getInt(null));
+		assertEquals(ByteOrder.LITTLE_ENDIAN, flyweightClass.getField("BYTE_ORDER").get(null));
+
+		// Strings have no fixed width
+		try {
+			classLoader.loadClass("anonymous.HolderFlyweight");
+			fail("Generated a flyweight for a type with a string property");
+		} catch (ClassNotFoundException e) {
+			// Expected
+		}
+
+		Object flyweight = flyweightClass.getDeclaredConstructor().newInstance();
+		// Buffers in another byte order are accessed through a view, and keep their order
+		ByteBuffer buffer = ByteBuffer.allocate(32).order(ByteOrder.BIG_ENDIAN);
+		flyweightClass.getMethod("wrap", ByteBuffer.class, int.class).invoke(flyweight, buffer, 16);
+		flyweightClass.getMethod("setId", int.class).invoke(flyweight, 0x01020304);
+		assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+		assertEquals(0x04, buffer.get(16 + 8));
+		flyweightClass.getMethod("setStatus", String.class).invoke(flyweight, "on hold");
+		assertEquals(3, buffer.get(16 + 13));
+		assertEquals("on hold", flyweightClass.getMethod("getStatus").invoke(flyweight));
+		flyweightClass.getMethod("setStatus", String.class).invoke(flyweight, (Object) null);
+		assertNull(flyweightClass.getMethod("getStatus").invoke(flyweight));
+		try {
+			flyweightClass.getMethod("setStatus", String.class).invoke(flyweight, "unknown");
+			fail("Accepted a value outside of the enumeration");
+		} catch (InvocationTargetException e) {
+			assertTrue(e.getCause() instanceof IllegalArgumentException);
+		}
+	}
+
+	@Test
+	public void repositoriesStoreRecordsContiguously() throws Exception {
+		Class<?> itemClass = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4).getBeanClass(HOLDER).getClassLoader().loadClass("anonymous.Item");
+		for (boolean direct : new boolean[] { false, true }) {
+			Object repository = newRepository(itemClass, direct);
+			Class<?> repositoryClass = repository.getClass();
+			// Start small, so that the repository has to grow
+			for (int i = 0; i < 20; i++) {
+				repositoryClass.getMethod("add", itemClass).invoke(repository, newItem(itemClass, i));
+			}
+			assertEquals(20, repositoryClass.getMethod("size").invoke(repository));
+			ByteBuffer contents = (ByteBuffer) repositoryClass.getMethod("contents").invoke(repository);
+			assertEquals(direct, contents.isDirect());
+			assertEquals(20 * 16, contents.remaining());
+
+			for (int i = 0; i < 20; i++) {
+				Object flyweight = repositoryClass.getMethod("get", int.class).invoke(repository, i);
+				assertEquals(i, flyweight.getClass().getMethod("getId").invoke(flyweight));
+				assertSameValues(newItem(itemClass, i), flyweight.getClass().getMethod("toBean").invoke(flyweight));
+			}
+		}
+	}
+
+	@Test
+	public void repositoriesWorkOnMappedFiles() throws Exception {
+		Class<?> itemClass = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4).getBeanClass(HOLDER).getClassLoader().loadClass("anonymous.Item");
+		Class<?> repositoryClass = itemClass.getClassLoader().loadClass("anonymous.ItemRepository");
+		Path file = temporaryFolder.newFile("items").toPath();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, 2 * 16);
+			Object repository = repositoryClass.getConstructor(ByteBuffer.class, int.class).newInstance(buffer, 0);
+			repositoryClass.getMethod("add", itemClass).invoke(repository, newItem(itemClass, 1));
+			repositoryClass.getMethod("add", itemClass).invoke(repository, newItem(itemClass, 2));
+			try {
+				repositoryClass.getMethod("add").invoke(repository);
+				fail("Grew a mapped buffer");
+			} catch (InvocationTargetException e) {
+				assertTrue(e.getCause() instanceof BufferOverflowException);
+			}
+			buffer.force();
+		}
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			Object repository = repositoryClass.getConstructor(ByteBuffer.class, int.class).newInstance(buffer, 2);
+			Object flyweight = repositoryClass.getMethod("get", int.class).invoke(repository, 1);
+			assertSameValues(newItem(itemClass, 2), flyweight.getClass().getMethod("toBean").invoke(flyweight));
+			// Mapped buffers are big-endian, the records are little-endian
+			assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+			assertEquals(2, buffer.duplicate().order(ByteOrder.LITTLE_ENDIAN).getInt(16 + 8));
+		}
+	}
+
+	@Test
+	public void repositoryContentsCanBeMapped() throws Exception {
+		Class<?> itemClass = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4).getBeanClass(HOLDER).getClassLoader().loadClass("anonymous.Item");
+		Class<?> repositoryClass = itemClass.getClassLoader().loadClass("anonymous.ItemRepository");
+		for (boolean direct : new boolean[] { false, true }) {
+			Object repository = newRepository(itemClass, direct);
+			for (int i = 0; i < 3; i++) {
+				repositoryClass.getMethod("add", itemClass).invoke(repository, newItem(itemClass, i));
+			}
+			Path file = temporaryFolder.newFile().toPath();
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+				ByteBuffer contents = (ByteBuffer) repositoryClass.getMethod("contents").invoke(repository);
+				while (contents.hasRemaining()) {
+					channel.write(contents);
+				}
+			}
+
+			try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+				ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				Object mapped = repositoryClass.getConstructor(ByteBuffer.class, int.class).newInstance(buffer, 3);
+				for (int i = 0; i < 3; i++) {
+					Object flyweight = repositoryClass.getMethod("get", int.class).invoke(mapped, i);
+					assertSameValues(newItem(itemClass, i), flyweight.getClass().getMethod("toBean").invoke(flyweight));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void flyweightsBuildImmutableBeans() throws Exception {
+		Supplier<Generator> immutableGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE);
+		Class<?> itemClass = new RuntimeBeanLoader(immutableGeneratorFactory, schemaLoader, getClass().getClassLoader(), 4).getBeanClass(HOLDER).getClassLoader().loadClass("anonymous.Item");
+		Object builder = itemClass.getMethod("builder").invoke(null);
+		builder.getClass().getMethod("setId", int.class).invoke(builder, 7);
+		builder.getClass().getMethod("setStatus", String.class).invoke(builder, "closed");
+		Object item = builder.getClass().getMethod("build").invoke(builder);
+
+		Object repository = newRepository(itemClass, false);
+		int index = (Integer) repository.getClass().getMethod("add", itemClass).invoke(repository, item);
+		Object flyweight = repository.getClass().getMethod("get", int.class).invoke(repository, index);
+		assertEquals(item, flyweight.getClass().getMethod("toBean").invoke(flyweight));
+		assertFalse((Boolean) flyweight.getClass().getMethod("getActive").invoke(flyweight));
+	}
+
+	private static void assertSameValues(Object expected, Object actual) throws ReflectiveOperationException {
+		// Mutable beans do not implement equals()
+		for (String getterName : new String[] { "getId", "getPrice", "getActive", "getStatus" }) {
+			assertEquals(getterName, expected.getClass().getMethod(getterName).invoke(expected), actual.getClass().getMethod(getterName).invoke(actual));
+		}
+	}
+
+	private static Object newRepository(Class<?> itemClass, boolean direct) throws ReflectiveOperationException {
+		Class<?> repositoryClass = itemClass.getClassLoader().loadClass("anonymous.ItemRepository");
+		if (direct) {
+			return repositoryClass.getMethod("allocateDirect", int.class).invoke(null, 1);
+		}
+		return repositoryClass.getConstructor(int.class).newInstance(1);
+	}
+
+	private static Object newItem(Class<?> itemClass, int id) throws ReflectiveOperationException {
+		Object item = itemClass.getDeclaredConstructor().newInstance();
+		itemClass.getMethod("setId", int.class).invoke(item, id);
+		itemClass.getMethod("setPrice", double.class).invoke(item, id * 1.5);
+		itemClass.getMethod("setActive", boolean.class).invoke(item, id % 2 == 0);
+		itemClass.getMethod("setStatus", String.class).invoke(item, id % 3 == 0 ? null : "closed");
+		return item;
+	}
+}
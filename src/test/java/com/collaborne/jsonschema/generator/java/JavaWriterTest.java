@@ -0,0 +1,114 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.java;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class JavaWriterTest {
+	@Test
+	public void writeImportWritesSortedImports() throws IOException {
+		StringWriter output = new StringWriter();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(output))) {
+			ClassName className = new ClassName("com.example", "Type");
+			writer.writePackage(className);
+			writer.writeImport(new ClassName("java.util", "List"));
+			writer.writeImport(new ClassName("com.example.other", "Other"));
+			writer.writeImport(new ClassName("com.example", "SamePackage"));
+			writer.writeImport(new ClassName("java.util", "List"));
+			writer.writeClassStart(className, Kind.CLASS, Visibility.PUBLIC);
+			writer.writeClassEnd();
+		}
+		
+		assertEquals("package com.example;\n"
+			+ "import com.example.other.Other;\n"
+			+ "import java.util.List;\n"
+			+ "public class Type {\n"
+			+ "}\n", output.toString());
+	}
+	
+	@Test
+	public void writeNestedClassesWithDeferredImports() throws IOException {
+		StringWriter output = new StringWriter();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(output))) {
+			ClassName holder = new ClassName("com.example", "Holder");
+			writer.writePackage(holder);
+			writer.deferImports();
+			writer.reserveShortName("Other");
+			writer.writeClassStart(holder, Kind.CLASS, Visibility.PUBLIC);
+			
+			ClassName nested = new ClassName("com.example", "Holder.Nested");
+			writer.writeImport(new ClassName("java.util", "List"));
+			// Shadowed by the nested class with the same name
+			writer.writeImport(new ClassName("com.example.other", "Other"));
+			writer.writeImport(new ClassName("com.example.more", "More.Inner"));
+			writer.writeClassStart(nested, Kind.CLASS, Visibility.PUBLIC);
+			writer.writeField(Visibility.PRIVATE, new ClassName("com.example.other", "Other"), "other");
+			writer.writeField(Visibility.PRIVATE, new ClassName("com.example.more", "More.Inner"), "inner");
+			writer.writeField(Visibility.PRIVATE, new ClassName("com.example", "Holder.Other"), "nested");
+			writer.writeClassEnd();
+			writer.writeClassEnd();
+		}
+		
+		assertEquals("package com.example;\n"
+			+ "import com.example.more.More;\n"
+			+ "import java.util.List;\n"
+			+ "public class Holder {\n"
+			+ "\tpublic static class Nested {\n"
+			+ "\t\tprivate com.example.other.Other other;\n"
+			+ "\t\tprivate More.Inner inner;\n"
+			+ "\t\tprivate Holder.Other nested;\n"
+			+ "\t}\n"
+			+ "}\n", output.toString());
+	}
+	
+	@Test
+	public void writeSplitMethodSplitsIntoHelpers() throws IOException {
+		StringWriter output = new StringWriter();
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(output))) {
+			writer.writeSplitMethod(Visibility.PUBLIC, "init", Arrays.asList("a();", "b();", "c();"), 2, ClassName.create(int.class), "value");
+		}
+		
+		assertEquals("public void init(int value) {\n"
+			+ "\tinit$0(value);\n"
+			+ "\tinit$1(value);\n"
+			+ "}\n"
+			+ "private void init$0(int value) {\n"
+			+ "\ta();\n"
+			+ "\tb();\n"
+			+ "}\n"
+			+ "private void init$1(int value) {\n"
+			+ "\tc();\n"
+			+ "}\n", output.toString());
+	}
+	
+	@Test
+	public void getShortNameSeparatesTypeArguments() throws IOException {
+		try (JavaWriter writer = new JavaWriter(new BufferedWriter(new StringWriter()))) {
+			writer.writePackage(new ClassName("com.example", "Type"));
+			writer.writeImport(new ClassName("java.util", "Map"));
+			assertEquals("Map<String, Integer>", writer.getShortName(new ClassName("java.util", "Map", ClassName.create(String.class), ClassName.create(Integer.class))));
+		}
+	}
+}
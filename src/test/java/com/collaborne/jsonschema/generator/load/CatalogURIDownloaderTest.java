@@ -0,0 +1,141 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.cache.ContentStore;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.download.URIDownloader;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class CatalogURIDownloaderTest {
+	private static final byte[] REMOTE_SCHEMA = "{\"type\": \"string\"}".getBytes(StandardCharsets.UTF_8);
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer server;
+	private AtomicInteger requestCount;
+	private URI serverUri;
+	private Map<String, URIDownloader> downloaders;
+
+	@Before
+	public void setUp() throws IOException {
+		requestCount = new AtomicInteger();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requestCount.incrementAndGet();
+				exchange.sendResponseHeaders(200, REMOTE_SCHEMA.length);
+				try (OutputStream output = exchange.getResponseBody()) {
+					output.write(REMOTE_SCHEMA);
+				}
+			}
+		});
+		server.start();
+		serverUri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+		downloaders = LoadingConfiguration.byDefault().getDownloaderMap();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private static byte[] read(InputStream input) throws IOException {
+		try (InputStream in = input) {
+			return ByteStreams.toByteArray(in);
+		}
+	}
+
+	@Test
+	public void fetchRemoteDocumentOnlyOnceWithCache() throws IOException {
+		ContentStore cache = new ContentStore(temporaryFolder.newFolder("cache").toPath());
+		URI schemaUri = serverUri.resolve("schemas/remote.json");
+
+		assertEquals(new String(REMOTE_SCHEMA, StandardCharsets.UTF_8), new String(read(new CatalogURIDownloader(null, cache, false, downloaders).fetch(schemaUri)), StandardCharsets.UTF_8));
+		// A second downloader sharing the same cache directory simulates a second run
+		read(new CatalogURIDownloader(null, cache, false, downloaders).fetch(schemaUri));
+		read(new CatalogURIDownloader(null, cache, true, downloaders).fetch(schemaUri));
+
+		assertEquals(1, requestCount.get());
+	}
+
+	@Test(expected = IOException.class)
+	public void fetchOfflineWithoutCacheEntryFails() throws IOException {
+		ContentStore cache = new ContentStore(temporaryFolder.newFolder("cache").toPath());
+		try {
+			new CatalogURIDownloader(null, cache, true, downloaders).fetch(serverUri.resolve("schemas/remote.json"));
+		} finally {
+			assertEquals(0, requestCount.get());
+		}
+	}
+
+	@Test
+	public void fetchUsesCatalogFileEntry() throws IOException {
+		Path directory = temporaryFolder.newFolder("catalog").toPath();
+		Files.write(directory.resolve("local.json"), "{}".getBytes(StandardCharsets.UTF_8));
+
+		SchemaCatalog.Entry entry = new SchemaCatalog.Entry();
+		entry.setUri(serverUri.resolve("schemas/"));
+		entry.setFile("./");
+		SchemaCatalog catalog = new SchemaCatalog();
+		catalog.setBaseDirectory(directory);
+		catalog.setEntries(Collections.singletonList(entry));
+
+		byte[] content = read(new CatalogURIDownloader(catalog, null, true, downloaders).fetch(serverUri.resolve("schemas/local.json")));
+		assertEquals("{}", new String(content, StandardCharsets.UTF_8));
+		assertEquals(0, requestCount.get());
+	}
+
+	@Test
+	public void fetchUsesCatalogResourceEntry() throws IOException {
+		SchemaCatalog.Entry entry = new SchemaCatalog.Entry();
+		entry.setUri(URI.create("http://example.com/schemas/simple.json"));
+		entry.setResource("/schemas/simple.json");
+		SchemaCatalog catalog = new SchemaCatalog();
+		catalog.setEntries(Collections.singletonList(entry));
+
+		byte[] content = read(new CatalogURIDownloader(catalog, null, true, downloaders).fetch(entry.getUri()));
+		assertTrue(new String(content, StandardCharsets.UTF_8).contains("definitions"));
+	}
+}
@@ -0,0 +1,123 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.load;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ParsedSchemaCacheTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private Path write(String name, String content) throws IOException {
+		Path file = temporaryFolder.getRoot().toPath().resolve(name);
+		Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	@Test
+	public void getCountsHitsAndMisses() throws IOException {
+		Path file = write("a.json", "{\"type\": \"string\"}");
+		ParsedSchemaCache cache = new ParsedSchemaCache(new ObjectMapper());
+
+		JsonNode node = cache.get(file);
+		assertSame(node, cache.get(file));
+		assertEquals(1, cache.getParseCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(ParsedSchemaCache.estimateWeight(node), cache.getWeight());
+	}
+
+	@Test
+	public void getEvictsLeastRecentlyUsedBeyondMaximumWeight() throws IOException {
+		Path a = write("a.json", "{\"type\": \"string\"}");
+		Path b = write("b.json", "{\"type\": \"number\"}");
+		Path c = write("c.json", "{\"type\": \"object\"}");
+		ObjectMapper objectMapper = new ObjectMapper();
+		long weight = ParsedSchemaCache.estimateWeight(objectMapper.readTree("{\"type\": \"string\"}"));
+		ParsedSchemaCache cache = new ParsedSchemaCache(objectMapper, 2 * weight);
+
+		cache.get(a);
+		cache.get(b);
+		// Use a, so that b is the least recently used one
+		cache.get(a);
+		cache.get(c);
+		assertEquals(1, cache.getEvictionCount());
+		assertTrue(cache.getWeight() <= 2 * weight);
+
+		cache.get(a);
+		cache.get(b);
+		assertEquals(4, cache.getParseCount());
+	}
+
+	@Test
+	public void invalidateReloadsFromFile() throws IOException {
+		Path file = write("a.json", "{\"type\": \"string\"}");
+		ParsedSchemaCache cache = new ParsedSchemaCache(new ObjectMapper());
+		assertEquals("string", cache.get(file).get("type").textValue());
+
+		write("a.json", "{\"type\": \"number\"}");
+		assertEquals("string", cache.get(file).get("type").textValue());
+		cache.invalidate(file.toUri().resolve("#/definitions/x"));
+		assertEquals(0, cache.getWeight());
+		assertEquals("number", cache.get(file).get("type").textValue());
+	}
+
+	@Test
+	public void getLoadsDocumentsByUri() throws IOException {
+		ObjectMapper objectMapper = new ObjectMapper();
+		ParsedSchemaCache cache = new ParsedSchemaCache(objectMapper);
+		URI document = URI.create("http://example.com/a.json");
+		AtomicInteger loadCount = new AtomicInteger();
+		Callable<JsonNode> loader = new Callable<JsonNode>() {
+			@Override
+			public JsonNode call() throws IOException {
+				loadCount.incrementAndGet();
+				return objectMapper.readTree("{\"type\": \"string\"}");
+			}
+		};
+
+		JsonNode node = cache.get(document, loader);
+		assertSame(node, cache.get(document.resolve("#/definitions/x"), loader));
+		assertEquals(1, loadCount.get());
+		assertTrue(cache.contains(document));
+
+		cache.invalidate(URI.create("http://example.com/a.json#/definitions/x"));
+		assertFalse(cache.contains(document));
+		assertEquals(1, cache.getInvalidationCount());
+		cache.get(document, loader);
+		assertEquals(2, loadCount.get());
+	}
+}
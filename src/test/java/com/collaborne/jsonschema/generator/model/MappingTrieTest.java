@@ -0,0 +1,98 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+
+import org.junit.Test;
+
+public class MappingTrieTest {
+	private static Mapping createPatternMapping(String packageName) {
+		Mapping mapping = new Mapping();
+		mapping.setPackageName(packageName);
+		return mapping;
+	}
+
+	@Test
+	public void isPatternDetectsWildcards() {
+		assertTrue(MappingTrie.isPattern(URI.create("http://x/schemas/billing/#/definitions/*")));
+		assertTrue(MappingTrie.isPattern(URI.create("http://x/schemas/**")));
+		assertFalse(MappingTrie.isPattern(URI.create("http://x/schemas/billing/#/definitions/invoice")));
+	}
+
+	@Test
+	public void findSingleWildcardUsesLastPointerStep() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/*"), createPatternMapping("com.x.billing"));
+
+		URI type = URI.create("http://x/schemas/billing/#/definitions/invoice");
+		Mapping mapping = trie.find(type);
+		assertEquals(type, mapping.getTarget());
+		assertEquals("com.x.billing", mapping.getClassName().getPackageName());
+		assertEquals("Invoice", mapping.getClassName().getRawClassName());
+	}
+
+	@Test
+	public void findSingleWildcardDoesNotMatchDeeperSteps() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/*"), createPatternMapping("com.x.billing"));
+
+		assertNull(trie.find(URI.create("http://x/schemas/billing/#/definitions/invoice/properties/lines")));
+		assertNull(trie.find(URI.create("http://x/schemas/orders/#/definitions/order")));
+	}
+
+	@Test
+	public void findPrefersMoreSpecificPattern() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/**"), createPatternMapping("com.x"));
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/*"), createPatternMapping("com.x.billing"));
+
+		assertEquals("com.x.billing", trie.find(URI.create("http://x/schemas/billing/#/definitions/invoice")).getClassName().getPackageName());
+		assertEquals("com.x", trie.find(URI.create("http://x/schemas/orders/#/definitions/order")).getClassName().getPackageName());
+		assertEquals(2, trie.size());
+	}
+
+	@Test
+	public void findDeepWildcardNamesClassAfterMatchedPath() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/**"), createPatternMapping("com.x.billing"));
+
+		assertEquals("Invoice", trie.find(URI.create("http://x/schemas/billing/#/definitions/invoice")).getClassName().getRawClassName());
+		assertEquals("InvoiceId", trie.find(URI.create("http://x/schemas/billing/#/definitions/invoice/properties/id")).getClassName().getRawClassName());
+		assertEquals("LineId", trie.find(URI.create("http://x/schemas/billing/#/definitions/line/properties/id")).getClassName().getRawClassName());
+	}
+
+	@Test
+	public void findSanitizesClassName() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/*"), createPatternMapping("com.x.billing"));
+
+		assertEquals("_1stline", trie.find(URI.create("http://x/schemas/billing/#/definitions/1st-line")).getClassName().getRawClassName());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void addWithoutPackageNameFails() {
+		MappingTrie trie = new MappingTrie();
+		trie.add(URI.create("http://x/schemas/billing/#/definitions/*"), new Mapping());
+	}
+}
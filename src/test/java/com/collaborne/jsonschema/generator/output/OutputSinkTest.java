@@ -0,0 +1,108 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+
+import org.junit.Test;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.google.common.io.ByteStreams;
+import com.google.inject.Guice;
+
+public class OutputSinkTest {
+	private static OutputBuffer createBuffer(String contents) {
+		OutputBuffer buffer = new OutputBuffer();
+		buffer.write(contents.getBytes(StandardCharsets.UTF_8), 0, contents.length());
+		return buffer;
+	}
+
+	@Test
+	public void generateIntoInMemorySink() throws IOException, CodeGenerationException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/pruning/common.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/common.json", new JsonNodeReader().fromReader(reader));
+		}
+
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		PojoGenerator generator = Guice.createInjector().getInstance(PojoGenerator.class);
+		generator.setSchemaLoader(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+		generator.setOutputSink(outputSink);
+		ClassName invoice = generator.generate(URI.create("http://example.com/common.json#/definitions/invoice"));
+		generator.flush();
+
+		// The invoice references the order, which references the line
+		Map<ClassName, ByteBuffer> sources = outputSink.getSources();
+		assertEquals(3, sources.size());
+		String invoiceSource = StandardCharsets.UTF_8.decode(outputSink.getSource(invoice)).toString();
+		assertTrue(invoiceSource.contains("class Invoice"));
+		// Views are independent of each other
+		assertEquals(invoiceSource, StandardCharsets.UTF_8.decode(sources.get(invoice)).toString());
+
+		outputSink.clear();
+		assertNull(outputSink.getSource(invoice));
+	}
+
+	@Test
+	public void writeArchiveContainsSourceFiles() throws IOException {
+		Map<ClassName, String> sources = new LinkedHashMap<>();
+		sources.put(new ClassName("com.example", "First"), "class First {}");
+		sources.put(new ClassName("", "Second"), "class Second {}");
+
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		try (ArchiveOutputSink outputSink = new ArchiveOutputSink(archive)) {
+			for (Map.Entry<ClassName, String> source : sources.entrySet()) {
+				outputSink.write(URI.create("http://example.com/"), source.getKey(), createBuffer(source.getValue()));
+			}
+		}
+
+		try (ZipInputStream input = new ZipInputStream(new ByteArrayInputStream(archive.toByteArray()))) {
+			for (Map.Entry<ClassName, String> source : sources.entrySet()) {
+				ZipEntry entry = input.getNextEntry();
+				assertNotNull(entry);
+				assertEquals(OutputSink.getSourceFileName(source.getKey()), entry.getName());
+				assertEquals(source.getValue(), new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8));
+			}
+			assertNull(input.getNextEntry());
+		}
+		assertEquals("com/example/First.java", OutputSink.getSourceFileName(new ClassName("com.example", "First")));
+	}
+}
@@ -0,0 +1,117 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.output;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+
+public class OutputWriterTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private static OutputBufferPool<OutputBuffer> createPool() {
+		return new OutputBufferPool<>(4, new Supplier<OutputBuffer>() {
+			@Override
+			public OutputBuffer get() {
+				return new OutputBuffer();
+			}
+		});
+	}
+
+	@Test
+	public void poolReusesReleasedBuffers() {
+		OutputBufferPool<OutputBuffer> pool = createPool();
+		OutputBuffer buffer = pool.acquire();
+		buffer.write(42);
+		buffer.release();
+		// Releasing twice must not put the buffer twice into the pool
+		buffer.release();
+
+		assertEquals(1, pool.getAvailableCount());
+		OutputBuffer reused = pool.acquire();
+		assertSame(buffer, reused);
+		assertEquals(0, reused.size());
+	}
+
+	@Test
+	public void writeAsyncWritesOnlyContents() throws IOException, CodeGenerationException {
+		Path directory = temporaryFolder.newFolder().toPath();
+		AtomicInteger createdCount = new AtomicInteger();
+		// Large enough for all buffers that can be in flight at the same time
+		OutputBufferPool<OutputBuffer> pool = new OutputBufferPool<>(8, new Supplier<OutputBuffer>() {
+			@Override
+			public OutputBuffer get() {
+				createdCount.incrementAndGet();
+				return new OutputBuffer();
+			}
+		});
+		try (OutputWriter writer = OutputWriter.async(Durability.ATOMIC, 2, 1)) {
+			for (int i = 0; i < 20; i++) {
+				OutputBuffer buffer = pool.acquire();
+				buffer.write(("file " + i).getBytes(StandardCharsets.UTF_8));
+				writer.write(URI.create("http://example.com/" + i), directory.resolve("sub/" + i + ".txt"), buffer);
+			}
+			writer.flush();
+		}
+
+		for (int i = 0; i < 20; i++) {
+			assertArrayEquals(("file " + i).getBytes(StandardCharsets.UTF_8), Files.readAllBytes(directory.resolve("sub/" + i + ".txt")));
+		}
+		// How many buffers were needed depends on the timing, but all of them must be back in the pool
+		assertEquals(createdCount.get(), pool.getAvailableCount());
+	}
+
+	@Test
+	public void flushReportsFailedWrite() throws IOException {
+		Path directory = temporaryFolder.newFolder().toPath();
+		// A file where a directory is expected makes the write fail
+		Files.write(directory.resolve("blocked"), new byte[0]);
+		URI type = URI.create("http://example.com/failing");
+		try (OutputWriter writer = OutputWriter.async(Durability.SYNC, 1, 4)) {
+			OutputBuffer buffer = new OutputBuffer();
+			buffer.write(1);
+			writer.write(type, directory.resolve("blocked/file.txt"), buffer);
+			try {
+				writer.flush();
+				fail("Expected failure");
+			} catch (CodeGenerationException e) {
+				assertEquals(type, e.getType());
+			}
+			// The failure is reported once
+			writer.flush();
+		} catch (CodeGenerationException e) {
+			fail("Unexpected failure " + e);
+		}
+	}
+}
@@ -19,31 +19,74 @@ package com.collaborne.jsonschema.generator.pojo;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.StringReader;
 import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.FeatureGeneratorFactory;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.cache.ContentStore;
 import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.JavaWriter;
+import com.collaborne.jsonschema.generator.model.FootprintReport;
 import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.output.InMemoryOutputSink;
+import com.collaborne.jsonschema.generator.runtime.RuntimeBeanLoader;
+import com.collaborne.jsonschema.generator.schema.SchemaCompiler;
+import com.collaborne.jsonschema.generator.schema.SchemaType;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.fge.jackson.JsonNodeReader;
 import com.github.fge.jackson.jsonpointer.JsonPointerException;
 import com.github.fge.jsonschema.core.exceptions.ProcessingException;
 import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
 import com.github.fge.jsonschema.core.tree.SchemaTree;
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
 
 public class PojoGeneratorTest {
 	private static class TestClass {
 		/* Nothing */
 	}
 
+	private static final URI BEAN = URI.create("http://example.com/codecs/bean.json#/definitions/bean");
+	private static final URI EXTENSIBLE = URI.create("http://example.com/codecs/bean.json#/definitions/extensible");
+	private static final URI DIRECTORY = URI.create("http://example.com/codecs/bean.json#/definitions/directory");
+	
+	private final Supplier<Generator> generatorFactory = new Supplier<Generator>() {
+		@Override
+		public Generator get() {
+			return new PojoGenerator(new PojoClassGenerator(), new PojoArrayGenerator(), new PojoStringGenerator());
+		}
+	};
 	private JsonNodeReader jsonNodeReader;
 	private SchemaLoader schemaLoader;
 
@@ -66,8 +109,8 @@ public class PojoGeneratorTest {
 			}
 
 			@Override
-			protected SchemaTree getSchema(SchemaLoader schemaLoader, URI uri) throws ProcessingException, JsonPointerException {
-				return schema;
+			protected SchemaType getSchemaType(URI type) throws ProcessingException, JsonPointerException {
+				return new SchemaCompiler(schemaLoader).compile(schema);
 			}
 		};
 
@@ -89,8 +132,8 @@ public class PojoGeneratorTest {
 			}
 
 			@Override
-			protected SchemaTree getSchema(SchemaLoader schemaLoader, URI uri) throws ProcessingException, JsonPointerException {
-				return schema;
+			protected SchemaType getSchemaType(URI type) throws ProcessingException, JsonPointerException {
+				return new SchemaCompiler(schemaLoader).compile(schema);
 			}
 		};
 
@@ -116,4 +159,567 @@ public class PojoGeneratorTest {
 		Mapping mapping = generator.generateMapping(type);
 		assertEquals(packageName, mapping.getClassName().getPackageName());
 	}
+
+	@Test
+	public void generateInternalWithOutputCacheSkipsRenderingOnHit() throws CodeGenerationException, IOException {
+		JsonNode schemaNode = jsonNodeReader.fromReader(new StringReader("{\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}}}"));
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/type.json", schemaNode);
+		SchemaLoader preloadedSchemaLoader = new SchemaLoader(loadingConfigurationBuilder.freeze());
+		Mapping mapping = new Mapping(URI.create("http://example.com/type.json#"), new ClassName("com.example", "Type"));
+		
+		ContentStore outputCache = new ContentStore(Jimfs.newFileSystem(Configuration.unix()).getPath("/cache"));
+		AtomicInteger renderCount = new AtomicInteger();
+		List<String> outputs = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			PojoClassGenerator classGenerator = new PojoClassGenerator() {
+				@Override
+				public void generateType(PojoCodeGenerationContext context, SchemaType schema, JavaWriter writer) throws IOException, CodeGenerationException {
+					renderCount.incrementAndGet();
+					super.generateType(context, schema, writer);
+				}
+			};
+			PojoGenerator generator = new PojoGenerator(classGenerator, new PojoArrayGenerator(), new PojoStringGenerator()) {
+				@Override
+				protected void writeSource(URI type, ClassName className, Buffer buffer) throws IOException {
+					outputs.add(new String(buffer.toByteArray(), StandardCharsets.UTF_8));
+				}
+			};
+			generator.setSchemaLoader(preloadedSchemaLoader);
+			generator.setOutputCache(outputCache);
+			
+			assertEquals(mapping.getClassName(), generator.generateInternal(mapping.getTarget(), mapping));
+		}
+		
+		assertEquals(1, renderCount.get());
+		assertEquals(2, outputs.size());
+		assertEquals(outputs.get(0), outputs.get(1));
+	}
+	
+	@Test
+	public void generateWithOutputCacheWritesSupportClasses() throws CodeGenerationException, IOException {
+		SchemaLoader beanSchemaLoader = createBeanSchemaLoader();
+		ContentStore outputCache = new ContentStore(Jimfs.newFileSystem(Configuration.unix()).getPath("/cache"));
+		List<Map<ClassName, ByteBuffer>> outputs = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			// Each run writes into a fresh output
+			InMemoryOutputSink outputSink = new InMemoryOutputSink();
+			PojoGenerator generator = (PojoGenerator) generatorFactory.get();
+			generator.setSchemaLoader(beanSchemaLoader);
+			generator.setOutputCache(outputCache);
+			generator.setOutputSink(outputSink);
+			generator.generate(EXTENSIBLE);
+			generator.flush();
+			outputs.add(outputSink.getSources());
+		}
+		
+		assertEquals(outputs.get(0), outputs.get(1));
+		assertTrue(outputs.get(1).containsKey(new ClassName("anonymous.support", "StringIntMap")));
+	}
+	
+	@Test
+	public void generateMappingNamesDocumentRootsType() {
+		PojoGenerator generator = new PojoGenerator(null, null, null);
+		assertEquals(new ClassName("anonymous", "Type"), generator.generateMapping(URI.create("http://example.com/billing/invoice.json#")).getClassName());
+	}
+	
+	@Test
+	public void generateMappingNamesDocumentRootsAfterRelativePath() {
+		PojoGenerator generator = new PojoGenerator(null, null, null);
+		generator.setFeature(PojoGenerator.FEATURE_DOCUMENT_ROOT_BASE_URI, "http://example.com/");
+		assertEquals(new ClassName("anonymous", "BillingInvoice"), generator.generateMapping(URI.create("http://example.com/billing/invoice.json#")).getClassName());
+		assertEquals(new ClassName("anonymous", "ShippingInvoice"), generator.generateMapping(URI.create("http://example.com/shipping/invoice.json#")).getClassName());
+		// Other types keep their names
+		assertEquals(new ClassName("anonymous", "Line"), generator.generateMapping(URI.create("http://example.com/billing/invoice.json#/definitions/line")).getClassName());
+	}
+	
+	@Test
+	public void generateMappingWithCollisionUsesCounter() {
+		PojoGenerator generator = new PojoGenerator(null, null, null);
+		Mapping first = generator.generateMapping(URI.create("http://example.com/a.json#/definitions/item"));
+		Mapping second = generator.generateMapping(URI.create("http://example.com/b.json#/definitions/item"));
+		assertEquals("Item", first.getClassName().getRawClassName());
+		assertEquals("Item$1", second.getClassName().getRawClassName());
+	}
+	
+	@Test
+	public void generateWithGroupedAnonymousTypesWritesOneHolder() throws CodeGenerationException, IOException {
+		JsonNode schemaNode = jsonNodeReader.fromReader(new StringReader("{\"type\": \"object\", \"properties\": {"
+			+ "\"a\": {\"type\": \"object\", \"properties\": {\"b\": {\"type\": \"object\"}}}"
+			+ "}}"));
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/my-types.json", schemaNode);
+		
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		PojoGenerator generator = new PojoGenerator(new PojoClassGenerator(), new PojoArrayGenerator(), new PojoStringGenerator());
+		generator.setSchemaLoader(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+		generator.setOutputSink(outputSink);
+		generator.setFeature(PojoGenerator.FEATURE_GROUP_ANONYMOUS_TYPES, Boolean.TRUE);
+		
+		ClassName root = generator.generate(URI.create("http://example.com/my-types.json#"));
+		assertEquals(new ClassName("anonymous", "MyTypes.Type"), root);
+		// Nothing is written before flushing
+		assertTrue(outputSink.getSources().isEmpty());
+		generator.flush();
+		
+		ClassName holder = new ClassName("anonymous", "MyTypes");
+		assertEquals(Collections.singleton(holder), outputSink.getSources().keySet());
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(holder)).toString();
+		assertTrue(source.contains("public static class A {"));
+		assertTrue(source.contains("public static class AB {"));
+		assertTrue(source.contains("private MyTypes.AB b;"));
+	}
+	
+	@Test(timeout = 120000)
+	public void generateWideTypeSplitsIntoSuperClasses() throws CodeGenerationException, IOException {
+		// Above the limits of a single class file
+		SchemaLoader schemaLoader = createWideSchemaLoader(13000);
+		URI type = URI.create("http://example.com/wide.json#");
+		
+		Supplier<Generator> wideTypeGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME, "com.example");
+		
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		Generator generator = wideTypeGeneratorFactory.get();
+		generator.setSchemaLoader(schemaLoader);
+		generator.setOutputSink(outputSink);
+		ClassName root = generator.generate(type);
+		generator.flush();
+		
+		// Each part is a public class in its own source
+		String rawClassName = root.getRawClassName();
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(root)).toString();
+		assertTrue(source.contains("public class " + rawClassName + " extends " + rawClassName + "$Properties1 {"));
+		assertFalse(source.contains(rawClassName + "$Properties1 extends"));
+		String lastPartSource = StandardCharsets.UTF_8.decode(outputSink.getSource(new ClassName(root.getPackageName(), rawClassName + "$Properties12"))).toString();
+		assertTrue(lastPartSource.contains("public class " + rawClassName + "$Properties12 {"));
+		assertTrue(lastPartSource.contains("public String getP12999()"));
+		assertNull(outputSink.getSource(new ClassName(root.getPackageName(), rawClassName + "$Properties13")));
+		
+		// The type only declares the accessors of its own part
+		assertTrue(source.contains("public void setP999(String value)"));
+		assertFalse(source.contains("getP1000()"));
+		String firstPartSource = StandardCharsets.UTF_8.decode(outputSink.getSource(new ClassName(root.getPackageName(), rawClassName + "$Properties1"))).toString();
+		assertTrue(firstPartSource.contains("public String getP1000()"));
+		assertFalse(firstPartSource.contains("getP999()"));
+		assertFalse(firstPartSource.contains("getP2000()"));
+	}
+	
+	@Test
+	public void generateImmutableWithStreamingCodecsChainsBuilderReading() throws CodeGenerationException, IOException {
+		Supplier<Generator> immutableGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME, "com.example")
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_MAX_PROPERTIES_PER_CLASS, Integer.valueOf(4))
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE);
+		
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		Generator generator = immutableGeneratorFactory.get();
+		generator.setSchemaLoader(createBeanSchemaLoader());
+		generator.setOutputSink(outputSink);
+		ClassName root = generator.generate(BEAN);
+		generator.flush();
+		
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(root)).toString();
+		assertTrue(source.contains("private final String name;"));
+		assertFalse(source.contains("public void setName("));
+		assertTrue(source.contains("public Bean.Builder setName(String value)"));
+		// The builder holds all properties, and reads them in a chain of methods
+		assertTrue(source.contains("protected void readField(JsonParser parser, String name)"));
+		assertTrue(source.contains("readField1(parser, name);"));
+		assertTrue(source.contains("private void readField1(JsonParser parser, String name)"));
+		assertTrue(source.contains("readField2(parser, name);"));
+		assertTrue(source.contains("private void readField2(JsonParser parser, String name)"));
+		assertFalse(source.contains("readField3"));
+	}
+	
+	@Test(timeout = 120000)
+	public void generateWideImmutableTypeSplitsBuilderReading() throws Exception {
+		// Above the code size limit for reading all properties in one method
+		SchemaLoader schemaLoader = createWideSchemaLoader(3000);
+		URI type = URI.create("http://example.com/wide.json#");
+		Supplier<Generator> wideTypeGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME, "com.example")
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, "com.example.WideModule");
+		
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(wideTypeGeneratorFactory, schemaLoader, getClass().getClassLoader(), 1);
+		Class<?> beanClass = loader.getBeanClass(type);
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule((Module) beanClass.getClassLoader().loadClass("com.example.WideModule").getDeclaredConstructor().newInstance());
+		Object bean = mapper.readValue("{\"p2999\":\"last\",\"p0\":\"first\",\"p1500\":\"middle\"}", beanClass);
+		assertEquals("first", beanClass.getMethod("getP0").invoke(bean));
+		assertEquals("middle", beanClass.getMethod("getP1500").invoke(bean));
+		assertEquals("last", beanClass.getMethod("getP2999").invoke(bean));
+	}
+	
+	@Test
+	public void generateArraysOfPrimitivesUsesPrimitiveLists() throws CodeGenerationException, IOException {
+		JsonNode schemaNode = jsonNodeReader.fromReader(new StringReader("{\"type\": \"object\", \"properties\": {"
+			+ "\"a\": {\"type\": \"array\", \"items\": {\"type\": \"integer\"}}, "
+			+ "\"b\": {\"type\": \"array\", \"items\": {\"type\": \"number\"}, \"minItems\": 100}, "
+			+ "\"c\": {\"type\": \"array\", \"items\": {\"type\": \"boolean\"}}"
+			+ "}}"));
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/primitive-lists.json", schemaNode);
+		
+		PojoGenerator generator = new PojoGenerator(new PojoClassGenerator(), new PojoArrayGenerator(), new PojoStringGenerator());
+		generator.setSchemaLoader(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		generator.setOutputSink(outputSink);
+		ClassName className = generator.generate(URI.create("http://example.com/primitive-lists.json#"));
+		generator.flush();
+		
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(className)).toString();
+		assertTrue(source.contains("import anonymous.support.IntList;"));
+		assertTrue(source.contains("private IntList a;"));
+		assertTrue(source.contains("private DoubleList b;"));
+		assertTrue(source.contains("private BooleanList c;"));
+		String listSource = StandardCharsets.UTF_8.decode(outputSink.getSource(new ClassName("anonymous.support", "DoubleList"))).toString();
+		assertTrue(listSource.contains("package anonymous.support;"));
+		assertTrue(listSource.contains("public final class DoubleList extends AbstractList<Double>"));
+		assertTrue(listSource.contains("public void addDouble(double value)"));
+		assertFalse(listSource.contains("${"));
+		
+		// DoubleList: 24 bytes, and an array of 100 doubles with 816 bytes
+		assertEquals(24 + 816, generator.getFootprintReport(true).getEntries().get(0).getFields().get(1).getRetainedSize());
+	}
+	
+	@Test
+	public void generateArraysOfPrimitivesWithoutPrimitiveListsUsesBoxedLists() throws CodeGenerationException, IOException {
+		JsonNode schemaNode = jsonNodeReader.fromReader(new StringReader("{\"type\": \"object\", \"properties\": {"
+			+ "\"a\": {\"type\": \"array\", \"items\": {\"type\": \"integer\"}}"
+			+ "}}"));
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/boxed-lists.json", schemaNode);
+		
+		PojoGenerator generator = new PojoGenerator(new PojoClassGenerator(), new PojoArrayGenerator(), new PojoStringGenerator());
+		generator.setFeature(PojoGenerator.FEATURE_PRIMITIVE_LISTS, Boolean.FALSE);
+		generator.setSchemaLoader(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		generator.setOutputSink(outputSink);
+		ClassName className = generator.generate(URI.create("http://example.com/boxed-lists.json#"));
+		generator.flush();
+		
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(className)).toString();
+		assertTrue(source.contains("private List<Integer> a;"));
+		assertEquals(1, outputSink.getSources().size());
+	}
+	
+	@Test
+	public void getFootprintReportEstimatesSizes() throws CodeGenerationException, IOException {
+		JsonNode schemaNode = jsonNodeReader.fromReader(new StringReader("{\"type\": \"object\", \"properties\": {"
+			+ "\"a\": {\"type\": \"integer\"}, "
+			+ "\"b\": {\"type\": \"number\"}, "
+			+ "\"c\": {\"type\": \"boolean\"}, "
+			+ "\"d\": {\"type\": \"string\"}, "
+			+ "\"e\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}, \"minItems\": 20}"
+			+ "}}"));
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/footprint.json", schemaNode);
+		
+		PojoGenerator generator = new PojoGenerator(new PojoClassGenerator(), new PojoArrayGenerator(), new PojoStringGenerator());
+		generator.setSchemaLoader(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+		generator.setOutputSink(new InMemoryOutputSink());
+		ClassName className = generator.generate(URI.create("http://example.com/footprint.json#"));
+		generator.flush();
+		
+		FootprintReport report = generator.getFootprintReport(true);
+		assertEquals(1, report.getEntries().size());
+		FootprintReport.Entry entry = report.getEntries().get(0);
+		assertEquals(className, entry.getClassName());
+		// 12 byte header, int, double, boolean and two references: 33 bytes, aligned to 40
+		assertEquals(40, entry.getShallowSize());
+		assertEquals(5, entry.getFields().size());
+		// String: 24 bytes, and an empty byte array of 16 bytes
+		assertEquals(40, entry.getFields().get(3).getRetainedSize());
+		// ArrayList: 24 bytes, an array of 20 references with 96 bytes, and 20 strings
+		assertEquals(24 + 96 + 20 * 40, entry.getFields().get(4).getRetainedSize());
+		assertEquals(40 + 40 + 24 + 96 + 20 * 40, entry.getRetainedSize());
+		
+		// Without compressed references the header has 16 bytes, and references 8 bytes
+		assertEquals(48, generator.getFootprintReport(false).getEntries().get(0).getShallowSize());
+	}
+	
+	@Test
+	public void streamingCodecsRoundTripLikeDatabind() throws Exception {
+		Supplier<Generator> codecGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, "com.example.BeanModule");
+		RuntimeBeanLoader loader = createBeanLoader(codecGeneratorFactory);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		Module module = (Module) beanClass.getClassLoader().loadClass("com.example.BeanModule").getDeclaredConstructor().newInstance();
+		
+		ObjectMapper databindMapper = new ObjectMapper();
+		ObjectMapper codecsMapper = new ObjectMapper();
+		codecsMapper.registerModule(module);
+		
+		String json = "{\"name\":\"root\",\"count\":3,\"price\":1.5,\"active\":true,\"tags\":[\"a\",null,\"c\"],"
+				+ "\"parts\":[{\"label\":\"x\"},null,{}],\"main\":{\"label\":\"\\u00e4\\\"\"},"
+				+ "\"counts\":[1,-2,3],\"samples\":[0.5,2.0],\"flags\":[true,false,true]}";
+		JsonNode expected = databindMapper.valueToTree(databindMapper.readValue(json, beanClass));
+		
+		// Streaming read, databind write
+		assertEquals(expected, databindMapper.valueToTree(codecsMapper.readValue(json, beanClass)));
+		// Databind read, streaming write
+		assertEquals(expected, databindMapper.readTree(codecsMapper.writeValueAsString(databindMapper.readValue(json, beanClass))));
+		// Unknown properties are skipped
+		assertEquals(databindMapper.valueToTree(databindMapper.readValue("{\"name\":\"n\",\"main\":null}", beanClass)), databindMapper.valueToTree(codecsMapper.readValue("{\"unknown\":{\"name\":[1]},\"name\":\"n\",\"main\":null}", beanClass)));
+	}
+	
+	@Test
+	public void generateWithPresenceTrackingWritesPresenceMask() throws CodeGenerationException, IOException {
+		Supplier<Generator> presenceGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_DEFAULT_PACKAGE_NAME, "com.example")
+				.with(PojoGenerator.FEATURE_PRESENCE_TRACKING, Boolean.TRUE);
+		
+		InMemoryOutputSink outputSink = new InMemoryOutputSink();
+		Generator generator = presenceGeneratorFactory.get();
+		generator.setSchemaLoader(createBeanSchemaLoader());
+		generator.setOutputSink(outputSink);
+		ClassName root = generator.generate(BEAN);
+		generator.flush();
+		
+		String source = StandardCharsets.UTF_8.decode(outputSink.getSource(root)).toString();
+		assertTrue(source.contains("private long $present0;"));
+		assertTrue(source.contains("private int count;"));
+		assertTrue(source.contains("public int getCount()"));
+		// Each optional primitive property has its own bit
+		assertTrue(source.contains("public boolean hasCount() {\n\t\treturn (this.$present0 & 0x1L) != 0;"));
+		assertTrue(source.contains("public void clearCount() {\n\t\tthis.count = 0;\n\t\tthis.$present0 &= ~0x1L;"));
+		assertTrue(source.contains("public boolean hasPrice() {\n\t\treturn (this.$present0 & 0x2L) != 0;"));
+		// Required properties are always present
+		assertTrue(source.contains("private boolean active;"));
+		assertFalse(source.contains("hasActive"));
+		assertFalse(source.contains("0x4L"));
+		// Only primitive properties need a bit
+		assertFalse(source.contains("hasName"));
+	}
+	
+	@Test
+	public void presenceTrackingOmitsAbsentProperties() throws Exception {
+		Supplier<Generator> presenceGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_PRESENCE_TRACKING, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, "com.example.PresenceModule");
+		RuntimeBeanLoader loader = createBeanLoader(presenceGeneratorFactory);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule((Module) beanClass.getClassLoader().loadClass("com.example.PresenceModule").getDeclaredConstructor().newInstance());
+		
+		Object bean = mapper.readValue("{\"count\":0,\"active\":false}", beanClass);
+		assertEquals(Boolean.TRUE, beanClass.getMethod("hasCount").invoke(bean));
+		assertEquals(Boolean.FALSE, beanClass.getMethod("hasPrice").invoke(bean));
+		JsonNode tree = mapper.readTree(mapper.writeValueAsString(bean));
+		assertEquals(0, tree.get("count").intValue());
+		assertFalse(tree.has("price"));
+		assertTrue(tree.has("active"));
+		
+		beanClass.getMethod("clearCount").invoke(bean);
+		beanClass.getMethod("setPrice", double.class).invoke(bean, Double.valueOf(2.5));
+		tree = mapper.readTree(mapper.writeValueAsString(bean));
+		assertFalse(tree.has("count"));
+		assertEquals(2.5, tree.get("price").doubleValue(), 0);
+		
+		// null makes the property absent
+		bean = mapper.readValue("{\"count\":1,\"price\":null,\"active\":true}", beanClass);
+		assertEquals(Boolean.TRUE, beanClass.getMethod("hasCount").invoke(bean));
+		assertEquals(Boolean.FALSE, beanClass.getMethod("hasPrice").invoke(bean));
+		
+		// Plain databind tracks the presence in the same way
+		ObjectMapper databindMapper = new ObjectMapper();
+		Object databindBean = databindMapper.readValue("{\"price\":1.0,\"count\":null}", beanClass);
+		assertEquals(Boolean.FALSE, beanClass.getMethod("hasCount").invoke(databindBean));
+		assertEquals(Boolean.TRUE, beanClass.getMethod("hasPrice").invoke(databindBean));
+		tree = databindMapper.readTree(databindMapper.writeValueAsString(databindBean));
+		assertFalse(tree.has("count"));
+		assertEquals(1.0, tree.get("price").doubleValue(), 0);
+		assertEquals(mapper.readTree(mapper.writeValueAsString(databindBean)), tree);
+		
+		beanClass.getMethod("setCount", int.class).invoke(databindBean, Integer.valueOf(0));
+		tree = databindMapper.readTree(databindMapper.writeValueAsString(databindBean));
+		assertEquals(0, tree.get("count").intValue());
+	}
+	
+	@Test
+	public void streamingCodecsKeepAdditionalProperties() throws Exception {
+		Supplier<Generator> codecGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, "com.example.ExtensibleModule");
+		RuntimeBeanLoader loader = createBeanLoader(codecGeneratorFactory);
+		Class<?> extensibleClass = loader.getBeanClass(EXTENSIBLE);
+		Class<?> mapClass = extensibleClass.getMethod("additionalProperties").getReturnType();
+		assertEquals("StringIntMap", mapClass.getSimpleName());
+		
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule((Module) extensibleClass.getClassLoader().loadClass("com.example.ExtensibleModule").getDeclaredConstructor().newInstance());
+		
+		String json = "{\"b\":2,\"name\":\"n\",\"a\":-1,\"c\\n\":3}";
+		Object extensible = mapper.readValue(json, extensibleClass);
+		Map<?, ?> additionalProperties = (Map<?, ?>) extensibleClass.getMethod("additionalProperties").invoke(extensible);
+		assertEquals(Arrays.asList("b", "a", "c\n"), new ArrayList<>(additionalProperties.keySet()));
+		assertEquals(-1, mapClass.getMethod("getInt", String.class, int.class).invoke(additionalProperties, "a", Integer.valueOf(0)));
+		// Known properties come first, the additional ones follow in insertion order
+		assertEquals("{\"name\":\"n\",\"b\":2,\"a\":-1,\"c\\n\":3}", mapper.writeValueAsString(extensible));
+		
+		// Plain databind does not see the map
+		assertEquals("{\"name\":\"n\"}", new ObjectMapper().writeValueAsString(extensible));
+	}
+	
+	@Test
+	public void stringMapsRemoveEntries() throws Exception {
+		RuntimeBeanLoader loader = createBeanLoader(generatorFactory);
+		Class<?> intMapClass = loader.getBeanClass(EXTENSIBLE).getMethod("additionalProperties").getReturnType();
+		Class<?> mapClass = loader.getBeanClass(DIRECTORY).getMethod("additionalProperties").getReturnType();
+		assertEquals("StringMap", mapClass.getSimpleName());
+		
+		for (Class<?> stringMapClass : Arrays.asList(intMapClass, mapClass)) {
+			@SuppressWarnings("unchecked")
+			Map<String, Object> map = (Map<String, Object>) stringMapClass.getDeclaredConstructor().newInstance();
+			Map<String, Object> expected = new LinkedHashMap<>();
+			Random random = new Random(stringMapClass.getName().hashCode());
+			for (int i = 0; i < 5000; i++) {
+				String key = "k" + random.nextInt(200);
+				switch (random.nextInt(4)) {
+				case 0:
+					assertEquals(expected.remove(key), map.remove(key));
+					break;
+				case 1:
+					// Access by index compacts the removed entries
+					if (!expected.isEmpty()) {
+						int index = random.nextInt(expected.size());
+						String expectedKey = new ArrayList<>(expected.keySet()).get(index);
+						assertEquals(expectedKey, stringMapClass.getMethod("keyAt", int.class).invoke(map, Integer.valueOf(index)));
+						assertEquals(expected.get(expectedKey), stringMapClass.getMethod("valueAt", int.class).invoke(map, Integer.valueOf(index)));
+						assertEquals(Integer.valueOf(index), stringMapClass.getMethod("indexOf", String.class).invoke(map, expectedKey));
+					}
+					break;
+				default:
+					Object value = Integer.valueOf(i);
+					assertEquals(expected.put(key, value), map.put(key, value));
+				}
+				assertEquals(expected.get(key), map.get(key));
+				assertEquals(expected.size(), map.size());
+			}
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+			
+			// Removing through the iterator, also when the access by index moves the entries
+			Iterator<Map.Entry<String, Object>> expectedIterator = expected.entrySet().iterator();
+			Iterator<Map.Entry<String, Object>> iterator = map.entrySet().iterator();
+			for (int i = 0; iterator.hasNext(); i++) {
+				assertEquals(expectedIterator.next(), iterator.next());
+				if (i % 3 != 0) {
+					expectedIterator.remove();
+					iterator.remove();
+				}
+				if (i % 5 == 0) {
+					assertEquals(expected.keySet().iterator().next(), stringMapClass.getMethod("keyAt", int.class).invoke(map, Integer.valueOf(0)));
+				}
+			}
+			assertFalse(expectedIterator.hasNext());
+			assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+		}
+	}
+	
+	@Test
+	public void immutableBeansCompareStructurally() throws Exception {
+		Supplier<Generator> immutableGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE)
+				// Split the bean into parts, which all take part in equals and hashCode
+				.with(PojoGenerator.FEATURE_MAX_PROPERTIES_PER_CLASS, Integer.valueOf(4))
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS, Boolean.TRUE)
+				.with(PojoGenerator.FEATURE_STREAMING_CODECS_MODULE, "com.example.ImmutableModule");
+		RuntimeBeanLoader loader = createBeanLoader(immutableGeneratorFactory);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.registerModule((Module) beanClass.getClassLoader().loadClass("com.example.ImmutableModule").getDeclaredConstructor().newInstance());
+		String json = "{\"name\":\"root\",\"count\":3,\"price\":1.5,\"active\":true,\"tags\":[\"a\",null],"
+				+ "\"parts\":[{\"label\":\"x\"}],\"main\":{\"label\":\"y\"},\"counts\":[1,2],\"samples\":[0.5],\"flags\":[true]}";
+		Object bean = mapper.readValue(json, beanClass);
+		Object same = mapper.readValue(json, beanClass);
+		assertNotSame(bean, same);
+		assertEquals(bean, same);
+		assertEquals(bean.hashCode(), same.hashCode());
+		assertEquals(mapper.readTree(json), mapper.readTree(mapper.writeValueAsString(bean)));
+		assertTrue(bean.toString().startsWith("Bean{name=root, count=3, price=1.5, "));
+		
+		// The last property is in the last part
+		Object builder = beanClass.getMethod("toBuilder").invoke(bean);
+		builder.getClass().getMethod("setFlags", beanClass.getMethod("getFlags").getReturnType()).invoke(builder, (Object) null);
+		Object changed = builder.getClass().getMethod("build").invoke(builder);
+		assertFalse(bean.equals(changed));
+		assertEquals(bean, mapper.readValue(json, beanClass));
+	}
+	
+	@Test
+	@SuppressWarnings("unchecked")
+	public void immutableBeansCopyCollections() throws Exception {
+		Supplier<Generator> immutableGeneratorFactory = new FeatureGeneratorFactory(generatorFactory)
+				.with(PojoGenerator.FEATURE_IMMUTABLE, Boolean.TRUE);
+		RuntimeBeanLoader loader = createBeanLoader(immutableGeneratorFactory);
+		Class<?> beanClass = loader.getBeanClass(BEAN);
+		Object builder = beanClass.getMethod("builder").invoke(null);
+		Class<?> builderClass = builder.getClass();
+		List<String> tags = new ArrayList<>(Arrays.asList("a"));
+		builderClass.getMethod("setTags", List.class).invoke(builder, tags);
+		Class<?> countsClass = beanClass.getMethod("getCounts").getReturnType();
+		List<Integer> counts = (List<Integer>) countsClass.getDeclaredConstructor().newInstance();
+		counts.add(Integer.valueOf(1));
+		builderClass.getMethod("setCounts", countsClass).invoke(builder, counts);
+		Object bean = builderClass.getMethod("build").invoke(builder);
+		
+		// Changing the lists given to the builder does not change the bean
+		tags.add("b");
+		counts.add(Integer.valueOf(2));
+		assertEquals(Arrays.asList("a"), beanClass.getMethod("getTags").invoke(bean));
+		assertEquals(Arrays.asList(Integer.valueOf(1)), beanClass.getMethod("getCounts").invoke(bean));
+		
+		// Neither does changing the lists returned by the bean
+		try {
+			((List<String>) beanClass.getMethod("getTags").invoke(bean)).add("c");
+			fail("Expected an unmodifiable list");
+		} catch (UnsupportedOperationException e) {
+			// Expected
+		}
+		((List<Integer>) beanClass.getMethod("getCounts").invoke(bean)).add(Integer.valueOf(3));
+		assertEquals(Arrays.asList(Integer.valueOf(1)), beanClass.getMethod("getCounts").invoke(bean));
+		
+		Class<?> extensibleClass = loader.getBeanClass(EXTENSIBLE);
+		Object extensibleBuilder = extensibleClass.getMethod("builder").invoke(null);
+		Map<String, Object> builderProperties = (Map<String, Object>) extensibleBuilder.getClass().getMethod("additionalProperties").invoke(extensibleBuilder);
+		builderProperties.put("a", Integer.valueOf(1));
+		Object extensible = extensibleBuilder.getClass().getMethod("build").invoke(extensibleBuilder);
+		builderProperties.put("b", Integer.valueOf(2));
+		((Map<String, Object>) extensibleClass.getMethod("additionalProperties").invoke(extensible)).put("c", Integer.valueOf(3));
+		assertEquals(Collections.singletonMap("a", Integer.valueOf(1)), extensibleClass.getMethod("additionalProperties").invoke(extensible));
+	}
+	
+	private SchemaLoader createWideSchemaLoader(int propertyCount) throws IOException {
+		StringBuilder schema = new StringBuilder("{\"type\": \"object\", \"properties\": {");
+		for (int i = 0; i < propertyCount; i++) {
+			if (i > 0) {
+				schema.append(", ");
+			}
+			schema.append("\"p").append(i).append("\": {\"type\": \"string\"}");
+		}
+		schema.append("}}");
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/wide.json", jsonNodeReader.fromReader(new StringReader(schema.toString())));
+		return new SchemaLoader(loadingConfigurationBuilder.freeze());
+	}
+	
+	private SchemaLoader createBeanSchemaLoader() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/codecs/bean.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/codecs/bean.json", jsonNodeReader.fromReader(reader));
+		}
+		return new SchemaLoader(loadingConfigurationBuilder.freeze());
+	}
+	
+	private RuntimeBeanLoader createBeanLoader(Supplier<Generator> beanGeneratorFactory) throws IOException {
+		return new RuntimeBeanLoader(beanGeneratorFactory, createBeanSchemaLoader(), getClass().getClassLoader(), 4);
+	}
 }
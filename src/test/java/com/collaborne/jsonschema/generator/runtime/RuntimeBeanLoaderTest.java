@@ -0,0 +1,230 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.CodeGenerationException;
+import com.collaborne.jsonschema.generator.Generator;
+import com.collaborne.jsonschema.generator.java.ClassName;
+import com.collaborne.jsonschema.generator.java.ClassPathIndex;
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.collaborne.jsonschema.generator.model.Mapping;
+import com.collaborne.jsonschema.generator.pojo.PojoGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.google.inject.Guice;
+import com.google.inject.Injector;
+
+public class RuntimeBeanLoaderTest {
+	private static final URI COMMON = URI.create("http://example.com/common.json#");
+	private static final URI INVOICE = URI.create("http://example.com/common.json#/definitions/invoice");
+	private static final URI ORDER = URI.create("http://example.com/common.json#/definitions/order");
+	private static final URI LINE = URI.create("http://example.com/common.json#/definitions/line");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private SchemaLoader schemaLoader;
+	private Supplier<Generator> generatorFactory;
+
+	@Before
+	public void setUp() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		try (Reader reader = new InputStreamReader(getClass().getResourceAsStream("/schemas/pruning/common.json"), StandardCharsets.UTF_8)) {
+			loadingConfigurationBuilder.preloadSchema("http://example.com/common.json", new JsonNodeReader().fromReader(reader));
+		}
+		schemaLoader = new SchemaLoader(loadingConfigurationBuilder.freeze());
+
+		Injector injector = Guice.createInjector();
+		generatorFactory = new Supplier<Generator>() {
+			@Override
+			public Generator get() {
+				return injector.getInstance(PojoGenerator.class);
+			}
+		};
+	}
+
+	@Test
+	public void getBeanClassReturnsCachedClass() throws CodeGenerationException, ReflectiveOperationException {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+
+		Class<?> invoiceClass = loader.getBeanClass(INVOICE);
+		assertNotNull(invoiceClass);
+		assertEquals("Invoice", invoiceClass.getSimpleName());
+		assertNotNull(invoiceClass.getMethod("getOrder"));
+		assertNotNull(invoiceClass.getDeclaredConstructor().newInstance());
+		assertSame(invoiceClass, loader.getBeanClass(INVOICE));
+		assertEquals(1, loader.getGenerationCount());
+	}
+
+	@Test
+	public void getBeanClassCachesTypesWithoutClass() throws CodeGenerationException {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+
+		assertNull(loader.getBeanClass(COMMON));
+		assertNull(loader.getBeanClass(COMMON));
+		assertEquals(1, loader.getGenerationCount());
+	}
+
+	@Test
+	public void getBeanClassesSharesClassLoader() throws CodeGenerationException {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+
+		Map<URI, Class<?>> beanClasses = loader.getBeanClasses(Arrays.asList(INVOICE, LINE, COMMON));
+		assertEquals(Arrays.asList(INVOICE, LINE, COMMON), new ArrayList<>(beanClasses.keySet()));
+		assertSame(beanClasses.get(INVOICE).getClassLoader(), beanClasses.get(LINE).getClassLoader());
+		assertNull(beanClasses.get(COMMON));
+		assertEquals(1, loader.getGenerationCount());
+
+		assertSame(beanClasses.get(LINE), loader.getBeanClass(LINE));
+		assertEquals(1, loader.getGenerationCount());
+	}
+
+	@Test
+	public void getBeanClassRecordsTypesGeneratedAlong() throws CodeGenerationException, ReflectiveOperationException {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+
+		Class<?> invoiceClass = loader.getBeanClass(INVOICE);
+		Class<?> orderClass = invoiceClass.getMethod("getOrder").getReturnType();
+		assertSame(orderClass, loader.getBeanClass(ORDER));
+		Type linesType = orderClass.getMethod("getLines").getGenericReturnType();
+		assertSame(((ParameterizedType) linesType).getActualTypeArguments()[0], loader.getBeanClass(LINE));
+		assertEquals(1, loader.getGenerationCount());
+	}
+
+	@Test
+	public void getBeanClassCompilesAgainstParentClassLoader() throws Exception {
+		// Provide a class for the line type that only the parent class loader can see
+		Path classDirectory = temporaryFolder.newFolder().toPath();
+		Map<String, byte[]> classFiles = new InMemoryJavaCompiler(System.getProperty("java.class.path")).compile(LINE, Collections.singletonMap("com.example.external.Line", "package com.example.external; public class Line {}"));
+		Path classFile = classDirectory.resolve("com/example/external/Line.class");
+		Files.createDirectories(classFile.getParent());
+		Files.write(classFile, classFiles.get("com.example.external.Line"));
+
+		try (URLClassLoader parentClassLoader = new URLClassLoader(new URL[] { classDirectory.toUri().toURL() }, getClass().getClassLoader())) {
+			Supplier<Generator> mappedGeneratorFactory = new Supplier<Generator>() {
+				@Override
+				public Generator get() {
+					PojoGenerator generator = (PojoGenerator) generatorFactory.get();
+					generator.setClassPathIndex(new ClassPathIndex(parentClassLoader));
+					generator.addMapping(LINE, new Mapping(LINE, new ClassName("com.example.external", "Line")));
+					return generator;
+				}
+			};
+			RuntimeBeanLoader loader = new RuntimeBeanLoader(mappedGeneratorFactory, schemaLoader, parentClassLoader, 4);
+
+			assertSame(parentClassLoader.loadClass("com.example.external.Line"), loader.getBeanClass(LINE));
+			Class<?> orderClass = loader.getBeanClass(INVOICE).getMethod("getOrder").getReturnType();
+			assertNotNull(orderClass.getMethod("getLines"));
+		}
+	}
+
+	@Test
+	public void getBeanClassLoadsDocumentsThroughParsedSchemaCache() throws CodeGenerationException {
+		ParsedSchemaCache parsedSchemaCache = new ParsedSchemaCache(new ObjectMapper());
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, parsedSchemaCache, getClass().getClassLoader(), 4);
+
+		loader.getBeanClass(INVOICE);
+		// The line was generated along with the invoice, the document itself needs another generation
+		loader.getBeanClass(COMMON);
+		assertEquals(2, loader.getGenerationCount());
+		// The second generation uses the document parsed for the first one
+		assertEquals(1, parsedSchemaCache.getParseCount());
+		assertTrue(parsedSchemaCache.contains(INVOICE));
+	}
+
+	@Test
+	public void getBeanClassConcurrentlyGeneratesOnce() throws Exception {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 4);
+
+		int threads = 8;
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Class<?>>> futures = new ArrayList<>();
+			for (int i = 0; i < threads; i++) {
+				futures.add(executor.submit(new Callable<Class<?>>() {
+					@Override
+					public Class<?> call() throws Exception {
+						start.await();
+						return loader.getBeanClass(INVOICE);
+					}
+				}));
+			}
+			start.countDown();
+
+			Class<?> invoiceClass = futures.get(0).get();
+			for (Future<Class<?>> future : futures) {
+				assertSame(invoiceClass, future.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, loader.getGenerationCount());
+	}
+
+	@Test
+	public void getBeanClassEvictsLeastRecentlyUsed() throws CodeGenerationException {
+		RuntimeBeanLoader loader = new RuntimeBeanLoader(generatorFactory, schemaLoader, getClass().getClassLoader(), 1);
+
+		Class<?> invoiceClass = loader.getBeanClass(INVOICE);
+		loader.getBeanClass(LINE);
+		assertEquals(1, loader.getLoadedTypeCount());
+
+		// The class loader for the invoice was evicted, so a new class gets generated
+		assertNotSame(invoiceClass, loader.getBeanClass(INVOICE));
+		assertEquals(3, loader.getGenerationCount());
+	}
+}
@@ -0,0 +1,80 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collaborne.jsonschema.generator.SchemaHasher;
+import com.collaborne.jsonschema.generator.cache.ContentStore;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.report.ProcessingReport;
+import com.github.fge.jsonschema.main.JsonSchemaFactory;
+
+public class MetaSchemaValidatorTest {
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Test
+	public void validateReportsInvalidDocuments() throws ProcessingException, IOException {
+		Map<URI, JsonNode> documents = new LinkedHashMap<>();
+		documents.put(URI.create("http://example.com/valid.json#"), objectMapper.readTree("{\"type\": \"object\", \"properties\": {\"a\": {\"type\": \"string\"}}}"));
+		documents.put(URI.create("http://example.com/draft3.json#"), objectMapper.readTree("{\"$schema\": \"http://json-schema.org/draft-03/schema#\", \"type\": \"object\", \"properties\": {\"a\": {\"required\": true}}}"));
+		URI invalidUri = URI.create("http://example.com/invalid.json#");
+		documents.put(invalidUri, objectMapper.readTree("{\"type\": \"object\", \"properties\": {\"a\": {\"type\": 5}}}"));
+
+		MetaSchemaValidator validator = new MetaSchemaValidator(JsonSchemaFactory.byDefault(), null);
+		Map<URI, ProcessingReport> invalidDocuments = validator.validate(documents, 2);
+		assertEquals(Collections.singleton(invalidUri), invalidDocuments.keySet());
+		assertEquals(3, validator.getValidationCount());
+	}
+
+	@Test
+	public void validateSkipsDocumentsValidInEarlierRun() throws ProcessingException, IOException {
+		ContentStore store = new ContentStore(temporaryFolder.newFolder("store").toPath());
+		JsonNode document = objectMapper.readTree("{\"$schema\": \"http://json-schema.org/draft-04/schema#\", \"type\": \"string\"}");
+		Map<URI, JsonNode> documents = Collections.singletonMap(URI.create("http://example.com/valid.json#"), document);
+
+		MetaSchemaValidator validator = new MetaSchemaValidator(JsonSchemaFactory.byDefault(), store);
+		assertTrue(validator.validate(documents, 1).isEmpty());
+		assertEquals(1, validator.getValidationCount());
+		String hash = SchemaHasher.hash(("http://json-schema.org/draft-04/schema#\n" + document).getBytes(StandardCharsets.UTF_8));
+		assertNotNull(store.getReferenced("valid-schemas", hash));
+
+		MetaSchemaValidator otherValidator = new MetaSchemaValidator(JsonSchemaFactory.byDefault(), store);
+		assertTrue(otherValidator.validate(documents, 1).isEmpty());
+		assertEquals(0, otherValidator.getValidationCount());
+		assertEquals(1, otherValidator.getSkipCount());
+	}
+}
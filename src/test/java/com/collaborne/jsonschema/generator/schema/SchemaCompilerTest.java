@@ -0,0 +1,194 @@
+/* Licensed to Collaborne B.V. under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  Collaborne licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.collaborne.jsonschema.generator.schema;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.collaborne.jsonschema.generator.load.ParsedSchemaCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fge.jackson.JsonNodeReader;
+import com.github.fge.jackson.jsonpointer.JsonPointerException;
+import com.github.fge.jsonschema.core.exceptions.ProcessingException;
+import com.github.fge.jsonschema.core.load.SchemaLoader;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfiguration;
+import com.github.fge.jsonschema.core.load.configuration.LoadingConfigurationBuilder;
+import com.github.fge.jsonschema.core.load.download.URIDownloader;
+
+public class SchemaCompilerTest {
+	private static final String SCHEMA = "{"
+			+ "\"type\": \"object\","
+			+ "\"required\": [\"name\"],"
+			+ "\"properties\": {"
+			+ "  \"name\": {\"type\": \"string\", \"minLength\": 1, \"maxLength\": 10, \"pattern\": \"^a\"},"
+			+ "  \"node\": {\"$ref\": \"#/definitions/node\"},"
+			+ "  \"alias\": {\"$ref\": \"#/definitions/alias\"},"
+			+ "  \"values\": {\"type\": \"array\", \"items\": {\"type\": \"number\", \"minimum\": 0.5}},"
+			+ "  \"missing\": {\"$ref\": \"http://example.com/missing.json#\"},"
+			+ "  \"loop\": {\"$ref\": \"#/definitions/loop\"},"
+			+ "  \"status\": {\"type\": \"string\", \"enum\": [\"open\", \"closed\"]},"
+			+ "  \"mixed\": {\"enum\": [\"open\", 1]}"
+			+ "},"
+			+ "\"definitions\": {"
+			+ "  \"node\": {\"type\": \"object\", \"properties\": {\"name\": {\"type\": \"string\"}, \"next\": {\"$ref\": \"#/definitions/node\"}}, \"additionalProperties\": false},"
+			+ "  \"alias\": {\"$ref\": \"#/definitions/node\"},"
+			+ "  \"loop\": {\"$ref\": \"#/definitions/loop\"}"
+			+ "}"
+			+ "}";
+	private static final URI ROOT = URI.create("http://example.com/schema.json#");
+
+	private SchemaCompiler compiler;
+
+	@Before
+	public void setUp() throws IOException {
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.preloadSchema("http://example.com/schema.json", new JsonNodeReader().fromReader(new StringReader(SCHEMA)));
+		compiler = new SchemaCompiler(new SchemaLoader(loadingConfigurationBuilder.freeze()));
+	}
+
+	@Test
+	public void compileLinksReferencesDirectly() throws ProcessingException, JsonPointerException {
+		SchemaType root = compiler.compile(ROOT);
+		SchemaType node = compiler.compile(ROOT.resolve("#/definitions/node"));
+
+		assertSame(node, root.getPropertyType(root.indexOfProperty("node")));
+		// References to references resolve to the final type
+		assertSame(node, root.getPropertyType(root.indexOfProperty("alias")));
+		// Recursive structures link back
+		assertSame(node, node.getPropertyType(node.indexOfProperty("next")));
+		assertFalse(node.isAdditionalPropertiesAllowed());
+	}
+
+	@Test
+	public void compileInternsPropertyNames() throws ProcessingException, JsonPointerException {
+		SchemaType root = compiler.compile(ROOT);
+		SchemaType node = compiler.compile(ROOT.resolve("#/definitions/node"));
+
+		assertSame(root.getPropertyName(root.indexOfProperty("name")), node.getPropertyName(node.indexOfProperty("name")));
+	}
+
+	@Test
+	public void compileInlineSchemas() throws ProcessingException, JsonPointerException {
+		SchemaType root = compiler.compile(ROOT);
+		SchemaType name = root.getPropertyType(root.indexOfProperty("name"));
+		SchemaType values = root.getPropertyType(root.indexOfProperty("values"));
+
+		assertEquals(URI.create("http://example.com/schema.json#/properties/name"), name.getUri());
+		assertEquals("string", name.getTypeName());
+		assertEquals(1, name.getMinLength());
+		assertEquals(10, name.getMaxLength());
+		assertEquals("^a", name.getPattern());
+		assertTrue(root.isPropertyRequired(root.indexOfProperty("name")));
+		assertFalse(root.isPropertyRequired(root.indexOfProperty("values")));
+
+		SchemaType items = values.getItems();
+		assertNotNull(items);
+		assertEquals(URI.create("http://example.com/schema.json#/properties/values/items"), items.getUri());
+		assertEquals(0.5, items.getMinimum(), 0);
+		assertTrue(Double.isNaN(items.getMaximum()));
+		assertEquals(SchemaType.NO_LIMIT, values.getMinItems());
+		assertNull(name.getEnumValues());
+	}
+
+	@Test
+	public void compileStringEnums() throws ProcessingException, JsonPointerException {
+		SchemaType root = compiler.compile(ROOT);
+		SchemaType status = root.getPropertyType(root.indexOfProperty("status"));
+		SchemaType mixed = root.getPropertyType(root.indexOfProperty("mixed"));
+
+		assertArrayEquals(new String[] { "open", "closed" }, status.getEnumValues());
+		// Only enumerations of strings are kept
+		assertNull(mixed.getEnumValues());
+	}
+
+	@Test
+	public void compileUnresolvableReferencesAsPlaceholders() throws ProcessingException, JsonPointerException {
+		SchemaType root = compiler.compile(ROOT);
+		SchemaType missing = root.getPropertyType(root.indexOfProperty("missing"));
+		SchemaType loop = root.getPropertyType(root.indexOfProperty("loop"));
+
+		assertFalse(missing.isResolved());
+		assertEquals(URI.create("http://example.com/missing.json#"), missing.getUri());
+		assertFalse(loop.isResolved());
+	}
+
+	@Test
+	public void compileMissingPointerReturnsNull() throws ProcessingException, JsonPointerException {
+		assertNull(compiler.compile(ROOT.resolve("#/definitions/unknown")));
+	}
+
+	@Test
+	public void compileFollowsParsedSchemaCache() throws ProcessingException, JsonPointerException {
+		Map<String, String> documents = new HashMap<>();
+		documents.put("/a.json", "{\"type\": \"string\"}");
+		documents.put("/b.json", "{\"type\": \"number\"}");
+		AtomicInteger fetchCount = new AtomicInteger();
+		LoadingConfigurationBuilder loadingConfigurationBuilder = LoadingConfiguration.newBuilder();
+		loadingConfigurationBuilder.setEnableCache(false);
+		loadingConfigurationBuilder.addScheme("test", new URIDownloader() {
+			@Override
+			public InputStream fetch(URI source) {
+				fetchCount.incrementAndGet();
+				return new ByteArrayInputStream(documents.get(source.getPath()).getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		ObjectMapper objectMapper = new ObjectMapper();
+		// Room for a single document
+		ParsedSchemaCache parsedSchemaCache = new ParsedSchemaCache(objectMapper, 1);
+		SchemaCompiler cachingCompiler = new SchemaCompiler(new SchemaLoader(loadingConfigurationBuilder.freeze()), parsedSchemaCache);
+		URI a = URI.create("test:/a.json#");
+		URI b = URI.create("test:/b.json#");
+		
+		SchemaType type = cachingCompiler.compile(a);
+		assertSame(type, cachingCompiler.compile(a));
+		assertEquals(1, fetchCount.get());
+		
+		// Evicting the document drops its types
+		cachingCompiler.compile(b);
+		assertFalse(parsedSchemaCache.contains(a));
+		SchemaType reloadedType = cachingCompiler.compile(a);
+		assertNotSame(type, reloadedType);
+		assertEquals("string", reloadedType.getTypeName());
+		assertEquals(3, fetchCount.get());
+		
+		// Invalidating the document compiles the changed schema
+		documents.put("/a.json", "{\"type\": \"boolean\"}");
+		assertEquals("string", cachingCompiler.compile(a).getTypeName());
+		parsedSchemaCache.invalidate(a);
+		assertEquals("boolean", cachingCompiler.compile(a).getTypeName());
+	}
+}